@@ -0,0 +1,67 @@
+package com.segilmez.game3072;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per board of moving a batch of 4x4 game positions in one direction: with {@link MoveTables#move} and
+ * {@link MoveTables#score} per board, with the scalar {@link MoveTables#moveAll}, and with the kernel from
+ * {@link MoveTables#batchMoves()}. The last is the Vector API kernel when the {@code vector} module is built,
+ * which {@code core:jmh} puts on the classpath; otherwise it is the scalar one again.
+ * <p>
+ * The direction changes every call, as it does in rollouts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchMovesBenchmark {
+    private static final int BOARDS = 4096;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Param({"perBoard", "scalar", "fastest"})
+    public String kernel;
+
+    private MoveTables tables;
+    private BatchMoves batchMoves;
+    private long[] boards;
+    private long[] moved = new long[BOARDS];
+    private int[] scores = new int[BOARDS];
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        tables = MoveTables.standard();
+        batchMoves = kernel.equals("fastest") ? tables.batchMoves() : tables;
+        boards = BoardSymmetryBenchmark.samplePositions(BOARDS, 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOARDS)
+    public long[] moveAll() {
+        Direction direction = DIRECTIONS[next++ & 3];
+        if (kernel.equals("perBoard")) {
+            for (int i = 0; i < BOARDS; i++) {
+                moved[i] = tables.move(boards[i], direction);
+                scores[i] = tables.score(boards[i], direction);
+            }
+        } else {
+            batchMoves.moveAll(boards, BOARDS, direction, moved, scores);
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,77 @@
+package com.segilmez.game3072;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per call of canonicalizing a packed board, against reading the board alone. The positions come from
+ * 4x4 games played by a fixed corner strategy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardSymmetryBenchmark {
+    private static final int POSITIONS = 4096;
+
+    private long[] positions;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        positions = samplePositions(POSITIONS, 1);
+    }
+
+    /**
+     * Every position of as many corner-strategy games as it takes, starting from {@code seed}
+     */
+    static long[] samplePositions(int count, long seed) {
+        Direction[] preference = {Direction.DOWN, Direction.LEFT, Direction.RIGHT, Direction.UP};
+        long[] positions = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            Board game = new Board(PackedBoard.SIZE, seed++);
+            game.addInitialTiles();
+            while (filled < count && !game.isGameOver()) {
+                positions[filled++] = PackedBoard.pack(game);
+                for (Direction direction : preference) {
+                    if (game.play(direction)) break;
+                }
+            }
+        }
+        return positions;
+    }
+
+    private long nextPosition() {
+        long board = positions[next];
+        next = (next + 1) & POSITIONS - 1;
+        return board;
+    }
+
+    @Benchmark
+    public long baseline() {
+        return nextPosition();
+    }
+
+    @Benchmark
+    public int canonicalTransform() {
+        return BoardSymmetry.canonicalTransform(nextPosition());
+    }
+
+    @Benchmark
+    public long canonical() {
+        return BoardSymmetry.canonical(nextPosition());
+    }
+}
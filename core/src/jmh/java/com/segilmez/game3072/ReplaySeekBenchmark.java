@@ -0,0 +1,83 @@
+package com.segilmez.game3072;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of seeking to a random move of a long replay, for several keyframe intervals.
+ * <p>
+ * The game is played on a 7x7 board by a fixed corner strategy, which lasts about 10,000 moves. An interval
+ * of 65532 puts a single keyframe at the start, which is the cost of re-simulating from the first move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplaySeekBenchmark {
+    private static final int SIZE = 7;
+    private static final long SEED = 1;
+    private static final int TARGETS = 1024;
+
+    @Param({"64", "512", "4096", "65532"})
+    public int keyframeInterval;
+
+    private ReplayPlayer player;
+    private Board board;
+    private final long[] targets = new long[TARGETS];
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        player = new ReplayPlayer(ByteBuffer.wrap(recordGame(keyframeInterval)));
+        board = player.createBoard();
+
+        Random random = new Random(42);
+        for (int i = 0; i < TARGETS; i++) {
+            targets[i] = (long) (random.nextDouble() * (player.getMoveCount() + 1));
+        }
+    }
+
+    static byte[] recordGame(int keyframeInterval) throws IOException {
+        Direction[] preference = {Direction.DOWN, Direction.LEFT, Direction.RIGHT, Direction.UP};
+        Board game = new Board(SIZE, SEED);
+        game.addInitialTiles();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReplayEncoder encoder = new ReplayEncoder(Channels.newChannel(bytes), SEED, SIZE, keyframeInterval);
+        while (!game.isGameOver()) {
+            for (Direction direction : preference) {
+                if (game.play(direction)) {
+                    encoder.append(direction);
+                    break;
+                }
+            }
+        }
+        encoder.close();
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public int seek() {
+        player.seek(board, targets[next]);
+        next = (next + 1) % TARGETS;
+        return board.getScore();
+    }
+}
@@ -0,0 +1,74 @@
+package com.segilmez.game3072;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Solver} search time and transposition table hit rate with and without canonical keys, over
+ * positions from 4x4 corner-strategy games. The hit rate is {@code hits / lookups} of the secondary results.
+ * <p>
+ * Mirror images of a position are most common early in a game, when there are few tiles; later positions
+ * rarely meet their own images within one search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverCacheBenchmark {
+    private static final int POSITIONS = 512;
+
+    @Param({"false", "true"})
+    public boolean canonical;
+
+    @Param({"2", "3"})
+    public int depth;
+
+    private Solver solver;
+    private long[] positions;
+    private int next = 0;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CacheCounters {
+        public long lookups;
+        public long hits;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            lookups = 0;
+            hits = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        solver = new Solver(depth, Solver.DEFAULT_CACHE_BITS);
+        solver.setCanonicalKeys(canonical);
+        positions = BoardSymmetryBenchmark.samplePositions(POSITIONS, 1);
+    }
+
+    @Benchmark
+    public Direction bestMove(CacheCounters counters) {
+        solver.resetStats();
+        Direction move = solver.bestMove(positions[next]);
+        next = (next + 1) % POSITIONS;
+        counters.lookups += solver.getLookups();
+        counters.hits += solver.getHits();
+        return move;
+    }
+}
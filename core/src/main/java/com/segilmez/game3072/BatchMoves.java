@@ -0,0 +1,19 @@
+package com.segilmez.game3072;
+
+/**
+ * Plays one move on many {@link PackedBoard}s at once, for simulations and rollouts that advance thousands of
+ * independent boards in step. Boards, results and scores are parallel arrays, so an implementation can work on
+ * several boards per instruction.
+ * <p>
+ * {@link MoveTables} is the scalar implementation; {@link MoveTables#batchMoves()} gives the fastest one on the
+ * running JVM, which is the JDK Vector API kernel of the optional {@code vector} module when it is on the
+ * classpath and its incubator module is enabled. That kernel is not thread-safe, so each thread gets its own.
+ */
+public interface BatchMoves {
+    /**
+     * Moves {@code boards[0]} to {@code boards[count - 1]} without spawns, like {@link MoveTables#move(long,
+     * Direction)}, into the same elements of {@code moved}, and the points each scored into {@code scores}.
+     * {@code moved} may be {@code boards} itself.
+     */
+    void moveAll(long[] boards, int count, Direction direction, long[] moved, int[] scores);
+}
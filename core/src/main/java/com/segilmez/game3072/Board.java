@@ -0,0 +1,614 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
+
+/**
+ * The game state of one board: cell values, score, the random generator used for spawns and a bounded
+ * undo history. It has no rendering or timing, so it can be saved, replayed and simulated on its own;
+ * {@link Grid} animates it on screen through a {@link MoveListener}.
+ * <p>
+ * Spawns come only from this board's seeded generator, so a game is fully determined by its seed and moves.
+ * What spawns and what merges is up to its {@link Rules}.
+ * <p>
+ * A 4x4 board whose tiles all have codes below {@link Rules#MAX_CODE} moves through the {@link MoveTables} of
+ * its rules, so every ruleset moves as fast as the standard one; other boards slide cell by cell.
+ */
+public class Board {
+    /** Number of moves that can be undone */
+    public static final int UNDO_DEPTH = 8;
+
+    // Never a packed board the tables move: every cell would hold MAX_CODE
+    private static final long NOT_PACKED = -1;
+
+    /**
+     * Version of the spawn and merge rules. Saved and replayed games only reproduce under the same rules,
+     * so this must change whenever the rules or the way they consume random numbers change.
+     */
+    public static final int RULES_VERSION = 1;
+
+    /**
+     * Notified about every tile that moves and every tile that spawns
+     */
+    public interface MoveListener {
+        /**
+         * A tile slid from one cell to another; {@code merge} is set for the tile that merged into its target
+         */
+        void tileMoved(int fromRow, int fromCol, int toRow, int toCol, int value, boolean merge);
+
+        void tileSpawned(int row, int col, int value);
+    }
+
+    private final Rules rules;
+    private final int size;
+    private final long seed;
+    private final RandomXS128 random;
+    private MoveListener listener;
+    private MoveTables tables; // Fetched on the first move of a 4x4 board
+
+    private int[][] grid; // Actual game state values
+    private int[][] nextGrid; // Scratch buffer the next move is computed into
+    private final boolean[][] merged; // Cells that received a merge during the current move
+    private int score = 0;
+    private int lastMoveScore = 0;
+    private int moveCount = 0;
+
+    // Undo history, a ring of the states before each of the last moves
+    private final int[][] undoCells;
+    private final int[] undoScores;
+    private final long[] undoRandom0;
+    private final long[] undoRandom1;
+    private int undoHead = 0;
+    private int undoCount = 0;
+
+    /**
+     * A board of the given size under the standard rules
+     */
+    public Board(int size) {
+        this(Rules.STANDARD.withSize(size));
+    }
+
+    public Board(int size, long seed) {
+        this(Rules.STANDARD.withSize(size), seed);
+    }
+
+    public Board(Rules rules) {
+        this(rules, MathUtils.random.nextLong());
+    }
+
+    public Board(Rules rules, long seed) {
+        this.rules = rules;
+        this.size = rules.getSize();
+        this.seed = seed;
+        this.random = new RandomXS128(seed);
+
+        grid = new int[size][size];
+        nextGrid = new int[size][size];
+        merged = new boolean[size][size];
+
+        undoCells = new int[UNDO_DEPTH][size * size];
+        undoScores = new int[UNDO_DEPTH];
+        undoRandom0 = new long[UNDO_DEPTH];
+        undoRandom1 = new long[UNDO_DEPTH];
+    }
+
+    public void setMoveListener(MoveListener listener) {
+        this.listener = listener;
+    }
+
+    public MoveListener getMoveListener() {
+        return listener;
+    }
+
+    public void addInitialTiles() {
+        addRandomTile();
+        addRandomTile();
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * The seed the board was created with. A board restored from a save keeps its original seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getValue(int row, int col) {
+        if (row >= 0 && row < size && col >= 0 && col < size) {
+            return grid[row][col];
+        }
+        return 0;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Number of moves that changed the board, not counting undone ones
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Merge points scored since the last {@link #resetLastMoveScore()}, possibly over several moves
+     */
+    public int getLastMoveScore() {
+        return lastMoveScore;
+    }
+
+    public void resetLastMoveScore() {
+        lastMoveScore = 0;
+    }
+
+    /**
+     * Spawns a tile in a random empty cell, chosen by the rules' spawn weights: a 2 (90%) or a 4 (10%) under
+     * the standard rules
+     */
+    public void addRandomTile() {
+        int emptyCount = countEmptyCells();
+
+        if (emptyCount == 0) {
+            return;
+        }
+
+        int target = random.nextInt(emptyCount);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (grid[row][col] == 0 && target-- == 0) {
+                    int value = rules.spawnValue(random.nextFloat());
+                    grid[row][col] = value;
+                    if (listener != null) {
+                        listener.tileSpawned(row, col, value);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    public int countEmptyCells() {
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (grid[row][col] == 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Slides and merges the tiles without spawning a new one. If anything moved, the previous
+     * state is pushed onto the undo history.
+     */
+    public boolean move(Direction direction) {
+        boolean moved = false;
+        int scoreBefore = score;
+        long packed = pack();
+        if (packed != NOT_PACKED) {
+            moved = moveWithTables(packed, direction);
+        } else {
+            copyGrid(grid, nextGrid);
+            clearMerged();
+            switch (direction) {
+                case UP:
+                    moved = processMove(nextGrid, 1, 0);
+                    break;
+                case DOWN:
+                    moved = processMove(nextGrid, -1, 0);
+                    break;
+                case LEFT:
+                    moved = processMove(nextGrid, 0, -1);
+                    break;
+                case RIGHT:
+                    moved = processMove(nextGrid, 0, 1);
+                    break;
+            }
+        }
+
+        if (moved) {
+            moveCount++;
+            pushUndo(grid, scoreBefore);
+            int[][] previous = grid;
+            grid = nextGrid;
+            nextGrid = previous;
+        }
+
+        return moved;
+    }
+
+    /**
+     * Moves and, if anything moved, spawns the next tile right away
+     */
+    public boolean play(Direction direction) {
+        boolean moved = move(direction);
+        if (moved) {
+            addRandomTile();
+        }
+        return moved;
+    }
+
+    /**
+     * The board as tile codes for the move tables, or {@link #NOT_PACKED} if it is not 4x4 or a tile has no
+     * code below {@link Rules#MAX_CODE}, where the tables would stop merging
+     */
+    private long pack() {
+        if (size != PackedBoard.SIZE) return NOT_PACKED;
+        long packed = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int code = rules.findCode(grid[row][col]);
+                if (code < 0 || code == Rules.MAX_CODE) return NOT_PACKED;
+                packed |= (long) code << 4 * (row * PackedBoard.SIZE + col);
+            }
+        }
+        return packed;
+    }
+
+    private MoveTables tables() {
+        if (tables == null) {
+            tables = rules.getMoveTables();
+        }
+        return tables;
+    }
+
+    /**
+     * Moves a packed board with the tables into {@code nextGrid}, then tells the listener what moved
+     */
+    private boolean moveWithTables(long packed, Direction direction) {
+        MoveTables tables = tables();
+        long result = tables.move(packed, direction);
+        if (result == packed) return false;
+
+        int points = tables.score(packed, direction);
+        score += points;
+        lastMoveScore += points;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                nextGrid[row][col] = rules.value((int) (result >>> 4 * (row * PackedBoard.SIZE + col)) & 0xF);
+            }
+        }
+        if (listener != null) {
+            switch (direction) {
+                case UP:
+                    reportMoves(1, 0);
+                    break;
+                case DOWN:
+                    reportMoves(-1, 0);
+                    break;
+                case LEFT:
+                    reportMoves(0, -1);
+                    break;
+                case RIGHT:
+                    reportMoves(0, 1);
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells the listener how the tiles of {@code grid} got to {@code nextGrid}, in the order
+     * {@link #processMove} would. Along each line, tiles fill the result cells from the edge one by one. A tile
+     * whose value differs from the cell it lands in was merged into by the next tile, since a merge never
+     * keeps the value of the tile it lands on.
+     */
+    private void reportMoves(int rowStep, int colStep) {
+        for (int line = 0; line < size; line++) {
+            int target = 0;
+            boolean merging = false;
+            for (int distance = 0; distance < size; distance++) {
+                int row = cellAt(rowStep, line, distance);
+                int col = cellAt(colStep, line, distance);
+                int value = grid[row][col];
+                if (value == 0) continue;
+
+                if (merging) {
+                    // Merges into the tile before it
+                    listener.tileMoved(row, col, cellAt(rowStep, line, target - 1), cellAt(colStep, line, target - 1),
+                        value, true);
+                    merging = false;
+                    continue;
+                }
+                int toRow = cellAt(rowStep, line, target);
+                int toCol = cellAt(colStep, line, target);
+                merging = nextGrid[toRow][toCol] != value;
+                if (toRow != row || toCol != col) {
+                    listener.tileMoved(row, col, toRow, toCol, value, false);
+                }
+                target++;
+            }
+        }
+    }
+
+    /**
+     * Row or column of the cell {@code distance} cells from the edge tiles move towards along {@code step}, on
+     * line {@code line} across it
+     */
+    private int cellAt(int step, int line, int distance) {
+        return step > 0 ? size - 1 - distance : step < 0 ? distance : line;
+    }
+
+    private void copyGrid(int[][] source, int[][] target) {
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(source[row], 0, target[row], 0, size);
+        }
+    }
+
+    private void clearMerged() {
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                merged[row][col] = false;
+            }
+        }
+    }
+
+    /**
+     * Slides every tile one cell at a time towards {@code (rowStep, colStep)}, starting with the tiles
+     * nearest to that edge, and merges each into the first tile it runs into if the rules allow. A tile that
+     * received a merge takes no second one in the same move.
+     */
+    private boolean processMove(int[][] newGrid, int rowStep, int colStep) {
+        boolean moved = false;
+
+        for (int line = 0; line < size; line++) {
+            for (int distance = 1; distance < size; distance++) {
+                // The cell `distance` cells away from the edge the tiles move towards
+                int row = rowStep > 0 ? size - 1 - distance : rowStep < 0 ? distance : line;
+                int col = colStep > 0 ? size - 1 - distance : colStep < 0 ? distance : line;
+                if (newGrid[row][col] == 0) continue;
+
+                int currentRow = row;
+                int currentCol = col;
+                int value = newGrid[row][col];
+
+                while (true) {
+                    int nextRow = currentRow + rowStep;
+                    int nextCol = currentCol + colStep;
+                    if (nextRow < 0 || nextRow >= size || nextCol < 0 || nextCol >= size) break;
+
+                    int other = newGrid[nextRow][nextCol];
+                    if (other == 0) {
+                        // Move to empty cell
+                        newGrid[nextRow][nextCol] = value;
+                        newGrid[currentRow][currentCol] = 0;
+                        currentRow = nextRow;
+                        currentCol = nextCol;
+                        moved = true;
+                        continue;
+                    }
+
+                    int mergedValue = merged[nextRow][nextCol] ? 0 : rules.merge(value, other);
+                    if (mergedValue != 0) {
+                        // Merge with matching cell
+                        newGrid[nextRow][nextCol] = mergedValue;
+                        newGrid[currentRow][currentCol] = 0;
+                        merged[nextRow][nextCol] = true;
+                        currentRow = nextRow;
+                        currentCol = nextCol;
+                        moved = true;
+
+                        // Update score
+                        score += mergedValue;
+                        lastMoveScore += mergedValue;
+                    }
+                    break;
+                }
+
+                if (currentRow != row || currentCol != col) {
+                    tileMoved(row, col, currentRow, currentCol, value);
+                }
+            }
+        }
+
+        return moved;
+    }
+
+    private void tileMoved(int fromRow, int fromCol, int toRow, int toCol, int value) {
+        if (listener != null) {
+            listener.tileMoved(fromRow, fromCol, toRow, toCol, value, merged[toRow][toCol]);
+        }
+    }
+
+    public boolean isGameOver() {
+        // Check for empty cells
+        if (countEmptyCells() > 0) {
+            return false;
+        }
+
+        long packed = pack();
+        if (packed != NOT_PACKED) {
+            return !tables().canMove(packed);
+        }
+
+        // Check for possible merges
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int value = grid[row][col];
+
+                // Check right and down for possible merges
+                if ((col < size - 1 && canMerge(value, grid[row][col + 1])) ||
+                    (row < size - 1 && canMerge(value, grid[row + 1][col]))) {
+                    return false;
+                }
+            }
+        }
+
+        return true; // No moves possible
+    }
+
+    private boolean canMerge(int value, int other) {
+        return rules.merge(value, other) != 0 || rules.merge(other, value) != 0;
+    }
+
+    /**
+     * The largest tile on the board, 0 if it is empty
+     */
+    public int getMaxTile() {
+        int max = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                max = Math.max(max, grid[row][col]);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Whether a tile has reached the rules' target tile
+     */
+    public boolean isWon() {
+        int target = rules.getTargetTile();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (grid[row][col] >= target) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void pushUndo(int[][] cells, int scoreBefore) {
+        int slot = nextUndoSlot();
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(cells[row], 0, undoCells[slot], row * size, size);
+        }
+        undoScores[slot] = scoreBefore;
+        undoRandom0[slot] = random.getState(0);
+        undoRandom1[slot] = random.getState(1);
+    }
+
+    /**
+     * Claims the slot for a new undo entry, forgetting the oldest one when the history is full
+     */
+    private int nextUndoSlot() {
+        int slot = (undoHead + undoCount) % UNDO_DEPTH;
+        if (undoCount == UNDO_DEPTH) {
+            undoHead = (undoHead + 1) % UNDO_DEPTH;
+        } else {
+            undoCount++;
+        }
+        return slot;
+    }
+
+    public boolean canUndo() {
+        return undoCount > 0;
+    }
+
+    /**
+     * Restores the state before the last move, including the random generator, so the same
+     * move spawns the same tile again
+     */
+    public boolean undo() {
+        if (undoCount == 0) {
+            return false;
+        }
+        undoCount--;
+        int slot = (undoHead + undoCount) % UNDO_DEPTH;
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(undoCells[slot], row * size, grid[row], 0, size);
+        }
+        score = undoScores[slot];
+        random.setState(undoRandom0[slot], undoRandom1[slot]);
+        lastMoveScore = 0;
+        if (moveCount > 0) {
+            moveCount--;
+        }
+        return true;
+    }
+
+    // Raw state access for the save game and replay codecs
+
+    /**
+     * Returns to the first position of the game with this board's seed
+     */
+    void reset() {
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                grid[row][col] = 0;
+            }
+        }
+        score = 0;
+        lastMoveScore = 0;
+        moveCount = 0;
+        undoCount = 0;
+        random.setSeed(seed);
+        addInitialTiles();
+    }
+
+    /**
+     * Replaces the whole state, forgetting the undo history
+     */
+    void restore(int[] cells, int score, int moveCount, long random0, long random1) {
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(cells, row * size, grid[row], 0, size);
+        }
+        this.score = score;
+        this.moveCount = moveCount;
+        lastMoveScore = 0;
+        undoCount = 0;
+        random.setState(random0, random1);
+    }
+
+    long getRandomState(int index) {
+        return random.getState(index);
+    }
+
+    void setRandomState(long state0, long state1) {
+        random.setState(state0, state1);
+    }
+
+    void setScore(int score) {
+        this.score = score;
+    }
+
+    void setMoveCount(int moveCount) {
+        this.moveCount = moveCount;
+    }
+
+    void setValue(int row, int col, int value) {
+        grid[row][col] = value;
+    }
+
+    int getUndoCount() {
+        return undoCount;
+    }
+
+    /**
+     * Undo entry {@code index}, counted from the oldest one
+     */
+    int getUndoValue(int index, int row, int col) {
+        return undoCells[(undoHead + index) % UNDO_DEPTH][row * size + col];
+    }
+
+    int getUndoScore(int index) {
+        return undoScores[(undoHead + index) % UNDO_DEPTH];
+    }
+
+    long getUndoRandomState(int index, int which) {
+        int slot = (undoHead + index) % UNDO_DEPTH;
+        return which == 0 ? undoRandom0[slot] : undoRandom1[slot];
+    }
+
+    /**
+     * Appends an undo entry, oldest first; used when restoring a save
+     */
+    void pushUndo(int[] cells, int score, long random0, long random1) {
+        int slot = nextUndoSlot();
+        System.arraycopy(cells, 0, undoCells[slot], 0, size * size);
+        undoScores[slot] = score;
+        undoRandom0[slot] = random0;
+        undoRandom1[slot] = random1;
+    }
+}
@@ -0,0 +1,122 @@
+package com.segilmez.game3072;
+
+/**
+ * The 8 symmetries of a square board (rotations and reflections) applied to {@link PackedBoard}s.
+ * <p>
+ * A board and its mirror images have the same value and mirrored best moves, so caches keyed by the
+ * canonical form of a board hold up to 8 times fewer entries and hit up to 8 times as often. Typical use:
+ * <pre>
+ * int transform = BoardSymmetry.canonicalTransform(board);
+ * long key = BoardSymmetry.apply(board, transform);
+ * // ... look up or store the best move for key ...
+ * Direction move = BoardSymmetry.fromCanonical(cachedMove, transform);
+ * </pre>
+ * Transform {@code t} applies, in this order: a transpose if bit 2 is set, a column mirror if bit 0 is set
+ * and a row mirror if bit 1 is set. Transform 0 is the identity.
+ */
+public final class BoardSymmetry {
+    public static final int TRANSFORMS = 8;
+
+    private static final int MIRROR_COLUMNS = 1;
+    private static final int MIRROR_ROWS = 2;
+    private static final int TRANSPOSE = 4;
+
+    // Direction.ordinal() mapped through each transform, and back
+    private static final Direction[][] TO_CANONICAL = new Direction[TRANSFORMS][];
+    private static final Direction[][] FROM_CANONICAL = new Direction[TRANSFORMS][];
+
+    static {
+        for (int transform = 0; transform < TRANSFORMS; transform++) {
+            TO_CANONICAL[transform] = new Direction[Direction.values().length];
+            FROM_CANONICAL[transform] = new Direction[Direction.values().length];
+            for (Direction direction : Direction.values()) {
+                Direction mapped = map(direction, transform);
+                TO_CANONICAL[transform][direction.ordinal()] = mapped;
+                FROM_CANONICAL[transform][mapped.ordinal()] = direction;
+            }
+        }
+    }
+
+    private BoardSymmetry() {
+    }
+
+    public static long apply(long packed, int transform) {
+        if ((transform & TRANSPOSE) != 0) packed = PackedBoard.transpose(packed);
+        if ((transform & MIRROR_COLUMNS) != 0) packed = PackedBoard.mirrorColumns(packed);
+        if ((transform & MIRROR_ROWS) != 0) packed = PackedBoard.mirrorRows(packed);
+        return packed;
+    }
+
+    /**
+     * Returns the transform that maps the board to its canonical form, the smallest of its 8 images compared
+     * as signed longs. Symmetric boards have several such transforms; the lowest one is returned.
+     */
+    public static int canonicalTransform(long packed) {
+        // The 8 images are generated with one operation each instead of applying every transform from scratch
+        long transposed = PackedBoard.transpose(packed);
+        long best = packed;
+        int bestTransform = 0;
+
+        long image = PackedBoard.mirrorColumns(packed);
+        if (image < best) { best = image; bestTransform = MIRROR_COLUMNS; }
+        long rows = PackedBoard.mirrorRows(packed);
+        if (rows < best) { best = rows; bestTransform = MIRROR_ROWS; }
+        image = PackedBoard.mirrorColumns(rows);
+        if (image < best) { best = image; bestTransform = MIRROR_COLUMNS | MIRROR_ROWS; }
+
+        if (transposed < best) { best = transposed; bestTransform = TRANSPOSE; }
+        image = PackedBoard.mirrorColumns(transposed);
+        if (image < best) { best = image; bestTransform = TRANSPOSE | MIRROR_COLUMNS; }
+        rows = PackedBoard.mirrorRows(transposed);
+        if (rows < best) { best = rows; bestTransform = TRANSPOSE | MIRROR_ROWS; }
+        image = PackedBoard.mirrorColumns(rows);
+        if (image < best) { bestTransform = TRANSPOSE | MIRROR_COLUMNS | MIRROR_ROWS; }
+
+        return bestTransform;
+    }
+
+    /**
+     * The canonical form of a board; equal for a board and all its mirror images
+     */
+    public static long canonical(long packed) {
+        return apply(packed, canonicalTransform(packed));
+    }
+
+    /**
+     * The move on the transformed board that corresponds to {@code direction} on the original one
+     */
+    public static Direction toCanonical(Direction direction, int transform) {
+        return TO_CANONICAL[transform][direction.ordinal()];
+    }
+
+    /**
+     * The move on the original board that corresponds to {@code direction} on the transformed one
+     */
+    public static Direction fromCanonical(Direction direction, int transform) {
+        return FROM_CANONICAL[transform][direction.ordinal()];
+    }
+
+    /**
+     * UP moves tiles towards higher rows and RIGHT towards higher columns, so a transpose swaps UP with
+     * RIGHT and DOWN with LEFT, and each mirror reverses one axis
+     */
+    private static Direction map(Direction direction, int transform) {
+        if ((transform & TRANSPOSE) != 0) {
+            switch (direction) {
+                case UP: direction = Direction.RIGHT; break;
+                case RIGHT: direction = Direction.UP; break;
+                case DOWN: direction = Direction.LEFT; break;
+                case LEFT: direction = Direction.DOWN; break;
+            }
+        }
+        if ((transform & MIRROR_COLUMNS) != 0) {
+            if (direction == Direction.LEFT) direction = Direction.RIGHT;
+            else if (direction == Direction.RIGHT) direction = Direction.LEFT;
+        }
+        if ((transform & MIRROR_ROWS) != 0) {
+            if (direction == Direction.UP) direction = Direction.DOWN;
+            else if (direction == Direction.DOWN) direction = Direction.UP;
+        }
+        return direction;
+    }
+}
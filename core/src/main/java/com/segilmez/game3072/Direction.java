@@ -0,0 +1,17 @@
+package com.segilmez.game3072;
+
+/**
+ * The four ways the board can be moved. The ordinal is stable and fits in two bits.
+ */
+public enum Direction {
+    UP, DOWN, LEFT, RIGHT;
+
+    private static final Direction[] VALUES = values();
+
+    /**
+     * Returns the direction with the given ordinal without allocating
+     */
+    public static Direction of(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
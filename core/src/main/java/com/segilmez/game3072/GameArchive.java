@@ -0,0 +1,361 @@
+package com.segilmez.game3072;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+
+/**
+ * Append-only file of fixed-size {@link GameRecord}s, read through memory mapping.
+ * <p>
+ * Fields are read in place from the mapped file, so a query is a plain loop over the records with no
+ * deserialization. The header also holds a small index: the number of games per largest tile and per score
+ * bucket, so counts such as "games that reached 2048" need no scan at all, and score percentiles only scan
+ * the records of a single bucket.
+ * <p>
+ * Appends are safe while other processes read. A writer holds a file lock, writes the new records past the
+ * end, updates the index and only then publishes the new record count in the header; readers see records up
+ * to the count they last {@link #refresh() refreshed} to and never a partly written record. The index may
+ * briefly count records that are not published yet. Only one instance per process may append to a file.
+ * <pre>
+ * Header, {@value #HEADER_SIZE} bytes:
+ *   int magic "G72A", int version, long record count, int record size, int reserved,
+ *   long[16 max tile exponents][32 score buckets] game counts
+ * Record, {@value #RECORD_SIZE} bytes:
+ *   long seed, long packed board, int score, int move count, long duration in nanoseconds,
+ *   int policy id, byte board size, byte max tile exponent, short reserved
+ * </pre>
+ */
+public class GameArchive implements Closeable {
+    public static final int MAGIC = 0x47373241;
+    public static final int VERSION = 1;
+    public static final int RECORD_SIZE = 40;
+    public static final int HEADER_SIZE = 8192;
+    /** Score bucket {@code b > 0} holds scores in {@code [2^(b-1), 2^b)}; bucket 0 holds a score of 0 */
+    public static final int SCORE_BUCKETS = 32;
+    public static final int TILE_BUCKETS = PackedBoard.MAX_EXPONENT + 1;
+
+    private static final int COUNT_OFFSET = 8;
+    private static final int RECORD_SIZE_OFFSET = 16;
+    private static final int INDEX_OFFSET = 24;
+
+    private static final int SEED = 0;
+    private static final int BOARD = 8;
+    private static final int SCORE = 16;
+    private static final int MOVES = 20;
+    private static final int DURATION = 24;
+    private static final int POLICY = 32;
+    private static final int BOARD_SIZE = 36;
+    private static final int MAX_TILE = 37;
+
+    // Records are mapped in segments, as a single mapping is limited to 2 GB
+    private static final int SEGMENT_SHIFT = 24;
+    private static final long SEGMENT_RECORDS = 1L << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = (int) SEGMENT_RECORDS - 1;
+
+    private static final int WRITE_BATCH = 256;
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long size = 0;
+
+    private final ByteBuffer writeBuffer;
+    private final ByteBuffer longBuffer;
+
+    private GameArchive(File file, boolean writable) throws IOException {
+        this.writable = writable;
+        // RandomAccessFile rather than java.nio.file, which older Android versions lack
+        channel = new RandomAccessFile(file, writable ? "rw" : "r").getChannel();
+        if (writable) {
+            writeBuffer = ByteBuffer.allocateDirect(RECORD_SIZE * WRITE_BATCH);
+            longBuffer = ByteBuffer.allocate(8);
+            initializeHeader();
+        } else {
+            writeBuffer = null;
+            longBuffer = null;
+        }
+
+        if (channel.size() < HEADER_SIZE) {
+            channel.close();
+            throw new IOException(file + " is not a game archive");
+        }
+        header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+            channel.close();
+            throw new IOException(file + " is not a version " + VERSION + " game archive");
+        }
+        refresh();
+    }
+
+    /**
+     * Opens an archive for appending and reading, creating it if needed
+     */
+    public static GameArchive openForAppend(File file) throws IOException {
+        return new GameArchive(file, true);
+    }
+
+    public static GameArchive openReadOnly(File file) throws IOException {
+        return new GameArchive(file, false);
+    }
+
+    private void initializeHeader() throws IOException {
+        FileLock lock = channel.lock();
+        try {
+            if (channel.size() >= HEADER_SIZE) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(0);
+            buffer.putInt(RECORD_SIZE);
+            buffer.rewind();
+            writeFully(buffer, 0);
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Maps the records appended since the last refresh; returns the number of records now visible
+     */
+    public long refresh() throws IOException {
+        long count = header.getLong(COUNT_OFFSET);
+        if (count == size) {
+            return size;
+        }
+
+        int segmentCount = (int) ((count + SEGMENT_RECORDS - 1) >>> SEGMENT_SHIFT);
+        if (segmentCount > segments.length) {
+            segments = Arrays.copyOf(segments, segmentCount);
+        }
+        // The last mapped segment may have been partial; map it again together with any new ones
+        int first = (int) (size >>> SEGMENT_SHIFT);
+        for (int segment = first; segment < segmentCount; segment++) {
+            long start = (long) segment << SEGMENT_SHIFT;
+            long records = Math.min(count - start, SEGMENT_RECORDS);
+            segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + start * RECORD_SIZE,
+                records * RECORD_SIZE);
+        }
+        size = count;
+        return size;
+    }
+
+    /**
+     * Number of records visible since the last {@link #refresh()}
+     */
+    public long size() {
+        return size;
+    }
+
+    public void append(GameRecord record) throws IOException {
+        append(new GameRecord[]{record}, 0, 1);
+    }
+
+    /**
+     * Appends records under the file lock and publishes them together
+     */
+    public synchronized void append(GameRecord[] records, int offset, int length) throws IOException {
+        if (!writable) {
+            throw new IllegalStateException("Archive is read-only");
+        }
+        FileLock lock = channel.lock();
+        try {
+            long count = header.getLong(COUNT_OFFSET);
+            int end = offset + length;
+            for (int batch = offset; batch < end; batch += WRITE_BATCH) {
+                int batchEnd = Math.min(end, batch + WRITE_BATCH);
+                writeBuffer.clear();
+                for (int i = batch; i < batchEnd; i++) {
+                    putRecord(writeBuffer, records[i]);
+                }
+                writeBuffer.flip();
+                writeFully(writeBuffer, HEADER_SIZE + (count + batch - offset) * RECORD_SIZE);
+            }
+
+            for (int i = offset; i < end; i++) {
+                long cell = INDEX_OFFSET + indexCell(records[i].maxTileExponent, scoreBucket(records[i].score)) * 8L;
+                writeLong(cell, header.getLong((int) cell) + 1);
+            }
+
+            // Publishing the count last makes the records visible to readers
+            writeLong(COUNT_OFFSET, count + length);
+        } finally {
+            lock.release();
+        }
+    }
+
+    private static void putRecord(ByteBuffer buffer, GameRecord record) {
+        buffer.putLong(record.seed);
+        buffer.putLong(record.board);
+        buffer.putInt(record.score);
+        buffer.putInt(record.moveCount);
+        buffer.putLong(record.durationNanos);
+        buffer.putInt(record.policyId);
+        buffer.put((byte) record.boardSize);
+        buffer.put((byte) record.maxTileExponent);
+        buffer.putShort((short) 0);
+    }
+
+    private void writeLong(long position, long value) throws IOException {
+        longBuffer.clear();
+        longBuffer.putLong(value);
+        longBuffer.flip();
+        writeFully(longBuffer, position);
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    public static int scoreBucket(int score) {
+        return score <= 0 ? 0 : 32 - Integer.numberOfLeadingZeros(score);
+    }
+
+    private static int indexCell(int maxTileExponent, int scoreBucket) {
+        return Math.min(maxTileExponent, TILE_BUCKETS - 1) * SCORE_BUCKETS + scoreBucket;
+    }
+
+    // Record fields, read in place
+
+    private MappedByteBuffer segment(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + size);
+        }
+        return segments[(int) (index >>> SEGMENT_SHIFT)];
+    }
+
+    private static int offset(long index) {
+        return ((int) index & SEGMENT_MASK) * RECORD_SIZE;
+    }
+
+    public long getSeed(long index) {
+        return segment(index).getLong(offset(index) + SEED);
+    }
+
+    public long getBoard(long index) {
+        return segment(index).getLong(offset(index) + BOARD);
+    }
+
+    public int getScore(long index) {
+        return segment(index).getInt(offset(index) + SCORE);
+    }
+
+    public int getMoveCount(long index) {
+        return segment(index).getInt(offset(index) + MOVES);
+    }
+
+    public long getDurationNanos(long index) {
+        return segment(index).getLong(offset(index) + DURATION);
+    }
+
+    public int getPolicyId(long index) {
+        return segment(index).getInt(offset(index) + POLICY);
+    }
+
+    public int getBoardSize(long index) {
+        return segment(index).get(offset(index) + BOARD_SIZE);
+    }
+
+    public int getMaxTileExponent(long index) {
+        return segment(index).get(offset(index) + MAX_TILE);
+    }
+
+    // Queries
+
+    /**
+     * Games with the given largest tile and score bucket, from the header index
+     */
+    public long getIndexCount(int maxTileExponent, int scoreBucket) {
+        return header.getLong(INDEX_OFFSET + indexCell(maxTileExponent, scoreBucket) * 8);
+    }
+
+    /**
+     * Games whose largest tile is at least {@code 2^minExponent}, from the header index
+     */
+    public long countReaching(int minExponent) {
+        long count = 0;
+        for (int tile = Math.max(0, minExponent); tile < TILE_BUCKETS; tile++) {
+            for (int bucket = 0; bucket < SCORE_BUCKETS; bucket++) {
+                count += getIndexCount(tile, bucket);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Share of the games played by a policy whose largest tile is at least {@code 2^minExponent}; scans
+     * every record
+     */
+    public double reachRate(int policyId, int minExponent) {
+        long games = 0;
+        long reached = 0;
+        for (int segment = 0; segment * SEGMENT_RECORDS < size; segment++) {
+            MappedByteBuffer records = segments[segment];
+            int count = (int) Math.min(size - segment * SEGMENT_RECORDS, SEGMENT_RECORDS);
+            for (int i = 0, offset = 0; i < count; i++, offset += RECORD_SIZE) {
+                if (records.getInt(offset + POLICY) == policyId) {
+                    games++;
+                    if (records.get(offset + MAX_TILE) >= minExponent) {
+                        reached++;
+                    }
+                }
+            }
+        }
+        return games == 0 ? 0 : (double) reached / games;
+    }
+
+    /**
+     * Score at the given percentile (0 to 100) over all games. The index tells which score bucket holds the
+     * percentile, so a single pass collects and sorts only the scores in that bucket.
+     */
+    public int scorePercentile(double percentile) {
+        long[] bucketCounts = new long[SCORE_BUCKETS];
+        long total = 0;
+        for (int bucket = 0; bucket < SCORE_BUCKETS; bucket++) {
+            for (int tile = 0; tile < TILE_BUCKETS; tile++) {
+                bucketCounts[bucket] += getIndexCount(tile, bucket);
+            }
+            total += bucketCounts[bucket];
+        }
+        if (total == 0 || size == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        int bucket = 0;
+        while (bucket < SCORE_BUCKETS - 1 && rank > bucketCounts[bucket]) {
+            rank -= bucketCounts[bucket];
+            bucket++;
+        }
+
+        // The index may count records that are still being appended, so fewer scores may be found
+        int[] scores = new int[(int) bucketCounts[bucket]];
+        int found = 0;
+        for (long index = 0; index < size && found < scores.length; index++) {
+            int score = getScore(index);
+            if (scoreBucket(score) == bucket) {
+                scores[found++] = score;
+            }
+        }
+        if (found == 0) {
+            return 0;
+        }
+        Arrays.sort(scores, 0, found);
+        return scores[(int) Math.min(rank, found) - 1];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,172 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.BitmapFontLoader.BitmapFontParameter;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGeneratorLoader;
+import com.badlogic.gdx.graphics.g2d.freetype.FreetypeFontLoader;
+import com.badlogic.gdx.graphics.g2d.freetype.FreetypeFontLoader.FreeTypeFontLoaderParameter;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Loads and owns the fonts and images used by the game.
+ * <p>
+ * The {@code packAssets} Gradle task pre-rasterizes every {@link GameFont} for each density bucket and packs
+ * the glyphs together with the UI images into one atlas per bucket, so normally startup is a single atlas load.
+ * When the packed atlas is missing (e.g. when running from an IDE without a Gradle build) the fonts are
+ * generated with FreeType and the images are loaded as separate textures instead.
+ * <p>
+ * Everything is loaded asynchronously through an {@link AssetManager}. The tile font is queued first so the
+ * board can be shown as soon as it is ready; the getters return {@code null} until their asset has arrived.
+ */
+public class GameAssets implements Disposable {
+    public static final String PACKED_DIR = "packed";
+    public static final String ATLAS_FILE = "ui.atlas";
+    public static final String FONT_FILE = "Orbitron/static/Orbitron-Regular.ttf";
+
+    /** Densities the fonts are pre-rasterized at, and the folder name of each bucket */
+    public static final float[] DENSITIES = {0.75f, 1f, 1.5f, 2f, 3f, 4f};
+    public static final String[] DENSITY_NAMES = {"ldpi", "mdpi", "hdpi", "xhdpi", "xxhdpi", "xxxhdpi"};
+
+    /** Images packed next to the fonts; region names are the file names without extension */
+    public static final String[] IMAGES = {"score.png", "best_score.png", "restart_game.png"};
+
+    /** Time spent finishing loading work per frame, so the loading screen keeps animating */
+    private static final int LOAD_BUDGET_MILLIS = 8;
+
+    private final AssetManager manager;
+    private final ObjectMap<String, TextureRegion> regions = new ObjectMap<>();
+    private boolean packed;
+    private String folder;
+    private float density;
+
+    public GameAssets() {
+        FileHandleResolver resolver = new InternalFileHandleResolver();
+        manager = new AssetManager(resolver);
+        manager.setLoader(FreeTypeFontGenerator.class, new FreeTypeFontGeneratorLoader(resolver));
+        manager.setLoader(BitmapFont.class, ".ttf", new FreetypeFontLoader(resolver));
+    }
+
+    /**
+     * Queues every asset for asynchronous loading, board resources first
+     */
+    public void queue() {
+        density = Gdx.graphics.getDensity();
+        folder = PACKED_DIR + "/" + DENSITY_NAMES[densityBucket(density)] + "/";
+        packed = Gdx.files.internal(folder + ATLAS_FILE).exists();
+        if (!packed) {
+            Gdx.app.log("GameAssets", "No packed atlas in " + folder + ", generating fonts at runtime");
+        }
+
+        queueFont(GameFont.TILE);
+        for (GameFont font : GameFont.values()) {
+            if (font != GameFont.TILE) {
+                queueFont(font);
+            }
+        }
+
+        if (!packed) {
+            for (String image : IMAGES) {
+                manager.load(image, Texture.class);
+            }
+        }
+    }
+
+    private void queueFont(GameFont font) {
+        if (packed) {
+            BitmapFontParameter parameter = new BitmapFontParameter();
+            parameter.atlasName = folder + ATLAS_FILE;
+            manager.load(fontPath(font), BitmapFont.class, parameter);
+        } else {
+            FreeTypeFontLoaderParameter parameter = new FreeTypeFontLoaderParameter();
+            parameter.fontFileName = FONT_FILE;
+            parameter.fontParameters = font.createParameters(density);
+            manager.load(fontPath(font), BitmapFont.class, parameter);
+        }
+    }
+
+    /**
+     * Asset name of a font: the packed .fnt file, or a per-font alias resolved by the FreeType loader
+     */
+    private String fontPath(GameFont font) {
+        return packed ? folder + font.getFileName() + ".fnt" : font.getFileName() + ".ttf";
+    }
+
+    /**
+     * Returns the index of the density bucket closest to the given screen density
+     */
+    public static int densityBucket(float density) {
+        int best = 0;
+        for (int i = 1; i < DENSITIES.length; i++) {
+            if (Math.abs(DENSITIES[i] - density) < Math.abs(DENSITIES[best] - density)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    public static String regionName(String image) {
+        return image.substring(0, image.lastIndexOf('.'));
+    }
+
+    /**
+     * Advances loading by at most a few milliseconds; returns true once everything is loaded
+     */
+    public boolean update() {
+        return manager.update(LOAD_BUDGET_MILLIS);
+    }
+
+    public float getProgress() {
+        return manager.getProgress();
+    }
+
+    /**
+     * Whether everything needed to draw and play the board has been loaded
+     */
+    public boolean isBoardReady() {
+        return manager.isLoaded(fontPath(GameFont.TILE));
+    }
+
+    public BitmapFont getFont(GameFont font) {
+        String path = fontPath(font);
+        return manager.isLoaded(path) ? manager.get(path, BitmapFont.class) : null;
+    }
+
+    public TextureRegion getRegion(String name) {
+        TextureRegion region = regions.get(name);
+        if (region != null) {
+            return region;
+        }
+
+        if (packed) {
+            String atlasPath = folder + ATLAS_FILE;
+            if (manager.isLoaded(atlasPath)) {
+                region = manager.get(atlasPath, TextureAtlas.class).findRegion(name);
+            }
+        } else {
+            String image = name + ".png";
+            if (manager.isLoaded(image)) {
+                region = new TextureRegion(manager.get(image, Texture.class));
+            }
+        }
+
+        if (region != null) {
+            regions.put(name, region);
+        }
+        return region;
+    }
+
+    @Override
+    public void dispose() {
+        regions.clear();
+        manager.dispose();
+    }
+}
@@ -0,0 +1,167 @@
+package com.segilmez.game3072;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Blocking client for {@link GameServer}. The simple calls send one request and wait for its response; to keep
+ * many requests in flight, queue them with the {@code send} calls, {@link #flush()}, then {@link #receive()} one
+ * response per request. The last response received is kept in the getters. Keep no more than a few thousand
+ * requests unanswered: past what the socket buffers hold, the server stops reading until its responses are read.
+ * <p>
+ * Not thread safe: use one client per thread.
+ */
+public final class GameClient implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private byte status;
+    private int game;
+    private long board;
+    private int score;
+    private int moveCount;
+    private int flags;
+
+    public GameClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        in.flip();
+    }
+
+    /**
+     * Starts a game, whose id is then {@link #getGame()}
+     *
+     * @return the status, {@link GameProtocol#OK} or {@link GameProtocol#TABLE_FULL}
+     */
+    public byte newGame(long seed) throws IOException {
+        sendNewGame(seed);
+        return call();
+    }
+
+    public byte move(int game, Direction direction) throws IOException {
+        sendMove(game, direction);
+        return call();
+    }
+
+    public byte state(int game) throws IOException {
+        sendState(game);
+        return call();
+    }
+
+    public byte undo(int game) throws IOException {
+        sendUndo(game);
+        return call();
+    }
+
+    public byte closeGame(int game) throws IOException {
+        sendCloseGame(game);
+        return call();
+    }
+
+    public void sendNewGame(long seed) throws IOException {
+        room(GameProtocol.requestSize(GameProtocol.NEW)).put(GameProtocol.NEW).putLong(seed);
+    }
+
+    public void sendMove(int game, Direction direction) throws IOException {
+        room(GameProtocol.requestSize(GameProtocol.MOVE)).put(GameProtocol.MOVE).putInt(game)
+            .put((byte) direction.ordinal());
+    }
+
+    public void sendState(int game) throws IOException {
+        room(GameProtocol.requestSize(GameProtocol.STATE)).put(GameProtocol.STATE).putInt(game);
+    }
+
+    public void sendUndo(int game) throws IOException {
+        room(GameProtocol.requestSize(GameProtocol.UNDO)).put(GameProtocol.UNDO).putInt(game);
+    }
+
+    public void sendCloseGame(int game) throws IOException {
+        room(GameProtocol.requestSize(GameProtocol.CLOSE)).put(GameProtocol.CLOSE).putInt(game);
+    }
+
+    /**
+     * Sends every queued request
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Waits for the next response
+     *
+     * @return its status
+     */
+    public byte receive() throws IOException {
+        while (in.remaining() < GameProtocol.RESPONSE_SIZE) {
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+        status = in.get();
+        game = in.getInt();
+        board = in.getLong();
+        score = in.getInt();
+        moveCount = in.getInt();
+        flags = in.get();
+        return status;
+    }
+
+    public byte getStatus() {
+        return status;
+    }
+
+    public int getGame() {
+        return game;
+    }
+
+    public long getBoard() {
+        return board;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public boolean isGameOver() {
+        return (flags & GameProtocol.FLAG_GAME_OVER) != 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private byte call() throws IOException {
+        flush();
+        return receive();
+    }
+
+    /**
+     * The send buffer, flushed first if a request of {@code size} bytes does not fit
+     */
+    private ByteBuffer room(int size) throws IOException {
+        if (out.remaining() < size) {
+            flush();
+        }
+        return out;
+    }
+}
@@ -0,0 +1,58 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+
+/**
+ * The fonts used by the game. Shared by the runtime and by the build-time asset packer,
+ * so both rasterize exactly the same glyphs.
+ */
+public enum GameFont {
+    SCORE("score", 24, "#776E65", 1, new Color(0, 0, 0, 0.2f), "0123456789"),
+    TILE("tile", 20, "#FFFFFF", 1, new Color(0.2f, 0.2f, 0.2f, 0.3f), "0123456789"),
+    GAME_OVER("game_over", 48, "#776E65", 2, new Color(0, 0, 0, 0.3f), "Game Over" + "You Win"),
+    SUBTITLE("subtitle", 20, "#776E65", 0, null, "No more moves available!" + "You reached 0123456789! Keep playing."),
+    BUTTON("button", 16, "#FFFFFF", 0, null, FreeTypeFontGenerator.DEFAULT_CHARS);
+
+    private final String fileName;
+    private final int size;
+    private final String colorHex;
+    private final float borderWidth;
+    private final Color borderColor;
+    private final String characters;
+
+    GameFont(String fileName, int size, String colorHex, float borderWidth, Color borderColor, String characters) {
+        this.fileName = fileName;
+        this.size = size;
+        this.colorHex = colorHex;
+        this.borderWidth = borderWidth;
+        this.borderColor = borderColor;
+        this.characters = characters;
+    }
+
+    /**
+     * Name of the .fnt file and of the atlas region holding the glyphs
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Creates the FreeType parameters for this font at the given screen density
+     */
+    public FreeTypeFontParameter createParameters(float density) {
+        FreeTypeFontParameter parameter = GameUtils.createFontParameters(
+            Math.round(size * density),
+            GameUtils.hexToColor(colorHex),
+            borderWidth,
+            borderColor
+        );
+        parameter.characters = characters;
+        // Fonts are drawn scaled, and the packed atlas is filtered linearly as well
+        parameter.minFilter = TextureFilter.Linear;
+        parameter.magFilter = TextureFilter.Linear;
+        return parameter;
+    }
+}
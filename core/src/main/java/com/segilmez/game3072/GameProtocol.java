@@ -0,0 +1,146 @@
+package com.segilmez.game3072;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary protocol of {@link GameServer}. A client sends requests back to back, without waiting for the
+ * answers, and gets one fixed size response per request, in order. Requests, big-endian:
+ * <pre>
+ * byte NEW   (1), long seed
+ * byte MOVE  (2), int game, byte direction ordinal, see {@link Direction}
+ * byte STATE (3), int game
+ * byte UNDO  (4), int game
+ * byte CLOSE (5), int game
+ * </pre>
+ * Responses, {@value #RESPONSE_SIZE} bytes:
+ * <pre>
+ * byte status
+ * int  game
+ * long board, as a {@link PackedBoard}
+ * int  score
+ * int  moves
+ * byte flags, bit 0 set once the game is over
+ * </pre>
+ * A response carries the game's state after the request whenever the game exists, so also for
+ * {@link #NOT_MOVED}, {@link #NOTHING_TO_UNDO} and {@link #TILE_LIMIT}; otherwise everything after the status is
+ * 0. A game that reaches a 32768 is over and answers further moves with {@link #TILE_LIMIT}, see
+ * {@link SessionTable}; undo still works. After a {@link #BAD_REQUEST} the server closes the connection, since it
+ * cannot tell where the next request starts.
+ */
+public final class GameProtocol {
+    public static final byte NEW = 1;
+    public static final byte MOVE = 2;
+    public static final byte STATE = 3;
+    public static final byte UNDO = 4;
+    public static final byte CLOSE = 5;
+
+    public static final byte OK = 0;
+    public static final byte NOT_MOVED = 1;
+    public static final byte NOTHING_TO_UNDO = 2;
+    public static final byte UNKNOWN_GAME = 3;
+    public static final byte TABLE_FULL = 4;
+    public static final byte BAD_REQUEST = 5;
+    public static final byte TILE_LIMIT = 6;
+
+    public static final int FLAG_GAME_OVER = 1;
+
+    public static final int RESPONSE_SIZE = 1 + 4 + 8 + 4 + 4 + 1;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private GameProtocol() {
+    }
+
+    /**
+     * Size of a request with an opcode, or -1 for an unknown opcode
+     */
+    public static int requestSize(int opcode) {
+        switch (opcode) {
+            case NEW:
+                return 1 + 8;
+            case MOVE:
+                return 1 + 4 + 1;
+            case STATE:
+            case UNDO:
+            case CLOSE:
+                return 1 + 4;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * The direction with an ordinal, or null if there is none
+     */
+    public static Direction direction(int ordinal) {
+        return ordinal >= 0 && ordinal < DIRECTIONS.length ? DIRECTIONS[ordinal] : null;
+    }
+
+    /**
+     * Serves one whole request from {@code in}, or just its unknown opcode, and writes its response to
+     * {@code out}, which must have {@value #RESPONSE_SIZE} bytes left
+     *
+     * @return false after a bad request
+     */
+    static boolean serve(SessionTable sessions, ByteBuffer in, ByteBuffer out) {
+        byte opcode = in.get();
+        if (requestSize(opcode) < 0) {
+            writeEmpty(out, BAD_REQUEST);
+            return false;
+        }
+        if (opcode == NEW) {
+            int id = sessions.create(in.getLong());
+            if (id == SessionTable.NO_SESSION) {
+                writeEmpty(out, TABLE_FULL);
+            } else {
+                writeState(out, OK, sessions, id);
+            }
+            return true;
+        }
+
+        int id = in.getInt();
+        Direction direction = opcode == MOVE ? direction(in.get()) : null;
+        if (opcode == MOVE && direction == null) {
+            writeEmpty(out, BAD_REQUEST);
+            return false;
+        }
+        if (!sessions.isOpen(id)) {
+            writeEmpty(out, UNKNOWN_GAME);
+            return true;
+        }
+        switch (opcode) {
+            case MOVE:
+                if (sessions.isAtTileLimit(id)) {
+                    writeState(out, TILE_LIMIT, sessions, id);
+                } else {
+                    writeState(out, sessions.move(id, direction) ? OK : NOT_MOVED, sessions, id);
+                }
+                break;
+            case STATE:
+                writeState(out, OK, sessions, id);
+                break;
+            case UNDO:
+                writeState(out, sessions.undo(id) ? OK : NOTHING_TO_UNDO, sessions, id);
+                break;
+            default:
+                // CLOSE, the only opcode left that requestSize accepts; the state is its last one
+                writeState(out, OK, sessions, id);
+                sessions.close(id);
+                break;
+        }
+        return true;
+    }
+
+    private static void writeState(ByteBuffer out, byte status, SessionTable sessions, int id) {
+        out.put(status)
+            .putInt(id)
+            .putLong(sessions.getBoard(id))
+            .putInt(sessions.getScore(id))
+            .putInt(sessions.getMoveCount(id))
+            .put((byte) (sessions.isGameOver(id) ? FLAG_GAME_OVER : 0));
+    }
+
+    private static void writeEmpty(ByteBuffer out, byte status) {
+        out.put(status).putInt(0).putLong(0).putInt(0).putInt(0).put((byte) 0);
+    }
+}
@@ -0,0 +1,45 @@
+package com.segilmez.game3072;
+
+/**
+ * Summary of one finished game, as appended to a {@link GameArchive}. Mutable so that simulations can
+ * reuse one instance for every game.
+ */
+public class GameRecord {
+    /** Policy id of games played by a person */
+    public static final int POLICY_HUMAN = 0;
+
+    public long seed;
+    /** Who or what played the game; {@link #POLICY_HUMAN} or an id chosen by the simulation */
+    public int policyId;
+    public int boardSize;
+    /** Final position as a {@link PackedBoard}; 0 for boards that are not 4x4 or hold a tile above 32768 */
+    public long board;
+    public int score;
+    /** Exponent of the largest tile, e.g. 11 for 2048 */
+    public int maxTileExponent;
+    public int moveCount;
+    public long durationNanos;
+
+    /**
+     * Fills in everything that can be read from the board itself
+     */
+    public GameRecord set(Board board, int policyId, long durationNanos) {
+        int size = board.getSize();
+        int maxTile = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                maxTile = Math.max(maxTile, board.getValue(row, col));
+            }
+        }
+
+        this.seed = board.getSeed();
+        this.policyId = policyId;
+        this.boardSize = size;
+        this.board = size == PackedBoard.SIZE && PackedBoard.fits(board) ? PackedBoard.pack(board) : 0;
+        this.score = board.getScore();
+        this.maxTileExponent = maxTile == 0 ? 0 : Integer.numberOfTrailingZeros(maxTile);
+        this.moveCount = board.getMoveCount();
+        this.durationNanos = durationNanos;
+        return this;
+    }
+}
@@ -0,0 +1,213 @@
+package com.segilmez.game3072;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Headless server hosting many games at once over TCP, for bots and leaderboard tests, speaking
+ * {@link GameProtocol}. One thread runs a selector loop over every connection and owns the
+ * {@link SessionTable}, so serving a request takes no lock and allocates nothing.
+ * <p>
+ * Clients are expected to pipeline: every request already read is served before the responses are written, so a
+ * client keeping a few hundred requests in flight gets them answered a buffer at a time. A connection whose
+ * responses the client is not reading is not read from either until they have been written. Games are not tied
+ * to the connection that started them, and stay open until closed.
+ */
+public final class GameServer implements Runnable, Closeable {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SessionTable sessions;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private volatile boolean running = true;
+    private long requests = 0;
+
+    /**
+     * Binds the server; {@link #run()} then serves until {@link #close()}
+     *
+     * @param address  where to listen, e.g. {@code new InetSocketAddress("127.0.0.1", 0)} for any free local port
+     * @param capacity number of games that can be open at once
+     */
+    public GameServer(InetSocketAddress address, int capacity) throws IOException {
+        sessions = new SessionTable(capacity);
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.bind(address, 128);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The port listened on, useful after binding to port 0
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Number of requests served so far; read it from the server thread or after it stopped
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isWritable()) {
+                            write(key);
+                        } else if (key.isReadable()) {
+                            read(key);
+                        }
+                    } catch (IOException e) {
+                        // A client that went away takes only its own connection down
+                        drop(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Game server failed", e);
+        } finally {
+            shutDown();
+        }
+    }
+
+    /**
+     * Stops the loop, which then closes every connection
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.channel.read(connection.in) < 0) {
+            drop(key);
+            return;
+        }
+        serve(key, connection);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (flush(key, connection)) {
+            // Requests held back while the responses were waiting
+            serve(key, connection);
+        }
+    }
+
+    /**
+     * Serves every whole request read so far and writes the responses, a buffer of them at a time for as long as
+     * the client takes them
+     */
+    private void serve(SelectionKey key, Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        ByteBuffer out = connection.out;
+        boolean outFull;
+        do {
+            in.flip();
+            outFull = false;
+            while (in.hasRemaining() && !connection.closing) {
+                if (in.remaining() < GameProtocol.requestSize(in.get(in.position()))) break;
+                if (out.remaining() < GameProtocol.RESPONSE_SIZE) {
+                    outFull = true;
+                    break;
+                }
+                if (!GameProtocol.serve(sessions, in, out)) {
+                    connection.closing = true;
+                }
+                requests++;
+            }
+            in.compact();
+        } while (flush(key, connection) && outFull);
+    }
+
+    /**
+     * Writes what it can of the pending responses; while some are left, waits to write rather than to read
+     *
+     * @return whether all were written and the connection is still open
+     */
+    private boolean flush(SelectionKey key, Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        out.flip();
+        connection.channel.write(out);
+        out.compact();
+        if (out.position() > 0) {
+            key.interestOps(SelectionKey.OP_WRITE);
+            return false;
+        }
+        if (connection.closing) {
+            drop(key);
+            return false;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        return true;
+    }
+
+    private void drop(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+
+    private void shutDown() {
+        for (SelectionKey key : selector.keys()) {
+            drop(key);
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        boolean closing = false;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
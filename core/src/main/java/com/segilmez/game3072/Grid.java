@@ -1,65 +1,101 @@
 package com.segilmez.game3072;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.math.Interpolation;
 import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.TimeUtils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
-public class Grid {
-    private int size;
-    private Tile[][] tiles;
+/**
+ * Draws a {@link Board} and animates its moves.
+ */
+public class Grid implements Board.MoveListener {
+    private final Board board;
+    private final int size;
     private float cellSize;
     private float padding;
     private float gridSize;
     private float startX, startY;
 
+    // Animations: slides block further moves, spawn pops and merge bumps are cosmetic
+    private static final float SLIDE_DURATION = 0.2f;
+    private static final float SPAWN_DURATION = 0.12f;
+    private static final float MERGE_DURATION = 0.12f;
+    private static final float MERGE_BUMP_SCALE = 0.15f;
     private boolean animating = false;
-    private List<Tile> animatingTiles = new ArrayList<>();
+    private final TileAnimations slides;
+    private final TileAnimations effects;
     private boolean shouldAddNewTile = false;
 
-    private int[][] grid; // Actual game state values
-    private int score = 0;
-    private int lastMoveScore = 0;
+    // Moves requested by the player that have not been applied yet
+    private static final int MOVE_QUEUE_CAPACITY = 8;
+    private final MoveQueue moveQueue = new MoveQueue(MOVE_QUEUE_CAPACITY);
 
+    private final int[][] displayed; // Values drawn in place; cells whose tile is animating are left out
+
+    private ReplayEncoder replay; // Records the moves applied to the board, if set
+
+    // Suggested moves: a hint is shown until the next move, autoplay applies one whenever the board is at rest.
+    // Searches run on the advisor's thread, so both pick up their move on a later frame.
+    private MoveAdvisor advisor;
+    private Direction hint;
+    private boolean hintRequested = false;
+    private boolean autoplay = false;
+
+    // Timing of moves, if set, and when the oldest move applied since the last frame was queued
+    private PerformanceStats stats;
+    private long inputQueuedAt = 0;
+
+    /**
+     * Starts a new game on a fresh board under the standard rules
+     */
     public Grid(int size, float gridSize, float x, float y) {
-        this.size = size;
-        this.gridSize = gridSize;
-        this.cellSize = gridSize / size;
-        this.padding = cellSize * 0.1f;
-        this.startX = x;
-        this.startY = y;
+        this(Rules.STANDARD.withSize(size), gridSize, x, y);
+    }
 
-        initializeGrid();
-        addInitialTiles();
+    /**
+     * Starts a new game on a fresh board
+     */
+    public Grid(Rules rules, float gridSize, float x, float y) {
+        this(new Board(rules), gridSize, x, y);
+        board.addInitialTiles();
     }
 
-    private void initializeGrid() {
-        // Initialize game grid values
-        grid = new int[size][size];
+    /**
+     * Shows an existing board, e.g. one restored from a save
+     */
+    public Grid(Board board, float gridSize, float x, float y) {
+        this.board = board;
+        this.size = board.getSize();
+        setBounds(gridSize, x, y);
 
-        // Initialize visual tiles
-        tiles = new Tile[size][size];
-        for (int row = 0; row < size; row++) {
-            for (int col = 0; col < size; col++) {
-                float tileX = getTileX(col);
-                float tileY = getTileY(row);
-                float tileWidth = cellSize - 2 * padding;
-                float tileHeight = cellSize - 2 * padding;
+        // Every cell slides at most once per move and gets at most one effect
+        slides = new TileAnimations(size * size);
+        effects = new TileAnimations(size * size);
 
-                tiles[row][col] = new Tile(0, col, row, tileX, tileY, tileWidth, tileHeight);
-            }
-        }
+        displayed = new int[size][size];
+        syncDisplayed();
+        board.setMoveListener(this);
+    }
 
-        score = 0;
-        lastMoveScore = 0;
+    /**
+     * Moves and resizes the board on screen. The game state and running animations are kept,
+     * since animations are stored in cells and converted to pixels only when drawn.
+     */
+    public void setBounds(float gridSize, float x, float y) {
+        this.gridSize = gridSize;
+        this.cellSize = gridSize / size;
+        this.padding = cellSize * 0.1f;
+        this.startX = x;
+        this.startY = y;
     }
 
-    private void addInitialTiles() {
-        addRandomTile();
-        addRandomTile();
+    public Board getBoard() {
+        return board;
     }
 
     public int getSize() {
@@ -67,22 +103,19 @@ public class Grid {
     }
 
     public int getTileValue(int row, int col) {
-        if (row >= 0 && row < size && col >= 0 && col < size) {
-            return grid[row][col];
-        }
-        return 0;
+        return board.getValue(row, col);
     }
 
     public int getScore() {
-        return score;
+        return board.getScore();
     }
 
     public int getLastMoveScore() {
-        return lastMoveScore;
+        return board.getLastMoveScore();
     }
 
     public void resetLastMoveScore() {
-        lastMoveScore = 0;
+        board.resetLastMoveScore();
     }
 
     private float getTileX(int col) {
@@ -93,38 +126,193 @@ public class Grid {
         return startY + row * cellSize + padding;
     }
 
+    /**
+     * Queues a move to be applied by {@link #update(float)}; returns false if the queue is full
+     */
+    public boolean queueMove(Direction direction) {
+        return moveQueue.offer(direction);
+    }
+
+    /**
+     * Records every move from now on. The board must be at the start of the game the replay describes.
+     */
+    public void setReplayEncoder(ReplayEncoder replay) {
+        this.replay = replay;
+    }
+
+    public MoveQueue getMoveQueue() {
+        return moveQueue;
+    }
+
+    public void setStats(PerformanceStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * When the oldest move applied since the last call was queued by the player, or 0 if there was none
+     */
+    public long takeInputQueuedAt() {
+        long queuedAt = inputQueuedAt;
+        inputQueuedAt = 0;
+        return queuedAt;
+    }
+
+    public void setAdvisor(MoveAdvisor advisor) {
+        this.advisor = advisor;
+    }
+
+    /**
+     * Asks the advisor for the move on the current board, shown from the frame it is known until the next move;
+     * returns false if the board gets no advice
+     */
+    public boolean showHint() {
+        if (advisor == null) return false;
+        completeAnimations();
+        if (!MoveAdvisor.canAdvise(board)) return false;
+        advisor.request(PackedBoard.pack(board));
+        hintRequested = true;
+        return true;
+    }
+
+    /**
+     * Whether a hint has been asked for and is still being searched
+     */
+    public boolean isHintPending() {
+        return hintRequested;
+    }
+
+    /**
+     * Lets the advisor play a move whenever the board is at rest and no move is queued
+     */
+    public void setAutoplay(boolean autoplay) {
+        this.autoplay = autoplay && advisor != null;
+    }
+
+    public boolean isAutoplay() {
+        return autoplay;
+    }
+
     public void update(float delta) {
-        if (!animating) return;
+        if (!effects.isEmpty() && !effects.update(delta)) {
+            finishEffects();
+        }
 
-        boolean stillAnimating = false;
+        if (animating && !slides.update(delta)) {
+            finishAnimation();
+        }
 
-        for (Tile tile : animatingTiles) {
-            tile.update(delta);
-            if (tile.isAnimating()) {
-                stillAnimating = true;
+        // A backlog of moves fast-forwards the slide in flight and all but the last waiting move, so fast players
+        // are never more than one slide behind; a single waiting move lets the current slide finish first
+        while (moveQueue.size() > 1) {
+            if (animating) {
+                finishAnimation();
             }
+            playQueuedMove();
+        }
+        if (!animating && !moveQueue.isEmpty()) {
+            playQueuedMove();
         }
 
-        if (!stillAnimating) {
-            animatingTiles.clear();
-            updateTiles();
-            animating = false;
+        // Any move since the hint was asked for cancelled it, so the board is still the one asked about
+        if (hintRequested && advisor.isReady(PackedBoard.pack(board))) {
+            hint = advisor.getMove();
+            hintRequested = false;
+        }
 
-            if (shouldAddNewTile) {
-                addRandomTile();
-                shouldAddNewTile = false;
+        if (autoplay && !animating && effects.isEmpty() && !board.isGameOver()) {
+            if (!MoveAdvisor.canAdvise(board)) {
+                autoplay = false;
+            } else {
+                long packed = PackedBoard.pack(board);
+                advisor.request(packed);
+                if (advisor.isReady(packed)) {
+                    Direction next = advisor.getMove();
+                    if (next == null) {
+                        autoplay = false;
+                    } else {
+                        move(next);
+                    }
+                }
             }
         }
     }
 
+    private void playQueuedMove() {
+        if (move(moveQueue.poll()) && inputQueuedAt == 0) {
+            inputQueuedAt = moveQueue.getLastQueuedAt();
+        }
+    }
+
+    /**
+     * Lands every sliding tile, starts the merge bumps and spawns the next tile. Only the cells
+     * that took part in the move are touched.
+     */
+    private void finishAnimation() {
+        for (int i = 0; i < slides.size(); i++) {
+            int row = slides.getToRow(i);
+            int col = slides.getToCol(i);
+            displayed[row][col] = board.getValue(row, col);
+
+            if (slides.getKind(i) == TileAnimations.MERGING_SLIDE) {
+                effects.add(TileAnimations.MERGE, displayed[row][col], row, col, row, col, MERGE_DURATION);
+            }
+        }
+        slides.clear();
+        animating = false;
+
+        if (shouldAddNewTile) {
+            board.addRandomTile();
+            shouldAddNewTile = false;
+        }
+    }
+
+    private void finishEffects() {
+        for (int i = 0; i < effects.size(); i++) {
+            if (effects.getKind(i) == TileAnimations.SPAWN) {
+                displayed[effects.getToRow(i)][effects.getToCol(i)] = effects.getValue(i);
+            }
+        }
+        effects.clear();
+    }
+
+    /**
+     * Whether anything on the board is moving, including spawn and merge effects
+     */
     public boolean isAnimating() {
-        return animating;
+        return animating || !effects.isEmpty();
     }
 
     public void render(ShapeRenderer shapeRenderer, SpriteBatch batch, BitmapFont font) {
         renderGridBackground(shapeRenderer);
         renderGridCells(shapeRenderer);
         renderTiles(shapeRenderer, batch, font);
+        if (hint != null) {
+            renderHint(shapeRenderer);
+        }
+    }
+
+    /**
+     * Marks the edge of the board the hinted move pushes the tiles towards
+     */
+    private void renderHint(ShapeRenderer shapeRenderer) {
+        float thickness = padding * 0.6f;
+        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+        shapeRenderer.setColor(GameUtils.hexToColor("#F67C5F")); // Orange-red
+        switch (hint) {
+            case UP:
+                shapeRenderer.rect(startX, startY + gridSize - thickness, gridSize, thickness);
+                break;
+            case DOWN:
+                shapeRenderer.rect(startX, startY, gridSize, thickness);
+                break;
+            case LEFT:
+                shapeRenderer.rect(startX, startY, thickness, gridSize);
+                break;
+            case RIGHT:
+                shapeRenderer.rect(startX + gridSize - thickness, startY, thickness, gridSize);
+                break;
+        }
+        shapeRenderer.end();
     }
 
     private void renderGridBackground(ShapeRenderer shapeRenderer) {
@@ -156,49 +344,55 @@ public class Grid {
     }
 
     private void renderTiles(ShapeRenderer shapeRenderer, SpriteBatch batch, BitmapFont font) {
-        // Draw non-animating tiles
+        float tileSize = cellSize - 2 * padding;
+
+        // Draw tiles at rest
         for (int row = 0; row < size; row++) {
             for (int col = 0; col < size; col++) {
-                if (!tiles[row][col].isEmpty()) {
-                    tiles[row][col].render(shapeRenderer, batch, font);
+                if (displayed[row][col] != 0) {
+                    Tile.render(shapeRenderer, batch, font, displayed[row][col],
+                        getTileX(col), getTileY(row), tileSize, tileSize, 1f);
                 }
             }
         }
 
-        // Draw animating tiles on top
-        for (Tile tile : animatingTiles) {
-            if (!tile.isEmpty()) {
-                tile.render(shapeRenderer, batch, font);
-            }
+        // Draw sliding tiles on top
+        for (int i = 0; i < slides.size(); i++) {
+            float progress = Interpolation.smooth.apply(slides.getProgress(i));
+            float fromX = getTileX(slides.getFromCol(i));
+            float fromY = getTileY(slides.getFromRow(i));
+            float x = fromX + (getTileX(slides.getToCol(i)) - fromX) * progress;
+            float y = fromY + (getTileY(slides.getToRow(i)) - fromY) * progress;
+            Tile.render(shapeRenderer, batch, font, slides.getValue(i), x, y, tileSize, tileSize, 1f);
         }
-    }
 
-    public void addRandomTile() {
-        List<int[]> emptyCells = findEmptyCells();
-
-        if (emptyCells.isEmpty()) {
-            return;
+        // Draw spawn pops and merge bumps
+        for (int i = 0; i < effects.size(); i++) {
+            float progress = effects.getProgress(i);
+            float scale;
+            if (effects.getKind(i) == TileAnimations.SPAWN) {
+                scale = Interpolation.pow2Out.apply(progress);
+            } else {
+                scale = 1f + MERGE_BUMP_SCALE * MathUtils.sin(progress * MathUtils.PI);
+            }
+            int row = effects.getToRow(i);
+            int col = effects.getToCol(i);
+            Tile.render(shapeRenderer, batch, font, effects.getValue(i),
+                getTileX(col), getTileY(row), tileSize, tileSize, scale);
         }
+    }
 
-        int[] cell = emptyCells.get(MathUtils.random(emptyCells.size() - 1));
-        int row = cell[0];
-        int col = cell[1];
-
-        int value = MathUtils.randomBoolean(0.9f) ? 2 : 4;
-        grid[row][col] = value;
-        tiles[row][col].setValue(value);
+    @Override
+    public void tileMoved(int fromRow, int fromCol, int toRow, int toCol, int value, boolean merge) {
+        int kind = merge ? TileAnimations.MERGING_SLIDE : TileAnimations.SLIDE;
+        slides.add(kind, value, fromRow, fromCol, toRow, toCol, SLIDE_DURATION);
+        displayed[fromRow][fromCol] = 0;
     }
 
-    private List<int[]> findEmptyCells() {
-        List<int[]> emptyCells = new ArrayList<>();
-        for (int row = 0; row < size; row++) {
-            for (int col = 0; col < size; col++) {
-                if (grid[row][col] == 0) {
-                    emptyCells.add(new int[]{row, col});
-                }
-            }
-        }
-        return emptyCells;
+    @Override
+    public void tileSpawned(int row, int col, int value) {
+        // The tile pops in before it is drawn in place
+        effects.add(TileAnimations.SPAWN, value, row, col, row, col, SPAWN_DURATION);
     }
 
     public boolean moveUp() {
@@ -217,268 +411,104 @@ public class Grid {
         return move(Direction.RIGHT);
     }
 
-    private enum Direction {
-        UP, DOWN, LEFT, RIGHT
-    }
-
-    private boolean move(Direction direction) {
+    /**
+     * Applies a move immediately. Merge points are added to the last move score until
+     * {@link #resetLastMoveScore()} is called, so several moves in one frame are all counted.
+     */
+    public boolean move(Direction direction) {
         if (animating) return false;
 
-        boolean moved = false;
-        boolean[][] merged = new boolean[size][size];
-        lastMoveScore = 0;
+        // Effects still running belong to the previous board; land them before tiles start sliding
+        finishEffects();
 
-        int[][] newGrid = copyGrid();
-
-        switch (direction) {
-            case UP:
-                moved = processUpMove(newGrid, merged);
-                break;
-            case DOWN:
-                moved = processDownMove(newGrid, merged);
-                break;
-            case LEFT:
-                moved = processLeftMove(newGrid, merged);
-                break;
-            case RIGHT:
-                moved = processRightMove(newGrid, merged);
-                break;
+        long start = stats != null ? TimeUtils.nanoTime() : 0;
+        boolean moved = board.move(direction);
+        if (stats != null) {
+            stats.record(PerformanceStats.Metric.MOVE, TimeUtils.timeSinceNanos(start));
         }
-
         if (moved) {
-            grid = newGrid;
+            hint = null;
+            hintRequested = false;
             animating = true;
             shouldAddNewTile = true;
+            recordMove(direction);
         }
 
         return moved;
     }
 
-    private int[][] copyGrid() {
-        int[][] newGrid = new int[size][size];
-        for (int row = 0; row < size; row++) {
-            for (int col = 0; col < size; col++) {
-                newGrid[row][col] = grid[row][col];
-            }
-        }
-        return newGrid;
-    }
-
-    private boolean processUpMove(int[][] newGrid, boolean[][] merged) {
-        boolean moved = false;
-
-        for (int col = 0; col < size; col++) {
-            for (int row = size - 2; row >= 0; row--) {
-                if (newGrid[row][col] == 0) continue;
-
-                int currentRow = row;
-                int value = newGrid[row][col];
-
-                while (currentRow < size - 1) {
-                    if (newGrid[currentRow + 1][col] == 0) {
-                        // Move to empty cell
-                        newGrid[currentRow + 1][col] = value;
-                        newGrid[currentRow][col] = 0;
-                        currentRow++;
-                        moved = true;
-                    } else if (newGrid[currentRow + 1][col] == value && !merged[currentRow + 1][col]) {
-                        // Merge with matching cell
-                        int mergedValue = value * 2;
-                        newGrid[currentRow + 1][col] = mergedValue;
-                        newGrid[currentRow][col] = 0;
-                        merged[currentRow + 1][col] = true;
-                        currentRow++;
-                        moved = true;
-
-                        // Update score
-                        score += mergedValue;
-                        lastMoveScore += mergedValue;
-                        break;
-                    } else {
-                        break;
-                    }
-                }
-
-                if (currentRow != row) {
-                    createMoveAnimation(row, col, currentRow, col, value);
-                }
-            }
+    private void recordMove(Direction direction) {
+        if (replay == null) return;
+        try {
+            replay.append(direction);
+        } catch (IOException e) {
+            Gdx.app.error("Grid", "Replay recording stopped", e);
+            replay = null;
         }
-
-        return moved;
     }
 
-    private boolean processDownMove(int[][] newGrid, boolean[][] merged) {
-        boolean moved = false;
-
-        for (int col = 0; col < size; col++) {
-            for (int row = 1; row < size; row++) {
-                if (newGrid[row][col] == 0) continue;
-
-                int currentRow = row;
-                int value = newGrid[row][col];
-
-                while (currentRow > 0) {
-                    if (newGrid[currentRow - 1][col] == 0) {
-                        newGrid[currentRow - 1][col] = value;
-                        newGrid[currentRow][col] = 0;
-                        currentRow--;
-                        moved = true;
-                    } else if (newGrid[currentRow - 1][col] == value && !merged[currentRow - 1][col]) {
-                        int mergedValue = value * 2;
-                        newGrid[currentRow - 1][col] = mergedValue;
-                        newGrid[currentRow][col] = 0;
-                        merged[currentRow - 1][col] = true;
-                        currentRow--;
-                        moved = true;
-
-                        score += mergedValue;
-                        lastMoveScore += mergedValue;
-                        break;
-                    } else {
-                        break;
-                    }
-                }
-
-                if (currentRow != row) {
-                    createMoveAnimation(row, col, currentRow, col, value);
-                }
-            }
+    /**
+     * Lands every animation and spawns the pending tile, so the board is at rest
+     */
+    public void completeAnimations() {
+        if (animating) {
+            finishAnimation();
         }
-
-        return moved;
+        finishEffects();
     }
 
-    private boolean processLeftMove(int[][] newGrid, boolean[][] merged) {
-        boolean moved = false;
-
-        for (int row = 0; row < size; row++) {
-            for (int col = 1; col < size; col++) {
-                if (newGrid[row][col] == 0) continue;
-
-                int currentCol = col;
-                int value = newGrid[row][col];
-
-                while (currentCol > 0) {
-                    if (newGrid[row][currentCol - 1] == 0) {
-                        newGrid[row][currentCol - 1] = value;
-                        newGrid[row][currentCol] = 0;
-                        currentCol--;
-                        moved = true;
-                    } else if (newGrid[row][currentCol - 1] == value && !merged[row][currentCol - 1]) {
-                        int mergedValue = value * 2;
-                        newGrid[row][currentCol - 1] = mergedValue;
-                        newGrid[row][currentCol] = 0;
-                        merged[row][currentCol - 1] = true;
-                        currentCol--;
-                        moved = true;
-
-                        score += mergedValue;
-                        lastMoveScore += mergedValue;
-                        break;
-                    } else {
-                        break;
-                    }
-                }
-
-                if (currentCol != col) {
-                    createMoveAnimation(row, col, row, currentCol, value);
-                }
-            }
+    /**
+     * Takes back the last move, discarding queued moves and running animations
+     */
+    public boolean undo() {
+        completeAnimations();
+        moveQueue.clear();
+        if (!board.undo()) {
+            return false;
         }
-
-        return moved;
-    }
-
-    private boolean processRightMove(int[][] newGrid, boolean[][] merged) {
-        boolean moved = false;
-
-        for (int row = 0; row < size; row++) {
-            for (int col = size - 2; col >= 0; col--) {
-                if (newGrid[row][col] == 0) continue;
-
-                int currentCol = col;
-                int value = newGrid[row][col];
-
-                while (currentCol < size - 1) {
-                    if (newGrid[row][currentCol + 1] == 0) {
-                        newGrid[row][currentCol + 1] = value;
-                        newGrid[row][currentCol] = 0;
-                        currentCol++;
-                        moved = true;
-                    } else if (newGrid[row][currentCol + 1] == value && !merged[row][currentCol + 1]) {
-                        int mergedValue = value * 2;
-                        newGrid[row][currentCol + 1] = mergedValue;
-                        newGrid[row][currentCol] = 0;
-                        merged[row][currentCol + 1] = true;
-                        currentCol++;
-                        moved = true;
-
-                        score += mergedValue;
-                        lastMoveScore += mergedValue;
-                        break;
-                    } else {
-                        break;
-                    }
-                }
-
-                if (currentCol != col) {
-                    createMoveAnimation(row, col, row, currentCol, value);
-                }
-            }
+        hint = null;
+        hintRequested = false;
+        if (replay != null) {
+            replay.undo();
         }
-
-        return moved;
-    }
-
-    private void createMoveAnimation(int fromRow, int fromCol, int toRow, int toCol, int value) {
-        float startX = getTileX(fromCol);
-        float startY = getTileY(fromRow);
-        float endX = getTileX(toCol);
-        float endY = getTileY(toRow);
-
-        float tileWidth = cellSize - 2 * padding;
-        float tileHeight = cellSize - 2 * padding;
-        Tile animTile = new Tile(value, fromCol, fromRow, startX, startY, tileWidth, tileHeight);
-
-        animTile.setTargetPosition(endX, endY);
-        animatingTiles.add(animTile);
-        tiles[fromRow][fromCol].setValue(0);
-    }
-
-    private void updateTiles() {
+        syncDisplayed();
+        return true;
+    }
+
+    /**
+     * Drops animations and queued moves and shows the board as it is, after it was changed directly,
+     * e.g. by seeking a replay
+     */
+    public void refresh() {
+        slides.clear();
+        effects.clear();
+        animating = false;
+        shouldAddNewTile = false;
+        moveQueue.clear();
+        hint = null;
+        hintRequested = false;
+        inputQueuedAt = 0;
+        syncDisplayed();
+    }
+
+    private void syncDisplayed() {
         for (int row = 0; row < size; row++) {
             for (int col = 0; col < size; col++) {
-                tiles[row][col].setValue(grid[row][col]);
+                displayed[row][col] = board.getValue(row, col);
             }
         }
     }
 
     public boolean isGameOver() {
         if (animating) return false;
-
-        // Check for empty cells
-        if (!findEmptyCells().isEmpty()) {
-            return false;
-        }
-
-        // Check for possible merges
-        for (int row = 0; row < size; row++) {
-            for (int col = 0; col < size; col++) {
-                int value = grid[row][col];
-
-                // Check right and down for possible merges
-                if ((col < size - 1 && grid[row][col + 1] == value) ||
-                    (row < size - 1 && grid[row + 1][col] == value)) {
-                    return false;
-                }
-            }
-        }
-
-        return true; // No moves possible
+        return board.isGameOver();
     }
 
-    public void dispose() {
-        Tile.dispose();
+    /**
+     * Whether the target tile has been reached, once the merge that made it has landed
+     */
+    public boolean isWon() {
+        if (animating) return false;
+        return board.isWon();
     }
 }
@@ -0,0 +1,168 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.InputProcessor;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Plays a session recorded by {@link InputRecorder} back into {@link Main}, one recorded frame per rendered
+ * frame: the frame's events go to the game's input processor, and the game updates with the recorded delta
+ * time instead of the real one.
+ */
+public class InputPlayback {
+    private final ByteBuffer data;
+    private final long seed;
+    private final int width;
+    private final int height;
+    private final long frameCount;
+
+    private float delta = 0;
+    private long framesPlayed = 0;
+
+    /**
+     * Reads a session in place; the buffer must not be changed afterwards
+     */
+    public InputPlayback(ByteBuffer buffer) {
+        data = buffer.duplicate();
+        if (data.remaining() < InputRecorder.HEADER_SIZE || data.getInt() != InputRecorder.MAGIC) {
+            throw new GdxRuntimeException("Not an input recording");
+        }
+        int version = data.get();
+        if (version != InputRecorder.VERSION) {
+            throw new GdxRuntimeException("Unsupported input recording version " + version);
+        }
+        int rulesVersion = data.get();
+        if (rulesVersion != Board.RULES_VERSION) {
+            throw new GdxRuntimeException("Input recording uses rules version " + rulesVersion
+                + ", this build plays version " + Board.RULES_VERSION);
+        }
+        data.getShort();
+        seed = data.getLong();
+        width = data.getInt();
+        height = data.getInt();
+        data.mark();
+        frameCount = countFrames();
+        data.reset();
+    }
+
+    private long countFrames() {
+        long frames = 0;
+        while (data.hasRemaining()) {
+            int type = data.get();
+            int length;
+            switch (type) {
+                case InputRecorder.FRAME:
+                    frames++;
+                    length = 8 + 4;
+                    break;
+                case InputRecorder.KEY_DOWN:
+                case InputRecorder.KEY_UP:
+                    length = 4;
+                    break;
+                case InputRecorder.KEY_TYPED:
+                    length = 2;
+                    break;
+                case InputRecorder.TOUCH_DOWN:
+                case InputRecorder.TOUCH_UP:
+                case InputRecorder.TOUCH_CANCELLED:
+                    length = 16;
+                    break;
+                case InputRecorder.TOUCH_DRAGGED:
+                    length = 12;
+                    break;
+                default:
+                    throw new GdxRuntimeException("Unknown input record type " + type);
+            }
+            if (data.remaining() < length) {
+                throw new GdxRuntimeException("Truncated input recording");
+            }
+            data.position(data.position() + length);
+        }
+        return frames;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Delta time of the frame last played
+     */
+    public float getDelta() {
+        return delta;
+    }
+
+    /**
+     * Number of frames in the recording
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getFramesPlayed() {
+        return framesPlayed;
+    }
+
+    public boolean isFinished() {
+        return framesPlayed == frameCount;
+    }
+
+    /**
+     * Goes back to the first frame
+     */
+    public void rewind() {
+        data.reset();
+        framesPlayed = 0;
+        delta = 0;
+    }
+
+    /**
+     * Passes the events of the next frame to {@code processor} and takes its delta time; returns false once
+     * every frame has been played
+     */
+    public boolean playFrame(InputProcessor processor) {
+        while (data.hasRemaining()) {
+            int type = data.get();
+            switch (type) {
+                case InputRecorder.FRAME:
+                    data.getLong();
+                    delta = data.getFloat();
+                    framesPlayed++;
+                    return true;
+                case InputRecorder.KEY_DOWN:
+                    processor.keyDown(data.getInt());
+                    break;
+                case InputRecorder.KEY_UP:
+                    processor.keyUp(data.getInt());
+                    break;
+                case InputRecorder.KEY_TYPED:
+                    processor.keyTyped(data.getChar());
+                    break;
+                case InputRecorder.TOUCH_DOWN:
+                    processor.touchDown(data.getInt(), data.getInt(), data.getInt(), data.getInt());
+                    break;
+                case InputRecorder.TOUCH_UP:
+                    processor.touchUp(data.getInt(), data.getInt(), data.getInt(), data.getInt());
+                    break;
+                case InputRecorder.TOUCH_CANCELLED:
+                    processor.touchCancelled(data.getInt(), data.getInt(), data.getInt(), data.getInt());
+                    break;
+                case InputRecorder.TOUCH_DRAGGED:
+                    processor.touchDragged(data.getInt(), data.getInt(), data.getInt());
+                    break;
+                default:
+                    throw new GdxRuntimeException("Unknown input record type " + type);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,224 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.InputProcessor;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Records a play session as the input events of every frame, so {@link InputPlayback} can drive {@link Main}
+ * through exactly the same frames again, e.g. to measure them.
+ * <p>
+ * Sits in front of the game's input processor and passes every event on. A session starts a new game whose
+ * seed, and the seeds of the games after it, follow from the session seed, and each frame stores the delta
+ * time the game was updated with. Together that makes playback independent of the machine and its frame rate.
+ * Mouse moves and scrolling are not recorded, as the game ignores them. Layout:
+ * <pre>
+ * int   magic "G72I"
+ * byte  format version
+ * byte  rules version, see {@link Board#RULES_VERSION}
+ * short reserved
+ * long  session seed
+ * int   screen width, int screen height, which touch positions refer to
+ * then a list of records, each starting with a byte type:
+ *   {@value #FRAME}       long nanoseconds since the first frame, float delta time
+ *   {@value #KEY_DOWN}, {@value #KEY_UP}   int keycode
+ *   {@value #KEY_TYPED}   char character
+ *   {@value #TOUCH_DOWN}, {@value #TOUCH_UP}, {@value #TOUCH_CANCELLED}   int x, int y, int pointer, int button
+ *   {@value #TOUCH_DRAGGED}   int x, int y, int pointer
+ * </pre>
+ * Events belong to the frame record that follows them, since the backends deliver input before rendering.
+ */
+public class InputRecorder implements InputProcessor, Closeable {
+    public static final int MAGIC = 0x47373249;
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 1 + 1 + 2 + 8 + 4 + 4;
+
+    static final int FRAME = 0;
+    static final int KEY_DOWN = 1;
+    static final int KEY_UP = 2;
+    static final int KEY_TYPED = 3;
+    static final int TOUCH_DOWN = 4;
+    static final int TOUCH_UP = 5;
+    static final int TOUCH_CANCELLED = 6;
+    static final int TOUCH_DRAGGED = 7;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final long seed;
+    private InputProcessor processor;
+    private boolean started = false;
+    private long startTime;
+    private long frameCount = 0;
+
+    public InputRecorder(WritableByteChannel channel, long seed) {
+        this.channel = channel;
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * The processor events are passed on to
+     */
+    public void setProcessor(InputProcessor processor) {
+        this.processor = processor;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Writes the header; events before this are passed on but not recorded
+     */
+    public void start(int width, int height) throws IOException {
+        if (started) return;
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) Board.RULES_VERSION);
+        buffer.putShort((short) 0);
+        buffer.putLong(seed);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        started = true;
+        startTime = TimeUtils.nanoTime();
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Ends the events of a frame, which the game updates with {@code delta}
+     */
+    public void frame(float delta) throws IOException {
+        if (!started) return;
+        ensure(1 + 8 + 4);
+        buffer.put((byte) FRAME);
+        buffer.putLong(TimeUtils.timeSinceNanos(startTime));
+        buffer.putFloat(delta);
+        frameCount++;
+    }
+
+    @Override
+    public boolean keyDown(int keycode) {
+        recordKey(KEY_DOWN, keycode);
+        return processor != null && processor.keyDown(keycode);
+    }
+
+    @Override
+    public boolean keyUp(int keycode) {
+        recordKey(KEY_UP, keycode);
+        return processor != null && processor.keyUp(keycode);
+    }
+
+    @Override
+    public boolean keyTyped(char character) {
+        if (started && reserve(1 + 2)) {
+            buffer.put((byte) KEY_TYPED);
+            buffer.putChar(character);
+        }
+        return processor != null && processor.keyTyped(character);
+    }
+
+    @Override
+    public boolean touchDown(int screenX, int screenY, int pointer, int button) {
+        recordTouch(TOUCH_DOWN, screenX, screenY, pointer, button);
+        return processor != null && processor.touchDown(screenX, screenY, pointer, button);
+    }
+
+    @Override
+    public boolean touchUp(int screenX, int screenY, int pointer, int button) {
+        recordTouch(TOUCH_UP, screenX, screenY, pointer, button);
+        return processor != null && processor.touchUp(screenX, screenY, pointer, button);
+    }
+
+    @Override
+    public boolean touchCancelled(int screenX, int screenY, int pointer, int button) {
+        recordTouch(TOUCH_CANCELLED, screenX, screenY, pointer, button);
+        return processor != null && processor.touchCancelled(screenX, screenY, pointer, button);
+    }
+
+    @Override
+    public boolean touchDragged(int screenX, int screenY, int pointer) {
+        if (started && reserve(1 + 12)) {
+            buffer.put((byte) TOUCH_DRAGGED);
+            buffer.putInt(screenX);
+            buffer.putInt(screenY);
+            buffer.putInt(pointer);
+        }
+        return processor != null && processor.touchDragged(screenX, screenY, pointer);
+    }
+
+    @Override
+    public boolean mouseMoved(int screenX, int screenY) {
+        return processor != null && processor.mouseMoved(screenX, screenY);
+    }
+
+    @Override
+    public boolean scrolled(float amountX, float amountY) {
+        return processor != null && processor.scrolled(amountX, amountY);
+    }
+
+    private void recordKey(int type, int keycode) {
+        if (started && reserve(1 + 4)) {
+            buffer.put((byte) type);
+            buffer.putInt(keycode);
+        }
+    }
+
+    private void recordTouch(int type, int x, int y, int pointer, int button) {
+        if (started && reserve(1 + 16)) {
+            buffer.put((byte) type);
+            buffer.putInt(x);
+            buffer.putInt(y);
+            buffer.putInt(pointer);
+            buffer.putInt(button);
+        }
+    }
+
+    /**
+     * Makes room for a record from an input callback, which cannot throw; a failed write stops the recording
+     */
+    private boolean reserve(int bytes) {
+        try {
+            ensure(bytes);
+            return true;
+        } catch (IOException e) {
+            started = false;
+            return false;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            started = false;
+            channel.close();
+        }
+    }
+}
@@ -3,101 +3,339 @@ package com.segilmez.game3072;
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
+import com.badlogic.gdx.InputAdapter;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
-import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.math.Vector3;
-import com.badlogic.gdx.Preferences;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 
 public class Main extends ApplicationAdapter {
     // Game state
     private enum GameState {
+        LOADING,
         PLAYING,
-        GAME_OVER
+        GAME_OVER,
+        WON,
+        REPLAY,
+        SPECTATING
     }
 
-    private GameState gameState = GameState.PLAYING;
+    private GameState gameState = GameState.LOADING;
+
+    // Rules of new games, and whether the current game has already shown that it reached the target
+    private final Rules rules = Rules.STANDARD;
+    private boolean winShown = false;
+    // Names the tile actually reached: with doubling merges, the first tile past 3072 is 4096
+    private String winSubtitle = "";
 
     // Game over elements
     private float gameOverAlpha = 0f;
     private BitmapFont gameOverFont;
     private BitmapFont gameOverSubtitleFont;
     private BitmapFont gameOverButtonFont;
-    private Rectangle restartButton;
-    private Texture restartButtonTexture;
+    private final Rectangle restartButton = new Rectangle();
+    private TextureRegion restartButtonTexture;
 
     // Core rendering elements
     private SpriteBatch batch;
     private ShapeRenderer shapeRenderer;
+    private GameAssets assets;
     private BitmapFont font;
     private Grid grid;
 
-    // Screen dimensions
+    // Screen dimensions and board layout
     private float screenWidth;
     private float screenHeight;
+    private float gridSize;
+    private float gridX;
+    private float gridY;
 
     // Scoreboard elements
-    private Texture scoreboardTexture;
+    private TextureRegion scoreboardTexture;
     private float scoreboardX;
     private float scoreboardY;
     private float scoreboardWidth;
     private float scoreboardHeight;
     // Best score board elements
-    private Texture bestScoreboardTexture;
+    private TextureRegion bestScoreboardTexture;
     private float bestScoreboardX;
     private float bestScoreboardY;
     private float bestScoreboardWidth;
     private float bestScoreboardHeight;
     private float bestScoreValue = 0;
-    private Preferences preferences;
+    private PersistenceService persistence;
     private BitmapFont scoreFont;
     private float scoreValue = 0;
     private float targetScore = 0;
     private float scoreAnimationTime = 0;
     private float scoreIncrement = 100; // Points per second during animation
 
+    // Time spent playing the current game in this session, for the game archive
+    private float playTime = 0;
+
     // Touch input
     private Vector2 swipeStart = new Vector2();
     private boolean swipeActive = false;
     private float swipeThreshold;
 
+    // Startup instrumentation
+    private long createStartTime;
+    private boolean firstFrameLogged = false;
+    private boolean assetsLoaded = false;
+
+    // Frame timing, and the overlay that shows it
+    private final PerformanceStats stats;
+    private RenderStats renderStats;
+    private PerformanceOverlay performanceOverlay;
+
+    // A recorded session, or one being played back: new games take their seeds from the session seed, and
+    // played back frames update with the recorded delta time
+    private InputRecorder inputRecorder;
+    private InputPlayback inputPlayback;
+    private RandomXS128 sessionRandom;
+    private InputHandler inputHandler;
+    private float delta = 0;
+
+    // On-demand rendering
+    private boolean continuousRendering = true;
+
+    // Set when the board changed since it was last handed to the persistence service
+    private boolean saveDirty = false;
+    private boolean saveSkipped = false; // The game outgrew the save format, which was logged once
+
+    // Replay of the current game, if it was started in this session
+    private static final String REPLAY_DIR = "replays";
+    private static final String REPLAY_EXTENSION = ".replay";
+    private ReplayEncoder replay;
+    private ByteArrayOutputStream replayBytes;
+
+    // Replay viewer mode, and the state to return to when it is closed
+    private static final int REPLAY_SEEK_MOVES = 100;
+    private ReplayViewer replayViewer;
+    private GameState stateBeforeReplay;
+
+    // Hint and autoplay, created when first asked for, as the solver builds large tables
+    private static final String OPENING_BOOK = "book/opening.book";
+    private MoveAdvisor advisor;
+
+    // Spectator mode: boards played by an AI in the background, drawn in one batch in place of the game
+    private static final float SPECTATOR_REFRESH_SECONDS = 0.1f;
+    private static final int MAX_BATCH_SPRITES = 8191; // The most a SpriteBatch can index
+    private int spectatorBoards = 0;
+    private String spectatorPlayer;
+    private SpectatorGames spectatorGames;
+    private SpectatorView spectatorView;
+    private SpriteBatch spectatorBatch;
+    private TileAtlas tileAtlas;
+    private float spectatorStatusHeight;
+    private final StringBuilder spectatorStatus = new StringBuilder();
+    private static final Color STATUS_COLOR = GameUtils.hexToColor("#776E65");
+
+    public Main() {
+        this(new PerformanceStats());
+    }
+
+    /**
+     * @param stats where to record frame timing, e.g. to export it from the launcher
+     */
+    public Main(PerformanceStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Records the session from the first playable frame on; to be set before the app is created
+     */
+    public void setInputRecorder(InputRecorder inputRecorder) {
+        this.inputRecorder = inputRecorder;
+    }
+
+    /**
+     * Plays a recorded session instead of taking real input; to be set before the app is created
+     */
+    public void setInputPlayback(InputPlayback inputPlayback) {
+        this.inputPlayback = inputPlayback;
+    }
+
+    /**
+     * Opens with a wall of boards played by the named player, e.g. {@code expectimax:2}, instead of the player's
+     * own game, which comes back when the spectator mode is closed; to be set before the app is created
+     */
+    public void setSpectator(int boards, String player) {
+        Players.parse(player);
+        if (boards < 1) {
+            throw new IllegalArgumentException("At least one board is needed, not " + boards);
+        }
+        this.spectatorBoards = boards;
+        this.spectatorPlayer = player;
+    }
+
     @Override
     public void create() {
+        createStartTime = TimeUtils.nanoTime();
+
         initializeRenderingObjects();
+        prepareMoveTables();
+        initializePersistence();
         initializeGameElements();
-        initializeFonts();
-        initializePreferences();
         initializeGameState();
+
+        Gdx.app.log("Main", "create() took " + TimeUtils.nanosToMillis(TimeUtils.timeSinceNanos(createStartTime)) + " ms");
     }
 
     private void initializeRenderingObjects() {
         batch = new SpriteBatch();
         shapeRenderer = new ShapeRenderer();
+        assets = new GameAssets();
+        assets.queue();
+        renderStats = new RenderStats(Gdx.graphics);
+        performanceOverlay = new PerformanceOverlay(stats, renderStats);
+
+        inputHandler = new InputHandler();
+        if (inputRecorder != null) {
+            inputRecorder.setProcessor(inputHandler);
+            Gdx.input.setInputProcessor(inputRecorder);
+            sessionRandom = new RandomXS128(inputRecorder.getSeed());
+        } else if (inputPlayback != null) {
+            sessionRandom = new RandomXS128(inputPlayback.getSeed());
+        } else {
+            Gdx.input.setInputProcessor(inputHandler);
+        }
+    }
 
-        screenWidth = Gdx.graphics.getWidth();
-        screenHeight = Gdx.graphics.getHeight();
-        swipeThreshold = Math.min(screenWidth, screenHeight) * 0.05f;
+    /**
+     * Builds the move tables the board moves with on a background thread while the assets load, so the first
+     * move does not spend a frame building them
+     */
+    private void prepareMoveTables() {
+        if (rules.getSize() != PackedBoard.SIZE) return;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                rules.getMoveTables();
+            }
+        }, "MoveTables");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     private void initializeGameElements() {
-        float gridSize = Math.min(screenWidth, screenHeight) * 0.8f;
-        float gridX = (screenWidth - gridSize) / 2;
-        float gridY = (screenHeight - gridSize) / 2;
+        layout(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        Board board = sessionRandom == null ? loadBoard() : null;
+        if (board != null) {
+            // A resumed game is not recorded: its replay would have to start from the first move
+            grid = new Grid(board, gridSize, gridX, gridY);
+            grid.setStats(stats);
+        } else {
+            grid = new Grid(newBoard(), gridSize, gridX, gridY);
+            grid.setStats(stats);
+            startReplay();
+        }
+        winShown = grid.isWon();
+    }
 
-        grid = new Grid(4, gridSize, gridX, gridY);
+    /**
+     * A fresh board for a new game, seeded from the session in a recorded or played back session
+     */
+    private Board newBoard() {
+        Board board = sessionRandom != null ? new Board(rules, sessionRandom.nextLong()) : new Board(rules);
+        board.addInitialTiles();
+        return board;
+    }
 
-        // Scoreboard setup
-        scoreboardTexture = new Texture(Gdx.files.internal("score.png"));
-        bestScoreboardTexture = new Texture(Gdx.files.internal("best_score.png"));
+    /**
+     * Records the moves of the game just started on the grid. The replay is small, so it is kept in memory
+     * and written out by the persistence service when the game is finished.
+     */
+    private void startReplay() {
+        Board board = grid.getBoard();
+        replayBytes = new ByteArrayOutputStream();
+        try {
+            replay = new ReplayEncoder(Channels.newChannel(replayBytes), board.getSeed(), board.getSize());
+            grid.setReplayEncoder(replay);
+        } catch (IOException e) {
+            Gdx.app.error("Main", "Could not start recording a replay", e);
+            replay = null;
+        }
+    }
+
+    private void finishReplay() {
+        if (replay == null) return;
+        grid.completeAnimations();
+        grid.setReplayEncoder(null);
+        try {
+            replay.close();
+            if (replay.getMoveCount() > 0) {
+                persistence.saveReplay(Long.toHexString(grid.getBoard().getSeed()) + REPLAY_EXTENSION,
+                replayBytes.toByteArray());
+            }
+        } catch (IOException e) {
+            Gdx.app.error("Main", "Could not finish the replay", e);
+        }
+        replay = null;
+        replayBytes = null;
+    }
+
+    /**
+     * Restores the game saved when the app was last paused, or returns null to start a new one
+     */
+    private Board loadBoard() {
+        try {
+            byte[] data = persistence.loadGame();
+            return data != null ? SaveGame.read(data) : null;
+        } catch (RuntimeException e) {
+            Gdx.app.error("Main", "Could not resume the saved game", e);
+            return null;
+        }
+    }
+
+    /**
+     * Hands the current board to the persistence service. Animations are completed first so a spawn that
+     * is still waiting for its slide to finish is part of the save. A game with a tile past 32768 no longer fits
+     * the save format, so the last save it fitted stays.
+     */
+    private void saveGame() {
+        grid.completeAnimations();
+        Board board = grid.getBoard();
+        if (SaveGame.canWrite(board)) {
+            persistence.saveGame(SaveGame.write(board));
+        } else if (!saveSkipped) {
+            saveSkipped = true;
+            Gdx.app.error("Main", "The game no longer fits a save; keeping the last save");
+        }
+        saveDirty = false;
+    }
+
+    /**
+     * Recomputes the position and size of everything on screen. Only geometry changes here;
+     * the game in progress and all loaded resources are kept.
+     */
+    private void layout(int width, int height) {
+        screenWidth = width;
+        screenHeight = height;
+        swipeThreshold = Math.min(screenWidth, screenHeight) * 0.05f;
+
+        gridSize = Math.min(screenWidth, screenHeight) * 0.8f;
+        gridX = (screenWidth - gridSize) / 2;
+        gridY = (screenHeight - gridSize) / 2;
+
+        batch.getProjectionMatrix().setToOrtho2D(0, 0, screenWidth, screenHeight);
+        shapeRenderer.setProjectionMatrix(batch.getProjectionMatrix());
+        layoutSpectator();
 
+        // Scoreboard setup
         scoreboardWidth = gridSize * 0.45f;
         scoreboardHeight = gridSize * 0.45f;
         bestScoreboardWidth = scoreboardWidth;
@@ -112,9 +350,8 @@ public class Main extends ApplicationAdapter {
         bestScoreboardY = scoreboardY;
 
         // Restart button
-        restartButtonTexture = new Texture(Gdx.files.internal("restart_game.png"));
         float buttonSize = gridSize * 0.2f;
-        restartButton = new Rectangle(
+        restartButton.set(
             screenWidth / 2 - buttonSize / 2,
             screenHeight * 0.35f,
             buttonSize,
@@ -122,72 +359,208 @@ public class Main extends ApplicationAdapter {
         );
     }
 
-    private void initializeFonts() {
-        FreeTypeFontGenerator generator = new FreeTypeFontGenerator(
-            Gdx.files.internal("Orbitron/static/Orbitron-Regular.ttf"));
+    /**
+     * Picks up fonts and images as the asset manager finishes them
+     */
+    private void resolveAssets() {
+        if (font == null) font = assets.getFont(GameFont.TILE);
+        if (scoreFont == null) scoreFont = assets.getFont(GameFont.SCORE);
+        if (gameOverFont == null) gameOverFont = assets.getFont(GameFont.GAME_OVER);
+        if (gameOverSubtitleFont == null) gameOverSubtitleFont = assets.getFont(GameFont.SUBTITLE);
+        if (gameOverButtonFont == null) gameOverButtonFont = assets.getFont(GameFont.BUTTON);
+        if (scoreboardTexture == null) scoreboardTexture = assets.getRegion("score");
+        if (bestScoreboardTexture == null) bestScoreboardTexture = assets.getRegion("best_score");
+        if (restartButtonTexture == null) restartButtonTexture = assets.getRegion("restart_game");
+    }
 
-        float density = Gdx.graphics.getDensity();
+    private void initializePersistence() {
+        if (inputPlayback != null) {
+            // A played back session still saves as usual, but apart from the player's games, and every
+            // playback starts from the same best score
+            persistence = new PersistenceService(Gdx.app.getPreferences("game3072-playback"),
+                Gdx.files.local("playback/savegame.bin"), Gdx.files.local("playback/" + REPLAY_DIR),
+                Gdx.files.local("playback/games.archive"));
+            bestScoreValue = 0;
+            return;
+        }
+        persistence = new PersistenceService(Gdx.app.getPreferences("game3072"), Gdx.files.local("savegame.bin"),
+            Gdx.files.local(REPLAY_DIR), Gdx.files.local("games.archive"));
+        bestScoreValue = persistence.getBestScore();
+    }
 
-        // Score and game fonts
-        FreeTypeFontParameter parameter = GameUtils.createFontParameters(
-            Math.round(24 * density),
-            GameUtils.hexToColor("#776E65"),
-            1,
-            new Color(0, 0, 0, 0.2f)
-        );
+    private void initializeGameState() {
+        scoreValue = grid.getScore();
+        targetScore = scoreValue;
+        gameState = GameState.LOADING;
+    }
 
-        scoreFont = generator.generateFont(parameter);
-        font = generator.generateFont(parameter);
+    @Override
+    public void render() {
+        if (!firstFrameLogged) {
+            firstFrameLogged = true;
+            logSinceCreate("First frame");
+        }
 
-        // Game over fonts
-        FreeTypeFontParameter gameOverParams = GameUtils.createFontParameters(
-            Math.round(48 * density),
-            GameUtils.hexToColor("#776E65"),
-            2,
-            new Color(0, 0, 0, 0.3f)
-        );
-        gameOverFont = generator.generateFont(gameOverParams);
+        if (!assetsLoaded) {
+            assetsLoaded = assets.update();
+            resolveAssets();
+            if (assetsLoaded) {
+                logSinceCreate("All assets loaded");
+            }
+        }
 
-        FreeTypeFontParameter subtitleParams = GameUtils.createFontParameters(
-            Math.round(20 * density),
-            GameUtils.hexToColor("#776E65"),
-            0,
-            null
-        );
-        gameOverSubtitleFont = generator.generateFont(subtitleParams);
+        if (gameState == GameState.LOADING) {
+            if (!assets.isBoardReady()) {
+                renderLoading();
+                return;
+            }
+            gameState = GameState.PLAYING;
+            logSinceCreate("First playable frame");
+            if (spectatorBoards > 0) {
+                openSpectator();
+            }
+        }
 
-        FreeTypeFontParameter buttonParams = GameUtils.createFontParameters(
-            Math.round(16 * density),
-            Color.WHITE,
-            0,
-            null
-        );
-        gameOverButtonFont = generator.generateFont(buttonParams);
+        beginSessionFrame();
+        stats.beginFrame();
+        long frameStart = TimeUtils.nanoTime();
+        if (gameState == GameState.REPLAY) {
+            updateReplay();
+        } else if (gameState == GameState.SPECTATING) {
+            spectatorView.update(delta);
+        } else {
+            updateGame();
+        }
+        long renderStart = TimeUtils.nanoTime();
+        stats.record(PerformanceStats.Metric.UPDATE, renderStart - frameStart);
+        renderStats.beginFrame();
+        renderGame();
+        renderStats.endFrame();
+        performanceOverlay.render(shapeRenderer, batch, gameOverButtonFont, delta,
+            screenHeight);
+        long renderEnd = TimeUtils.nanoTime();
+        stats.record(PerformanceStats.Metric.RENDER, renderEnd - renderStart);
+        long inputQueuedAt = grid.takeInputQueuedAt();
+        if (inputQueuedAt != 0) {
+            stats.record(PerformanceStats.Metric.INPUT, renderEnd - inputQueuedAt);
+        }
+        if (inputPlayback == null) {
+            // Played back frames come one per rendered frame, so rendering never pauses
+            updateRenderingMode();
+        }
+        stats.record(PerformanceStats.Metric.FRAME, TimeUtils.timeSinceNanos(frameStart));
+    }
 
-        generator.dispose();
+    /**
+     * Takes the delta time of the frame; plays back or records its input in a session
+     */
+    private void beginSessionFrame() {
+        if (inputPlayback != null) {
+            inputPlayback.playFrame(inputHandler);
+            delta = inputPlayback.getDelta();
+            return;
+        }
+        delta = Gdx.graphics.getDeltaTime();
+        if (inputRecorder != null) {
+            try {
+                inputRecorder.start(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+                inputRecorder.frame(delta);
+            } catch (IOException e) {
+                Gdx.app.error("Main", "Input recording stopped", e);
+                closeInputRecorder();
+            }
+        }
     }
 
-    private void initializePreferences() {
-        preferences = Gdx.app.getPreferences("game3072");
-        bestScoreValue = preferences.getInteger("bestScore", 0);
+    private void closeInputRecorder() {
+        if (inputRecorder == null) return;
+        try {
+            inputRecorder.close();
+            Gdx.app.log("Main", "Recorded " + inputRecorder.getFrameCount() + " frames of input");
+        } catch (IOException e) {
+            Gdx.app.error("Main", "Could not finish the input recording", e);
+        }
+        Gdx.input.setInputProcessor(inputHandler);
+        inputRecorder = null;
     }
 
-    private void initializeGameState() {
-        scoreValue = 0;
-        targetScore = 0;
-        gameState = GameState.PLAYING;
+    /**
+     * Whether the next frame would look exactly like this one: no tile animation,
+     * no score count-up and no game over fade in progress
+     */
+    private boolean isIdle() {
+        if (!assetsLoaded || gameState == GameState.LOADING || grid.isAnimating()) {
+            return false;
+        }
+        if (gameState == GameState.REPLAY) {
+            return !replayViewer.isAnimating();
+        }
+        if (gameState == GameState.SPECTATING) {
+            return false;
+        }
+        if (gameState == GameState.PLAYING && (grid.isAutoplay() || grid.isHintPending())) {
+            return false;
+        }
+        if (scoreValue < targetScore) {
+            return false;
+        }
+        return gameState != GameState.GAME_OVER && gameState != GameState.WON || gameOverAlpha >= 0.7f;
     }
 
-    @Override
-    public void render() {
-        updateGame();
-        renderGame();
-        handleInput();
+    /**
+     * Stops continuous rendering while the board is idle. The backends still render a frame for every
+     * input event, and any animation started by that input switches continuous rendering back on.
+     */
+    private void updateRenderingMode() {
+        boolean idle = isIdle();
+        if (idle == continuousRendering) {
+            continuousRendering = !idle;
+            Gdx.graphics.setContinuousRendering(continuousRendering);
+        }
+    }
+
+    private void logSinceCreate(String event) {
+        Gdx.app.log("Main", event + " after " + TimeUtils.nanosToMillis(TimeUtils.timeSinceNanos(createStartTime)) + " ms");
+    }
+
+    private void renderLoading() {
+        clearScreen();
+
+        float barWidth = Math.min(screenWidth, screenHeight) * 0.6f;
+        float barHeight = barWidth * 0.04f;
+        float barX = (screenWidth - barWidth) / 2;
+        float barY = (screenHeight - barHeight) / 2;
+
+        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+        shapeRenderer.setColor(GameUtils.hexToColor("#CDC1B4"));
+        shapeRenderer.rect(barX, barY, barWidth, barHeight);
+        shapeRenderer.setColor(GameUtils.hexToColor("#BBADA0"));
+        shapeRenderer.rect(barX, barY, barWidth * assets.getProgress(), barHeight);
+        shapeRenderer.end();
+    }
+
+    private void clearScreen() {
+        Gdx.gl.glClearColor(
+            GameUtils.hexToColor("#FAF8EF").r,
+            GameUtils.hexToColor("#FAF8EF").g,
+            GameUtils.hexToColor("#FAF8EF").b,
+            1
+        );
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
     }
 
     private void updateGame() {
-        float delta = Gdx.graphics.getDeltaTime();
         grid.update(delta);
+        saveDirty |= grid.isAutoplay();
+        updateScoreAfterMove();
+        if (gameState == GameState.PLAYING) {
+            playTime += delta;
+        }
+
+        // Save between moves, once the board has settled
+        if (saveDirty && !grid.isAnimating()) {
+            saveGame();
+        }
 
         // Update score animation
         if (scoreValue < targetScore) {
@@ -200,8 +573,7 @@ public class Main extends ApplicationAdapter {
 
         if (scoreValue > bestScoreValue) {
             bestScoreValue = scoreValue;
-            preferences.putInteger("bestScore", (int) bestScoreValue);
-            preferences.flush();
+            persistence.setBestScore((int) bestScoreValue);
         }
 
         // Check for game over
@@ -209,29 +581,47 @@ public class Main extends ApplicationAdapter {
             gameState = GameState.GAME_OVER;
             gameOverAlpha = 0f; // Reset fade in effect
         }
+
+        // Announce the target tile once per game; playing on is allowed
+        if (gameState == GameState.PLAYING && !winShown && grid.isWon()) {
+            gameState = GameState.WON;
+            winShown = true;
+            winSubtitle = "You reached " + grid.getBoard().getMaxTile() + "! Keep playing.";
+            grid.setAutoplay(false);
+            gameOverAlpha = 0f;
+        }
     }
 
     private void renderGame() {
-        // Clear screen
-        Gdx.gl.glClearColor(
-            GameUtils.hexToColor("#FAF8EF").r,
-            GameUtils.hexToColor("#FAF8EF").g,
-            GameUtils.hexToColor("#FAF8EF").b,
-            1
-        );
-        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        clearScreen();
+
+        if (gameState == GameState.SPECTATING) {
+            spectatorView.render(spectatorBatch);
+            renderSpectatorStatus();
+            return;
+        }
 
         // Render game elements
         renderScoreboards();
+        if (gameState == GameState.REPLAY) {
+            replayViewer.getGrid().render(shapeRenderer, batch, font);
+            renderReplayProgress();
+            return;
+        }
         grid.render(shapeRenderer, batch, font);
 
-        // Render game over if needed
+        // Render game over or win if needed
         if (gameState == GameState.GAME_OVER) {
-            renderGameOver(Gdx.graphics.getDeltaTime());
+            renderOverlay(delta, "Game Over", "No more moves available!");
+        } else if (gameState == GameState.WON) {
+            renderOverlay(delta, "You Win", winSubtitle);
         }
     }
 
-    private void renderGameOver(float delta) {
+    /**
+     * Fades in a title and subtitle over the board, with the restart button
+     */
+    private void renderOverlay(float delta, String title, String subtitle) {
         // Fade in effect
         if (gameOverAlpha < 0.7f) {
             gameOverAlpha += delta * 0.5f;
@@ -246,13 +636,17 @@ public class Main extends ApplicationAdapter {
         shapeRenderer.end();
         Gdx.gl.glDisable(GL20.GL_BLEND);
 
+        if (gameOverFont == null || gameOverSubtitleFont == null || restartButtonTexture == null) {
+            return;
+        }
+
         batch.begin();
 
-        // Draw "Game Over" text
-        GlyphLayout gameOverLayout = new GlyphLayout(gameOverFont, "Game Over");
+        // Draw title text
+        GlyphLayout gameOverLayout = new GlyphLayout(gameOverFont, title);
         gameOverFont.draw(
             batch,
-            "Game Over",
+            title,
             (screenWidth - gameOverLayout.width) / 2,
             screenHeight * 0.65f
         );
@@ -260,11 +654,11 @@ public class Main extends ApplicationAdapter {
         // Draw subtitle
         GlyphLayout subtitleLayout = new GlyphLayout(
             gameOverSubtitleFont,
-            "No more moves available!"
+            subtitle
         );
         gameOverSubtitleFont.draw(
             batch,
-            "No more moves available!",
+            subtitle,
             (screenWidth - subtitleLayout.width) / 2,
             screenHeight * 0.55f
         );
@@ -282,7 +676,7 @@ public class Main extends ApplicationAdapter {
     }
 
     private void renderScoreboards() {
-        if (batch == null || scoreboardTexture == null || scoreFont == null) {
+        if (batch == null || scoreboardTexture == null || bestScoreboardTexture == null || scoreFont == null) {
             return;
         }
 
@@ -343,75 +737,146 @@ public class Main extends ApplicationAdapter {
         batch.end();
     }
 
-    private void handleInput() {
-        if (grid.isAnimating()) return;
-
-        if (gameState == GameState.GAME_OVER) {
-            handleGameOverInput();
-        } else {
-            handleGameplayInput();
+    /**
+     * Turns key presses and swipes into queued moves as the events arrive, instead of polling once per frame
+     */
+    private class InputHandler extends InputAdapter {
+        @Override
+        public boolean keyDown(int keycode) {
+            if (keycode == Input.Keys.F3) {
+                performanceOverlay.toggle();
+                Gdx.graphics.requestRendering();
+                return true;
+            }
+            if (gameState == GameState.REPLAY) {
+                return replayKeyDown(keycode);
+            }
+            if (gameState == GameState.SPECTATING) {
+                if (keycode != Input.Keys.ESCAPE) return false;
+                closeSpectator();
+                return true;
+            }
+            if (keycode == Input.Keys.V) {
+                return openReplay();
+            }
+            if (keycode == Input.Keys.Z || keycode == Input.Keys.BACKSPACE) {
+                return undo();
+            }
+            if (gameState == GameState.WON) {
+                keepPlaying();
+            }
+            if (gameState != GameState.PLAYING) return false;
+
+            switch (keycode) {
+                case Input.Keys.H:
+                    return showHint();
+                case Input.Keys.P:
+                    return toggleAutoplay();
+                case Input.Keys.UP:
+                case Input.Keys.W:
+                    return queueMove(Direction.UP);
+                case Input.Keys.DOWN:
+                case Input.Keys.S:
+                    return queueMove(Direction.DOWN);
+                case Input.Keys.LEFT:
+                case Input.Keys.A:
+                    return queueMove(Direction.LEFT);
+                case Input.Keys.RIGHT:
+                case Input.Keys.D:
+                    return queueMove(Direction.RIGHT);
+                default:
+                    return false;
+            }
         }
-    }
-
-    private void handleGameOverInput() {
-        if (Gdx.input.justTouched()) {
-            Vector3 touchPos = new Vector3(Gdx.input.getX(), Gdx.input.getY(), 0);
-            touchPos.y = Gdx.graphics.getHeight() - touchPos.y;
 
-            if (restartButton.contains(touchPos.x, touchPos.y)) {
-                resetGame();
+        private boolean replayKeyDown(int keycode) {
+            switch (keycode) {
+                case Input.Keys.V:
+                case Input.Keys.ESCAPE:
+                    closeReplay();
+                    return true;
+                case Input.Keys.SPACE:
+                    replayViewer.togglePlaying();
+                    return true;
+                case Input.Keys.RIGHT:
+                    replayViewer.stepForward();
+                    return true;
+                case Input.Keys.LEFT:
+                    replayViewer.stepBack();
+                    return true;
+                case Input.Keys.PAGE_DOWN:
+                    replayViewer.seek(replayViewer.getPosition() + REPLAY_SEEK_MOVES);
+                    return true;
+                case Input.Keys.PAGE_UP:
+                    replayViewer.seek(replayViewer.getPosition() - REPLAY_SEEK_MOVES);
+                    return true;
+                case Input.Keys.HOME:
+                    replayViewer.seek(0);
+                    return true;
+                case Input.Keys.END:
+                    replayViewer.seek(replayViewer.getMoveCount());
+                    return true;
+                default:
+                    return false;
             }
         }
-    }
 
-    private void handleGameplayInput() {
-        boolean moved = false;
-
-        if (Gdx.input.isKeyJustPressed(Input.Keys.UP) || Gdx.input.isKeyJustPressed(Input.Keys.W)) {
-            moved = grid.moveUp();
-        } else if (Gdx.input.isKeyJustPressed(Input.Keys.DOWN) || Gdx.input.isKeyJustPressed(Input.Keys.S)) {
-            moved = grid.moveDown();
-        } else if (Gdx.input.isKeyJustPressed(Input.Keys.LEFT) || Gdx.input.isKeyJustPressed(Input.Keys.A)) {
-            moved = grid.moveLeft();
-        } else if (Gdx.input.isKeyJustPressed(Input.Keys.RIGHT) || Gdx.input.isKeyJustPressed(Input.Keys.D)) {
-            moved = grid.moveRight();
-        }
-
-        // Touch swipe handling
-        if (!moved) {
-            if (Gdx.input.justTouched()) {
-                swipeStart.set(Gdx.input.getX(), Gdx.input.getY());
-                swipeActive = true;
-            } else if (swipeActive && !Gdx.input.isTouched()) {
-                Vector2 end = new Vector2(Gdx.input.getX(), Gdx.input.getY());
-                float dx = end.x - swipeStart.x;
-                float dy = swipeStart.y - end.y; // invert Y
-
-                if (Math.abs(dx) > Math.abs(dy)) {
-                    if (dx > swipeThreshold) {
-                        moved = grid.moveRight();
-                    } else if (dx < -swipeThreshold) {
-                        moved = grid.moveLeft();
-                    }
-                } else {
-                    if (dy > swipeThreshold) {
-                        moved = grid.moveUp();
-                    } else if (dy < -swipeThreshold) {
-                        moved = grid.moveDown();
-                    }
+        private boolean queueMove(Direction direction) {
+            boolean queued = grid.queueMove(direction);
+            saveDirty |= queued;
+            return queued;
+        }
+
+        @Override
+        public boolean touchDown(int screenX, int screenY, int pointer, int button) {
+            if (pointer != 0) return false;
+
+            if (gameState == GameState.GAME_OVER || gameState == GameState.WON) {
+                if (restartButton.contains(screenX, Gdx.graphics.getHeight() - screenY)) {
+                    resetGame();
+                    return true;
                 }
-                swipeActive = false;
+                if (gameState == GameState.GAME_OVER) {
+                    return false;
+                }
+                keepPlaying();
             }
+
+            swipeStart.set(screenX, screenY);
+            swipeActive = true;
+            return true;
         }
 
-        if (moved) {
-            updateScoreAfterMove();
+        @Override
+        public boolean touchUp(int screenX, int screenY, int pointer, int button) {
+            if (pointer != 0 || !swipeActive) return false;
+            swipeActive = false;
+            if (gameState != GameState.PLAYING) return false;
+
+            float dx = screenX - swipeStart.x;
+            float dy = swipeStart.y - screenY; // invert Y
+
+            if (Math.abs(dx) > Math.abs(dy)) {
+                if (dx > swipeThreshold) {
+                    return queueMove(Direction.RIGHT);
+                } else if (dx < -swipeThreshold) {
+                    return queueMove(Direction.LEFT);
+                }
+            } else {
+                if (dy > swipeThreshold) {
+                    return queueMove(Direction.UP);
+                } else if (dy < -swipeThreshold) {
+                    return queueMove(Direction.DOWN);
+                }
+            }
+            return false;
         }
     }
 
     private void updateScoreAfterMove() {
         int moveScore = grid.getLastMoveScore();
         if (moveScore > 0) {
+            grid.resetLastMoveScore();
             targetScore += moveScore;
             if (targetScore > bestScoreValue) {
                 bestScoreValue = scoreValue; // will follow score animation
@@ -421,66 +886,257 @@ public class Main extends ApplicationAdapter {
         }
     }
 
+    /**
+     * Opens the most recently finished replay in the viewer
+     */
+    private boolean openReplay() {
+        if (gameState == GameState.LOADING) return false;
+
+        FileHandle latest = null;
+        for (FileHandle file : Gdx.files.local(REPLAY_DIR).list(REPLAY_EXTENSION)) {
+            if (latest == null || file.lastModified() > latest.lastModified()) {
+                latest = file;
+            }
+        }
+        if (latest == null) {
+            Gdx.app.log("Main", "No replays recorded yet");
+            return false;
+        }
+
+        try {
+            ReplayPlayer player = new ReplayPlayer(ByteBuffer.wrap(latest.readBytes()));
+            replayViewer = new ReplayViewer(player, gridSize, gridX, gridY);
+        } catch (RuntimeException e) {
+            Gdx.app.error("Main", "Could not open replay " + latest.name(), e);
+            return false;
+        }
+        // The game stays frozen underneath; land its animations so it is at rest when the viewer closes
+        grid.completeAnimations();
+        stateBeforeReplay = gameState;
+        gameState = GameState.REPLAY;
+        return true;
+    }
+
+    private void closeReplay() {
+        replayViewer = null;
+        gameState = stateBeforeReplay;
+        scoreValue = grid.getScore();
+        targetScore = scoreValue;
+    }
+
+    private void updateReplay() {
+        replayViewer.update(delta);
+        scoreValue = replayViewer.getGrid().getScore();
+        targetScore = scoreValue;
+    }
+
+    /**
+     * Draws a bar under the board showing how far the replay has been played
+     */
+    private void renderReplayProgress() {
+        long count = Math.max(1, replayViewer.getMoveCount());
+        float barHeight = gridSize * 0.02f;
+        float barY = gridY - barHeight * 3;
+
+        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+        shapeRenderer.setColor(GameUtils.hexToColor("#CDC1B4"));
+        shapeRenderer.rect(gridX, barY, gridSize, barHeight);
+        shapeRenderer.setColor(GameUtils.hexToColor("#BBADA0"));
+        shapeRenderer.rect(gridX, barY, gridSize * replayViewer.getPosition() / count, barHeight);
+        shapeRenderer.end();
+    }
+
+    /**
+     * Starts the spectator's games and shows them in place of the game, which stays as it is underneath
+     */
+    private void openSpectator() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1); // One core is left to render
+        spectatorGames = new SpectatorGames(spectatorBoards, Players.parse(spectatorPlayer), TimeUtils.millis(),
+            threads, SpectatorGames.DEFAULT_MOVE_INTERVAL_NANOS);
+        if (tileAtlas == null) {
+            tileAtlas = new TileAtlas(font);
+        }
+        spectatorBatch = new SpriteBatch(Math.min(MAX_BATCH_SPRITES, SpectatorView.spritesNeeded(spectatorBoards)));
+        spectatorGames.start();
+        spectatorView = new SpectatorView(spectatorGames, tileAtlas, SPECTATOR_REFRESH_SECONDS);
+        layoutSpectator();
+        grid.completeAnimations();
+        gameState = GameState.SPECTATING;
+        Gdx.app.log("Main", "Spectating " + spectatorBoards + " boards played by " + spectatorPlayer + " on "
+            + threads + " threads");
+    }
+
+    private void closeSpectator() {
+        spectatorGames.stop();
+        Gdx.app.log("Main", "Spectator games: " + spectatorGames.getGames() + " finished, best score "
+            + spectatorGames.getBestScore() + ", " + spectatorGames.getMoves() + " moves");
+        spectatorGames = null;
+        spectatorView = null;
+        spectatorBatch.dispose();
+        spectatorBatch = null;
+        spectatorBoards = 0;
+        gameState = GameState.PLAYING;
+        Gdx.graphics.requestRendering();
+    }
+
+    /**
+     * Tiles the spectator's boards over the screen below a line of status text
+     */
+    private void layoutSpectator() {
+        if (spectatorView == null) return;
+        spectatorStatusHeight = screenHeight * 0.05f;
+        spectatorBatch.setProjectionMatrix(batch.getProjectionMatrix());
+        spectatorView.layout(0, 0, screenWidth, screenHeight - spectatorStatusHeight);
+    }
+
+    private void renderSpectatorStatus() {
+        if (gameOverButtonFont == null) return;
+        spectatorStatus.setLength(0);
+        spectatorStatus.append(spectatorBoards).append(" boards, ").append(spectatorPlayer).append(": ")
+            .append(spectatorGames.getGames()).append(" games finished, best score ")
+            .append(spectatorGames.getBestScore()).append(". Esc returns to your game.");
+        batch.begin();
+        gameOverButtonFont.setColor(STATUS_COLOR);
+        gameOverButtonFont.draw(batch, spectatorStatus, spectatorStatusHeight * 0.3f,
+            screenHeight - spectatorStatusHeight * 0.25f);
+        gameOverButtonFont.setColor(Color.WHITE);
+        batch.end();
+    }
+
+    private MoveAdvisor getAdvisor() {
+        if (advisor == null) {
+            OpeningBook book = null;
+            try {
+                book = OpeningBook.load(Gdx.files.internal(OPENING_BOOK));
+            } catch (RuntimeException e) {
+                Gdx.app.error("Main", "Could not open the opening book", e);
+            }
+            Gdx.app.log("Main", book == null ? "No opening book, every hint is searched"
+                : "Opening book with " + book.size() + " positions");
+            // The solver's tables are built on the advisor's thread by its first search
+            advisor = new MoveAdvisor(book);
+        }
+        return advisor;
+    }
+
+    private boolean showHint() {
+        grid.setAdvisor(getAdvisor());
+        if (!grid.showHint()) {
+            return false;
+        }
+        Gdx.graphics.requestRendering();
+        return true;
+    }
+
+    private boolean toggleAutoplay() {
+        grid.setAdvisor(getAdvisor());
+        grid.setAutoplay(!grid.isAutoplay());
+        Gdx.graphics.requestRendering();
+        return true;
+    }
+
+    /**
+     * Dismisses the win screen and goes on with the same game
+     */
+    private void keepPlaying() {
+        gameState = GameState.PLAYING;
+        gameOverAlpha = 0f;
+        Gdx.graphics.requestRendering();
+    }
+
+    /**
+     * Takes back the last move, also from the game over screen
+     */
+    private boolean undo() {
+        if (gameState == GameState.LOADING || !grid.undo()) {
+            return false;
+        }
+        gameState = GameState.PLAYING;
+        gameOverAlpha = 0f;
+        scoreValue = grid.getScore();
+        targetScore = scoreValue;
+        saveDirty = true;
+
+        // Undo snaps the board back without an animation, so ask for the frame that shows it
+        Gdx.graphics.requestRendering();
+        return true;
+    }
+
     private void resetGame() {
         bestScoreValue = Math.max(bestScoreValue, targetScore);
-        preferences.putInteger("bestScore", (int) bestScoreValue);
-        preferences.flush();
-
-        float gridSize = Math.min(screenWidth, screenHeight) * 0.8f;
-        float startX = (screenWidth - gridSize) / 2;
-        float startY = (screenHeight - gridSize) / 2;
-        grid = new Grid(4, gridSize, startX, startY);
+        persistence.setBestScore((int) bestScoreValue);
+        persistence.flush();
+        finishReplay();
+        if (grid.isGameOver()) {
+            persistence.archiveGame(new GameRecord().set(grid.getBoard(), GameRecord.POLICY_HUMAN,
+                (long) (playTime * 1e9)));
+        }
+        playTime = 0;
+
+        grid = new Grid(newBoard(), gridSize, gridX, gridY);
+        grid.setAdvisor(advisor);
+        grid.setStats(stats);
+        winShown = false;
+        saveSkipped = false;
+        startReplay();
         gameState = GameState.PLAYING;
         gameOverAlpha = 0f;
         scoreValue = 0;
         targetScore = 0;
+        saveDirty = true;
+
+        // The new board has no animation to wake rendering up, so ask for the frame that shows it
+        Gdx.graphics.requestRendering();
     }
 
     @Override
     public void resize(int width, int height) {
-        screenWidth = width;
-        screenHeight = height;
-
-        float gridSize = Math.min(screenWidth, screenHeight) * 0.8f;
-        float gridX = (screenWidth - gridSize) / 2;
-        float gridY = (screenHeight - gridSize) / 2;
+        if (width <= 0 || height <= 0) return; // minimized
 
-        grid = new Grid(4, gridSize, gridX, gridY);
-
-        scoreboardWidth = gridSize * 0.45f;
-        scoreboardHeight = gridSize * 0.45f;
-        bestScoreboardWidth = scoreboardWidth;
-        bestScoreboardHeight = scoreboardHeight;
-
-        float spacing = scoreboardWidth * 0.1f;
-        float totalWidth = scoreboardWidth * 2 + spacing;
-
-        scoreboardX = gridX + (gridSize - totalWidth) / 2f;
-        bestScoreboardX = scoreboardX + scoreboardWidth + spacing;
-        scoreboardY = gridY + gridSize + gridSize * 0.05f;
-        bestScoreboardY = scoreboardY;
+        layout(width, height);
+        grid.setBounds(gridSize, gridX, gridY);
+        if (replayViewer != null) {
+            replayViewer.getGrid().setBounds(gridSize, gridX, gridY);
+        }
+    }
 
-        float buttonSize = gridSize * 0.2f;
-        restartButton = new Rectangle(
-            screenWidth / 2 - buttonSize / 2,
-            screenHeight * 0.35f,
-            buttonSize,
-            buttonSize
-        );
+    @Override
+    public void pause() {
+        saveGame();
+        persistence.flushAndWait();
     }
 
     @Override
     public void dispose() {
+        MoveQueue moves = grid.getMoveQueue();
+        Gdx.app.log("Main", "Input-to-move latency: avg " + moves.getAverageLatencyNanos() / 1000
+            + " us, max " + moves.getMaxLatencyNanos() / 1000 + " us");
+        for (PerformanceStats.Metric metric : PerformanceStats.Metric.values()) {
+            LatencyHistogram histogram = stats.get(metric);
+            Gdx.app.log("Main", "Time per " + metric.getLabel() + ": p50 " + histogram.percentileNanos(0.5) / 1000
+                + " us, p99 " + histogram.percentileNanos(0.99) / 1000 + " us, max " + histogram.getMaxNanos() / 1000
+                + " us over " + histogram.getCount());
+        }
+        if (advisor != null) {
+            Gdx.app.log("Main", "Suggested moves: " + advisor.getBookMoves() + " from the opening book, "
+                + advisor.getSearchedMoves() + " searched");
+            advisor.dispose();
+        }
+
+        saveGame();
+        finishReplay();
+        closeInputRecorder();
+        if (spectatorGames != null) {
+            spectatorGames.stop();
+            spectatorBatch.dispose();
+        }
+        if (tileAtlas != null) {
+            tileAtlas.dispose();
+        }
+
         batch.dispose();
         shapeRenderer.dispose();
-        font.dispose();
-        scoreboardTexture.dispose();
-        bestScoreboardTexture.dispose();
-        scoreFont.dispose();
-        gameOverFont.dispose();
-        gameOverSubtitleFont.dispose();
-        gameOverButtonFont.dispose();
-        restartButtonTexture.dispose();
-        grid.dispose();
+        assets.dispose();
+        persistence.dispose();
     }
 }
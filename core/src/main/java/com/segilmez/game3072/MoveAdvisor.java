@@ -0,0 +1,178 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Picks moves for the hint and autoplay: from the {@link OpeningBook} when the position is in it, otherwise by a
+ * live {@link Solver} search. Only 4x4 boards with tiles up to 32768 get advice.
+ * <p>
+ * {@link #suggest(Board)} answers on the calling thread, for batch tools. The game uses {@link #request(long)}
+ * instead, which runs searches on the advisor's own thread so a frame never waits for one, and picks the answer
+ * up with {@link #isReady(long)} on a later frame. An advisor is used one way or the other, not both.
+ */
+public class MoveAdvisor implements Disposable {
+    private final OpeningBook book;
+    private Solver solver; // Built by the first search, on the thread that runs it
+    private long bookMoves;
+    private long searchedMoves;
+
+    // The board last requested and its move, once known
+    private ExecutorService searcher;
+    private boolean requested = false;
+    private long requestedBoard;
+    private Future<Direction> search;
+    private Direction move;
+
+    /**
+     * @param book may be null, in which case every move is searched
+     */
+    public MoveAdvisor(OpeningBook book, Solver solver) {
+        this.book = book;
+        this.solver = solver;
+    }
+
+    /**
+     * An advisor with a default {@link Solver}, whose tables are only built when a move is first searched
+     *
+     * @param book may be null, in which case every move is searched
+     */
+    public MoveAdvisor(OpeningBook book) {
+        this(book, null);
+    }
+
+    /**
+     * Whether a board gets advice: a 4x4 one whose tiles fit a {@link PackedBoard}
+     */
+    public static boolean canAdvise(Board board) {
+        return board.getSize() == PackedBoard.SIZE && PackedBoard.fits(board);
+    }
+
+    /**
+     * Returns the suggested move, or null if there is none
+     */
+    public Direction suggest(Board board) {
+        if (!canAdvise(board)) {
+            return null;
+        }
+        long packed = PackedBoard.pack(board);
+        Direction move = lookup(packed);
+        if (move != null) {
+            return move;
+        }
+        searchedMoves++;
+        return search(packed);
+    }
+
+    /**
+     * Asks for the move on a board that {@link #canAdvise(Board)} accepts. A book move is known at once; otherwise
+     * a search starts on the advisor's thread, and any search still running for an earlier board is abandoned.
+     * Asking again for the board last requested does nothing.
+     */
+    public void request(long board) {
+        if (requested && board == requestedBoard) return;
+        requested = true;
+        requestedBoard = board;
+        if (search != null) {
+            search.cancel(false);
+            search = null;
+        }
+        move = lookup(board);
+        if (move != null) return;
+
+        searchedMoves++;
+        final long position = board;
+        search = searcher().submit(new Callable<Direction>() {
+            @Override
+            public Direction call() {
+                return search(position);
+            }
+        });
+    }
+
+    /**
+     * Whether the move for a board is known, which it only is if that board was the last one requested
+     */
+    public boolean isReady(long board) {
+        if (!requested || board != requestedBoard) return false;
+        if (search == null) return true;
+        if (!search.isDone()) return false;
+        try {
+            move = search.get();
+        } catch (ExecutionException e) {
+            Gdx.app.error("MoveAdvisor", "Search failed", e.getCause());
+            move = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            move = null;
+        }
+        search = null;
+        return true;
+    }
+
+    /**
+     * The move for the board last requested, once {@link #isReady(long) ready}; null if there is none
+     */
+    public Direction getMove() {
+        return move;
+    }
+
+    /**
+     * Moves answered from the book so far
+     */
+    public long getBookMoves() {
+        return bookMoves;
+    }
+
+    /**
+     * Moves that needed a live search so far
+     */
+    public long getSearchedMoves() {
+        return searchedMoves;
+    }
+
+    @Override
+    public void dispose() {
+        if (searcher != null) {
+            searcher.shutdownNow();
+        }
+    }
+
+    private Direction lookup(long board) {
+        Direction move = book != null ? book.lookup(board) : null;
+        if (move != null) {
+            bookMoves++;
+        }
+        return move;
+    }
+
+    private Direction search(long board) {
+        if (solver == null) {
+            solver = new Solver();
+        }
+        return solver.bestMove(board);
+    }
+
+    private ExecutorService searcher() {
+        if (searcher == null) {
+            searcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "MoveAdvisor");
+                    thread.setDaemon(true);
+                    // Below the render thread, which the search must not hold up
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return searcher;
+    }
+}
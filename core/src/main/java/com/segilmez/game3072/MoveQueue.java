@@ -0,0 +1,100 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Bounded FIFO of moves requested by the player. Input events push into it and {@link Grid} drains it,
+ * so moves made while tiles are still sliding are buffered instead of dropped.
+ * <p>
+ * Every entry remembers when it was queued, which gives the input-to-move latency when it is taken out.
+ */
+public class MoveQueue {
+    private final Direction[] directions;
+    private final long[] queuedAt;
+    private int head = 0;
+    private int size = 0;
+    private long lastQueuedAt = 0;
+
+    // Input-to-move latency, in nanoseconds
+    private long lastLatency = 0;
+    private long maxLatency = 0;
+    private long totalLatency = 0;
+    private int latencySamples = 0;
+
+    public MoveQueue(int capacity) {
+        directions = new Direction[capacity];
+        queuedAt = new long[capacity];
+    }
+
+    /**
+     * Adds a move; returns false and drops it when the queue is full
+     */
+    public boolean offer(Direction direction) {
+        if (size == directions.length) {
+            return false;
+        }
+        int tail = (head + size) % directions.length;
+        directions[tail] = direction;
+        queuedAt[tail] = TimeUtils.nanoTime();
+        size++;
+        return true;
+    }
+
+    /**
+     * Takes the oldest move, or returns null when empty, and records how long it waited
+     */
+    public Direction poll() {
+        if (size == 0) {
+            return null;
+        }
+        Direction direction = directions[head];
+        lastQueuedAt = queuedAt[head];
+        recordLatency(TimeUtils.timeSinceNanos(lastQueuedAt));
+        directions[head] = null;
+        head = (head + 1) % directions.length;
+        size--;
+        return direction;
+    }
+
+    private void recordLatency(long latency) {
+        lastLatency = latency;
+        maxLatency = Math.max(maxLatency, latency);
+        totalLatency += latency;
+        latencySamples++;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        while (size > 0) {
+            directions[head] = null;
+            head = (head + 1) % directions.length;
+            size--;
+        }
+    }
+
+    /**
+     * {@link TimeUtils#nanoTime()} at which the move last taken out was queued
+     */
+    public long getLastQueuedAt() {
+        return lastQueuedAt;
+    }
+
+    public long getLastLatencyNanos() {
+        return lastLatency;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatency;
+    }
+
+    public long getAverageLatencyNanos() {
+        return latencySamples == 0 ? 0 : totalLatency / latencySamples;
+    }
+}
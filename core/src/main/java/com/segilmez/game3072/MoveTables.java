@@ -0,0 +1,195 @@
+package com.segilmez.game3072;
+
+/**
+ * Moves on {@link PackedBoard}s through lookup tables indexed by a whole 16-bit row, so a move is four table
+ * lookups instead of a cell-by-cell slide. Columns are moved as the rows of the transposed board.
+ * <p>
+ * The tables are generated from the merge rule of a {@link Rules}, with cells holding {@link Rules#code(int)
+ * tile codes}, so every variant moves as fast as the standard game; {@link Board} moves 4x4 boards with them.
+ * The result is the same as {@link Board#move(Direction)}, except that tiles do not merge into a tile whose
+ * code would not fit in 4 bits.
+ * <p>
+ * The tables are also the scalar {@link BatchMoves}, which {@link #batchMoves()} falls back to when the vector
+ * kernel is not available.
+ */
+public final class MoveTables implements BatchMoves {
+    private static final int ROWS = 1 << 16;
+    private static final String VECTOR_BATCH_MOVES = "com.segilmez.game3072.vector.VectorBatchMoves";
+
+    private static final MoveTables[] byMergeRule = new MoveTables[Rules.MergeRule.values().length];
+
+    private final char[] rowLeft = new char[ROWS];
+    private final char[] rowRight = new char[ROWS];
+    private final int[] rowScore = new int[ROWS];
+    // One kernel per thread, as the vector kernel keeps its gather indices between calls
+    private final ThreadLocal<BatchMoves> batchMoves = new ThreadLocal<BatchMoves>() {
+        @Override
+        protected BatchMoves initialValue() {
+            try {
+                return (BatchMoves) Class.forName(VECTOR_BATCH_MOVES).getConstructor(MoveTables.class)
+                    .newInstance(MoveTables.this);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // No vector module, a JVM without the incubator module, or vectors too narrow to pay off
+                return MoveTables.this;
+            }
+        }
+    };
+
+    /**
+     * The tables for the standard rules, built on first use
+     */
+    public static MoveTables standard() {
+        return forRules(Rules.STANDARD);
+    }
+
+    /**
+     * The tables for a ruleset, built on first use; they only depend on its merge rule
+     */
+    public static synchronized MoveTables forRules(Rules rules) {
+        int key = rules.getMergeRule().ordinal();
+        if (byMergeRule[key] == null) {
+            byMergeRule[key] = new MoveTables(rules);
+        }
+        return byMergeRule[key];
+    }
+
+    private MoveTables(Rules rules) {
+        int[] merges = new int[(Rules.MAX_CODE + 1) * (Rules.MAX_CODE + 1)];
+        for (int moving = 1; moving <= Rules.MAX_CODE; moving++) {
+            for (int other = 1; other <= Rules.MAX_CODE; other++) {
+                int merged = rules.merge(rules.value(moving), rules.value(other));
+                merges[moving * (Rules.MAX_CODE + 1) + other] = merged == 0 ? 0 : Math.max(0, rules.findCode(merged));
+            }
+        }
+
+        int[] line = new int[PackedBoard.SIZE];
+        for (int row = 0; row < ROWS; row++) {
+            for (int i = 0; i < PackedBoard.SIZE; i++) {
+                line[i] = row >>> 4 * i & 0xF;
+            }
+            rowScore[row] = slideLeft(line, merges, rules);
+            int result = 0;
+            for (int i = 0; i < PackedBoard.SIZE; i++) {
+                result |= line[i] << 4 * i;
+            }
+            rowLeft[row] = (char) result;
+        }
+        for (int row = 0; row < ROWS; row++) {
+            rowRight[row] = (char) reverse(rowLeft[reverse(row)]);
+        }
+    }
+
+    /**
+     * Slides and merges a line of codes towards index 0, like one row of {@link Board#move(Direction)};
+     * returns the score
+     */
+    private static int slideLeft(int[] line, int[] merges, Rules rules) {
+        int score = 0;
+        int count = 0;
+        int pending = 0;
+        for (int i = 0; i < line.length; i++) {
+            int code = line[i];
+            if (code == 0) continue;
+            int merged = pending == 0 ? 0 : merges[code * (Rules.MAX_CODE + 1) + pending];
+            if (merged != 0) {
+                line[count++] = merged;
+                score += rules.value(merged);
+                pending = 0;
+            } else {
+                if (pending != 0) {
+                    line[count++] = pending;
+                }
+                pending = code;
+            }
+        }
+        if (pending != 0) {
+            line[count++] = pending;
+        }
+        while (count < line.length) {
+            line[count++] = 0;
+        }
+        return score;
+    }
+
+    private static int reverse(int row) {
+        return (row & 0xF) << 12 | (row & 0xF0) << 4 | (row & 0xF00) >>> 4 | (row & 0xF000) >>> 12;
+    }
+
+    /**
+     * Returns the board after the move, without a spawn; equal to {@code board} if nothing moves
+     */
+    public long move(long board, Direction direction) {
+        switch (direction) {
+            case LEFT:
+                return moveRows(board, rowLeft);
+            case RIGHT:
+                return moveRows(board, rowRight);
+            case UP:
+                // UP moves towards higher rows, which are the higher columns of the transposed board
+                return PackedBoard.transpose(moveRows(PackedBoard.transpose(board), rowRight));
+            case DOWN:
+                return PackedBoard.transpose(moveRows(PackedBoard.transpose(board), rowLeft));
+            default:
+                throw new IllegalArgumentException(String.valueOf(direction));
+        }
+    }
+
+    private static long moveRows(long board, char[] table) {
+        return (long) table[(int) board & 0xFFFF]
+            | (long) table[(int) (board >>> 16) & 0xFFFF] << 16
+            | (long) table[(int) (board >>> 32) & 0xFFFF] << 32
+            | (long) table[(int) (board >>> 48) & 0xFFFF] << 48;
+    }
+
+    /**
+     * Points scored by the merges of a move
+     */
+    public int score(long board, Direction direction) {
+        if (direction == Direction.UP || direction == Direction.DOWN) {
+            board = PackedBoard.transpose(board);
+        }
+        // A row scores the same moved either way
+        return rowScore[(int) board & 0xFFFF]
+            + rowScore[(int) (board >>> 16) & 0xFFFF]
+            + rowScore[(int) (board >>> 32) & 0xFFFF]
+            + rowScore[(int) (board >>> 48) & 0xFFFF];
+    }
+
+    /**
+     * Moves a batch of boards with the tables, one board at a time but with the direction decided once and the
+     * transposition shared by the move and its score
+     */
+    @Override
+    public void moveAll(long[] boards, int count, Direction direction, long[] moved, int[] scores) {
+        boolean columns = direction == Direction.UP || direction == Direction.DOWN;
+        // As in move: UP moves the transposed rows right, DOWN moves them left
+        char[] table = direction == Direction.LEFT || direction == Direction.DOWN ? rowLeft : rowRight;
+        for (int i = 0; i < count; i++) {
+            long board = columns ? PackedBoard.transpose(boards[i]) : boards[i];
+            scores[i] = rowScore[(int) board & 0xFFFF]
+                + rowScore[(int) (board >>> 16) & 0xFFFF]
+                + rowScore[(int) (board >>> 32) & 0xFFFF]
+                + rowScore[(int) (board >>> 48) & 0xFFFF];
+            long result = moveRows(board, table);
+            moved[i] = columns ? PackedBoard.transpose(result) : result;
+        }
+    }
+
+    /**
+     * The fastest {@link BatchMoves} for these tables on this JVM: the Vector API kernel when the {@code vector}
+     * module is on the classpath and {@code jdk.incubator.vector} is enabled, otherwise the tables themselves.
+     * The kernel belongs to the calling thread, which builds its own on first use; do not hand it to another.
+     */
+    public BatchMoves batchMoves() {
+        return batchMoves.get();
+    }
+
+    public boolean canMove(long board) {
+        for (Direction direction : Direction.values()) {
+            if (move(board, direction) != board) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
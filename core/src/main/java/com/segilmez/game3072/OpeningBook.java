@@ -0,0 +1,160 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Precomputed best moves for early 4x4 positions, read in place from a memory-mapped file.
+ * <p>
+ * Entries are keyed by {@link BoardSymmetry#canonical(long) canonical} boards, so one entry answers for a
+ * position and all its mirror images, and sorted so that a lookup is a binary search over the mapped keys with
+ * no loading step. The keys are packed nibbles and far from uniformly spread, so interpolation search needs
+ * more probes, not fewer. Books are built offline by the {@code buildOpeningBook} Gradle task.
+ * <pre>
+ * Header, {@value #HEADER_SIZE} bytes:
+ *   int magic "G72B", byte version, byte rules version, byte search depth, byte reserved, int entry count,
+ *   int reserved
+ * Then: long[entry count] canonical boards in ascending order,
+ *   byte[entry count] best move on each canonical board as a Direction ordinal
+ * </pre>
+ */
+public final class OpeningBook {
+    public static final int MAGIC = 0x47373242;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final LongBuffer keys;
+    private final ByteBuffer moves;
+    private final int size;
+    private final int searchDepth;
+
+    /**
+     * Reads a book in place; the buffer must not be changed afterwards
+     */
+    public OpeningBook(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new GdxRuntimeException("Not an opening book");
+        }
+        int version = buffer.get(4);
+        if (version != VERSION) {
+            throw new GdxRuntimeException("Unsupported opening book version " + version);
+        }
+        int rulesVersion = buffer.get(5);
+        if (rulesVersion != Board.RULES_VERSION) {
+            throw new GdxRuntimeException("Opening book uses rules version " + rulesVersion
+                + ", expected " + Board.RULES_VERSION);
+        }
+        searchDepth = buffer.get(6);
+        size = buffer.getInt(8);
+        if (size < 0 || buffer.remaining() < HEADER_SIZE + 9L * size) {
+            throw new GdxRuntimeException("Truncated opening book");
+        }
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(HEADER_SIZE);
+        view.limit(HEADER_SIZE + 8 * size);
+        keys = view.slice().asLongBuffer();
+        view.limit(HEADER_SIZE + 9 * size);
+        view.position(HEADER_SIZE + 8 * size);
+        moves = view.slice();
+    }
+
+    /**
+     * Maps the book into memory where the platform allows it, and reads it otherwise, e.g. from the classpath;
+     * returns null if there is no such file
+     */
+    public static OpeningBook load(FileHandle file) {
+        if (!file.exists()) {
+            return null;
+        }
+        ByteBuffer buffer;
+        try {
+            buffer = file.map();
+        } catch (GdxRuntimeException e) {
+            buffer = ByteBuffer.wrap(file.readBytes());
+        }
+        return new OpeningBook(buffer);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Search depth the moves were solved at
+     */
+    public int getSearchDepth() {
+        return searchDepth;
+    }
+
+    /**
+     * Returns the book move for a packed board, or null if the position is not in the book
+     */
+    public Direction lookup(long board) {
+        int transform = BoardSymmetry.canonicalTransform(board);
+        int index = find(BoardSymmetry.apply(board, transform));
+        if (index < 0) {
+            return null;
+        }
+        return BoardSymmetry.fromCanonical(DIRECTIONS[moves.get(index)], transform);
+    }
+
+    /**
+     * Index of a canonical board, or -1
+     */
+    int find(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = keys.get(middle);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a book. {@code keys} must be canonical boards in ascending order without duplicates, and
+     * {@code moves} the best move on each of them.
+     */
+    public static void write(WritableByteChannel channel, long[] keys, Direction[] moves, int count, int searchDepth)
+        throws IOException {
+        for (int i = 1; i < count; i++) {
+            if (keys[i - 1] >= keys[i]) {
+                throw new IllegalArgumentException("Keys are not in ascending order at " + i);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 9 * count);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) Board.RULES_VERSION);
+        buffer.put((byte) searchDepth);
+        buffer.put((byte) 0);
+        buffer.putInt(count);
+        buffer.putInt(0);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(keys[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) moves[i].ordinal());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
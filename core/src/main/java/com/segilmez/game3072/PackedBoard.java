@@ -0,0 +1,138 @@
+package com.segilmez.game3072;
+
+/**
+ * A 4x4 board packed into a {@code long}: one 4-bit exponent per cell (0 for empty, {@code n} for {@code 2^n}),
+ * cell {@code (row, col)} in bits {@code 4 * (row * 4 + col)} and up. Tiles up to 32768 fit.
+ * <p>
+ * Packed boards are what archives, caches and search code store and compare; {@link Board} stays the
+ * representation the game is played on.
+ */
+public final class PackedBoard {
+    public static final int SIZE = 4;
+    public static final int CELLS = SIZE * SIZE;
+    public static final int MAX_EXPONENT = 15;
+
+    private PackedBoard() {
+    }
+
+    /**
+     * Packs a board of up to 4x4; throws if a tile does not fit in 4 bits. A smaller board takes the cells with
+     * the lowest rows and columns, and the others stay empty.
+     */
+    public static long pack(Board board) {
+        if (board.getSize() > SIZE) {
+            throw new IllegalArgumentException("Only boards up to " + SIZE + "x" + SIZE + " can be packed, not "
+                + board.getSize());
+        }
+        long packed = 0;
+        for (int row = 0; row < board.getSize(); row++) {
+            for (int col = 0; col < board.getSize(); col++) {
+                packed |= (long) exponent(board.getValue(row, col)) << shift(row, col);
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Whether every tile of a board fits in 4 bits, which packing and the save and replay formats need. Play
+     * can go on past 32768, so a board that does not fit is rare but possible.
+     */
+    public static boolean fits(Board board) {
+        for (int row = 0; row < board.getSize(); row++) {
+            for (int col = 0; col < board.getSize(); col++) {
+                if (board.getValue(row, col) > 1 << MAX_EXPONENT) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unpacks into cell values, row by row
+     */
+    public static void unpack(long packed, int[] cells) {
+        for (int i = 0; i < CELLS; i++) {
+            cells[i] = value((int) (packed >>> 4 * i) & 0xF);
+        }
+    }
+
+    public static int getExponent(long packed, int row, int col) {
+        return (int) (packed >>> shift(row, col)) & 0xF;
+    }
+
+    public static int getValue(long packed, int row, int col) {
+        return value(getExponent(packed, row, col));
+    }
+
+    public static int maxExponent(long packed) {
+        int max = 0;
+        for (int i = 0; i < CELLS; i++) {
+            max = Math.max(max, (int) (packed >>> 4 * i) & 0xF);
+        }
+        return max;
+    }
+
+    public static int countEmpty(long packed) {
+        int count = 0;
+        for (int i = 0; i < CELLS; i++) {
+            if ((packed >>> 4 * i & 0xF) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Swaps rows and columns: the cell at {@code (row, col)} moves to {@code (col, row)}
+     */
+    public static long transpose(long packed) {
+        long a1 = packed & 0xF0F00F0FF0F00F0FL;
+        long a2 = packed & 0x0000F0F00000F0F0L;
+        long a3 = packed & 0x0F0F00000F0F0000L;
+        long a = a1 | a2 << 12 | a3 >>> 12;
+        long b1 = a & 0xFF00FF0000FF00FFL;
+        long b2 = a & 0x00FF00FF00000000L;
+        long b3 = a & 0x00000000FF00FF00L;
+        return b1 | b2 >>> 24 | b3 << 24;
+    }
+
+    /**
+     * Mirrors the columns: the cell at {@code (row, col)} moves to {@code (row, 3 - col)}
+     */
+    public static long mirrorColumns(long packed) {
+        return (packed & 0x000F000F000F000FL) << 12
+            | (packed & 0x00F000F000F000F0L) << 4
+            | (packed & 0x0F000F000F000F00L) >>> 4
+            | (packed & 0xF000F000F000F000L) >>> 12;
+    }
+
+    /**
+     * Mirrors the rows: the cell at {@code (row, col)} moves to {@code (3 - row, col)}
+     */
+    public static long mirrorRows(long packed) {
+        return packed << 48
+            | (packed & 0xFFFF0000L) << 16
+            | (packed >>> 16) & 0xFFFF0000L
+            | packed >>> 48;
+    }
+
+    private static int shift(int row, int col) {
+        return 4 * (row * SIZE + col);
+    }
+
+    /**
+     * Exponent of a tile value, 0 for an empty cell
+     */
+    public static int exponent(int value) {
+        if (value == 0) {
+            return 0;
+        }
+        if (value > 1 << MAX_EXPONENT || Integer.bitCount(value) != 1) {
+            throw new IllegalArgumentException("Tile " + value + " does not fit in 4 bits");
+        }
+        return Integer.numberOfTrailingZeros(value);
+    }
+
+    public static int value(int exponent) {
+        return exponent == 0 ? 0 : 1 << exponent;
+    }
+}
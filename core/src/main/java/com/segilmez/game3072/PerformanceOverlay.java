@@ -0,0 +1,99 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+
+/**
+ * Draws p50, p99 and max of every {@link PerformanceStats} metric in a corner of the screen, in milliseconds,
+ * and the GL work of the last frame from {@link RenderStats}, which is profiled only while the overlay is shown.
+ * The text is rebuilt in place a few times per second, so showing it does not allocate either.
+ */
+public class PerformanceOverlay {
+    private static final float REFRESH_INTERVAL = 0.5f;
+    private static final PerformanceStats.Metric[] METRICS = PerformanceStats.Metric.values();
+
+    private final PerformanceStats stats;
+    private final RenderStats renderStats;
+    private final StringBuilder text = new StringBuilder(256);
+    private boolean visible = false;
+    private float sinceRefresh = REFRESH_INTERVAL;
+
+    public PerformanceOverlay(PerformanceStats stats, RenderStats renderStats) {
+        this.stats = stats;
+        this.renderStats = renderStats;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    public void toggle() {
+        visible = !visible;
+        sinceRefresh = REFRESH_INTERVAL;
+        renderStats.setEnabled(visible);
+    }
+
+    public void render(ShapeRenderer shapeRenderer, SpriteBatch batch, BitmapFont font, float delta,
+                       float screenHeight) {
+        if (!visible || font == null) return;
+
+        sinceRefresh += delta;
+        if (sinceRefresh >= REFRESH_INTERVAL) {
+            sinceRefresh = 0;
+            refreshText();
+        }
+
+        float lineHeight = font.getLineHeight();
+        float margin = lineHeight * 0.5f;
+        float height = lineHeight * (METRICS.length + 3) + margin * 2;
+        float width = lineHeight * 18;
+
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+        shapeRenderer.setColor(0, 0, 0, 0.6f);
+        shapeRenderer.rect(0, screenHeight - height, width, height);
+        shapeRenderer.end();
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+
+        batch.begin();
+        font.draw(batch, text, margin, screenHeight - margin);
+        batch.end();
+    }
+
+    private void refreshText() {
+        text.setLength(0);
+        text.append("ms         p50    p99    max");
+        for (PerformanceStats.Metric metric : METRICS) {
+            LatencyHistogram histogram = stats.get(metric);
+            text.append('\n').append(metric.getLabel());
+            for (int i = metric.getLabel().length(); i < 7; i++) {
+                text.append(' ');
+            }
+            appendMillis(histogram.percentileNanos(0.5));
+            appendMillis(histogram.percentileNanos(0.99));
+            appendMillis(histogram.getMaxNanos());
+        }
+        text.append("\n\ngl     ").append(renderStats.getDrawCalls()).append(" draws, ")
+            .append(renderStats.getTextureBindings()).append(" binds, ")
+            .append(renderStats.getShaderSwitches()).append(" shaders, ")
+            .append(renderStats.getVertices()).append(" vertices");
+    }
+
+    /**
+     * Appends a right-aligned duration with two decimals, without going through a float
+     */
+    private void appendMillis(long nanos) {
+        long hundredths = Math.min((nanos + 5000) / 10000, 99999);
+        long whole = hundredths / 100;
+        int fraction = (int) (hundredths % 100);
+        for (long digits = whole < 10 ? 1 : whole < 100 ? 2 : 3; digits < 4; digits++) {
+            text.append(' ');
+        }
+        text.append(whole).append('.');
+        if (fraction < 10) text.append('0');
+        text.append(fraction);
+    }
+}
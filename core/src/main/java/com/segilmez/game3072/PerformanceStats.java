@@ -0,0 +1,68 @@
+package com.segilmez.game3072;
+
+/**
+ * Timing histograms of the running game, one per {@link Metric}. Recorded on the render thread without
+ * allocating; shown by {@link PerformanceOverlay} and, on desktop, exported over JMX.
+ */
+public final class PerformanceStats {
+    public enum Metric {
+        /** All work of one {@code render()} call */
+        FRAME("frame"),
+        /** Game logic: moves, animations, score and saving */
+        UPDATE("update"),
+        /** Drawing the board and overlays */
+        RENDER("render"),
+        /** Applying one move to the board, in {@link Grid#move(Direction)} */
+        MOVE("move"),
+        /** From a key press or swipe to the end of the first frame that animates its move */
+        INPUT("input");
+
+        private final String label;
+
+        Metric(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[METRICS.length];
+    private volatile boolean resetRequested = false;
+
+    public PerformanceStats() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public LatencyHistogram get(Metric metric) {
+        return histograms[metric.ordinal()];
+    }
+
+    public void record(Metric metric, long nanos) {
+        histograms[metric.ordinal()].record(nanos);
+    }
+
+    /**
+     * Clears every histogram at the start of the next frame; safe to call from any thread
+     */
+    public void requestReset() {
+        resetRequested = true;
+    }
+
+    /**
+     * Called by the render thread before it records a frame
+     */
+    public void beginFrame() {
+        if (resetRequested) {
+            resetRequested = false;
+            for (LatencyHistogram histogram : histograms) {
+                histogram.reset();
+            }
+        }
+    }
+}
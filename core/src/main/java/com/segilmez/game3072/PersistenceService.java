@@ -0,0 +1,218 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Preferences;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Write-behind store for persistent game data.
+ * <p>
+ * The render thread only updates in-memory values. Changes are coalesced and written to {@link Preferences}
+ * on a background thread at most every {@link #FLUSH_INTERVAL_MILLIS}, and immediately when the game is
+ * paused or disposed, so disk I/O never lands in the middle of a frame. After construction the preferences
+ * are only touched from the writer thread.
+ * <p>
+ * The game in progress is stored separately as a {@link SaveGame} blob. It is written to a temporary file
+ * that is then renamed over the previous save, so a crash mid-write never leaves a truncated save behind.
+ * A write that fails is logged and tried again on the next flush.
+ * Finished replays are written the same way, one file each, and finished games are appended to a
+ * {@link GameArchive}.
+ */
+public class PersistenceService implements Disposable {
+    private static final String BEST_SCORE_KEY = "bestScore";
+    private static final long FLUSH_INTERVAL_MILLIS = 2000;
+    private static final long PAUSE_FLUSH_TIMEOUT_MILLIS = 500;
+
+    private final Preferences preferences;
+    private final ScheduledExecutorService writer;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final AtomicReference<byte[]> pendingSave = new AtomicReference<>();
+    private final FileHandle saveFile;
+    private final FileHandle replayDir;
+    private final FileHandle archiveFile;
+    private GameArchive archive; // Opened on the writer thread when the first game is archived
+    private volatile int bestScore;
+
+    public PersistenceService(Preferences preferences, FileHandle saveFile, FileHandle replayDir,
+                              FileHandle archiveFile) {
+        this.preferences = preferences;
+        this.saveFile = saveFile;
+        this.replayDir = replayDir;
+        this.archiveFile = archiveFile;
+        this.bestScore = preferences.getInteger(BEST_SCORE_KEY, 0);
+
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PersistenceService");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::writeIfDirty, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS);
+    }
+
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * Records a new best score in memory; lower scores are ignored
+     */
+    public void setBestScore(int score) {
+        if (score > bestScore) {
+            bestScore = score;
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Reads the saved game synchronously; returns null if there is none. The file is a few hundred bytes at
+     * most, so this is cheap enough to do while creating the first frame.
+     */
+    public byte[] loadGame() {
+        if (saveFile.exists()) return saveFile.readBytes();
+        // Left behind by a crash in the middle of replacing the save
+        FileHandle backup = backupOf(saveFile);
+        return backup.exists() ? backup.readBytes() : null;
+    }
+
+    /**
+     * Hands an encoded game to the writer thread; only the most recent one is written
+     */
+    public void saveGame(byte[] data) {
+        pendingSave.set(data);
+    }
+
+    /**
+     * Writes a finished replay into the replay folder on the writer thread
+     */
+    public void saveReplay(String name, byte[] data) {
+        writer.execute(() -> {
+            try {
+                writeAtomically(replayDir.child(name), data);
+            } catch (RuntimeException e) {
+                Gdx.app.error("PersistenceService", "Could not write the replay " + name, e);
+            }
+        });
+    }
+
+    /**
+     * Appends a finished game to the archive on the writer thread. The record must not be reused afterwards.
+     */
+    public void archiveGame(GameRecord record) {
+        writer.execute(() -> {
+            try {
+                if (archive == null) {
+                    archive = GameArchive.openForAppend(archiveFile.file());
+                }
+                archive.append(record);
+            } catch (IOException e) {
+                Gdx.app.error("PersistenceService", "Could not archive the game", e);
+            }
+        });
+    }
+
+    /**
+     * Writes pending changes on the background thread without waiting for them
+     */
+    public void flush() {
+        writer.execute(this::writeIfDirty);
+    }
+
+    /**
+     * Writes pending changes and waits briefly for them, for when the process may be killed next
+     */
+    public void flushAndWait() {
+        try {
+            writer.submit(this::writeIfDirty).get(PAUSE_FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            Gdx.app.error("PersistenceService", "Flush on pause did not complete", e);
+        }
+    }
+
+    /**
+     * Writes what changed since the last call. Never throws: an exception would cancel the periodic flush, so a
+     * failed write is logged and left pending for the next one.
+     */
+    private void writeIfDirty() {
+        if (dirty.getAndSet(false)) {
+            try {
+                preferences.putInteger(BEST_SCORE_KEY, bestScore);
+                preferences.flush();
+            } catch (RuntimeException e) {
+                dirty.set(true);
+                Gdx.app.error("PersistenceService", "Could not write the best score", e);
+            }
+        }
+
+        byte[] save = pendingSave.getAndSet(null);
+        if (save != null) {
+            try {
+                writeAtomically(saveFile, save);
+            } catch (RuntimeException e) {
+                // Unless a newer game was handed over in the meantime
+                pendingSave.compareAndSet(null, save);
+                Gdx.app.error("PersistenceService", "Could not write the saved game", e);
+            }
+        }
+    }
+
+    /**
+     * @throws GdxRuntimeException if the file could not be written or replaced; the previous one is then kept
+     */
+    private void writeAtomically(FileHandle file, byte[] data) {
+        FileHandle temp = file.sibling(file.name() + ".tmp");
+        temp.writeBytes(data, false);
+        File target = file.file();
+        if (temp.file().renameTo(target)) return;
+
+        // Rename does not replace an existing file on every platform. The old file is moved aside rather than
+        // deleted, and only removed once the new one is in place, so a crash in between still leaves a copy.
+        File backup = backupOf(file).file();
+        backup.delete();
+        if (target.exists() && !target.renameTo(backup)) {
+            throw new GdxRuntimeException("Could not move " + file.path() + " aside");
+        }
+        if (!temp.file().renameTo(target)) {
+            backup.renameTo(target);
+            throw new GdxRuntimeException("Could not replace " + file.path());
+        }
+        backup.delete();
+    }
+
+    private static FileHandle backupOf(FileHandle file) {
+        return file.sibling(file.name() + ".bak");
+    }
+
+    @Override
+    public void dispose() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(PAUSE_FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The writer thread is gone, so the final write can safely happen here
+        writeIfDirty();
+        if (archive != null) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                Gdx.app.error("PersistenceService", "Could not close the game archive", e);
+            }
+        }
+    }
+}
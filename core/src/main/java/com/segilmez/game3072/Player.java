@@ -0,0 +1,20 @@
+package com.segilmez.game3072;
+
+/**
+ * A move policy for the standard 4x4 game: picks a move for a {@link PackedBoard}. A player may keep state
+ * between moves, such as a search cache, so each thread plays with its own instance from a {@link Factory}.
+ * See {@link Players} for the built-in ones and {@link Tournament} to compare them.
+ */
+public interface Player {
+    /**
+     * Returns the move to play, or null if there is none; a move that does not change the board is not played
+     */
+    Direction move(long board);
+
+    /**
+     * Makes a fresh player, one per thread
+     */
+    interface Factory {
+        Player create();
+    }
+}
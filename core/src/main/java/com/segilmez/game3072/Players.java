@@ -0,0 +1,173 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+/**
+ * The built-in {@link Player}s, from a random mover to an expectimax search, and parsing of their names as
+ * the tournament runner takes them: {@code random}, {@code greedy}, {@code corner}, {@code expectimax[:depth]}
+ * and {@code montecarlo[:rollouts]}.
+ * <p>
+ * Players that use randomness seed it from the board they are asked about, so the same board always gets the
+ * same move and a game plays out the same no matter which thread plays it.
+ */
+public final class Players {
+    public static final int DEFAULT_ROLLOUTS = 100;
+    /** Moves after which a Monte Carlo rollout stops */
+    public static final int ROLLOUT_LENGTH = 200;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    // Preference of the corner player: pile tiles into the high-row, low-column corner
+    private static final Direction[] CORNER_ORDER = {Direction.UP, Direction.LEFT, Direction.RIGHT, Direction.DOWN};
+    private static final long SEED_MIX = 0x9E3779B97F4A7C15L;
+
+    private Players() {
+    }
+
+    /**
+     * The factory for a player name such as {@code expectimax:3}
+     */
+    public static Player.Factory parse(String name) {
+        int colon = name.indexOf(':');
+        String kind = colon < 0 ? name : name.substring(0, colon);
+        final int parameter;
+        try {
+            parameter = colon < 0 ? -1 : Integer.parseInt(name.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad player parameter in " + name);
+        }
+        if (colon >= 0 && parameter < 1) {
+            throw new IllegalArgumentException("Player parameter must be at least 1 in " + name);
+        }
+        switch (kind) {
+            case "random":
+                return () -> random();
+            case "greedy":
+                return () -> greedy();
+            case "corner":
+                return () -> corner();
+            case "expectimax":
+                return () -> expectimax(parameter < 0 ? Solver.DEFAULT_DEPTH : parameter);
+            case "montecarlo":
+                return () -> monteCarlo(parameter < 0 ? DEFAULT_ROLLOUTS : parameter);
+            default:
+                throw new IllegalArgumentException("Unknown player " + name
+                    + ", expected random, greedy, corner, expectimax[:depth] or montecarlo[:rollouts]");
+        }
+    }
+
+    /**
+     * Any possible move, picked at random
+     */
+    public static Player random() {
+        final MoveTables tables = MoveTables.standard();
+        final RandomXS128 random = new RandomXS128();
+        return board -> {
+            random.setSeed(board * SEED_MIX);
+            return randomMove(tables, board, random);
+        };
+    }
+
+    /**
+     * The move that scores the most right now, or if none scores, the one that leaves the most empty cells
+     */
+    public static Player greedy() {
+        final MoveTables tables = MoveTables.standard();
+        return board -> {
+            Direction best = null;
+            int bestValue = -1;
+            for (Direction direction : DIRECTIONS) {
+                long next = tables.move(board, direction);
+                if (next == board) continue;
+                int value = tables.score(board, direction) * PackedBoard.CELLS + PackedBoard.countEmpty(next);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = direction;
+                }
+            }
+            return best;
+        };
+    }
+
+    /**
+     * The classic corner strategy: the first possible move in a fixed order that keeps big tiles in one corner
+     */
+    public static Player corner() {
+        final MoveTables tables = MoveTables.standard();
+        return board -> {
+            for (Direction direction : CORNER_ORDER) {
+                if (tables.move(board, direction) != board) return direction;
+            }
+            return null;
+        };
+    }
+
+    /**
+     * A {@link Solver} search of the given depth
+     */
+    public static Player expectimax(int depth) {
+        final Solver solver = new Solver(depth, Solver.DEFAULT_CACHE_BITS);
+        return solver::bestMove;
+    }
+
+    /**
+     * Plays {@code rollouts} random games of up to {@value #ROLLOUT_LENGTH} moves after each possible move and
+     * picks the move whose games scored the most
+     */
+    public static Player monteCarlo(final int rollouts) {
+        final MoveTables tables = MoveTables.standard();
+        final RandomXS128 random = new RandomXS128();
+        return board -> {
+            random.setSeed(board * SEED_MIX);
+            Direction best = null;
+            long bestTotal = -1;
+            for (Direction direction : DIRECTIONS) {
+                long next = tables.move(board, direction);
+                if (next == board) continue;
+                long total = 0;
+                for (int i = 0; i < rollouts; i++) {
+                    total += tables.score(board, direction) + rollout(tables, spawn(next, random), random);
+                }
+                if (total > bestTotal) {
+                    bestTotal = total;
+                    best = direction;
+                }
+            }
+            return best;
+        };
+    }
+
+    private static int rollout(MoveTables tables, long board, RandomXS128 random) {
+        int score = 0;
+        for (int move = 0; move < ROLLOUT_LENGTH; move++) {
+            Direction direction = randomMove(tables, board, random);
+            if (direction == null) break;
+            score += tables.score(board, direction);
+            board = spawn(tables.move(board, direction), random);
+        }
+        return score;
+    }
+
+    private static Direction randomMove(MoveTables tables, long board, RandomXS128 random) {
+        int first = random.nextInt(DIRECTIONS.length);
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            Direction direction = DIRECTIONS[(first + i) % DIRECTIONS.length];
+            if (tables.move(board, direction) != board) return direction;
+        }
+        return null;
+    }
+
+    /**
+     * Spawns a tile as the standard rules do: a 2, or a 4 one time in ten, on a random empty cell
+     */
+    static long spawn(long board, RandomXS128 random) {
+        int empty = PackedBoard.countEmpty(board);
+        if (empty == 0) return board;
+        int target = random.nextInt(empty);
+        for (int shift = 0; shift < 64; shift += 4) {
+            if ((board >>> shift & 0xF) == 0 && target-- == 0) {
+                return board | (long) (random.nextFloat() < 0.9f ? 1 : 2) << shift;
+            }
+        }
+        return board;
+    }
+}
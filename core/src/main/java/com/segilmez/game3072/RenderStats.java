@@ -0,0 +1,83 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.Graphics;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+
+/**
+ * GL work of the last profiled frame, counted by libGDX's {@link GLProfiler}: draw calls, texture binds,
+ * shader switches and vertices. The profiler wraps every GL call while enabled, so it is off unless asked for.
+ */
+public final class RenderStats {
+    private final GLProfiler profiler;
+
+    private int calls;
+    private int drawCalls;
+    private int textureBindings;
+    private int shaderSwitches;
+    private int vertices;
+
+    public RenderStats(Graphics graphics) {
+        profiler = new GLProfiler(graphics);
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (enabled == profiler.isEnabled()) return;
+        if (enabled) {
+            profiler.enable();
+            profiler.reset();
+        } else {
+            profiler.disable();
+        }
+    }
+
+    public boolean isEnabled() {
+        return profiler.isEnabled();
+    }
+
+    /**
+     * Starts counting the GL calls of a frame
+     */
+    public void beginFrame() {
+        if (profiler.isEnabled()) {
+            profiler.reset();
+        }
+    }
+
+    /**
+     * Keeps the counts since {@link #beginFrame()}; GL calls after this are not part of the frame
+     */
+    public void endFrame() {
+        if (!profiler.isEnabled()) return;
+        calls = profiler.getCalls();
+        drawCalls = profiler.getDrawCalls();
+        textureBindings = profiler.getTextureBindings();
+        shaderSwitches = profiler.getShaderSwitches();
+        vertices = (int) profiler.getVertexCount().total;
+    }
+
+    /**
+     * All GL calls, including state changes
+     */
+    public int getCalls() {
+        return calls;
+    }
+
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public int getTextureBindings() {
+        return textureBindings;
+    }
+
+    public int getShaderSwitches() {
+        return shaderSwitches;
+    }
+
+    /**
+     * Vertices or indices submitted by all draw calls
+     */
+    public int getVertices() {
+        return vertices;
+    }
+}
@@ -0,0 +1,158 @@
+package com.segilmez.game3072;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Streams the moves of a replay written by {@link ReplayEncoder}, reading the channel in small chunks.
+ * Keyframes are skipped; use {@link ReplayPlayer} to seek.
+ */
+public class ReplayDecoder implements Closeable {
+    private static final int BUFFER_SIZE = 512;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean endOfChannel = false;
+
+    private final int rulesVersion;
+    private final int size;
+    private final long seed;
+    private final int keyframeInterval;
+
+    private long moveIndex = 0;
+    private int currentByte;
+    private int movesInCurrentByte = 0;
+    private boolean finished = false;
+
+    public ReplayDecoder(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.flip();
+
+        if (!ensure(ReplayEncoder.HEADER_SIZE)) {
+            throw new EOFException("Truncated replay header");
+        }
+        if (buffer.getInt() != ReplayEncoder.MAGIC) {
+            throw new IOException("Not a replay");
+        }
+        int version = buffer.get();
+        if (version != ReplayEncoder.VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        rulesVersion = buffer.get();
+        size = buffer.get();
+        seed = buffer.getLong();
+        keyframeInterval = buffer.getShort() & 0xFFFF;
+        if (keyframeInterval == 0 || keyframeInterval % 4 != 0) {
+            throw new IOException("Invalid keyframe interval " + keyframeInterval);
+        }
+    }
+
+    /**
+     * Version of the rules the game was played with; a replay only reproduces under the same rules
+     */
+    public int getRulesVersion() {
+        return rulesVersion;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * Creates the board the replayed game started from, with its initial tiles
+     */
+    public Board createBoard() {
+        if (rulesVersion != Board.RULES_VERSION) {
+            throw new IllegalStateException("Replay uses rules version " + rulesVersion
+                + ", this build plays version " + Board.RULES_VERSION);
+        }
+        Board board = new Board(size, seed);
+        board.addInitialTiles();
+        return board;
+    }
+
+    /**
+     * Returns the next move, or null after the last one
+     */
+    public Direction next() throws IOException {
+        if (movesInCurrentByte == 0 && !nextMoveByte()) {
+            return null;
+        }
+        movesInCurrentByte--;
+        moveIndex++;
+        int move = currentByte >>> 6 & 3;
+        currentByte <<= 2;
+        return Direction.of(move);
+    }
+
+    /**
+     * Loads the next byte of moves. The last move byte is only known to be the last one when the
+     * trailer follows it, so two bytes of look-ahead are needed.
+     */
+    private boolean nextMoveByte() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (!ensure(1)) {
+            throw new EOFException("Replay is missing its trailer");
+        }
+        if (!ensure(2)) {
+            // Only the trailer is left, which happens for a game without moves
+            finished = true;
+            if (buffer.get() != 0) {
+                throw new IOException("Corrupt replay trailer");
+            }
+            return false;
+        }
+
+        if (moveIndex % keyframeInterval == 0) {
+            int keyframeSize = ReplayEncoder.keyframeSize(size);
+            if (!ensure(keyframeSize + 2)) {
+                throw new EOFException("Truncated replay keyframe");
+            }
+            buffer.position(buffer.position() + keyframeSize);
+        }
+
+        currentByte = buffer.get() & 0xFF;
+        if (ensure(2)) {
+            movesInCurrentByte = 4;
+        } else {
+            finished = true;
+            movesInCurrentByte = buffer.get();
+            if (movesInCurrentByte < 1 || movesInCurrentByte > 4) {
+                throw new IOException("Corrupt replay trailer");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes at least {@code count} bytes available in the buffer, unless the channel ends first
+     */
+    private boolean ensure(int count) throws IOException {
+        while (buffer.remaining() < count && !endOfChannel) {
+            buffer.compact();
+            if (channel.read(buffer) < 0) {
+                endOfChannel = true;
+            }
+            buffer.flip();
+        }
+        return buffer.remaining() >= count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,211 @@
+package com.segilmez.game3072;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams a game to a channel in the compact replay format read by {@link ReplayDecoder}.
+ * <p>
+ * Only the seed and the moves are stored: every spawn comes from the board's seeded generator, so replaying
+ * the moves with {@link Board#play(Direction)} on a board with the same seed reproduces the game exactly.
+ * Each move takes 2 bits.
+ * <p>
+ * To seek without re-simulating from the first move, every {@code keyframeInterval} moves are preceded by a
+ * keyframe holding the board, score and random state before them. Keyframes sit at a fixed stride, so they
+ * need no separate index: {@link ReplayPlayer} computes the offset of the keyframe for any move. With the
+ * default interval a 10,000 move game on a 4x4 board takes about 3.1 KB. Layout:
+ * <pre>
+ * int   magic "RPLY"
+ * byte  format version
+ * byte  rules version, see {@link Board#RULES_VERSION}
+ * byte  board size
+ * long  seed
+ * short keyframe interval, a multiple of 4
+ * then per block of keyframe interval moves:
+ *   int   score, long random state 0, long random state 1, cells as in {@link SaveGame}
+ *   byte[] moves, four per byte, first move in the high bits
+ * byte  number of moves in the last move byte (1 to 4), or 0 for a game without moves
+ * </pre>
+ * The last {@link Board#UNDO_DEPTH} moves are held back until they can no longer be undone, so an undo simply
+ * drops a move instead of being stored. Everything older is written out in small chunks; the encoder never
+ * holds the whole game.
+ */
+public class ReplayEncoder implements Closeable {
+    public static final int MAGIC = 0x52504C59;
+    public static final int VERSION = 2;
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 512;
+    static final int HEADER_SIZE = 4 + 1 + 1 + 1 + 8 + 2;
+
+    private static final int BUFFER_SIZE = 512;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    // Follows the committed moves, to take the keyframes from
+    private final Board keyframeBoard;
+    private final int keyframeInterval;
+    private final int[] keyframeCells;
+
+    // Moves that can still be undone, oldest at pendingHead
+    private final int[] pending = new int[Board.UNDO_DEPTH];
+    private int pendingHead = 0;
+    private int pendingCount = 0;
+
+    private int currentByte = 0;
+    private int movesInCurrentByte = 0;
+    private long committedMoves = 0;
+    private boolean closed = false;
+
+    public ReplayEncoder(WritableByteChannel channel, long seed, int size) throws IOException {
+        this(channel, seed, size, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    public ReplayEncoder(WritableByteChannel channel, long seed, int size, int keyframeInterval) throws IOException {
+        if (keyframeInterval <= 0 || keyframeInterval % 4 != 0 || keyframeInterval > 0xFFFF) {
+            throw new IllegalArgumentException("Keyframe interval must be a multiple of 4 below 65536: "
+                + keyframeInterval);
+        }
+        this.channel = channel;
+        this.keyframeInterval = keyframeInterval;
+        keyframeBoard = new Board(size, seed);
+        keyframeBoard.addInitialTiles();
+        keyframeCells = new int[size * size];
+
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) Board.RULES_VERSION);
+        buffer.put((byte) size);
+        buffer.putLong(seed);
+        buffer.putShort((short) keyframeInterval);
+    }
+
+    /**
+     * Size in bytes of one keyframe
+     */
+    static int keyframeSize(int size) {
+        return 4 + 8 + 8 + SaveGame.cellBytes(size);
+    }
+
+    /**
+     * Records a move that changed the board
+     */
+    public void append(Direction direction) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Replay is closed");
+        }
+        if (pendingCount == pending.length) {
+            commit(pending[pendingHead]);
+            pendingHead = (pendingHead + 1) % pending.length;
+            pendingCount--;
+        }
+        pending[(pendingHead + pendingCount) % pending.length] = direction.ordinal();
+        pendingCount++;
+    }
+
+    /**
+     * Drops the last move; mirrors {@link Board#undo()}, which can take back as many moves as are held here
+     */
+    public boolean undo() {
+        if (pendingCount == 0) {
+            return false;
+        }
+        pendingCount--;
+        return true;
+    }
+
+    public long getMoveCount() {
+        return committedMoves + pendingCount;
+    }
+
+    private void commit(int move) throws IOException {
+        if (committedMoves % keyframeInterval == 0) {
+            writeKeyframe();
+        }
+        keyframeBoard.play(Direction.of(move));
+
+        currentByte = currentByte << 2 | move;
+        movesInCurrentByte++;
+        committedMoves++;
+        if (movesInCurrentByte == 4) {
+            put((byte) currentByte);
+            currentByte = 0;
+            movesInCurrentByte = 0;
+        }
+    }
+
+    /**
+     * Writes the state before the next move. Keyframes start on a byte boundary, as the interval is a multiple of 4.
+     *
+     * @throws IOException once the board has a tile above 32768, which a keyframe cannot hold
+     */
+    private void writeKeyframe() throws IOException {
+        if (!PackedBoard.fits(keyframeBoard)) {
+            throw new IOException("Tiles above " + (1 << PackedBoard.MAX_EXPONENT) + " cannot be recorded");
+        }
+        int size = keyframeBoard.getSize();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                keyframeCells[row * size + col] = keyframeBoard.getValue(row, col);
+            }
+        }
+        if (buffer.remaining() < keyframeSize(size)) {
+            drain();
+        }
+        buffer.putInt(keyframeBoard.getScore());
+        buffer.putLong(keyframeBoard.getRandomState(0));
+        buffer.putLong(keyframeBoard.getRandomState(1));
+        SaveGame.putCells(buffer, keyframeCells);
+    }
+
+    private void put(byte value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put(value);
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes everything that can no longer be undone to the channel
+     */
+    public void flush() throws IOException {
+        drain();
+    }
+
+    /**
+     * Writes the remaining moves and the trailer, then closes the channel
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        while (pendingCount > 0) {
+            commit(pending[pendingHead]);
+            pendingHead = (pendingHead + 1) % pending.length;
+            pendingCount--;
+        }
+
+        int movesInLastByte = movesInCurrentByte;
+        if (movesInCurrentByte > 0) {
+            put((byte) (currentByte << 2 * (4 - movesInCurrentByte)));
+        } else if (committedMoves > 0) {
+            movesInLastByte = 4;
+        }
+        put((byte) movesInLastByte);
+
+        drain();
+        channel.close();
+    }
+}
@@ -0,0 +1,151 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Random access to a replay written by {@link ReplayEncoder}, held in a buffer (e.g. the bytes of a replay
+ * file, or a mapped file for long games).
+ * <p>
+ * Seeking loads the keyframe at or before the target move and plays the remaining moves, so it never
+ * simulates more than one keyframe interval, however long the game is. Not thread-safe.
+ */
+public class ReplayPlayer {
+    private final ByteBuffer data;
+    private final int size;
+    private final long seed;
+    private final int keyframeInterval;
+    private final int keyframeSize;
+    private final int blockSize;
+    private final long moveCount;
+    private final int[] keyframeCells;
+
+    public ReplayPlayer(ByteBuffer data) {
+        this.data = data.slice();
+        if (this.data.limit() < ReplayEncoder.HEADER_SIZE + 1 || this.data.getInt(0) != ReplayEncoder.MAGIC) {
+            throw new GdxRuntimeException("Not a replay");
+        }
+        int version = this.data.get(4);
+        if (version != ReplayEncoder.VERSION) {
+            throw new GdxRuntimeException("Unsupported replay version " + version);
+        }
+        int rulesVersion = this.data.get(5);
+        if (rulesVersion != Board.RULES_VERSION) {
+            throw new GdxRuntimeException("Replay uses rules version " + rulesVersion
+                + ", this build plays version " + Board.RULES_VERSION);
+        }
+        size = this.data.get(6);
+        seed = this.data.getLong(7);
+        keyframeInterval = this.data.getShort(15) & 0xFFFF;
+        if (keyframeInterval == 0 || keyframeInterval % 4 != 0) {
+            throw new GdxRuntimeException("Invalid keyframe interval " + keyframeInterval);
+        }
+
+        keyframeSize = ReplayEncoder.keyframeSize(size);
+        blockSize = keyframeSize + keyframeInterval / 4;
+        moveCount = countMoves();
+        keyframeCells = new int[size * size];
+    }
+
+    /**
+     * Derives the number of moves from the length of the data and the trailer
+     */
+    private long countMoves() {
+        int trailerPosition = data.limit() - 1;
+        int movesInLastByte = data.get(trailerPosition);
+        long length = trailerPosition - ReplayEncoder.HEADER_SIZE;
+        if (movesInLastByte == 0 && length == 0) {
+            return 0;
+        }
+
+        long fullBlocks = length / blockSize;
+        long rest = length % blockSize;
+        long moveBytes = fullBlocks * (keyframeInterval / 4);
+        if (rest > 0) {
+            if (rest <= keyframeSize) {
+                throw new GdxRuntimeException("Truncated replay");
+            }
+            moveBytes += rest - keyframeSize;
+        }
+        if (movesInLastByte < 1 || movesInLastByte > 4 || moveBytes == 0) {
+            throw new GdxRuntimeException("Corrupt replay trailer");
+        }
+        return (moveBytes - 1) * 4 + movesInLastByte;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public long getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Creates a board at the start of the game
+     */
+    public Board createBoard() {
+        Board board = new Board(size, seed);
+        board.addInitialTiles();
+        return board;
+    }
+
+    public Direction getMove(long index) {
+        if (index < 0 || index >= moveCount) {
+            throw new IndexOutOfBoundsException("Move " + index + " of " + moveCount);
+        }
+        long block = index / keyframeInterval;
+        int inBlock = (int) (index % keyframeInterval);
+        int packed = data.get((int) (ReplayEncoder.HEADER_SIZE + block * blockSize + keyframeSize + inBlock / 4));
+        return Direction.of(packed >>> 2 * (3 - inBlock % 4) & 3);
+    }
+
+    /**
+     * Puts the board in the position after {@code move} moves. The board's listener is not notified;
+     * the caller redraws the board as a whole.
+     */
+    public void seek(Board board, long move) {
+        if (board.getSize() != size) {
+            throw new IllegalArgumentException("Board size " + board.getSize() + " does not match replay size " + size);
+        }
+        move = Math.max(0, Math.min(move, moveCount));
+
+        Board.MoveListener listener = board.getMoveListener();
+        board.setMoveListener(null);
+        try {
+            long start;
+            if (moveCount == 0) {
+                board.reset();
+                start = 0;
+            } else {
+                // The last keyframe precedes the last move, so seeking to the very end uses the one before
+                long block = Math.min(move, moveCount - 1) / keyframeInterval;
+                loadKeyframe(board, block);
+                start = block * keyframeInterval;
+            }
+            for (long i = start; i < move; i++) {
+                board.play(getMove(i));
+            }
+        } finally {
+            board.setMoveListener(listener);
+        }
+    }
+
+    private void loadKeyframe(Board board, long block) {
+        data.position((int) (ReplayEncoder.HEADER_SIZE + block * blockSize));
+        int score = data.getInt();
+        long random0 = data.getLong();
+        long random1 = data.getLong();
+        SaveGame.getCells(data, keyframeCells);
+        board.restore(keyframeCells, score, (int) (block * keyframeInterval), random0, random1);
+    }
+}
@@ -0,0 +1,87 @@
+package com.segilmez.game3072;
+
+/**
+ * Plays back a replay on its own {@link Grid}: stepping animates single moves like in a game, while seeking
+ * jumps straight to any move through the replay's keyframes.
+ */
+public class ReplayViewer {
+    /** Time between moves while playing */
+    private static final float STEP_INTERVAL = 0.25f;
+
+    private final ReplayPlayer player;
+    private final Board board;
+    private final Grid grid;
+    private long position = 0;
+    private boolean playing = false;
+    private float stepTimer = 0f;
+
+    public ReplayViewer(ReplayPlayer player, float gridSize, float x, float y) {
+        this.player = player;
+        board = player.createBoard();
+        grid = new Grid(board, gridSize, x, y);
+    }
+
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Number of moves played so far
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public long getMoveCount() {
+        return player.getMoveCount();
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public void togglePlaying() {
+        playing = !playing && position < player.getMoveCount();
+        stepTimer = STEP_INTERVAL;
+    }
+
+    /**
+     * Whether frames still change without input
+     */
+    public boolean isAnimating() {
+        return playing || grid.isAnimating();
+    }
+
+    public void seek(long move) {
+        player.seek(board, move);
+        position = Math.max(0, Math.min(move, player.getMoveCount()));
+        grid.refresh();
+    }
+
+    public void stepForward() {
+        if (position >= player.getMoveCount()) return;
+        grid.completeAnimations();
+        grid.move(player.getMove(position));
+        position++;
+    }
+
+    public void stepBack() {
+        if (position > 0) {
+            seek(position - 1);
+        }
+    }
+
+    public void update(float delta) {
+        grid.update(delta);
+        if (!playing) return;
+
+        stepTimer += delta;
+        if (stepTimer >= STEP_INTERVAL && !grid.isAnimating()) {
+            stepTimer = 0f;
+            stepForward();
+            if (position >= player.getMoveCount()) {
+                playing = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.segilmez.game3072;
+
+import java.util.Arrays;
+
+/**
+ * What a game is played by: board size, the tile that wins, which tiles spawn and how often, and which tiles
+ * merge. Immutable; {@link #STANDARD} is the game as shipped.
+ * <p>
+ * Rules can be written as a descriptor such as {@code size=4,target=3072,spawn=2:0.9/4:0.1,merge=doubling}
+ * and read back with {@link #parse(String)}. Games only reproduce from a seed under rules that spawn and
+ * merge the same way, see {@link #playsLike(Rules)}.
+ */
+public final class Rules {
+    public enum MergeRule {
+        /** Equal tiles merge into their sum, as in 2048 */
+        DOUBLING,
+        /** A 1 and a 2 merge into a 3, and equal tiles from 3 up merge into their sum, as in Threes */
+        THREES
+    }
+
+    public static final int DEFAULT_TARGET = 3072;
+
+    public static final Rules STANDARD = new Rules(4, DEFAULT_TARGET, new int[]{2, 4}, new float[]{0.9f, 0.1f},
+        MergeRule.DOUBLING);
+    public static final Rules THREES = new Rules(4, DEFAULT_TARGET, new int[]{1, 2, 3}, new float[]{1, 1, 1},
+        MergeRule.THREES);
+
+    /** Tiles on a packed board are 4-bit codes, 0 for an empty cell */
+    public static final int MAX_CODE = 15;
+
+    private final int size;
+    private final int targetTile;
+    private final int[] spawnValues;
+    private final float[] spawnWeights;
+    // Running totals of the normalized weights, the last one exactly 1
+    private final float[] spawnThresholds;
+    private final MergeRule mergeRule;
+
+    /**
+     * @param spawnWeights relative weights of the spawn values; they need not add up to 1
+     */
+    public Rules(int size, int targetTile, int[] spawnValues, float[] spawnWeights, MergeRule mergeRule) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Board size must be at least 2, not " + size);
+        }
+        if (spawnValues.length == 0 || spawnValues.length != spawnWeights.length) {
+            throw new IllegalArgumentException("Need one weight per spawn value");
+        }
+        this.size = size;
+        this.targetTile = targetTile;
+        this.mergeRule = mergeRule;
+        this.spawnValues = spawnValues.clone();
+        this.spawnWeights = spawnWeights.clone();
+
+        float total = 0;
+        for (int i = 0; i < spawnValues.length; i++) {
+            code(spawnValues[i]); // Throws for tiles the merge rule never makes
+            if (!(spawnWeights[i] > 0)) {
+                throw new IllegalArgumentException("Spawn weights must be positive, not " + spawnWeights[i]);
+            }
+            total += spawnWeights[i];
+        }
+        spawnThresholds = new float[spawnValues.length];
+        float sum = 0;
+        for (int i = 0; i < spawnValues.length; i++) {
+            sum += spawnWeights[i];
+            spawnThresholds[i] = sum / total;
+        }
+        spawnThresholds[spawnValues.length - 1] = 1;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * The game is won once a tile is at least this large
+     */
+    public int getTargetTile() {
+        return targetTile;
+    }
+
+    public MergeRule getMergeRule() {
+        return mergeRule;
+    }
+
+    public int getSpawnCount() {
+        return spawnValues.length;
+    }
+
+    public int getSpawnValue(int index) {
+        return spawnValues[index];
+    }
+
+    /**
+     * Chance that a spawn is {@link #getSpawnValue(int) spawn value} {@code index}
+     */
+    public float getSpawnProbability(int index) {
+        return spawnThresholds[index] - (index == 0 ? 0 : spawnThresholds[index - 1]);
+    }
+
+    public Rules withSize(int size) {
+        return size == this.size ? this : new Rules(size, targetTile, spawnValues, spawnWeights, mergeRule);
+    }
+
+    public Rules withTarget(int targetTile) {
+        return targetTile == this.targetTile ? this
+            : new Rules(size, targetTile, spawnValues, spawnWeights, mergeRule);
+    }
+
+    /**
+     * Whether games under both rules spawn and merge the same way, so a seed and moves replay identically;
+     * size and target may differ
+     */
+    public boolean playsLike(Rules other) {
+        return mergeRule == other.mergeRule && Arrays.equals(spawnValues, other.spawnValues)
+            && Arrays.equals(spawnThresholds, other.spawnThresholds);
+    }
+
+    /**
+     * The value to spawn for a uniform random number in [0, 1). Under the standard rules this is the same
+     * {@code random < 0.9f ? 2 : 4} that saved games and replays were recorded with.
+     */
+    public int spawnValue(float random) {
+        for (int i = 0; i < spawnThresholds.length - 1; i++) {
+            if (random < spawnThresholds[i]) {
+                return spawnValues[i];
+            }
+        }
+        return spawnValues[spawnValues.length - 1];
+    }
+
+    /**
+     * The tile a moving tile and the tile it runs into merge into, or 0 if they do not merge
+     */
+    public int merge(int moving, int other) {
+        switch (mergeRule) {
+            case DOUBLING:
+                return moving == other ? moving * 2 : 0;
+            case THREES:
+                if (moving == 1 && other == 2 || moving == 2 && other == 1) return 3;
+                return moving == other && moving >= 3 ? moving * 2 : 0;
+            default:
+                throw new IllegalStateException(String.valueOf(mergeRule));
+        }
+    }
+
+    /**
+     * The 4-bit code of a tile on a packed board: its exponent for doubling rules; 1, 2, 3 for the Threes
+     * tiles 1, 2, 3 and one more for every doubling after that
+     */
+    public int code(int value) {
+        int code = findCode(value);
+        if (code < 0) {
+            throw new IllegalArgumentException("Tile " + value + " has no code under " + mergeRule + " rules");
+        }
+        return code;
+    }
+
+    /**
+     * Like {@link #code(int)}, but -1 for a tile without a code, for callers that fall back rather than fail
+     */
+    int findCode(int value) {
+        if (value == 0) {
+            return 0;
+        }
+        int code = -1;
+        switch (mergeRule) {
+            // Shifts rather than division, since a 4x4 board looks up the code of every cell on each move
+            case DOUBLING:
+                if (value > 1 && (value & value - 1) == 0) code = Integer.numberOfTrailingZeros(value);
+                break;
+            case THREES:
+                if (value <= 3) {
+                    code = value;
+                } else if (value >>> Integer.numberOfTrailingZeros(value) == 3) {
+                    code = 3 + Integer.numberOfTrailingZeros(value);
+                }
+                break;
+        }
+        return code < 0 || code > MAX_CODE ? -1 : code;
+    }
+
+    public int value(int code) {
+        if (code == 0) {
+            return 0;
+        }
+        switch (mergeRule) {
+            case DOUBLING:
+                return 1 << code;
+            case THREES:
+                return code <= 3 ? code : 3 << code - 3;
+            default:
+                throw new IllegalStateException(String.valueOf(mergeRule));
+        }
+    }
+
+    /**
+     * Lookup tables for moving packed boards under these rules, built on first use and shared by all rules
+     * with the same merge rule
+     */
+    public MoveTables getMoveTables() {
+        return MoveTables.forRules(this);
+    }
+
+    /**
+     * Reads a descriptor as written by {@link #toString()}. Missing keys keep their {@link #STANDARD} values.
+     */
+    public static Rules parse(String descriptor) {
+        int size = STANDARD.size;
+        int target = STANDARD.targetTile;
+        int[] values = STANDARD.spawnValues;
+        float[] weights = STANDARD.spawnWeights;
+        MergeRule merge = STANDARD.mergeRule;
+
+        for (String entry : descriptor.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+            int equals = entry.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Expected key=value, not " + entry);
+            }
+            String key = entry.substring(0, equals).trim();
+            String value = entry.substring(equals + 1).trim();
+            switch (key) {
+                case "size":
+                    size = Integer.parseInt(value);
+                    break;
+                case "target":
+                    target = Integer.parseInt(value);
+                    break;
+                case "spawn":
+                    String[] spawns = value.split("/");
+                    values = new int[spawns.length];
+                    weights = new float[spawns.length];
+                    for (int i = 0; i < spawns.length; i++) {
+                        String[] parts = spawns[i].split(":");
+                        values[i] = Integer.parseInt(parts[0].trim());
+                        weights[i] = parts.length > 1 ? Float.parseFloat(parts[1].trim()) : 1;
+                    }
+                    break;
+                case "merge":
+                    merge = MergeRule.valueOf(value.toUpperCase());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown rule " + key);
+            }
+        }
+        return new Rules(size, target, values, weights, merge);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("size=").append(size).append(",target=").append(targetTile).append(",spawn=");
+        for (int i = 0; i < spawnValues.length; i++) {
+            if (i > 0) builder.append('/');
+            builder.append(spawnValues[i]).append(':').append(spawnWeights[i]);
+        }
+        builder.append(",merge=").append(mergeRule.name().toLowerCase());
+        return builder.toString();
+    }
+}
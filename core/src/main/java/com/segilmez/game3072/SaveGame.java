@@ -0,0 +1,169 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary encoding of a {@link Board} for save and resume.
+ * <p>
+ * Cells are stored as 4-bit exponents (0 for empty, {@code n} for {@code 2^n}), two per byte, so a 4x4 board
+ * is 8 bytes. The random generator state and the undo history are included, so a resumed game spawns exactly
+ * the tiles it would have spawned without the interruption. Layout, big-endian:
+ * <pre>
+ * int   magic "3072"
+ * byte  version
+ * byte  size
+ * long  seed
+ * int   score
+ * int   move count (since version 2; a version 1 save resumes at its undo depth)
+ * long  random state 0, random state 1
+ * byte[ceil(size * size / 2)] cells
+ * byte  undo count, then per entry, oldest first: int score, long random state 0 and 1, cells
+ * </pre>
+ */
+public final class SaveGame {
+    public static final int MAGIC = 0x33303732;
+    public static final int VERSION = 2;
+
+    private SaveGame() {
+    }
+
+    /**
+     * Whether {@link #write(Board)} can save a board: under the standard rules, with no tile above 32768
+     */
+    public static boolean canWrite(Board board) {
+        return board.getRules().playsLike(Rules.STANDARD) && PackedBoard.fits(board);
+    }
+
+    /**
+     * @throws IllegalArgumentException for a board that does not play by the standard rules, which a save
+     *                                  cannot restore, or with a tile above 32768, which a cell cannot hold
+     */
+    public static byte[] write(Board board) {
+        if (!board.getRules().playsLike(Rules.STANDARD)) {
+            throw new IllegalArgumentException("Only games under the standard rules can be saved");
+        }
+        // Tiles of earlier positions are never larger, so the undo history fits too
+        if (!PackedBoard.fits(board)) {
+            throw new IllegalArgumentException("Tiles above " + (1 << PackedBoard.MAX_EXPONENT) + " cannot be saved");
+        }
+        int size = board.getSize();
+        int cellBytes = cellBytes(size);
+        int undoCount = board.getUndoCount();
+        int length = 4 + 1 + 1 + 8 + 4 + 4 + 16 + cellBytes + 1 + undoCount * (4 + 16 + cellBytes);
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) size);
+        buffer.putLong(board.getSeed());
+        buffer.putInt(board.getScore());
+        buffer.putInt(board.getMoveCount());
+        buffer.putLong(board.getRandomState(0));
+        buffer.putLong(board.getRandomState(1));
+
+        int[] cells = new int[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                cells[row * size + col] = board.getValue(row, col);
+            }
+        }
+        putCells(buffer, cells);
+
+        buffer.put((byte) undoCount);
+        for (int i = 0; i < undoCount; i++) {
+            buffer.putInt(board.getUndoScore(i));
+            buffer.putLong(board.getUndoRandomState(i, 0));
+            buffer.putLong(board.getUndoRandomState(i, 1));
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    cells[row * size + col] = board.getUndoValue(i, row, col);
+                }
+            }
+            putCells(buffer, cells);
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Restores a board; throws a {@link GdxRuntimeException} if the data is not a save this version understands
+     */
+    public static Board read(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new GdxRuntimeException("Not a save game");
+            }
+            int version = buffer.get();
+            if (version < 1 || version > VERSION) {
+                throw new GdxRuntimeException("Unsupported save game version " + version);
+            }
+            int size = buffer.get();
+            if (size < 2) {
+                throw new GdxRuntimeException("Invalid board size " + size);
+            }
+
+            Board board = new Board(size, buffer.getLong());
+            board.setScore(buffer.getInt());
+            if (version >= 2) {
+                board.setMoveCount(buffer.getInt());
+            }
+            long random0 = buffer.getLong();
+            long random1 = buffer.getLong();
+            board.setRandomState(random0, random1);
+
+            int[] cells = new int[size * size];
+            getCells(buffer, cells);
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    board.setValue(row, col, cells[row * size + col]);
+                }
+            }
+
+            int undoCount = Math.min(buffer.get(), Board.UNDO_DEPTH);
+            for (int i = 0; i < undoCount; i++) {
+                int score = buffer.getInt();
+                long undoRandom0 = buffer.getLong();
+                long undoRandom1 = buffer.getLong();
+                getCells(buffer, cells);
+                board.pushUndo(cells, score, undoRandom0, undoRandom1);
+            }
+            if (version < 2) {
+                // Each undo entry is a move that was played, so undoing them all still counts from zero
+                board.setMoveCount(undoCount);
+            }
+
+            return board;
+        } catch (BufferUnderflowException e) {
+            throw new GdxRuntimeException("Truncated save game", e);
+        }
+    }
+
+    static int cellBytes(int size) {
+        return (size * size + 1) / 2;
+    }
+
+    /**
+     * Writes cell values as packed 4-bit exponents; shared with the replay keyframes
+     */
+    static void putCells(ByteBuffer buffer, int[] cells) {
+        for (int i = 0; i < cells.length; i += 2) {
+            int high = PackedBoard.exponent(cells[i]);
+            int low = i + 1 < cells.length ? PackedBoard.exponent(cells[i + 1]) : 0;
+            buffer.put((byte) (high << 4 | low));
+        }
+    }
+
+    static void getCells(ByteBuffer buffer, int[] cells) {
+        for (int i = 0; i < cells.length; i += 2) {
+            int packed = buffer.get() & 0xFF;
+            cells[i] = PackedBoard.value(packed >>> 4);
+            if (i + 1 < cells.length) {
+                cells[i + 1] = PackedBoard.value(packed & 0xF);
+            }
+        }
+    }
+}
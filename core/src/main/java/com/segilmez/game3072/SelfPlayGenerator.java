@@ -0,0 +1,116 @@
+package com.segilmez.game3072;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams self-play training samples into a {@link TrainingDataWriter}, on all cores: every thread plays whole
+ * games of the standard rules with its own {@link Solver}, keeps each position with the values the search gave
+ * every move, and once the game is over adds them with its final score to a chunk of its own. Threads only meet
+ * when a full chunk is handed to the writer.
+ * <p>
+ * Game {@code i} is seeded with {@code seed + i}, and the solver always plays its best move, so a run is
+ * reproducible apart from the order of the chunks in the file.
+ */
+public final class SelfPlayGenerator {
+    public static final int DEFAULT_CHUNK_ROWS = 1 << 16;
+
+    private static final int CACHE_BITS = 18;
+
+    private final TrainingDataWriter writer;
+    private final int depth;
+    private final long seed;
+    private final int threads;
+    private final int chunkRows;
+
+    public SelfPlayGenerator(TrainingDataWriter writer, int depth, long seed, int threads, int chunkRows) {
+        this.writer = writer;
+        this.depth = depth;
+        this.seed = seed;
+        this.threads = threads;
+        this.chunkRows = chunkRows;
+    }
+
+    /**
+     * Plays games {@code 0} to {@code games - 1}; returns the number of samples written
+     */
+    public long run(final long games) throws InterruptedException, ExecutionException {
+        final AtomicLong next = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long samples = 0;
+        try {
+            List<Future<Long>> workers = new ArrayList<>();
+            for (int worker = 0; worker < threads; worker++) {
+                workers.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        Worker state = new Worker();
+                        for (long game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+                            state.play(game);
+                        }
+                        writer.write(state.chunk);
+                        return state.samples;
+                    }
+                }));
+            }
+            for (Future<Long> worker : workers) {
+                samples += worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return samples;
+    }
+
+    /**
+     * Per-thread solver, chunk and the positions of the game in progress
+     */
+    private final class Worker {
+        final Solver solver = new Solver(depth, CACHE_BITS);
+        final TrainingDataWriter.Chunk chunk = writer.newChunk(chunkRows);
+        long[] boards = new long[4096];
+        Direction[] moves = new Direction[4096];
+        float[] values = new float[4096 * TrainingDataWriter.MOVES];
+        long samples;
+
+        void play(long game) throws IOException {
+            Board board = new Board(Rules.STANDARD, seed + game);
+            board.addInitialTiles();
+            int count = 0;
+            // Packed boards hold tiles up to 32768; a game that gets further ends there
+            while (board.getMaxTile() <= 1 << PackedBoard.MAX_EXPONENT) {
+                if (count == boards.length) {
+                    boards = Arrays.copyOf(boards, count * 2);
+                    moves = Arrays.copyOf(moves, count * 2);
+                    values = Arrays.copyOf(values, count * 2 * TrainingDataWriter.MOVES);
+                }
+                long packed = PackedBoard.pack(board);
+                Direction move = solver.moveValues(packed, values, count * TrainingDataWriter.MOVES);
+                if (move == null) break;
+                boards[count] = packed;
+                moves[count] = move;
+                count++;
+                board.play(move);
+            }
+
+            int score = board.getScore();
+            // The last move may have made a 65536, which has no packed exponent but still fits the byte column
+            int maxExponent = Integer.numberOfTrailingZeros(board.getMaxTile());
+            for (int i = 0; i < count; i++) {
+                chunk.add(boards[i], moves[i], values, i * TrainingDataWriter.MOVES, score, maxExponent);
+                if (chunk.isFull()) {
+                    writer.write(chunk);
+                }
+            }
+            samples += count;
+        }
+    }
+}
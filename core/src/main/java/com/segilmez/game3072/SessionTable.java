@@ -0,0 +1,231 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+/**
+ * Any number of standard 4x4 games up to a fixed capacity, held as {@link PackedBoard}s and primitives in arrays
+ * allocated once, for {@link GameServer}. Creating, playing and closing games allocates nothing.
+ * <p>
+ * A game plays exactly like a {@link Board} with the same seed: the same spawns from the same random state, and
+ * the last {@link Board#UNDO_DEPTH} moves can be undone. That holds up to the first 32768: a packed board has no
+ * code for the 65536 two of them merge into, where a {@link Board} plays on, so a game that holds a 32768 is
+ * {@link #isAtTileLimit(int) at the tile limit} and takes no more moves. Game ids carry a generation next to the
+ * slot, so an id kept after its game was closed does not reach the game that took the slot next.
+ * <p>
+ * Not thread safe; the server touches it from its one thread only.
+ */
+public final class SessionTable {
+    public static final int NO_SESSION = -1;
+    static final int SLOT_BITS = 20;
+    public static final int MAX_CAPACITY = 1 << SLOT_BITS;
+
+    private static final int SLOT_MASK = MAX_CAPACITY - 1;
+    // Ids stay positive
+    private static final int GENERATION_MASK = (1 << 31 - SLOT_BITS) - 1;
+    private static final int DEPTH = Board.UNDO_DEPTH;
+
+    private final int capacity;
+    private final MoveTables tables = MoveTables.standard();
+    // Loaded with a game's state for each spawn
+    private final RandomXS128 random = new RandomXS128();
+
+    private final long[] boards;
+    private final int[] scores;
+    private final int[] moveCounts;
+    private final long[] random0;
+    private final long[] random1;
+    // Generation of the game in each slot; while free, -1 minus the generation its next game gets
+    private final int[] generations;
+
+    // Rings of DEPTH earlier states per slot, as in Board
+    private final long[] undoBoards;
+    private final int[] undoScores;
+    private final long[] undoRandom0;
+    private final long[] undoRandom1;
+    private final byte[] undoHeads;
+    private final byte[] undoCounts;
+
+    private final int[] freeSlots;
+    private int freeCount;
+
+    public SessionTable(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be from 1 to " + MAX_CAPACITY + ", not " + capacity);
+        }
+        this.capacity = capacity;
+        boards = new long[capacity];
+        scores = new int[capacity];
+        moveCounts = new int[capacity];
+        random0 = new long[capacity];
+        random1 = new long[capacity];
+        generations = new int[capacity];
+        undoBoards = new long[capacity * DEPTH];
+        undoScores = new int[capacity * DEPTH];
+        undoRandom0 = new long[capacity * DEPTH];
+        undoRandom1 = new long[capacity * DEPTH];
+        undoHeads = new byte[capacity];
+        undoCounts = new byte[capacity];
+        freeSlots = new int[capacity];
+        // Lowest slots first, so a lightly used table stays in a few cache lines
+        for (int i = 0; i < capacity; i++) {
+            generations[i] = -1;
+            freeSlots[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Number of open games
+     */
+    public int size() {
+        return capacity - freeCount;
+    }
+
+    /**
+     * Starts a game with two tiles, as {@link Board#addInitialTiles()} does on {@code new Board(4, seed)}
+     *
+     * @return the new game's id, or {@link #NO_SESSION} if the table is full
+     */
+    public int create(long seed) {
+        if (freeCount == 0) return NO_SESSION;
+        int slot = freeSlots[--freeCount];
+        int generation = generations[slot] = (-generations[slot] - 1) & GENERATION_MASK;
+        random.setSeed(seed);
+        boards[slot] = Players.spawn(Players.spawn(0, random), random);
+        random0[slot] = random.getState(0);
+        random1[slot] = random.getState(1);
+        scores[slot] = 0;
+        moveCounts[slot] = 0;
+        undoHeads[slot] = 0;
+        undoCounts[slot] = 0;
+        return generation << SLOT_BITS | slot;
+    }
+
+    /**
+     * Whether an id names an open game
+     */
+    public boolean isOpen(int id) {
+        if (id < 0) return false;
+        int slot = id & SLOT_MASK;
+        return slot < capacity && generations[slot] == id >>> SLOT_BITS;
+    }
+
+    /**
+     * Closes a game and frees its slot
+     *
+     * @return false if the id names no open game
+     */
+    public boolean close(int id) {
+        if (!isOpen(id)) return false;
+        int slot = id & SLOT_MASK;
+        // Stored negative while free, so the next game in the slot gets the next generation
+        generations[slot] = -generations[slot] - 2;
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    /**
+     * Moves and, if anything moved, spawns the next tile, like {@link Board#play(Direction)}
+     *
+     * @return false if nothing moved, or the game is at the tile limit
+     */
+    public boolean move(int id, Direction direction) {
+        int slot = slot(id);
+        long board = boards[slot];
+        if (PackedBoard.maxExponent(board) == PackedBoard.MAX_EXPONENT) return false;
+        long moved = tables.move(board, direction);
+        if (moved == board) return false;
+
+        int ring = undoSlot(slot);
+        undoBoards[ring] = board;
+        undoScores[ring] = scores[slot];
+        undoRandom0[ring] = random0[slot];
+        undoRandom1[ring] = random1[slot];
+
+        random.setState(random0[slot], random1[slot]);
+        boards[slot] = Players.spawn(moved, random);
+        random0[slot] = random.getState(0);
+        random1[slot] = random.getState(1);
+        scores[slot] += tables.score(board, direction);
+        moveCounts[slot]++;
+        return true;
+    }
+
+    /**
+     * Takes back the last move, spawn included
+     *
+     * @return false if there is no move left to undo
+     */
+    public boolean undo(int id) {
+        int slot = slot(id);
+        if (undoCounts[slot] == 0) return false;
+        int ring = slot * DEPTH + (undoHeads[slot] + --undoCounts[slot]) % DEPTH;
+        boards[slot] = undoBoards[ring];
+        scores[slot] = undoScores[ring];
+        random0[slot] = undoRandom0[ring];
+        random1[slot] = undoRandom1[ring];
+        moveCounts[slot]--;
+        return true;
+    }
+
+    public long getBoard(int id) {
+        return boards[slot(id)];
+    }
+
+    public int getScore(int id) {
+        return scores[slot(id)];
+    }
+
+    public int getMoveCount(int id) {
+        return moveCounts[slot(id)];
+    }
+
+    /**
+     * Whether no move changes the board any more, or the game is at the tile limit
+     */
+    public boolean isGameOver(int id) {
+        long board = boards[slot(id)];
+        return PackedBoard.maxExponent(board) == PackedBoard.MAX_EXPONENT || !tables.canMove(board);
+    }
+
+    /**
+     * Whether a game holds a 32768, after which it no longer plays like a {@link Board} and takes no moves
+     */
+    public boolean isAtTileLimit(int id) {
+        return PackedBoard.maxExponent(boards[slot(id)]) == PackedBoard.MAX_EXPONENT;
+    }
+
+    /**
+     * Replaces a game's board, keeping the rest of its state; for tests that need a position play does not
+     * reach quickly
+     */
+    void setBoard(int id, long board) {
+        boards[slot(id)] = board;
+    }
+
+    private int slot(int id) {
+        if (!isOpen(id)) {
+            throw new IllegalArgumentException("No open game " + id);
+        }
+        return id & SLOT_MASK;
+    }
+
+    /**
+     * The ring entry for the state before a new move, dropping the oldest once the ring is full
+     */
+    private int undoSlot(int slot) {
+        int head = undoHeads[slot];
+        int count = undoCounts[slot];
+        int index = slot * DEPTH + (head + count) % DEPTH;
+        if (count == DEPTH) {
+            undoHeads[slot] = (byte) ((head + 1) % DEPTH);
+        } else {
+            undoCounts[slot] = (byte) (count + 1);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,246 @@
+package com.segilmez.game3072;
+
+import java.util.Arrays;
+
+/**
+ * Expectimax search over 4x4 {@link PackedBoard}s: the player picks the move with the highest expected
+ * value, and every empty cell spawns a 2 (90%) or a 4 (10%) with equal chance. Leaves are scored with a
+ * heuristic that rewards empty cells, possible merges and monotonic rows and columns.
+ * <p>
+ * Chance nodes are cached in a transposition table that is cleared before each search. With canonical keys
+ * a board and its 7 mirror images share one entry; the heuristic and the spawns are symmetric, so the
+ * cached value is exact for all of them. Not thread-safe; use one solver per thread.
+ */
+public final class Solver {
+    public static final int DEFAULT_DEPTH = 3;
+    public static final int DEFAULT_CACHE_BITS = 18;
+
+    /** Branches less likely than this are not searched further */
+    private static final float PROBABILITY_CUTOFF = 0.0001f;
+    /** Linear probes before a cache entry is overwritten */
+    private static final int MAX_PROBES = 8;
+
+    private static final float LOST_PENALTY = 200000f;
+    private static final float EMPTY_WEIGHT = 270f;
+    private static final float MERGES_WEIGHT = 700f;
+    private static final float MONOTONICITY_POWER = 4f;
+    private static final float MONOTONICITY_WEIGHT = 47f;
+    private static final float SUM_POWER = 3.5f;
+    private static final float SUM_WEIGHT = 11f;
+
+    private static float[] rowHeuristic;
+
+    private final MoveTables tables;
+    private final float[] heuristic;
+    private final int depth;
+    private final int cacheShift;
+    private final long[] cacheKeys;
+    private final float[] cacheValues;
+    private final byte[] cacheDepths;
+    private boolean canonicalKeys = true;
+    private long lookups;
+    private long hits;
+
+    public Solver() {
+        this(DEFAULT_DEPTH, DEFAULT_CACHE_BITS);
+    }
+
+    /**
+     * @param depth     moves searched ahead, at least 1
+     * @param cacheBits the transposition table holds {@code 2^cacheBits} entries
+     */
+    public Solver(int depth, int cacheBits) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Depth must be at least 1, not " + depth);
+        }
+        this.tables = MoveTables.standard();
+        this.heuristic = rowHeuristic();
+        this.depth = depth;
+        this.cacheShift = 64 - cacheBits;
+        this.cacheKeys = new long[1 << cacheBits];
+        this.cacheValues = new float[1 << cacheBits];
+        this.cacheDepths = new byte[1 << cacheBits];
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Whether the transposition table is keyed by {@link BoardSymmetry#canonical(long)} (the default) or by
+     * the board as it is
+     */
+    public void setCanonicalKeys(boolean canonicalKeys) {
+        this.canonicalKeys = canonicalKeys;
+    }
+
+    /**
+     * Transposition table lookups since the last {@link #resetStats()}
+     */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Lookups that found an entry searched at least as deep
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    public void resetStats() {
+        lookups = 0;
+        hits = 0;
+    }
+
+    /**
+     * Returns the best move, or null if no move is possible
+     */
+    public Direction bestMove(long board) {
+        return search(board, null, 0);
+    }
+
+    /**
+     * Returns the best move like {@link #bestMove(long)} and stores the searched value of every move in
+     * {@code values} from {@code offset}, by {@link Direction#ordinal()}, with NaN for the moves that are not
+     * possible
+     */
+    public Direction moveValues(long board, float[] values, int offset) {
+        return search(board, values, offset);
+    }
+
+    private Direction search(long board, float[] values, int offset) {
+        // Boards reached by a move always have a tile, so key 0 marks an empty slot
+        Arrays.fill(cacheKeys, 0);
+        Direction best = null;
+        float bestValue = -1;
+        for (Direction direction : Direction.values()) {
+            long next = tables.move(board, direction);
+            if (next == board) {
+                if (values != null) values[offset + direction.ordinal()] = Float.NaN;
+                continue;
+            }
+            float value = searchSpawn(next, depth - 1, 1f);
+            if (values != null) values[offset + direction.ordinal()] = value;
+            if (value > bestValue) {
+                bestValue = value;
+                best = direction;
+            }
+        }
+        return best;
+    }
+
+    private float searchMove(long board, int depth, float probability) {
+        float best = 0;
+        for (Direction direction : Direction.values()) {
+            long next = tables.move(board, direction);
+            if (next != board) {
+                best = Math.max(best, searchSpawn(next, depth - 1, probability));
+            }
+        }
+        return best;
+    }
+
+    private float searchSpawn(long board, int depth, float probability) {
+        if (depth <= 0 || probability < PROBABILITY_CUTOFF) {
+            return evaluate(board);
+        }
+
+        long key = canonicalKeys ? BoardSymmetry.canonical(board) : board;
+        lookups++;
+        int slot = (int) (key * 0x9E3779B97F4A7C15L >>> cacheShift);
+        int mask = cacheKeys.length - 1;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long stored = cacheKeys[slot];
+            if (stored == key && cacheDepths[slot] >= depth) {
+                hits++;
+                return cacheValues[slot];
+            }
+            if (stored == 0 || stored == key || probe == MAX_PROBES - 1) break;
+            slot = slot + 1 & mask;
+        }
+
+        int empty = PackedBoard.countEmpty(board);
+        float cellProbability = probability / empty;
+        float sum = 0;
+        for (int i = 0; i < PackedBoard.CELLS; i++) {
+            if ((board >>> 4 * i & 0xF) != 0) continue;
+            sum += 0.9f * searchMove(board | 1L << 4 * i, depth, cellProbability * 0.9f);
+            sum += 0.1f * searchMove(board | 2L << 4 * i, depth, cellProbability * 0.1f);
+        }
+        float value = sum / empty;
+
+        cacheKeys[slot] = key;
+        cacheValues[slot] = value;
+        cacheDepths[slot] = (byte) depth;
+        return value;
+    }
+
+    /**
+     * Heuristic value of a board: the sum of the row heuristic over its rows and columns
+     */
+    public float evaluate(long board) {
+        long transposed = PackedBoard.transpose(board);
+        return heuristic[(int) board & 0xFFFF]
+            + heuristic[(int) (board >>> 16) & 0xFFFF]
+            + heuristic[(int) (board >>> 32) & 0xFFFF]
+            + heuristic[(int) (board >>> 48) & 0xFFFF]
+            + heuristic[(int) transposed & 0xFFFF]
+            + heuristic[(int) (transposed >>> 16) & 0xFFFF]
+            + heuristic[(int) (transposed >>> 32) & 0xFFFF]
+            + heuristic[(int) (transposed >>> 48) & 0xFFFF];
+    }
+
+    private static synchronized float[] rowHeuristic() {
+        if (rowHeuristic == null) {
+            float[] table = new float[1 << 16];
+            for (int row = 0; row < table.length; row++) {
+                table[row] = rowHeuristic(row);
+            }
+            rowHeuristic = table;
+        }
+        return rowHeuristic;
+    }
+
+    private static float rowHeuristic(int row) {
+        float sum = 0;
+        int empty = 0;
+        int merges = 0;
+        int previous = 0;
+        int run = 0;
+        for (int i = 0; i < PackedBoard.SIZE; i++) {
+            int exponent = row >>> 4 * i & 0xF;
+            sum += (float) Math.pow(exponent, SUM_POWER);
+            if (exponent == 0) {
+                empty++;
+            } else {
+                if (exponent == previous) {
+                    run++;
+                } else if (run > 0) {
+                    merges += 1 + run;
+                    run = 0;
+                }
+                previous = exponent;
+            }
+        }
+        if (run > 0) {
+            merges += 1 + run;
+        }
+
+        // Penalize whichever direction the row is less sorted in
+        float increasing = 0;
+        float decreasing = 0;
+        for (int i = 1; i < PackedBoard.SIZE; i++) {
+            float before = (float) Math.pow(row >>> 4 * (i - 1) & 0xF, MONOTONICITY_POWER);
+            float after = (float) Math.pow(row >>> 4 * i & 0xF, MONOTONICITY_POWER);
+            if (before > after) {
+                decreasing += before - after;
+            } else {
+                increasing += after - before;
+            }
+        }
+
+        return LOST_PENALTY + EMPTY_WEIGHT * empty + MERGES_WEIGHT * merges
+            - MONOTONICITY_WEIGHT * Math.min(increasing, decreasing) - SUM_WEIGHT * sum;
+    }
+}
@@ -0,0 +1,216 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Standard 4x4 games played by a {@link Player} on background threads, for the spectator mode. Each game is a
+ * {@link PackedBoard} that its thread publishes after every move, so the render thread reads any board at any
+ * time without locks. When a game ends, its last board stays up for a moment and a new game starts in its place.
+ * <p>
+ * Boards are dealt out to the threads round robin, and each thread plays its boards with one player from the
+ * factory, so a search player keeps one cache per thread rather than one per board. Moves are paced so a game
+ * can be followed on screen.
+ */
+public final class SpectatorGames {
+    public static final long DEFAULT_MOVE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long GAME_OVER_PAUSE_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int count;
+    private final Player.Factory factory;
+    private final long seed;
+    private final int threads;
+    private final long moveIntervalNanos;
+    private final MoveTables tables = MoveTables.standard();
+
+    private final AtomicLongArray boards;
+    private final AtomicIntegerArray scores;
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicInteger bestScore = new AtomicInteger();
+    private volatile boolean running = false;
+    private ExecutorService executor;
+
+    /**
+     * @param count             number of boards
+     * @param threads           number of background threads playing them
+     * @param moveIntervalNanos time between two moves on a board, or 0 to play as fast as the player can
+     */
+    public SpectatorGames(int count, Player.Factory factory, long seed, int threads, long moveIntervalNanos) {
+        if (count < 1) {
+            throw new IllegalArgumentException("At least one board is needed, not " + count);
+        }
+        this.count = count;
+        this.factory = factory;
+        this.seed = seed;
+        this.threads = Math.max(1, Math.min(threads, count));
+        this.moveIntervalNanos = moveIntervalNanos;
+        boards = new AtomicLongArray(count);
+        scores = new AtomicIntegerArray(count);
+    }
+
+    /**
+     * Starts a game on every board and the threads that play them
+     */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "spectator");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        for (int worker = 0; worker < threads; worker++) {
+            final int first = worker;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    new Worker(first).run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops the threads; the boards keep their last positions
+     */
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The latest position of a board
+     */
+    public long getBoard(int index) {
+        return boards.get(index);
+    }
+
+    public int getScore(int index) {
+        return scores.get(index);
+    }
+
+    /**
+     * Number of games finished so far
+     */
+    public long getGames() {
+        return games.get();
+    }
+
+    public long getMoves() {
+        return moves.get();
+    }
+
+    public int getBestScore() {
+        return bestScore.get();
+    }
+
+    /**
+     * One thread's boards: every {@code threads}-th one from {@code first}
+     */
+    private final class Worker {
+        final int first;
+        final Player player = factory.create();
+        final RandomXS128[] randoms = new RandomXS128[count];
+        final long[] dueAt = new long[count];
+        final boolean[] over = new boolean[count];
+
+        Worker(int first) {
+            this.first = first;
+        }
+
+        void run() {
+            long now = System.nanoTime();
+            for (int i = first; i < count; i += threads) {
+                randoms[i] = new RandomXS128(seed + i);
+                newGame(i);
+                // Spread the moves over the interval, so boards do not all change in the same frame
+                dueAt[i] = now + moveIntervalNanos * i / count;
+            }
+            while (running) {
+                now = System.nanoTime();
+                long wakeAt = Long.MAX_VALUE;
+                for (int i = first; i < count && running; i += threads) {
+                    if (now - dueAt[i] >= 0) {
+                        dueAt[i] = step(i) ? now + moveIntervalNanos : now + GAME_OVER_PAUSE_NANOS;
+                    }
+                    wakeAt = Math.min(wakeAt, dueAt[i]);
+                }
+                long wait = wakeAt - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        }
+
+        void newGame(int index) {
+            RandomXS128 random = randoms[index];
+            boards.set(index, Players.spawn(Players.spawn(0, random), random));
+            scores.set(index, 0);
+            over[index] = false;
+        }
+
+        /**
+         * Plays a move on a board, or starts a new game on it once the last one has been shown; returns false
+         * when the game just ended
+         */
+        boolean step(int index) {
+            if (over[index]) {
+                newGame(index);
+                return true;
+            }
+            long board = boards.get(index);
+            // Packed boards hold tiles up to 32768; a game that gets further ends there
+            if (!tables.canMove(board) || PackedBoard.maxExponent(board) == PackedBoard.MAX_EXPONENT) {
+                finish(index);
+                return false;
+            }
+            Direction move = player.move(board);
+            if (move == null || tables.move(board, move) == board) {
+                move = fallback(board);
+            }
+            int score = scores.get(index) + tables.score(board, move);
+            scores.set(index, score);
+            boards.set(index, Players.spawn(tables.move(board, move), randoms[index]));
+            moves.incrementAndGet();
+            return true;
+        }
+
+        void finish(int index) {
+            over[index] = true;
+            games.incrementAndGet();
+            int score = scores.get(index);
+            for (int best = bestScore.get(); score > best; best = bestScore.get()) {
+                if (bestScore.compareAndSet(best, score)) break;
+            }
+        }
+
+        Direction fallback(long board) {
+            for (Direction direction : DIRECTIONS) {
+                if (tables.move(board, direction) != board) return direction;
+            }
+            throw new IllegalStateException("No move on a board that can move");
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+/**
+ * Draws the boards of {@link SpectatorGames} tiled over an area, all in one batch from a {@link TileAtlas}: a
+ * board is one tinted square and a sprite per cell, so the whole wall is a single draw call and texture bind
+ * as long as the batch holds {@link #spritesNeeded(int)} sprites.
+ * <p>
+ * Boards are not animated, and each one shows a copy of its game that is refreshed at most every
+ * {@code refreshSeconds}, at times spread over that interval, so a fast player does not make every board change
+ * on every frame.
+ */
+public final class SpectatorView {
+    private static final int CELLS = PackedBoard.CELLS;
+    // Space around each board and inside it, relative to its size
+    private static final float BOARD_GAP = 0.06f;
+    private static final float CELL_GAP = 0.03f;
+
+    private static final float BOARD_COLOR = GameUtils.hexToColor("#BBADA0").toFloatBits(); // Warm gray
+    private static final float CELL_COLOR = GameUtils.hexToColor("#CDC1B4").toFloatBits(); // Light warm gray
+    private static final float TILE_COLOR = Color.WHITE.toFloatBits();
+
+    private final SpectatorGames games;
+    private final TileAtlas atlas;
+    private final float refreshSeconds;
+    private final long[] shown;
+    private final float[] untilRefresh;
+
+    private int columns = 1;
+    private float boardSize;
+    private float startX;
+    private float startY;
+
+    public SpectatorView(SpectatorGames games, TileAtlas atlas, float refreshSeconds) {
+        this.games = games;
+        this.atlas = atlas;
+        this.refreshSeconds = refreshSeconds;
+        shown = new long[games.getCount()];
+        untilRefresh = new float[games.getCount()];
+        for (int i = 0; i < shown.length; i++) {
+            shown[i] = games.getBoard(i);
+            untilRefresh[i] = refreshSeconds * i / shown.length;
+        }
+    }
+
+    /**
+     * Sprites drawn per frame for a number of boards; a batch this large draws them in one call
+     */
+    public static int spritesNeeded(int boards) {
+        return boards * (1 + CELLS);
+    }
+
+    /**
+     * Tiles the boards over an area, in the number of columns that makes them largest
+     */
+    public void layout(float x, float y, float width, float height) {
+        int count = shown.length;
+        boardSize = 0;
+        for (int candidate = 1; candidate <= count; candidate++) {
+            int rows = (count + candidate - 1) / candidate;
+            float size = Math.min(width / candidate, height / rows);
+            if (size > boardSize) {
+                boardSize = size;
+                columns = candidate;
+            }
+        }
+        int rows = (count + columns - 1) / columns;
+        startX = x + (width - columns * boardSize) / 2;
+        // The first row goes at the top
+        startY = y + (height + rows * boardSize) / 2 - boardSize;
+    }
+
+    public void update(float delta) {
+        for (int i = 0; i < shown.length; i++) {
+            untilRefresh[i] -= delta;
+            if (untilRefresh[i] <= 0) {
+                shown[i] = games.getBoard(i);
+                untilRefresh[i] += refreshSeconds;
+                if (untilRefresh[i] <= 0) {
+                    // After a long frame, restart the interval rather than refreshing on every frame to catch up
+                    untilRefresh[i] = refreshSeconds;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws every board in a single batch pass
+     */
+    public void render(SpriteBatch batch) {
+        TextureRegion blank = atlas.getBlank();
+        float gap = boardSize * BOARD_GAP;
+        float size = boardSize - 2 * gap;
+        float cellGap = size * CELL_GAP;
+        float cellSize = (size - cellGap) / PackedBoard.SIZE;
+        float tileSize = cellSize - cellGap;
+
+        batch.begin();
+        for (int i = 0; i < shown.length; i++) {
+            float x = startX + i % columns * boardSize + gap;
+            float y = startY - i / columns * boardSize + gap;
+            batch.setPackedColor(BOARD_COLOR);
+            batch.draw(blank, x, y, size, size);
+
+            long board = shown[i];
+            for (int cell = 0; cell < CELLS; cell++) {
+                int exponent = (int) (board >>> 4 * cell) & 0xF;
+                // Row 0 is drawn at the bottom, as on the game board
+                float tileX = x + cellGap + cell % PackedBoard.SIZE * cellSize;
+                float tileY = y + cellGap + cell / PackedBoard.SIZE * cellSize;
+                if (exponent == 0) {
+                    batch.setPackedColor(CELL_COLOR);
+                    batch.draw(blank, tileX, tileY, tileSize, tileSize);
+                } else {
+                    batch.setPackedColor(TILE_COLOR);
+                    batch.draw(atlas.getTile(exponent), tileX, tileY, tileSize, tileSize);
+                }
+            }
+        }
+        batch.setPackedColor(TILE_COLOR);
+        batch.end();
+    }
+}
@@ -0,0 +1,193 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Exact chances of reaching a target tile with perfect play, for every position of a small board, read in place
+ * from a memory-mapped file. Built offline by {@link TablebaseSolver}.
+ * <p>
+ * Covers 4x4 boards with some cells walled off: tiles neither enter nor pass a wall, as in an endgame where
+ * big tiles are kept in place. A 3x3 board is looked up {@link PackedBoard#pack(Board) packed}, with walls
+ * {@link #WALLS_3X3}. Only positions with every tile below the target are stored, their chances quantized to
+ * a few bits and packed back to back.
+ * <pre>
+ * Header, {@value #HEADER_SIZE} bytes:
+ *   int magic "G72T", byte version, byte rules version, byte target exponent, byte value bits,
+ *   short walls, short reserved, long position count, long reserved, int reserved
+ * Then: the value of position i in bits [i * bits, (i + 1) * bits) of a sequence of longs, counting from
+ *   the least significant bit of each long, followed by one long of padding
+ * </pre>
+ */
+public final class Tablebase {
+    public static final int MAGIC = 0x47373254;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    /** The last row and column of a 4x4 board, which leave the 3x3 board in the other cells */
+    public static final int WALLS_3X3 = 0xF888;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final TablebaseLayout layout;
+    private final int bits;
+    private final long mask;
+    private final double scale;
+    private final LongBuffer values;
+
+    /**
+     * Reads a tablebase in place; the buffer must not be changed afterwards
+     */
+    public Tablebase(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new GdxRuntimeException("Not a tablebase");
+        }
+        int version = buffer.get(4);
+        if (version != VERSION) {
+            throw new GdxRuntimeException("Unsupported tablebase version " + version);
+        }
+        int rulesVersion = buffer.get(5);
+        if (rulesVersion != Board.RULES_VERSION) {
+            throw new GdxRuntimeException("Tablebase uses rules version " + rulesVersion
+                + ", expected " + Board.RULES_VERSION);
+        }
+        layout = new TablebaseLayout(buffer.getShort(8), buffer.get(6));
+        bits = buffer.get(7);
+        if (bits < 1 || bits > 32) {
+            throw new GdxRuntimeException("Invalid value width " + bits);
+        }
+        if (buffer.getLong(12) != layout.size) {
+            throw new GdxRuntimeException("Tablebase holds " + buffer.getLong(12) + " positions, expected "
+                + layout.size);
+        }
+        if (buffer.remaining() < HEADER_SIZE + 8 * (words(layout.size, bits) + 1)) {
+            throw new GdxRuntimeException("Truncated tablebase");
+        }
+        mask = (1L << bits) - 1;
+        scale = 1.0 / mask;
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(HEADER_SIZE);
+        values = view.slice().asLongBuffer();
+    }
+
+    /**
+     * Maps the tablebase into memory where the platform allows it, and reads it otherwise; returns null if
+     * there is no such file
+     */
+    public static Tablebase load(FileHandle file) {
+        if (!file.exists()) {
+            return null;
+        }
+        ByteBuffer buffer;
+        try {
+            buffer = file.map();
+        } catch (GdxRuntimeException e) {
+            buffer = ByteBuffer.wrap(file.readBytes());
+        }
+        return new Tablebase(buffer);
+    }
+
+    /**
+     * Number of longs holding {@code count} values of {@code bits} bits
+     */
+    static long words(long count, int bits) {
+        return (count * bits + 63) / 64;
+    }
+
+    public int getTargetExponent() {
+        return layout.targetExponent;
+    }
+
+    public int getWalls() {
+        return layout.walls;
+    }
+
+    public int getValueBits() {
+        return bits;
+    }
+
+    /**
+     * Number of positions, including ones that cannot be reached in a game
+     */
+    public long size() {
+        return layout.size;
+    }
+
+    /**
+     * Whether the packed board has tiles only in free cells; such boards can be looked up
+     */
+    public boolean covers(long board) {
+        return layout.isWon(board) || layout.covers(board);
+    }
+
+    /**
+     * Chance of reaching the target from a position with the player to move; 1 once the target is on the board
+     */
+    public double winProbability(long board) {
+        if (layout.isWon(board)) {
+            return 1;
+        }
+        if (!layout.covers(board)) {
+            throw new IllegalArgumentException("Board " + Long.toHexString(board) + " is not covered");
+        }
+        return get(layout.index(board)) * scale;
+    }
+
+    /**
+     * Chance of reaching the target after a move, before the spawn
+     */
+    public double moveProbability(long afterMove) {
+        if (layout.isWon(afterMove)) {
+            return 1;
+        }
+        long index = layout.index(afterMove);
+        double sum = 0;
+        int empty = 0;
+        for (int i = 0; i < layout.freeCells.length; i++) {
+            if ((afterMove >>> 4 * layout.freeCells[i] & 0xF) != 0) continue;
+            empty++;
+            sum += 0.9 * get(index + layout.radix[i]) * scale;
+            sum += 0.1 * (layout.targetExponent == 2 ? 1 : get(index + 2 * layout.radix[i]) * scale);
+        }
+        return sum / empty;
+    }
+
+    /**
+     * The move with the best chance of reaching the target, or null if no move is possible
+     */
+    public Direction bestMove(long board) {
+        Direction best = null;
+        double bestProbability = -1;
+        for (Direction direction : DIRECTIONS) {
+            long next = layout.move(board, direction);
+            if (next == board) continue;
+            double probability = moveProbability(next);
+            if (probability > bestProbability) {
+                bestProbability = probability;
+                best = direction;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The board after a move, with the walls of this tablebase
+     */
+    public long move(long board, Direction direction) {
+        return layout.move(board, direction);
+    }
+
+    private long get(long index) {
+        long bit = index * bits;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        long value = values.get(word) >>> offset;
+        if (offset + bits > 64) {
+            value |= values.get(word + 1) << 64 - offset;
+        }
+        return value & mask;
+    }
+}
@@ -0,0 +1,202 @@
+package com.segilmez.game3072;
+
+/**
+ * The positions a {@link Tablebase} covers: 4x4 {@link PackedBoard}s in which some cells are walls that tiles
+ * neither enter nor pass, and every tile is below the target. A 3x3 board is the 4x4 board with the last row
+ * and column walled off.
+ * <p>
+ * Positions are numbered densely: with {@code n} free cells and target exponent {@code t}, a position is the
+ * base-{@code t} number whose digits are the exponents of the free cells, lowest cell first, so there are
+ * {@code t^n} positions.
+ */
+final class TablebaseLayout {
+    private static final int LINE_STATES = 1 << 16;
+
+    final int walls;
+    final int targetExponent;
+    /** Cell numbers of the free cells, ascending */
+    final int[] freeCells;
+    /** {@code targetExponent^i} for every free cell index {@code i} */
+    final long[] radix;
+    final long size;
+
+    // Per row (LEFT, RIGHT) and per row of the transposed board (DOWN, UP), as walls differ from line to line
+    private final char[][] left = new char[PackedBoard.SIZE][];
+    private final char[][] right = new char[PackedBoard.SIZE][];
+    private final char[][] down = new char[PackedBoard.SIZE][];
+    private final char[][] up = new char[PackedBoard.SIZE][];
+
+    TablebaseLayout(int walls, int targetExponent) {
+        if (targetExponent < 2 || targetExponent > PackedBoard.MAX_EXPONENT) {
+            throw new IllegalArgumentException("Target exponent must be in [2, " + PackedBoard.MAX_EXPONENT
+                + "], not " + targetExponent);
+        }
+        this.walls = walls & 0xFFFF;
+        this.targetExponent = targetExponent;
+
+        freeCells = new int[PackedBoard.CELLS - Integer.bitCount(this.walls)];
+        radix = new long[freeCells.length];
+        long size = 1;
+        for (int cell = 0, i = 0; cell < PackedBoard.CELLS; cell++) {
+            if ((this.walls >>> cell & 1) != 0) continue;
+            freeCells[i] = cell;
+            radix[i++] = size;
+            if (size > Long.MAX_VALUE / targetExponent) {
+                throw new IllegalArgumentException("Too many positions");
+            }
+            size *= targetExponent;
+        }
+        this.size = size;
+
+        char[][] tables = new char[32][];
+        int transposedWalls = transposeWalls(this.walls);
+        for (int line = 0; line < PackedBoard.SIZE; line++) {
+            int rowWalls = this.walls >>> 4 * line & 0xF;
+            int columnWalls = transposedWalls >>> 4 * line & 0xF;
+            left[line] = lineTable(tables, rowWalls, false);
+            right[line] = lineTable(tables, rowWalls, true);
+            // DOWN moves towards row 0, the low end of a transposed row
+            down[line] = lineTable(tables, columnWalls, false);
+            up[line] = lineTable(tables, columnWalls, true);
+        }
+    }
+
+    /**
+     * Bit {@code row * 4 + col} of the result is bit {@code col * 4 + row} of the walls
+     */
+    private static int transposeWalls(int walls) {
+        int transposed = 0;
+        for (int cell = 0; cell < PackedBoard.CELLS; cell++) {
+            if ((walls >>> cell & 1) != 0) {
+                transposed |= 1 << (cell % PackedBoard.SIZE) * PackedBoard.SIZE + cell / PackedBoard.SIZE;
+            }
+        }
+        return transposed;
+    }
+
+    private static char[] lineTable(char[][] tables, int lineWalls, boolean reversed) {
+        int key = lineWalls << 1 | (reversed ? 1 : 0);
+        if (tables[key] == null) {
+            char[] table = new char[LINE_STATES];
+            int[] segment = new int[PackedBoard.SIZE];
+            for (int line = 0; line < LINE_STATES; line++) {
+                table[line] = (char) slideLine(line, lineWalls, reversed, segment);
+            }
+            tables[key] = table;
+        }
+        return tables[key];
+    }
+
+    /**
+     * Slides every run of free cells between walls on its own, towards cell 0 or, if reversed, cell 3
+     */
+    private static int slideLine(int line, int lineWalls, boolean reversed, int[] segment) {
+        int result = 0;
+        int start = 0;
+        while (start < PackedBoard.SIZE) {
+            if ((lineWalls >>> start & 1) != 0) {
+                start++;
+                continue;
+            }
+            int end = start;
+            while (end < PackedBoard.SIZE && (lineWalls >>> end & 1) == 0) {
+                end++;
+            }
+            int length = end - start;
+            for (int i = 0; i < length; i++) {
+                int cell = reversed ? end - 1 - i : start + i;
+                segment[i] = line >>> 4 * cell & 0xF;
+            }
+            slide(segment, length);
+            for (int i = 0; i < length; i++) {
+                int cell = reversed ? end - 1 - i : start + i;
+                result |= segment[i] << 4 * cell;
+            }
+            start = end;
+        }
+        return result;
+    }
+
+    private static void slide(int[] segment, int length) {
+        int count = 0;
+        int pending = 0;
+        for (int i = 0; i < length; i++) {
+            int exponent = segment[i];
+            if (exponent == 0) continue;
+            if (exponent == pending && exponent < PackedBoard.MAX_EXPONENT) {
+                segment[count++] = exponent + 1;
+                pending = 0;
+            } else {
+                if (pending != 0) {
+                    segment[count++] = pending;
+                }
+                pending = exponent;
+            }
+        }
+        if (pending != 0) {
+            segment[count++] = pending;
+        }
+        while (count < length) {
+            segment[count++] = 0;
+        }
+    }
+
+    long move(long board, Direction direction) {
+        switch (direction) {
+            case LEFT:
+                return moveRows(board, left);
+            case RIGHT:
+                return moveRows(board, right);
+            case UP:
+                return PackedBoard.transpose(moveRows(PackedBoard.transpose(board), up));
+            case DOWN:
+                return PackedBoard.transpose(moveRows(PackedBoard.transpose(board), down));
+            default:
+                throw new IllegalArgumentException(String.valueOf(direction));
+        }
+    }
+
+    private static long moveRows(long board, char[][] tables) {
+        return (long) tables[0][(int) board & 0xFFFF]
+            | (long) tables[1][(int) (board >>> 16) & 0xFFFF] << 16
+            | (long) tables[2][(int) (board >>> 32) & 0xFFFF] << 32
+            | (long) tables[3][(int) (board >>> 48) & 0xFFFF] << 48;
+    }
+
+    boolean isWon(long board) {
+        return PackedBoard.maxExponent(board) >= targetExponent;
+    }
+
+    /**
+     * Whether the board has tiles only in free cells, all below the target
+     */
+    boolean covers(long board) {
+        for (int cell = 0; cell < PackedBoard.CELLS; cell++) {
+            int exponent = (int) (board >>> 4 * cell) & 0xF;
+            if (exponent != 0 && ((walls >>> cell & 1) != 0 || exponent >= targetExponent)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Number of a covered board
+     */
+    long index(long board) {
+        long index = 0;
+        for (int i = 0; i < freeCells.length; i++) {
+            index += ((board >>> 4 * freeCells[i]) & 0xF) * radix[i];
+        }
+        return index;
+    }
+
+    long board(long index) {
+        long board = 0;
+        for (int i = 0; i < freeCells.length; i++) {
+            board |= (index % targetExponent) << 4 * freeCells[i];
+            index /= targetExponent;
+        }
+        return board;
+    }
+}
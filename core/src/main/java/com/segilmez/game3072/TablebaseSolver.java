@@ -0,0 +1,249 @@
+package com.segilmez.game3072;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds a {@link Tablebase} by backward induction over the sum of the tiles.
+ * <p>
+ * A move keeps the sum of the tiles and a spawn adds 2 or 4, so the value of a position only depends on
+ * positions whose sum is 2 or 4 higher. Positions are solved one sum at a time, from the highest sum down,
+ * and the positions of one sum are split over a thread pool by the exponents of their first two free cells.
+ * Every position is solved, reachable in a game or not, so the result is a dense array with no index.
+ * <p>
+ * Values are kept as 16-bit fractions in a memory-mapped work file next to the output while solving. Reading
+ * rounded values back can add half a 16-bit step per sum, but the errors mostly cancel: on 3x3 boards the
+ * packed 12-bit values stay within 0.00013 of an exact solve.
+ */
+public final class TablebaseSolver {
+    private static final int WORK_MAX = 0xFFFF;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final TablebaseLayout layout;
+    private final int valueBits;
+    private final int threads;
+    private final long maxTile;
+    private ByteBuffer work;
+
+    /**
+     * @param walls          cells no tile may enter, bit {@code row * 4 + col}; {@link Tablebase#WALLS_3X3}
+     *                       for a 3x3 board
+     * @param targetExponent e.g. 8 to solve for reaching 256
+     * @param valueBits      bits per stored chance, up to 16
+     */
+    public TablebaseSolver(int walls, int targetExponent, int valueBits, int threads) {
+        this.layout = new TablebaseLayout(walls, targetExponent);
+        if (layout.freeCells.length < 2) {
+            throw new IllegalArgumentException("A game needs at least 2 free cells");
+        }
+        if (2 * layout.size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(layout.size + " positions do not fit in one mapping");
+        }
+        if (valueBits < 1 || valueBits > 16) {
+            throw new IllegalArgumentException("Value bits must be in [1, 16], not " + valueBits);
+        }
+        this.valueBits = valueBits;
+        this.threads = threads;
+        this.maxTile = 1L << targetExponent - 1;
+    }
+
+    /**
+     * Number of positions to solve
+     */
+    public long size() {
+        return layout.size;
+    }
+
+    /**
+     * Solves every position, writes the tablebase and returns the chance of reaching the target from a new game
+     */
+    public double solve(File output) throws IOException, InterruptedException, ExecutionException {
+        File workFile = new File(output.getPath() + ".work");
+        RandomAccessFile workAccess = new RandomAccessFile(workFile, "rw");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            workAccess.setLength(0);
+            work = workAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 2 * layout.size);
+            for (long sum = layout.freeCells.length * maxTile; sum >= 2; sum -= 2) {
+                solveSum(executor, sum);
+            }
+            double opening = openingProbability();
+            write(output);
+            return opening;
+        } finally {
+            executor.shutdown();
+            work = null;
+            workAccess.close();
+            // A mapping can outlive its channel, so the delete may have to wait for the VM to exit
+            if (!workFile.delete()) {
+                workFile.deleteOnExit();
+            }
+        }
+    }
+
+    private void solveSum(ExecutorService executor, final long sum) throws InterruptedException, ExecutionException {
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int first = 0; first < layout.targetExponent; first++) {
+            for (int second = 0; second < layout.targetExponent; second++) {
+                final long board = (long) first << 4 * layout.freeCells[0] | (long) second << 4 * layout.freeCells[1];
+                final long remaining = sum - tile(first) - tile(second);
+                if (remaining < 0) continue;
+                final long index = first * layout.radix[0] + second * layout.radix[1];
+                tasks.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        solveAll(2, board, remaining, index);
+                        return null;
+                    }
+                }));
+            }
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+    }
+
+    private static long tile(int exponent) {
+        return exponent == 0 ? 0 : 1L << exponent;
+    }
+
+    /**
+     * Solves every position that extends {@code board} in the free cells from {@code cell} on with tiles
+     * summing to {@code remaining}
+     */
+    private void solveAll(int cell, long board, long remaining, long index) {
+        int cellsLeft = layout.freeCells.length - cell;
+        if (cellsLeft == 0) {
+            if (remaining == 0) {
+                solve(board, index);
+            }
+            return;
+        }
+        if (remaining > cellsLeft * maxTile) {
+            return;
+        }
+        for (int exponent = 0; exponent < layout.targetExponent && tile(exponent) <= remaining; exponent++) {
+            solveAll(cell + 1, board | (long) exponent << 4 * layout.freeCells[cell], remaining - tile(exponent),
+                index + exponent * layout.radix[cell]);
+        }
+    }
+
+    private void solve(long board, long index) {
+        double best = 0;
+        for (Direction direction : DIRECTIONS) {
+            long next = layout.move(board, direction);
+            if (next == board) continue;
+            if (layout.isWon(next)) {
+                best = 1;
+                break;
+            }
+            best = Math.max(best, spawnProbability(next));
+        }
+        work.putChar((int) (2 * index), (char) Math.round(best * WORK_MAX));
+    }
+
+    /**
+     * Average chance over every spawn on a board just moved, which is covered and has an empty cell
+     */
+    private double spawnProbability(long board) {
+        long index = layout.index(board);
+        double sum = 0;
+        int empty = 0;
+        for (int i = 0; i < layout.freeCells.length; i++) {
+            if ((board >>> 4 * layout.freeCells[i] & 0xF) != 0) continue;
+            empty++;
+            sum += 0.9 * value(index + layout.radix[i]);
+            sum += 0.1 * (layout.targetExponent == 2 ? 1 : value(index + 2 * layout.radix[i]));
+        }
+        return sum / empty;
+    }
+
+    private double value(long index) {
+        return work.getChar((int) (2 * index)) / (double) WORK_MAX;
+    }
+
+    /**
+     * Average over the starting positions: two tiles, each a 2 (90%) or a 4 (10%), in different free cells
+     */
+    private double openingProbability() {
+        int cells = layout.freeCells.length;
+        double sum = 0;
+        for (int first = 0; first < cells; first++) {
+            for (int second = 0; second < cells; second++) {
+                if (second == first) continue;
+                for (int firstExponent = 1; firstExponent <= 2; firstExponent++) {
+                    for (int secondExponent = 1; secondExponent <= 2; secondExponent++) {
+                        double chance = (firstExponent == 1 ? 0.9 : 0.1) * (secondExponent == 1 ? 0.9 : 0.1);
+                        boolean won = Math.max(firstExponent, secondExponent) >= layout.targetExponent;
+                        sum += chance * (won ? 1
+                            : value(firstExponent * layout.radix[first] + secondExponent * layout.radix[second]));
+                    }
+                }
+            }
+        }
+        return sum / (cells * (cells - 1));
+    }
+
+    private void write(File output) throws IOException {
+        long mask = (1L << valueBits) - 1;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        buffer.putInt(Tablebase.MAGIC);
+        buffer.put((byte) Tablebase.VERSION);
+        buffer.put((byte) Board.RULES_VERSION);
+        buffer.put((byte) layout.targetExponent);
+        buffer.put((byte) valueBits);
+        buffer.putShort((short) layout.walls);
+        buffer.putShort((short) 0);
+        buffer.putLong(layout.size);
+        buffer.putLong(0);
+        buffer.putInt(0);
+
+        try (FileOutputStream stream = new FileOutputStream(output)) {
+            FileChannel channel = stream.getChannel();
+            long word = 0;
+            int bits = 0;
+            for (long index = 0; index < layout.size; index++) {
+                long value = Math.round(value(index) * mask);
+                word |= value << bits;
+                bits += valueBits;
+                if (bits >= 64) {
+                    putLong(channel, buffer, word);
+                    bits -= 64;
+                    word = bits == 0 ? 0 : value >>> valueBits - bits;
+                }
+            }
+            if (bits > 0) {
+                putLong(channel, buffer, word);
+            }
+            putLong(channel, buffer, 0); // Padding, so a value can always be read from two longs
+            drain(channel, buffer);
+        }
+    }
+
+    private static void putLong(FileChannel channel, ByteBuffer buffer, long value) throws IOException {
+        if (buffer.remaining() < 8) {
+            drain(channel, buffer);
+        }
+        buffer.putLong(value);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
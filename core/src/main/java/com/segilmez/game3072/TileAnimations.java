@@ -0,0 +1,112 @@
+package com.segilmez.game3072;
+
+/**
+ * Flat, preallocated store of the tile animations running on a {@link Grid}.
+ * <p>
+ * Each animation is an index into parallel primitive arrays rather than an object, so starting, advancing
+ * and finishing animations never allocates, and the per-frame cost is proportional to the number of tiles
+ * that are actually animating. Positions are kept as cells, not pixels, so a resize mid-animation is harmless.
+ */
+public class TileAnimations {
+    /** A tile sliding from one cell to another */
+    public static final int SLIDE = 0;
+    /** A newly spawned tile growing from nothing */
+    public static final int SPAWN = 1;
+    /** A merged tile briefly growing and shrinking back */
+    public static final int MERGE = 2;
+    /** A tile sliding into a cell it merges with */
+    public static final int MERGING_SLIDE = 3;
+
+    private final int[] kind;
+    private final int[] value;
+    private final int[] fromRow;
+    private final int[] fromCol;
+    private final int[] toRow;
+    private final int[] toCol;
+    private final float[] elapsed;
+    private final float[] duration;
+    private int count = 0;
+
+    public TileAnimations(int capacity) {
+        kind = new int[capacity];
+        value = new int[capacity];
+        fromRow = new int[capacity];
+        fromCol = new int[capacity];
+        toRow = new int[capacity];
+        toCol = new int[capacity];
+        elapsed = new float[capacity];
+        duration = new float[capacity];
+    }
+
+    public void add(int kind, int value, int fromRow, int fromCol, int toRow, int toCol, float duration) {
+        if (count == this.kind.length) {
+            throw new IllegalStateException("More than " + count + " tile animations");
+        }
+        this.kind[count] = kind;
+        this.value[count] = value;
+        this.fromRow[count] = fromRow;
+        this.fromCol[count] = fromCol;
+        this.toRow[count] = toRow;
+        this.toCol[count] = toCol;
+        this.elapsed[count] = 0f;
+        this.duration[count] = duration;
+        count++;
+    }
+
+    /**
+     * Advances every animation; returns true while at least one is still running
+     */
+    public boolean update(float delta) {
+        boolean running = false;
+        for (int i = 0; i < count; i++) {
+            elapsed[i] = Math.min(elapsed[i] + delta, duration[i]);
+            if (elapsed[i] < duration[i]) {
+                running = true;
+            }
+        }
+        return running;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public int getKind(int index) {
+        return kind[index];
+    }
+
+    public int getValue(int index) {
+        return value[index];
+    }
+
+    public int getFromRow(int index) {
+        return fromRow[index];
+    }
+
+    public int getFromCol(int index) {
+        return fromCol[index];
+    }
+
+    public int getToRow(int index) {
+        return toRow[index];
+    }
+
+    public int getToCol(int index) {
+        return toCol[index];
+    }
+
+    /**
+     * Linear progress of an animation between 0 and 1
+     */
+    public float getProgress(int index) {
+        return duration[index] <= 0 ? 1f : elapsed[index] / duration[index];
+    }
+}
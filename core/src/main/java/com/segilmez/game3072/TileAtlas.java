@@ -0,0 +1,103 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Every tile of the standard game drawn once, with {@link Tile#render}, into a single mipmapped texture, so any
+ * number of boards can be drawn as plain sprites in one batch without a texture switch. Used by the spectator
+ * mode, where boards are too many and too small for the per-tile shapes and text of {@link Grid}.
+ * <p>
+ * Layout, {@value #SLOTS_PER_ROW} x {@value #SLOTS_PER_ROW} slots of {@value #SLOT_SIZE} pixels: slot 0 is a white
+ * rounded square to be tinted for the board and its empty cells, slot {@code n} the tile {@code 2^n}.
+ */
+public final class TileAtlas implements Disposable {
+    private static final int SLOT_SIZE = 128;
+    private static final int SLOTS_PER_ROW = 4;
+    private static final int SIZE = SLOT_SIZE * SLOTS_PER_ROW;
+    // Left empty around each tile, so smaller mipmap levels do not bleed neighbouring slots into it
+    private static final int MARGIN = 4;
+
+    private final FrameBuffer frameBuffer;
+    private final TextureRegion[] regions = new TextureRegion[PackedBoard.MAX_EXPONENT + 1];
+
+    /**
+     * Draws the tiles with the tile font; needs a GL context, so call it on the render thread
+     */
+    public TileAtlas(BitmapFont font) {
+        frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, SIZE, SIZE, false);
+        SpriteBatch batch = new SpriteBatch();
+        ShapeRenderer shapeRenderer = new ShapeRenderer();
+        batch.getProjectionMatrix().setToOrtho2D(0, 0, SIZE, SIZE);
+        // Text blends into the tile colors but leaves the tiles opaque
+        batch.setBlendFunctionSeparate(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA, GL20.GL_ONE,
+            GL20.GL_ONE_MINUS_SRC_ALPHA);
+        shapeRenderer.setProjectionMatrix(batch.getProjectionMatrix());
+        float scaleX = font.getData().scaleX;
+        float scaleY = font.getData().scaleY;
+        float tileSize = SLOT_SIZE - 2 * MARGIN;
+
+        frameBuffer.begin();
+        Gdx.gl.glClearColor(0, 0, 0, 0);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+        shapeRenderer.setColor(1, 1, 1, 1);
+        GameUtils.drawRoundedRect(shapeRenderer, MARGIN, MARGIN, tileSize, tileSize, tileSize * 0.08f);
+        shapeRenderer.end();
+        for (int exponent = 1; exponent < regions.length; exponent++) {
+            Tile.render(shapeRenderer, batch, font, PackedBoard.value(exponent), slotX(exponent) + MARGIN,
+                slotY(exponent) + MARGIN, tileSize, tileSize, 1f);
+        }
+        frameBuffer.end();
+        font.getData().setScale(scaleX, scaleY);
+        shapeRenderer.dispose();
+        batch.dispose();
+
+        Texture texture = frameBuffer.getColorBufferTexture();
+        texture.bind();
+        Gdx.gl.glGenerateMipmap(GL20.GL_TEXTURE_2D);
+        texture.setFilter(TextureFilter.MipMapLinearLinear, TextureFilter.Linear);
+        for (int slot = 0; slot < regions.length; slot++) {
+            // The texture's first row is the bottom of the frame buffer, so each region is flipped back upright
+            regions[slot] = new TextureRegion(texture, slotX(slot) + MARGIN, slotY(slot) + MARGIN,
+                SLOT_SIZE - 2 * MARGIN, SLOT_SIZE - 2 * MARGIN);
+            regions[slot].flip(false, true);
+        }
+    }
+
+    private static int slotX(int slot) {
+        return slot % SLOTS_PER_ROW * SLOT_SIZE;
+    }
+
+    private static int slotY(int slot) {
+        return slot / SLOTS_PER_ROW * SLOT_SIZE;
+    }
+
+    /**
+     * The white rounded square, to be drawn tinted
+     */
+    public TextureRegion getBlank() {
+        return regions[0];
+    }
+
+    /**
+     * The tile with a packed board exponent, from 1 for a 2 up to {@link PackedBoard#MAX_EXPONENT}
+     */
+    public TextureRegion getTile(int exponent) {
+        return regions[exponent];
+    }
+
+    @Override
+    public void dispose() {
+        frameBuffer.dispose();
+    }
+}
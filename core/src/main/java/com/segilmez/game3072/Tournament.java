@@ -0,0 +1,341 @@
+package com.segilmez.game3072;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays {@link Player}s against the same set of seeded games of the standard rules, on all cores, and compares
+ * them with the first one.
+ * <p>
+ * Game {@code i} of every player starts from seed {@code seed + i}, so the players face the same openings and
+ * spawn generator and their results can be compared game by game: scores and largest tiles with a Wilcoxon
+ * signed-rank test, and reaching the target with McNemar's test, both two-sided with the normal approximation.
+ * Doubling merges never make a 3072, so the target is reported as the tile that reaches it first, 4096. A move
+ * that takes longer than the time budget, or does not move the board, is replaced by the first possible move in
+ * {@link Direction} order and counted. Only the time spent choosing moves counts towards moves per second.
+ */
+public final class Tournament {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final String HEADER = "%-16s %17s %8s %7s %15s %10s %8s %9s %9s %9s%n";
+    private static final String ROW =
+        "%-16s %8.0f +- %5.0f %8d %6.1f%% %5.1f%% [%2.0f-%3.0f] %10.0f %8d %9s %9s %9s%n";
+
+    private final String[] names;
+    private final Player.Factory[] factories;
+    private final int games;
+    private final long seed;
+    private final long budgetNanos;
+    private final int threads;
+
+    /**
+     * How one player did, game by game
+     */
+    public static final class Result {
+        public final String name;
+        public final int[] scores;
+        public final int[] maxTiles;
+        long moves;
+        long moveNanos;
+        int timeouts;
+        int illegalMoves;
+
+        Result(String name, int games) {
+            this.name = name;
+            scores = new int[games];
+            maxTiles = new int[games];
+        }
+
+        public long getMoves() {
+            return moves;
+        }
+
+        /**
+         * Moves chosen per second of the time spent choosing them, on one thread
+         */
+        public double getMovesPerSecond() {
+            return moveNanos == 0 ? 0 : moves * 1e9 / moveNanos;
+        }
+
+        /**
+         * Moves that took longer than the budget
+         */
+        public int getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * Moves that were missing or did not move the board
+         */
+        public int getIllegalMoves() {
+            return illegalMoves;
+        }
+
+        /**
+         * Share of games whose largest tile reached {@code tile}
+         */
+        public double getRate(int tile) {
+            int reached = 0;
+            for (int maxTile : maxTiles) {
+                if (maxTile >= tile) reached++;
+            }
+            return (double) reached / maxTiles.length;
+        }
+
+        public double getMeanScore() {
+            double sum = 0;
+            for (int score : scores) {
+                sum += score;
+            }
+            return sum / scores.length;
+        }
+    }
+
+    /**
+     * @param budgetNanos longest a move may take, or 0 for no limit
+     */
+    public Tournament(String[] names, Player.Factory[] factories, int games, long seed, long budgetNanos,
+                      int threads) {
+        if (names.length != factories.length || names.length == 0) {
+            throw new IllegalArgumentException("Expected a name for each of at least one player");
+        }
+        if (games < 1) {
+            throw new IllegalArgumentException("Games must be at least 1, not " + games);
+        }
+        this.names = names.clone();
+        this.factories = factories.clone();
+        this.games = games;
+        this.seed = seed;
+        this.budgetNanos = budgetNanos;
+        this.threads = threads;
+    }
+
+    /**
+     * Plays every game of every player; threads take the next game not yet played, so slow players do not
+     * hold up the others
+     */
+    public List<Result> run() throws InterruptedException, ExecutionException {
+        final Result[] results = new Result[names.length];
+        for (int i = 0; i < names.length; i++) {
+            results[i] = new Result(names[i], games);
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final int total = names.length * games;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result[]>> workers = new ArrayList<>();
+            for (int worker = 0; worker < threads; worker++) {
+                workers.add(executor.submit(new Callable<Result[]>() {
+                    @Override
+                    public Result[] call() {
+                        // Players and counters of this thread; scores go straight into the shared arrays,
+                        // as every game has a slot of its own
+                        Player[] players = new Player[names.length];
+                        Result[] counts = new Result[names.length];
+                        for (int task = next.getAndIncrement(); task < total; task = next.getAndIncrement()) {
+                            int entry = task / games;
+                            if (players[entry] == null) {
+                                players[entry] = factories[entry].create();
+                                counts[entry] = new Result(names[entry], 0);
+                            }
+                            play(players[entry], task % games, results[entry], counts[entry]);
+                        }
+                        return counts;
+                    }
+                }));
+            }
+            for (Future<Result[]> worker : workers) {
+                Result[] counts = worker.get();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == null) continue;
+                    results[i].moves += counts[i].moves;
+                    results[i].moveNanos += counts[i].moveNanos;
+                    results[i].timeouts += counts[i].timeouts;
+                    results[i].illegalMoves += counts[i].illegalMoves;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return Arrays.asList(results);
+    }
+
+    private void play(Player player, int game, Result result, Result counts) {
+        Board board = new Board(Rules.STANDARD, seed + game);
+        board.addInitialTiles();
+        // Packed boards hold tiles up to 32768; a game that gets further ends there
+        while (!board.isGameOver() && board.getMaxTile() <= 1 << PackedBoard.MAX_EXPONENT) {
+            long packed = PackedBoard.pack(board);
+            long start = System.nanoTime();
+            Direction move = player.move(packed);
+            long elapsed = System.nanoTime() - start;
+            counts.moves++;
+            counts.moveNanos += elapsed;
+            if (budgetNanos > 0 && elapsed > budgetNanos) {
+                counts.timeouts++;
+                playFallback(board);
+            } else if (move == null || !board.play(move)) {
+                counts.illegalMoves++;
+                playFallback(board);
+            }
+        }
+        result.scores[game] = board.getScore();
+        result.maxTiles[game] = board.getMaxTile();
+    }
+
+    private static void playFallback(Board board) {
+        for (Direction direction : DIRECTIONS) {
+            if (board.play(direction)) return;
+        }
+    }
+
+    /**
+     * A table of the results, with p-values of each player against the first one; forfeits are the moves
+     * replaced for going over the budget or not moving the board
+     */
+    public static String report(List<Result> results) {
+        Result reference = results.get(0);
+        // The smallest power of two at or above the target, the tile the games actually reach
+        int target = Integer.highestOneBit(Rules.STANDARD.getTargetTile() - 1) << 1;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, HEADER, "player",
+            "mean score (95%)", "median", "2048", target + " (95%)", "moves/s", "forfeits", "p score", "p tile",
+            "p " + target));
+        for (Result result : results) {
+            int games = result.scores.length;
+            int[] sorted = result.scores.clone();
+            Arrays.sort(sorted);
+            double mean = result.getMeanScore();
+            double variance = 0;
+            for (int score : result.scores) {
+                variance += (score - mean) * (score - mean);
+            }
+            double halfWidth = games < 2 ? 0 : 1.96 * Math.sqrt(variance / (games - 1) / games);
+            double[] wilson = wilson(result.getRate(target), games);
+            boolean isReference = result == reference;
+            out.append(String.format(Locale.ROOT, ROW, result.name, mean, halfWidth, sorted[games / 2],
+                100 * result.getRate(2048), 100 * result.getRate(target), 100 * wilson[0], 100 * wilson[1], result.getMovesPerSecond(),
+                result.timeouts + result.illegalMoves,
+                isReference ? "-" : formatP(wilcoxon(reference.scores, result.scores)),
+                isReference ? "-" : formatP(wilcoxon(exponents(reference.maxTiles), exponents(result.maxTiles))),
+                isReference ? "-" : formatP(mcNemar(reference.maxTiles, result.maxTiles, target))));
+        }
+        out.append("Largest tiles:\n");
+        for (Result result : results) {
+            out.append(String.format(Locale.ROOT, "%-16s", result.name));
+            int[] sorted = result.maxTiles.clone();
+            Arrays.sort(sorted);
+            for (int i = 0; i < sorted.length; ) {
+                int tile = sorted[i];
+                int start = i;
+                while (i < sorted.length && sorted[i] == tile) i++;
+                out.append(String.format(Locale.ROOT, " %d %.1f%%", tile, 100.0 * (i - start) / sorted.length));
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String formatP(double p) {
+        return p < 0.001 ? "<0.001" : String.format(Locale.ROOT, "%.3f", p);
+    }
+
+    private static int[] exponents(int[] tiles) {
+        int[] exponents = new int[tiles.length];
+        for (int i = 0; i < tiles.length; i++) {
+            // Games end past 32768, so a tile may be one more than a packed board holds
+            exponents[i] = tiles[i] == 0 ? 0 : Integer.numberOfTrailingZeros(tiles[i]);
+        }
+        return exponents;
+    }
+
+    /**
+     * Wilson score interval of a proportion at 95%
+     */
+    static double[] wilson(double rate, int n) {
+        double z = 1.96;
+        double denominator = 1 + z * z / n;
+        double center = (rate + z * z / (2 * n)) / denominator;
+        double halfWidth = z * Math.sqrt(rate * (1 - rate) / n + z * z / (4.0 * n * n)) / denominator;
+        return new double[]{Math.max(0, center - halfWidth), Math.min(1, center + halfWidth)};
+    }
+
+    /**
+     * Two-sided p-value of the Wilcoxon signed-rank test on paired samples, with tied ranks averaged and zero
+     * differences dropped; 1 if every pair is equal
+     */
+    static double wilcoxon(int[] a, int[] b) {
+        // Absolute difference in the high bits, whether it is positive in the lowest
+        long[] differences = new long[a.length];
+        int n = 0;
+        for (int i = 0; i < a.length; i++) {
+            long difference = (long) b[i] - a[i];
+            if (difference != 0) {
+                differences[n++] = Math.abs(difference) << 1 | (difference > 0 ? 1 : 0);
+            }
+        }
+        if (n == 0) return 1;
+        Arrays.sort(differences, 0, n);
+        double positiveRanks = 0;
+        double tieCorrection = 0;
+        for (int i = 0; i < n; ) {
+            long magnitude = differences[i] >>> 1;
+            int start = i;
+            while (i < n && differences[i] >>> 1 == magnitude) i++;
+            int ties = i - start;
+            double rank = (start + 1 + i) / 2.0;
+            for (int j = start; j < i; j++) {
+                if ((differences[j] & 1) != 0) positiveRanks += rank;
+            }
+            tieCorrection += (double) ties * ties * ties - ties;
+        }
+        double mean = n * (n + 1) / 4.0;
+        double variance = n * (n + 1) * (2.0 * n + 1) / 24 - tieCorrection / 48;
+        if (variance <= 0) return 1;
+        double deviation = Math.max(0, Math.abs(positiveRanks - mean) - 0.5);
+        return twoSidedNormal(deviation / Math.sqrt(variance));
+    }
+
+    /**
+     * Two-sided p-value of McNemar's test, with continuity correction, on whether each game reached {@code tile}
+     */
+    static double mcNemar(int[] a, int[] b, int tile) {
+        int onlyA = 0;
+        int onlyB = 0;
+        for (int i = 0; i < a.length; i++) {
+            boolean reachedA = a[i] >= tile;
+            boolean reachedB = b[i] >= tile;
+            if (reachedA && !reachedB) onlyA++;
+            if (reachedB && !reachedA) onlyB++;
+        }
+        if (onlyA + onlyB == 0) return 1;
+        double deviation = Math.max(0, Math.abs(onlyA - onlyB) - 1);
+        return twoSidedNormal(deviation / Math.sqrt(onlyA + onlyB));
+    }
+
+    /**
+     * Chance of a standard normal variable being at least {@code z} away from 0
+     */
+    static double twoSidedNormal(double z) {
+        return Math.min(1, erfc(Math.abs(z) / Math.sqrt(2)));
+    }
+
+    /**
+     * Complementary error function, to about 1e-7 (Numerical Recipes' Chebyshev fit)
+     */
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1 / (1 + 0.5 * z);
+        double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+            + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587 + t * (-0.82215223
+            + t * 0.17087277)))))))));
+        return x >= 0 ? r : 2 - r;
+    }
+}
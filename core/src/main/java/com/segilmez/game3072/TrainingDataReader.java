@@ -0,0 +1,227 @@
+package com.segilmez.game3072;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Random access to the samples of a file written by {@link TrainingDataWriter}, by row number across all of its
+ * chunks. Opening it only reads the chunk headers; a stored chunk is then memory-mapped the first time one of
+ * its rows is read and its columns are read in place, while a deflated one is inflated into a buffer that holds
+ * the last chunk read. Reading rows in order is therefore cheap for both.
+ * <p>
+ * Chunks are read up to the first incomplete one, such as the end of a file whose writer is still running or
+ * was stopped. Not safe for use by several threads; give each its own reader.
+ */
+public class TrainingDataReader implements Closeable {
+    private final FileChannel channel;
+    private final long[] positions;
+    private final long[] firstRows;
+    private final int[] rowCounts;
+    private final int[] flags;
+    private final int[] storedLengths;
+    private final int[] rawLengths;
+    private final float[] lowest;
+    private final float[] highest;
+    private final int chunkCount;
+    private final long size;
+
+    private final ByteBuffer[] mapped;
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[0];
+    private ByteBuffer inflated = ByteBuffer.allocate(0);
+    private int inflatedChunk = -1;
+
+    // The chunk of the last row read, and its columns
+    private int current = -1;
+    private ByteBuffer columns;
+    private int rows;
+    private float scale;
+
+    public TrainingDataReader(File file) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        ByteBuffer header = ByteBuffer.allocate(Math.max(TrainingDataWriter.HEADER_SIZE,
+            TrainingDataWriter.CHUNK_HEADER_SIZE));
+        header.limit(TrainingDataWriter.HEADER_SIZE);
+        if (!readFully(header, 0) || header.getInt(0) != TrainingDataWriter.MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a training data file");
+        }
+        if (header.get(4) != TrainingDataWriter.VERSION) {
+            channel.close();
+            throw new IOException(file + " is not a version " + TrainingDataWriter.VERSION + " training data file");
+        }
+
+        long[] positions = new long[16];
+        int count = 0;
+        long position = TrainingDataWriter.HEADER_SIZE;
+        long fileSize = channel.size();
+        while (position + TrainingDataWriter.CHUNK_HEADER_SIZE <= fileSize) {
+            header.clear();
+            header.limit(TrainingDataWriter.CHUNK_HEADER_SIZE);
+            if (!readFully(header, position) || header.getInt(0) != TrainingDataWriter.CHUNK_MAGIC) break;
+            long next = position + TrainingDataWriter.CHUNK_HEADER_SIZE + header.getInt(12);
+            if (next > fileSize) break;
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+            position = next;
+        }
+
+        chunkCount = count;
+        this.positions = Arrays.copyOf(positions, count);
+        firstRows = new long[count];
+        rowCounts = new int[count];
+        flags = new int[count];
+        storedLengths = new int[count];
+        rawLengths = new int[count];
+        lowest = new float[count];
+        highest = new float[count];
+        mapped = new ByteBuffer[count];
+        long total = 0;
+        for (int chunk = 0; chunk < count; chunk++) {
+            header.clear();
+            header.limit(TrainingDataWriter.CHUNK_HEADER_SIZE);
+            readFully(header, this.positions[chunk]);
+            firstRows[chunk] = total;
+            rowCounts[chunk] = header.getInt(4);
+            flags[chunk] = header.getInt(8);
+            storedLengths[chunk] = header.getInt(12);
+            rawLengths[chunk] = header.getInt(16);
+            lowest[chunk] = header.getFloat(20);
+            highest[chunk] = header.getFloat(24);
+            total += rowCounts[chunk];
+        }
+        size = total;
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) return false;
+            position += read;
+        }
+        return true;
+    }
+
+    /**
+     * Number of samples
+     */
+    public long size() {
+        return size;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public long getBoard(long row) throws IOException {
+        int index = select(row);
+        return columns.getLong(index * 8);
+    }
+
+    public Direction getMove(long row) throws IOException {
+        int index = select(row);
+        int packed = columns.get(TrainingDataWriter.movesOffset(rows) + index / 4);
+        return Direction.of(packed >>> 2 * (index & 3) & 3);
+    }
+
+    /**
+     * Searched value of a move, as quantized in the file; NaN if the move was not possible
+     */
+    public float getValue(long row, Direction move) throws IOException {
+        int index = select(row);
+        int quantized = columns.getShort(TrainingDataWriter.valuesOffset(rows, move.ordinal()) + index * 2) & 0xFFFF;
+        if (quantized == 0) return Float.NaN;
+        return scale == 0 ? lowest[current] : lowest[current] + (quantized - 1) / scale;
+    }
+
+    public int getFinalScore(long row) throws IOException {
+        int index = select(row);
+        return columns.getInt(TrainingDataWriter.scoresOffset(rows) + index * 4);
+    }
+
+    public int getFinalMaxExponent(long row) throws IOException {
+        int index = select(row);
+        return columns.get(TrainingDataWriter.exponentsOffset(rows) + index);
+    }
+
+    /**
+     * Makes the chunk holding a row current; returns the row's index within it
+     */
+    private int select(long row) throws IOException {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        if (current < 0 || row < firstRows[current] || row >= firstRows[current] + rowCounts[current]) {
+            int chunk = Arrays.binarySearch(firstRows, row);
+            if (chunk < 0) chunk = -chunk - 2;
+            // Chunks without rows share their first row with the next one
+            while (rowCounts[chunk] == 0) chunk++;
+            load(chunk);
+        }
+        return (int) (row - firstRows[current]);
+    }
+
+    private void load(int chunk) throws IOException {
+        long start = positions[chunk] + TrainingDataWriter.CHUNK_HEADER_SIZE;
+        if ((flags[chunk] & TrainingDataWriter.FLAG_DEFLATE) == 0) {
+            if (mapped[chunk] == null) {
+                mapped[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, start, rawLengths[chunk]);
+            }
+            columns = mapped[chunk];
+        } else {
+            if (inflatedChunk != chunk) {
+                inflate(chunk, start);
+            }
+            columns = inflated;
+        }
+        current = chunk;
+        rows = rowCounts[chunk];
+        float range = highest[chunk] - lowest[chunk];
+        scale = range > 0 ? (TrainingDataWriter.MAX_QUANTIZED - 1) / range : 0;
+    }
+
+    private void inflate(int chunk, long start) throws IOException {
+        if (compressed.length < storedLengths[chunk]) {
+            compressed = new byte[storedLengths[chunk]];
+        }
+        if (inflated.capacity() < rawLengths[chunk]) {
+            inflated = ByteBuffer.allocate(rawLengths[chunk]);
+        }
+        ByteBuffer input = ByteBuffer.wrap(compressed, 0, storedLengths[chunk]);
+        if (!readFully(input, start)) {
+            throw new IOException("Chunk " + chunk + " is truncated");
+        }
+        inflater.reset();
+        inflater.setInput(compressed, 0, storedLengths[chunk]);
+        try {
+            int length = 0;
+            while (length < rawLengths[chunk] && !inflater.finished()) {
+                int read = inflater.inflate(inflated.array(), length, rawLengths[chunk] - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += read;
+            }
+            if (length != rawLengths[chunk]) {
+                throw new IOException("Chunk " + chunk + " inflates to " + length + " bytes, not "
+                    + rawLengths[chunk]);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Chunk " + chunk + " is corrupt", e);
+        }
+        inflatedChunk = chunk;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
@@ -0,0 +1,293 @@
+package com.segilmez.game3072;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.Deflater;
+
+/**
+ * Writes self-play samples, each a board, the move chosen on it, the searched value of every move and the
+ * final result of its game, to a columnar file for offline model fitting. {@link TrainingDataReader} reads it.
+ * <p>
+ * Samples go into {@link Chunk}s, one per writing thread, that are encoded into a direct buffer of their own
+ * and written with a single positional write at a place reserved for them; the only shared state is the file
+ * position, so any number of threads write at once without waiting for each other. Chunks are written in
+ * whatever order they fill up, and a chunk may be deflated. Layout:
+ * <pre>
+ * Header, {@value #HEADER_SIZE} bytes:
+ *   int magic "G72S", byte format version, byte rules version, short reserved, long reserved
+ * then chunks, each a {@value #CHUNK_HEADER_SIZE} byte header:
+ *   int magic "G72C", int rows, int flags ({@value #FLAG_DEFLATE} = deflated), int stored length,
+ *   int raw length, float lowest value, float highest value, int reserved
+ * and its columns, stored as they are or deflated together, each aligned to its own size:
+ *   long[rows]     packed boards
+ *   byte[rows / 4] chosen moves, 2 bits each by {@link Direction#ordinal()}, the first row in the lowest bits
+ *   4 x short[rows] searched value of each move, by direction: 0 when the move is not possible, otherwise
+ *                  1 to 65535 spread linearly over the lowest to highest value of the chunk
+ *   int[rows]      final score of the game
+ *   byte[rows]     final largest tile exponent of the game
+ * </pre>
+ */
+public class TrainingDataWriter implements Closeable {
+    public static final int MAGIC = 0x47373253;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int CHUNK_MAGIC = 0x47373243;
+    public static final int CHUNK_HEADER_SIZE = 32;
+    public static final int FLAG_DEFLATE = 1;
+
+    static final int MOVES = 4;
+    static final int MAX_QUANTIZED = 0xFFFF;
+
+    private final FileChannel channel;
+    private final boolean compress;
+    private long end = HEADER_SIZE;
+    private long rows = 0;
+    private long chunks = 0;
+
+    /**
+     * Creates the file, replacing any earlier one
+     *
+     * @param compress whether chunks are deflated
+     */
+    public TrainingDataWriter(File file, boolean compress) throws IOException {
+        this.compress = compress;
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        output.setLength(0);
+        channel = output.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.put((byte) VERSION);
+        header.put((byte) Board.RULES_VERSION);
+        header.rewind();
+        writeFully(header, 0);
+    }
+
+    /**
+     * A buffer of samples for one thread; hand it to {@link #write(Chunk)} when it is full
+     */
+    public Chunk newChunk(int capacity) {
+        return new Chunk(capacity, compress);
+    }
+
+    /**
+     * Encodes the chunk's samples, writes them and empties the chunk; may be called from many threads at once,
+     * each with its own chunk
+     */
+    public void write(Chunk chunk) throws IOException {
+        if (chunk.rows == 0) return;
+        ByteBuffer encoded = chunk.encode();
+        long position;
+        synchronized (this) {
+            position = end;
+            end += encoded.remaining();
+            rows += chunk.rows;
+            chunks++;
+        }
+        writeFully(encoded, position);
+        chunk.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    public synchronized long getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Size of the file once every chunk handed over so far is written
+     */
+    public synchronized long getBytes() {
+        return end;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Column offsets in a chunk's raw columns, shared with the reader
+
+    static int movesOffset(int rows) {
+        return rows * 8;
+    }
+
+    static int valuesOffset(int rows, int move) {
+        return align(movesOffset(rows) + (rows + 3) / 4, 2) + move * rows * 2;
+    }
+
+    static int scoresOffset(int rows) {
+        return align(valuesOffset(rows, MOVES), 4);
+    }
+
+    static int exponentsOffset(int rows) {
+        return scoresOffset(rows) + rows * 4;
+    }
+
+    static int rawLength(int rows) {
+        return exponentsOffset(rows) + rows;
+    }
+
+    private static int align(int offset, int size) {
+        return (offset + size - 1) / size * size;
+    }
+
+    /**
+     * Samples collected by one thread, kept in primitive arrays until the chunk is written
+     */
+    public static final class Chunk {
+        private final long[] boards;
+        private final byte[] moves;
+        private final float[] values;
+        private final int[] scores;
+        private final byte[] exponents;
+        private final boolean compress;
+        private final ByteBuffer output;
+        private final ByteBuffer raw;
+        private final Deflater deflater;
+        private final byte[] deflated;
+        private int rows = 0;
+
+        Chunk(int capacity, boolean compress) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Chunk capacity must be at least 1, not " + capacity);
+            }
+            boards = new long[capacity];
+            moves = new byte[capacity];
+            values = new float[capacity * MOVES];
+            scores = new int[capacity];
+            exponents = new byte[capacity];
+            this.compress = compress;
+            int rawLength = rawLength(capacity);
+            if (compress) {
+                // Deflater works on arrays, so the columns are laid out on the heap and only the deflated
+                // chunk goes through the direct buffer
+                raw = ByteBuffer.allocate(rawLength);
+                deflater = new Deflater(Deflater.BEST_SPEED);
+                deflated = new byte[rawLength + rawLength / 1000 + 64];
+                output = ByteBuffer.allocateDirect(CHUNK_HEADER_SIZE + deflated.length);
+            } else {
+                raw = null;
+                deflater = null;
+                deflated = null;
+                output = ByteBuffer.allocateDirect(CHUNK_HEADER_SIZE + rawLength);
+            }
+        }
+
+        public int size() {
+            return rows;
+        }
+
+        public boolean isFull() {
+            return rows == boards.length;
+        }
+
+        /**
+         * Adds a sample
+         *
+         * @param moveValues searched value of each move by direction from {@code offset}, NaN if not possible
+         */
+        public void add(long board, Direction move, float[] moveValues, int offset, int finalScore,
+                        int finalMaxExponent) {
+            if (isFull()) {
+                throw new IllegalStateException("Chunk is full");
+            }
+            boards[rows] = board;
+            moves[rows] = (byte) move.ordinal();
+            System.arraycopy(moveValues, offset, values, rows * MOVES, MOVES);
+            scores[rows] = finalScore;
+            exponents[rows] = (byte) finalMaxExponent;
+            rows++;
+        }
+
+        void clear() {
+            rows = 0;
+        }
+
+        /**
+         * Lays the samples out as columns after a chunk header, ready to write
+         */
+        ByteBuffer encode() {
+            float lowest = Float.POSITIVE_INFINITY;
+            float highest = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < rows * MOVES; i++) {
+                float value = values[i];
+                if (value != value) continue;
+                lowest = Math.min(lowest, value);
+                highest = Math.max(highest, value);
+            }
+            if (lowest > highest) {
+                lowest = 0;
+                highest = 0;
+            }
+
+            ByteBuffer columns = compress ? raw : output;
+            columns.clear();
+            int base = compress ? 0 : CHUNK_HEADER_SIZE;
+            for (int row = 0; row < rows; row++) {
+                columns.putLong(base + row * 8, boards[row]);
+            }
+            int movesOffset = base + movesOffset(rows);
+            for (int row = 0; row < rows; row += 4) {
+                int packed = 0;
+                for (int i = 0; i < 4 && row + i < rows; i++) {
+                    packed |= moves[row + i] << 2 * i;
+                }
+                columns.put(movesOffset + row / 4, (byte) packed);
+            }
+            float scale = highest > lowest ? (MAX_QUANTIZED - 1) / (highest - lowest) : 0;
+            for (int move = 0; move < MOVES; move++) {
+                int offset = base + valuesOffset(rows, move);
+                for (int row = 0; row < rows; row++) {
+                    float value = values[row * MOVES + move];
+                    int quantized = value != value ? 0 : 1 + Math.round((value - lowest) * scale);
+                    columns.putShort(offset + row * 2, (short) quantized);
+                }
+            }
+            int scoresOffset = base + scoresOffset(rows);
+            int exponentsOffset = base + exponentsOffset(rows);
+            for (int row = 0; row < rows; row++) {
+                columns.putInt(scoresOffset + row * 4, scores[row]);
+                columns.put(exponentsOffset + row, exponents[row]);
+            }
+
+            int rawLength = rawLength(rows);
+            int storedLength = rawLength;
+            if (compress) {
+                deflater.reset();
+                deflater.setInput(raw.array(), 0, rawLength);
+                deflater.finish();
+                storedLength = 0;
+                while (!deflater.finished()) {
+                    storedLength += deflater.deflate(deflated, storedLength, deflated.length - storedLength);
+                }
+                output.clear();
+                output.position(CHUNK_HEADER_SIZE);
+                output.put(deflated, 0, storedLength);
+            }
+
+            output.putInt(0, CHUNK_MAGIC);
+            output.putInt(4, rows);
+            output.putInt(8, compress ? FLAG_DEFLATE : 0);
+            output.putInt(12, storedLength);
+            output.putInt(16, rawLength);
+            output.putFloat(20, lowest);
+            output.putFloat(24, highest);
+            output.putInt(28, 0);
+            output.limit(CHUNK_HEADER_SIZE + storedLength);
+            output.position(0);
+            return output;
+        }
+    }
+}
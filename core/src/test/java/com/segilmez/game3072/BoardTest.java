@@ -0,0 +1,127 @@
+package com.segilmez.game3072;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Moves through the move tables and cell by cell, checked by replaying what the {@link Board.MoveListener} is
+ * told onto a copy of the board
+ */
+public class BoardTest {
+    private static final int GAMES = 100;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * Applies every tile the listener hears about to its own copy of the cells
+     */
+    private static final class Mirror implements Board.MoveListener {
+        final Rules rules;
+        final int[][] cells;
+
+        Mirror(Rules rules) {
+            this.rules = rules;
+            cells = new int[rules.getSize()][rules.getSize()];
+        }
+
+        @Override
+        public void tileMoved(int fromRow, int fromCol, int toRow, int toCol, int value, boolean merge) {
+            assertEquals(value, cells[fromRow][fromCol]);
+            cells[fromRow][fromCol] = 0;
+            if (merge) {
+                int merged = rules.merge(value, cells[toRow][toCol]);
+                assertTrue("Merge of " + value + " into " + cells[toRow][toCol], merged != 0);
+                cells[toRow][toCol] = merged;
+            } else {
+                assertEquals("Slide onto a tile", 0, cells[toRow][toCol]);
+                cells[toRow][toCol] = value;
+            }
+        }
+
+        @Override
+        public void tileSpawned(int row, int col, int value) {
+            assertEquals(0, cells[row][col]);
+            cells[row][col] = value;
+        }
+
+        void copy(Board board) {
+            for (int row = 0; row < cells.length; row++) {
+                for (int col = 0; col < cells.length; col++) {
+                    cells[row][col] = board.getValue(row, col);
+                }
+            }
+        }
+
+        void assertMatches(Board board, String message) {
+            for (int row = 0; row < cells.length; row++) {
+                for (int col = 0; col < cells.length; col++) {
+                    assertEquals(message + " at " + row + "," + col, board.getValue(row, col), cells[row][col]);
+                }
+            }
+        }
+    }
+
+    private static void playRandomGames(Rules rules) {
+        Random random = new Random(3072);
+        for (int game = 0; game < GAMES; game++) {
+            Board board = new Board(rules, game);
+            Mirror mirror = new Mirror(rules);
+            board.setMoveListener(mirror);
+            board.addInitialTiles();
+            mirror.assertMatches(board, "Start");
+            for (int move = 0; !board.isGameOver(); move++) {
+                if (random.nextInt(10) == 0 && board.undo()) {
+                    mirror.copy(board);
+                }
+                int scoreBefore = board.getScore();
+                board.resetLastMoveScore();
+                board.play(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+                String message = rules + " game " + game + " move " + move;
+                mirror.assertMatches(board, message);
+                assertEquals(message, scoreBefore + board.getLastMoveScore(), board.getScore());
+            }
+        }
+    }
+
+    @Test
+    public void standardBoardsReportEveryTile() {
+        playRandomGames(Rules.STANDARD);
+    }
+
+    @Test
+    public void threesBoardsReportEveryTile() {
+        playRandomGames(Rules.THREES);
+    }
+
+    @Test
+    public void boardsOfOtherSizesReportEveryTile() {
+        playRandomGames(Rules.STANDARD.withSize(3));
+        playRandomGames(Rules.STANDARD.withSize(5));
+    }
+
+    @Test
+    public void largestTilesStillMerge() {
+        // Two 32768s have no 4-bit code to merge into, so this move leaves the tables for the cell-by-cell slide
+        Board board = new Board(Rules.STANDARD, 0);
+        int[] cells = new int[16];
+        cells[0] = 32768;
+        cells[1] = 32768;
+        cells[2] = 2;
+        cells[3] = 2;
+        board.restore(cells, 0, 0, 1, 2);
+        Mirror mirror = new Mirror(Rules.STANDARD);
+        mirror.copy(board);
+        board.setMoveListener(mirror);
+
+        assertTrue(board.move(Direction.LEFT));
+        assertEquals(65536, board.getValue(0, 0));
+        assertEquals(4, board.getValue(0, 1));
+        assertEquals(65536 + 4, board.getScore());
+        mirror.assertMatches(board, "After the merge");
+        assertFalse(board.isGameOver());
+    }
+}
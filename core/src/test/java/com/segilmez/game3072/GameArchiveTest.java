@@ -0,0 +1,162 @@
+package com.segilmez.game3072;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Records and index counts of a {@link GameArchive} survive closing and reopening the file
+ */
+public class GameArchiveTest {
+    private static final int GAMES = 1000;
+    private static final double[] PERCENTILES = {0, 1, 10, 50, 90, 99, 99.9, 100};
+
+    private static GameRecord[] randomRecords(long seed, int count) {
+        Random random = new Random(seed);
+        GameRecord[] records = new GameRecord[count];
+        for (int i = 0; i < count; i++) {
+            GameRecord record = new GameRecord();
+            record.seed = random.nextLong();
+            record.policyId = random.nextInt(3);
+            record.boardSize = 4;
+            record.board = random.nextLong();
+            // Up to 65536, which the index counts with 32768
+            record.maxTileExponent = 1 + random.nextInt(GameArchive.TILE_BUCKETS);
+            record.score = random.nextInt(10) == 0 ? 0 : random.nextInt(1 << (1 + random.nextInt(20)));
+            record.moveCount = random.nextInt(5000);
+            record.durationNanos = random.nextLong() & Long.MAX_VALUE;
+            records[i] = record;
+        }
+        return records;
+    }
+
+    private static File newArchiveFile() throws IOException {
+        File file = File.createTempFile("games", ".g72a");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static void assertHolds(GameArchive archive, GameRecord[] records) {
+        assertEquals(records.length, archive.size());
+        long[][] counts = new long[GameArchive.TILE_BUCKETS][GameArchive.SCORE_BUCKETS];
+        int[] scores = new int[records.length];
+        for (int i = 0; i < records.length; i++) {
+            GameRecord record = records[i];
+            String message = "Record " + i;
+            assertEquals(message, record.seed, archive.getSeed(i));
+            assertEquals(message, record.policyId, archive.getPolicyId(i));
+            assertEquals(message, record.boardSize, archive.getBoardSize(i));
+            assertEquals(message, record.board, archive.getBoard(i));
+            assertEquals(message, record.maxTileExponent, archive.getMaxTileExponent(i));
+            assertEquals(message, record.score, archive.getScore(i));
+            assertEquals(message, record.moveCount, archive.getMoveCount(i));
+            assertEquals(message, record.durationNanos, archive.getDurationNanos(i));
+            int tile = Math.min(record.maxTileExponent, GameArchive.TILE_BUCKETS - 1);
+            counts[tile][GameArchive.scoreBucket(record.score)]++;
+            scores[i] = record.score;
+        }
+
+        for (int tile = 0; tile < GameArchive.TILE_BUCKETS; tile++) {
+            for (int bucket = 0; bucket < GameArchive.SCORE_BUCKETS; bucket++) {
+                assertEquals("Tile " + tile + " bucket " + bucket, counts[tile][bucket],
+                    archive.getIndexCount(tile, bucket));
+            }
+        }
+        for (int exponent = 0; exponent < GameArchive.TILE_BUCKETS; exponent++) {
+            long reaching = 0;
+            for (GameRecord record : records) {
+                if (record.maxTileExponent >= exponent) reaching++;
+            }
+            assertEquals("Reaching " + exponent, reaching, archive.countReaching(exponent));
+        }
+
+        Arrays.sort(scores);
+        for (double percentile : PERCENTILES) {
+            int rank = (int) Math.max(1, Math.ceil(percentile / 100 * scores.length));
+            assertEquals("Percentile " + percentile, scores[rank - 1], archive.scorePercentile(percentile));
+        }
+    }
+
+    @Test
+    public void recordsAndCountsSurviveReopening() throws IOException {
+        File file = newArchiveFile();
+        GameRecord[] records = randomRecords(3072, GAMES);
+        GameArchive archive = GameArchive.openForAppend(file);
+        // More than one write batch at once, then one at a time
+        archive.append(records, 0, GAMES - 10);
+        for (int i = GAMES - 10; i < GAMES; i++) {
+            archive.append(records[i]);
+        }
+        archive.refresh();
+        assertHolds(archive, records);
+        archive.close();
+
+        archive = GameArchive.openReadOnly(file);
+        assertHolds(archive, records);
+        archive.close();
+    }
+
+    @Test
+    public void appendsAfterReopeningAddToTheCounts() throws IOException {
+        File file = newArchiveFile();
+        GameRecord[] records = randomRecords(7, GAMES);
+        GameArchive archive = GameArchive.openForAppend(file);
+        archive.append(records, 0, GAMES / 2);
+        archive.close();
+
+        GameArchive reader = GameArchive.openReadOnly(file);
+        assertEquals(GAMES / 2, reader.size());
+        archive = GameArchive.openForAppend(file);
+        archive.append(records, GAMES / 2, GAMES - GAMES / 2);
+        archive.close();
+        // A reader sees the new records once it refreshes
+        assertEquals(GAMES / 2, reader.size());
+        assertEquals(GAMES, reader.refresh());
+        assertHolds(reader, records);
+        reader.close();
+    }
+
+    @Test
+    public void percentilesOfKnownScores() throws IOException {
+        File file = newArchiveFile();
+        GameArchive archive = GameArchive.openForAppend(file);
+        GameRecord record = new GameRecord();
+        record.boardSize = 4;
+        record.maxTileExponent = 11;
+        // Scores 1 to 1000, appended in a shuffled order
+        int[] scores = new int[GAMES];
+        for (int i = 0; i < GAMES; i++) {
+            scores[i] = i + 1;
+        }
+        Random random = new Random(3072);
+        for (int i = GAMES - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = scores[i];
+            scores[i] = scores[j];
+            scores[j] = swap;
+        }
+        for (int score : scores) {
+            record.score = score;
+            archive.append(record);
+        }
+        archive.close();
+
+        archive = GameArchive.openReadOnly(file);
+        assertEquals(GAMES, archive.size());
+        assertEquals(GAMES, archive.countReaching(11));
+        assertEquals(0, archive.countReaching(12));
+        assertEquals(1, archive.scorePercentile(0));
+        assertEquals(100, archive.scorePercentile(10));
+        assertEquals(500, archive.scorePercentile(50));
+        assertEquals(990, archive.scorePercentile(99));
+        assertEquals(1000, archive.scorePercentile(100));
+        assertEquals(1.0, archive.reachRate(GameRecord.POLICY_HUMAN, 11), 0);
+        assertEquals(0.0, archive.reachRate(GameRecord.POLICY_HUMAN, 12), 0);
+        archive.close();
+    }
+}
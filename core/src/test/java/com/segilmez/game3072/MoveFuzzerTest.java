@@ -0,0 +1,27 @@
+package com.segilmez.game3072;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A short run of {@link MoveFuzzer} with a fixed seed; {@code lwjgl3:fuzzMoves} runs the long one.
+ */
+public class MoveFuzzerTest {
+    private static final long SEED = 3072;
+    private static final long CASES = 100000;
+
+    @Test
+    public void everyEngineMatchesTheReference() throws Exception {
+        MoveFuzzer fuzzer = new MoveFuzzer(SEED, Runtime.getRuntime().availableProcessors());
+        List<MoveFuzzer.Failure> failures = fuzzer.run(CASES, 1);
+        assertTrue(failures.isEmpty() ? "" : failures.get(0).toString(), failures.isEmpty());
+        for (MoveFuzzer.Engine engine : MoveFuzzer.Engine.values()) {
+            // The vector kernel is only there with the vector module and jdk.incubator.vector
+            if (engine == MoveFuzzer.Engine.BATCH_VECTOR) continue;
+            assertTrue(engine + " was never checked", fuzzer.getChecked(engine) > 0);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.segilmez.game3072;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Properties every move of {@link MoveTables} keeps, under both rulesets, and how moves carry over to the
+ * mirror images of {@link BoardSymmetry}
+ */
+public class MoveTablesTest {
+    private static final int BOARDS = 20000;
+    private static final long SEED = 3072;
+    private static final Rules[] RULES = {Rules.STANDARD, Rules.THREES};
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * A board with random tiles below the largest code, so no merge runs out of bits
+     */
+    private static long randomBoard(SplittableRandom random) {
+        double fill = random.nextDouble();
+        long board = 0;
+        for (int cell = 0; cell < PackedBoard.SIZE * PackedBoard.SIZE; cell++) {
+            if (random.nextDouble() < fill) {
+                board |= (long) (1 + random.nextInt(Rules.MAX_CODE - 1)) << 4 * cell;
+            }
+        }
+        return board;
+    }
+
+    private static long tileSum(Rules rules, long board) {
+        long sum = 0;
+        for (int cell = 0; cell < PackedBoard.SIZE * PackedBoard.SIZE; cell++) {
+            sum += rules.value((int) (board >>> 4 * cell) & 0xF);
+        }
+        return sum;
+    }
+
+    @Test
+    public void movesKeepTheTileSumAndNeverFillCells() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (Rules rules : RULES) {
+            MoveTables tables = rules.getMoveTables();
+            for (int i = 0; i < BOARDS; i++) {
+                long board = randomBoard(random);
+                boolean canMove = false;
+                for (Direction direction : DIRECTIONS) {
+                    long moved = tables.move(board, direction);
+                    String message = rules.getMergeRule() + " " + Long.toHexString(board) + " " + direction;
+                    assertEquals(message, tileSum(rules, board), tileSum(rules, moved));
+                    assertTrue(message, PackedBoard.countEmpty(moved) >= PackedBoard.countEmpty(board));
+                    if (moved == board) {
+                        assertEquals(message, 0, tables.score(board, direction));
+                    } else {
+                        canMove = true;
+                    }
+                }
+                assertEquals(Long.toHexString(board), canMove, tables.canMove(board));
+            }
+        }
+    }
+
+    @Test
+    public void batchMovesMatchSingleMoves() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        long[] boards = new long[BOARDS];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = randomBoard(random);
+        }
+        long[] moved = new long[BOARDS];
+        int[] scores = new int[BOARDS];
+        for (Rules rules : RULES) {
+            MoveTables tables = rules.getMoveTables();
+            for (BatchMoves kernel : new BatchMoves[]{tables, tables.batchMoves()}) {
+                for (Direction direction : DIRECTIONS) {
+                    // An odd count, so a vector kernel also handles the boards left over after its last vector
+                    kernel.moveAll(boards, BOARDS - 1, direction, moved, scores);
+                    for (int i = 0; i < BOARDS - 1; i++) {
+                        String message = kernel.getClass().getSimpleName() + " " + Long.toHexString(boards[i])
+                            + " " + direction;
+                        assertEquals(message, tables.move(boards[i], direction), moved[i]);
+                        assertEquals(message, tables.score(boards[i], direction), scores[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void movesCommuteWithSymmetries() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (Rules rules : RULES) {
+            MoveTables tables = rules.getMoveTables();
+            for (int i = 0; i < BOARDS; i++) {
+                long board = randomBoard(random);
+                for (int transform = 0; transform < BoardSymmetry.TRANSFORMS; transform++) {
+                    long image = BoardSymmetry.apply(board, transform);
+                    for (Direction direction : DIRECTIONS) {
+                        Direction mapped = BoardSymmetry.toCanonical(direction, transform);
+                        String message = rules.getMergeRule() + " " + Long.toHexString(board) + " " + direction
+                            + " transform " + transform;
+                        assertEquals(message, direction, BoardSymmetry.fromCanonical(mapped, transform));
+                        assertEquals(message, BoardSymmetry.apply(tables.move(board, direction), transform),
+                            tables.move(image, mapped));
+                        assertEquals(message, tables.score(board, direction), tables.score(image, mapped));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mirrorImagesShareTheirCanonicalForm() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < BOARDS; i++) {
+            long board = randomBoard(random);
+            long canonical = BoardSymmetry.canonical(board);
+            for (int transform = 0; transform < BoardSymmetry.TRANSFORMS; transform++) {
+                long image = BoardSymmetry.apply(board, transform);
+                assertEquals(Long.toHexString(board) + " transform " + transform, canonical,
+                    BoardSymmetry.canonical(image));
+                assertTrue(Long.toHexString(board), canonical <= image);
+            }
+        }
+    }
+}
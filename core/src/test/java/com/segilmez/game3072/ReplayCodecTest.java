@@ -0,0 +1,140 @@
+package com.segilmez.game3072;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Games recorded with undos by {@link ReplayEncoder} and played back from {@link ReplayDecoder} end on the
+ * board the live game ended on
+ */
+public class ReplayCodecTest {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int GAMES = 40;
+    private static final int[] KEYFRAME_INTERVALS = {4, 8, ReplayEncoder.DEFAULT_KEYFRAME_INTERVAL};
+
+    /**
+     * A live game and what the encoder wrote for it
+     */
+    private static final class Recording {
+        final Board board;
+        final List<Direction> moves = new ArrayList<>();
+        byte[] bytes;
+
+        Recording(long seed) {
+            board = new Board(Rules.STANDARD, seed);
+            board.addInitialTiles();
+        }
+    }
+
+    /**
+     * Plays up to {@code moves} random moves, undoing now and then, the way the game feeds the encoder
+     */
+    private static Recording record(long seed, int moves, int keyframeInterval) throws IOException {
+        Recording recording = new Recording(seed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReplayEncoder encoder = new ReplayEncoder(Channels.newChannel(out), seed, 4, keyframeInterval);
+        Random random = new Random(seed);
+        while (recording.moves.size() < moves && !recording.board.isGameOver()) {
+            if (random.nextInt(8) == 0 && recording.board.undo()) {
+                assertTrue(encoder.undo());
+                recording.moves.remove(recording.moves.size() - 1);
+                continue;
+            }
+            Direction direction = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+            if (recording.board.play(direction)) {
+                encoder.append(direction);
+                recording.moves.add(direction);
+            }
+            assertEquals(recording.moves.size(), encoder.getMoveCount());
+        }
+        encoder.close();
+        recording.bytes = out.toByteArray();
+        return recording;
+    }
+
+    private static void assertDecodesToTheLiveBoard(String message, Recording recording, int keyframeInterval)
+        throws IOException {
+        ReplayDecoder decoder = new ReplayDecoder(Channels.newChannel(new ByteArrayInputStream(recording.bytes)));
+        assertEquals(message, recording.board.getSeed(), decoder.getSeed());
+        assertEquals(message, 4, decoder.getSize());
+        assertEquals(message, keyframeInterval, decoder.getKeyframeInterval());
+
+        Board replayed = decoder.createBoard();
+        for (int move = 0; move < recording.moves.size(); move++) {
+            Direction direction = decoder.next();
+            assertEquals(message + " move " + move, recording.moves.get(move), direction);
+            assertTrue(message + " move " + move, replayed.play(direction));
+        }
+        assertNull(message, decoder.next());
+        assertNull(message, decoder.next());
+        decoder.close();
+
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                assertEquals(message + " at " + row + "," + col, recording.board.getValue(row, col),
+                    replayed.getValue(row, col));
+            }
+        }
+        assertEquals(message, recording.board.getScore(), replayed.getScore());
+        assertEquals(message, recording.board.getMoveCount(), replayed.getMoveCount());
+    }
+
+    @Test
+    public void gamesWithUndosDecodeToTheLiveBoard() throws IOException {
+        for (int keyframeInterval : KEYFRAME_INTERVALS) {
+            boolean[] lastByteFill = new boolean[4];
+            for (int game = 0; game < GAMES; game++) {
+                // Lengths around the intervals, and games that run to the end
+                int moves = game < GAMES / 2 ? keyframeInterval + game - GAMES / 4 : Integer.MAX_VALUE;
+                Recording recording = record(game, moves, keyframeInterval);
+                lastByteFill[recording.moves.size() % 4] = true;
+                assertDecodesToTheLiveBoard("Game " + game + " interval " + keyframeInterval, recording,
+                    keyframeInterval);
+            }
+            for (int fill = 0; fill < 4; fill++) {
+                assertTrue("No game with " + fill + " moves past a multiple of 4", lastByteFill[fill]);
+            }
+        }
+    }
+
+    @Test
+    public void everyLastByteFillDecodes() throws IOException {
+        // Short games end in each position of the last move byte; 0 and 8 end on a byte boundary
+        for (int moves = 0; moves <= 9; moves++) {
+            Recording recording = record(3072, moves, 4);
+            assertEquals(moves, recording.moves.size());
+            assertDecodesToTheLiveBoard(moves + " moves", recording, 4);
+        }
+    }
+
+    @Test
+    public void gamesUndoneToTheStartDecodeToTheFirstBoard() throws IOException {
+        Recording recording = new Recording(7);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReplayEncoder encoder = new ReplayEncoder(Channels.newChannel(out), 7, 4);
+        for (int i = 0; i < Board.UNDO_DEPTH; i++) {
+            Direction direction = DIRECTIONS[i % DIRECTIONS.length];
+            if (recording.board.play(direction)) {
+                encoder.append(direction);
+            }
+        }
+        while (recording.board.undo()) {
+            assertTrue(encoder.undo());
+        }
+        assertEquals(0, encoder.getMoveCount());
+        encoder.close();
+        recording.bytes = out.toByteArray();
+        assertDecodesToTheLiveBoard("Undone game", recording, ReplayEncoder.DEFAULT_KEYFRAME_INTERVAL);
+    }
+}
@@ -0,0 +1,151 @@
+package com.segilmez.game3072;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Seeks of {@link ReplayPlayer} around its keyframes land on the board reached by playing from the first move
+ */
+public class ReplayPlayerTest {
+    private static final int[] KEYFRAME_INTERVALS = {4, 8, 20, ReplayEncoder.DEFAULT_KEYFRAME_INTERVAL};
+    /**
+     * Board size for each interval; larger boards last long enough to pass several of the longer intervals
+     */
+    private static final int[] SIZES = {4, 5, 5, 6};
+    private static final Direction[] CORNER_ORDER = {Direction.DOWN, Direction.LEFT, Direction.RIGHT, Direction.UP};
+
+    /**
+     * A recorded game and the board after every one of its moves
+     */
+    private static final class Recording {
+        final List<long[]> positions = new ArrayList<>();
+        ReplayPlayer player;
+    }
+
+    /**
+     * Cells, score, move count and random state
+     */
+    private static long[] position(Board board) {
+        int size = board.getSize();
+        long[] position = new long[size * size + 4];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                position[row * size + col] = board.getValue(row, col);
+            }
+        }
+        position[size * size] = board.getScore();
+        position[size * size + 1] = board.getMoveCount();
+        position[size * size + 2] = board.getRandomState(0);
+        position[size * size + 3] = board.getRandomState(1);
+        return position;
+    }
+
+    private static Recording record(long seed, int size, int keyframeInterval) throws IOException {
+        return record(seed, size, keyframeInterval, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Plays mostly into a corner, so the game lasts past several keyframes, for at most {@code moves} moves
+     */
+    private static Recording record(long seed, int size, int keyframeInterval, int moves) throws IOException {
+        Recording recording = new Recording();
+        Board board = new Board(Rules.STANDARD.withSize(size), seed);
+        board.addInitialTiles();
+        recording.positions.add(position(board));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReplayEncoder encoder = new ReplayEncoder(Channels.newChannel(out), seed, size, keyframeInterval);
+        Random random = new Random(seed);
+        while (!board.isGameOver() && board.getMoveCount() < moves) {
+            Direction direction = CORNER_ORDER[random.nextInt(10) == 0 ? random.nextInt(4) : 0];
+            for (int i = 0; !board.play(direction); i++) {
+                direction = CORNER_ORDER[i % CORNER_ORDER.length];
+            }
+            encoder.append(direction);
+            recording.positions.add(position(board));
+        }
+        encoder.close();
+        recording.player = new ReplayPlayer(ByteBuffer.wrap(out.toByteArray()));
+        return recording;
+    }
+
+    private static void assertSeeksTo(Recording recording, Board board, long move) {
+        recording.player.seek(board, move);
+        long expected = Math.max(0, Math.min(move, recording.positions.size() - 1));
+        assertArrayEquals("Seek to " + move + " of " + recording.player.getMoveCount(),
+            recording.positions.get((int) expected), position(board));
+    }
+
+    @Test
+    public void seeksAroundEachKeyframeMatchPlayingFromTheStart() throws IOException {
+        for (int i = 0; i < KEYFRAME_INTERVALS.length; i++) {
+            int keyframeInterval = KEYFRAME_INTERVALS[i];
+            Recording recording = record(keyframeInterval, SIZES[i], keyframeInterval);
+            long moveCount = recording.player.getMoveCount();
+            assertEquals(recording.positions.size() - 1, moveCount);
+            assertTrue("Only " + moveCount + " moves", moveCount > 2 * keyframeInterval);
+
+            Board board = recording.player.createBoard();
+            for (long keyframe = 0; keyframe <= moveCount + keyframeInterval; keyframe += keyframeInterval) {
+                for (long move = keyframe - 1; move <= keyframe + 1; move++) {
+                    assertSeeksTo(recording, board, move);
+                }
+            }
+            for (long move = moveCount - 2; move <= moveCount + 1; move++) {
+                assertSeeksTo(recording, board, move);
+            }
+        }
+    }
+
+    @Test
+    public void seeksToTheEndOfGamesEndingOnAKeyframeMatch() throws IOException {
+        // No keyframe follows the last move, so the end of such a game is reached from the one before
+        for (int keyframeInterval : new int[]{4, 8}) {
+            for (int blocks = 1; blocks <= 3; blocks++) {
+                int moves = blocks * keyframeInterval;
+                Recording recording = record(moves, 4, keyframeInterval, moves);
+                assertEquals(moves, recording.player.getMoveCount());
+                Board board = recording.player.createBoard();
+                for (long move = moves + 1; move >= moves - keyframeInterval - 1; move--) {
+                    assertSeeksTo(recording, board, move);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void seeksInAnyOrderMatchPlayingFromTheStart() throws IOException {
+        Recording recording = record(3072, 4, 8);
+        Board board = recording.player.createBoard();
+        Random random = new Random(3072);
+        for (int i = 0; i < 1000; i++) {
+            assertSeeksTo(recording, board, random.nextInt((int) recording.player.getMoveCount() + 1));
+        }
+    }
+
+    @Test
+    public void playContinuesFromASeek() throws IOException {
+        // Play after a seek only spawns the recorded tiles if the keyframe restored the random state
+        Recording recording = record(7, 5, 8);
+        ReplayPlayer player = recording.player;
+        for (long move = 0; move < player.getMoveCount(); move += 3) {
+            Board board = player.createBoard();
+            player.seek(board, move);
+            for (long next = move; next < Math.min(move + 10, player.getMoveCount()); next++) {
+                assertTrue(board.play(player.getMove(next)));
+                assertArrayEquals("Move " + next + " after a seek to " + move,
+                    recording.positions.get((int) next + 1), position(board));
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.segilmez.game3072;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Saves read back by {@link SaveGame} play on exactly like the board they were written from
+ */
+public class SaveGameTest {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int[] SIZES = {3, 4, 5};
+    private static final int[] MOVES = {0, 3, 50, 400};
+    private static final int MOVES_AFTER_LOADING = 200;
+    /**
+     * Offset of the move count, which version 1 saves do not have
+     */
+    private static final int MOVE_COUNT_OFFSET = 4 + 1 + 1 + 8 + 4;
+
+    private static Board playedBoard(Rules rules, long seed, int moves) {
+        Random random = new Random(seed);
+        Board board = new Board(rules, seed);
+        board.addInitialTiles();
+        for (int move = 0; move < moves && !board.isGameOver(); move++) {
+            board.play(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+        }
+        return board;
+    }
+
+    /**
+     * The same save as a version 1 one would have written it, without the move count
+     */
+    private static byte[] toVersion1(byte[] save) {
+        ByteBuffer buffer = ByteBuffer.allocate(save.length - 4);
+        buffer.put(save, 0, MOVE_COUNT_OFFSET);
+        buffer.put(save, MOVE_COUNT_OFFSET + 4, save.length - MOVE_COUNT_OFFSET - 4);
+        buffer.put(4, (byte) 1);
+        return buffer.array();
+    }
+
+    private static void assertSameBoard(String message, Board expected, Board actual, boolean sameMoveCount) {
+        assertEquals(message, expected.getSize(), actual.getSize());
+        assertEquals(message, expected.getSeed(), actual.getSeed());
+        for (int row = 0; row < expected.getSize(); row++) {
+            for (int col = 0; col < expected.getSize(); col++) {
+                assertEquals(message + " at " + row + "," + col, expected.getValue(row, col), actual.getValue(row, col));
+            }
+        }
+        assertEquals(message, expected.getScore(), actual.getScore());
+        assertEquals(message, expected.getRandomState(0), actual.getRandomState(0));
+        assertEquals(message, expected.getRandomState(1), actual.getRandomState(1));
+        assertEquals(message, expected.getUndoCount(), actual.getUndoCount());
+        if (sameMoveCount) {
+            assertEquals(message, expected.getMoveCount(), actual.getMoveCount());
+        }
+    }
+
+    /**
+     * Plays the same moves on both boards, then undoes as far as they go, comparing them after each step
+     */
+    private static void assertPlaysOnAlike(String message, Board original, Board loaded, boolean sameMoveCount) {
+        assertSameBoard(message + " loaded", original, loaded, sameMoveCount);
+        Random random = new Random(original.getSeed() + 1);
+        for (int move = 0; move < MOVES_AFTER_LOADING && !original.isGameOver(); move++) {
+            Direction direction = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+            assertEquals(message, original.play(direction), loaded.play(direction));
+            assertSameBoard(message + " move " + move + " " + direction, original, loaded, sameMoveCount);
+        }
+        while (original.canUndo()) {
+            assertTrue(message, loaded.undo());
+            original.undo();
+            assertSameBoard(message + " undo", original, loaded, sameMoveCount);
+        }
+        assertFalse(message, loaded.canUndo());
+    }
+
+    @Test
+    public void savesResumeWithTheSameSpawnsAndUndo() {
+        for (int size : SIZES) {
+            for (int moves : MOVES) {
+                Board original = playedBoard(Rules.STANDARD.withSize(size), size * 1000 + moves, moves);
+                assertTrue(SaveGame.canWrite(original));
+                Board loaded = SaveGame.read(SaveGame.write(original));
+                assertPlaysOnAlike(size + "x" + size + " after " + moves + " moves", original, loaded, true);
+            }
+        }
+    }
+
+    @Test
+    public void version1SavesResumeWithTheSameSpawnsAndUndo() {
+        for (int size : SIZES) {
+            for (int moves : MOVES) {
+                Board original = playedBoard(Rules.STANDARD.withSize(size), size * 1000 + moves, moves);
+                Board loaded = SaveGame.read(toVersion1(SaveGame.write(original)));
+                assertPlaysOnAlike(size + "x" + size + " after " + moves + " moves", original, loaded, false);
+            }
+        }
+    }
+
+    @Test
+    public void version1SavesNeverUndoBelowMoveZero() {
+        Board board = playedBoard(Rules.STANDARD, 3072, 50);
+        Board loaded = SaveGame.read(toVersion1(SaveGame.write(board)));
+        assertEquals(Board.UNDO_DEPTH, loaded.getUndoCount());
+        assertEquals(Board.UNDO_DEPTH, loaded.getMoveCount());
+        while (loaded.undo()) {
+            assertEquals(loaded.getUndoCount(), loaded.getMoveCount());
+        }
+        assertEquals(0, loaded.getMoveCount());
+        assertFalse(loaded.canUndo());
+    }
+
+    @Test
+    public void onlyStandardBoardsWithPackableTilesCanBeWritten() {
+        assertFalse(SaveGame.canWrite(playedBoard(Rules.THREES, 1, 10)));
+
+        Board board = playedBoard(Rules.STANDARD, 2, 10);
+        int[] cells = new int[16];
+        cells[0] = 32768;
+        board.restore(cells, 0, 10, 1, 2);
+        assertTrue(SaveGame.canWrite(board));
+        cells[0] = 65536;
+        board.restore(cells, 0, 10, 1, 2);
+        assertFalse(SaveGame.canWrite(board));
+        try {
+            SaveGame.write(board);
+            fail("Wrote a 65536");
+        } catch (IllegalArgumentException expected) {
+            // The cell has no code for it
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void threesBoardsAreNotWritten() {
+        SaveGame.write(playedBoard(Rules.THREES, 1, 10));
+    }
+
+    @Test
+    public void truncatedSavesAreRejected() {
+        byte[] save = SaveGame.write(playedBoard(Rules.STANDARD, 3, 50));
+        for (int length = 0; length < save.length; length++) {
+            try {
+                SaveGame.read(Arrays.copyOf(save, length));
+                fail("Read a save cut to " + length + " of " + save.length + " bytes");
+            } catch (GdxRuntimeException expected) {
+                // Every prefix ends before the last undo entry
+            }
+        }
+    }
+
+    @Test(expected = GdxRuntimeException.class)
+    public void aWrongMagicNumberIsRejected() {
+        byte[] save = SaveGame.write(playedBoard(Rules.STANDARD, 4, 10));
+        save[0] ^= 1;
+        SaveGame.read(save);
+    }
+
+    @Test(expected = GdxRuntimeException.class)
+    public void aNewerVersionIsRejected() {
+        byte[] save = SaveGame.write(playedBoard(Rules.STANDARD, 5, 10));
+        save[4] = SaveGame.VERSION + 1;
+        SaveGame.read(save);
+    }
+}
@@ -0,0 +1,183 @@
+package com.segilmez.game3072;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SessionTableTest {
+    private static final long SEED = 3072;
+    private static final int GAMES = 50;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * A packed board with the given exponents from the first cell on
+     */
+    private static long board(int... exponents) {
+        long board = 0;
+        for (int i = 0; i < exponents.length; i++) {
+            board |= (long) exponents[i] << 4 * i;
+        }
+        return board;
+    }
+
+    @Test
+    public void reachingA32768EndsTheGame() {
+        SessionTable sessions = new SessionTable(1);
+        int id = sessions.create(SEED);
+        sessions.setBoard(id, board(14, 14, 1));
+        assertFalse(sessions.isAtTileLimit(id));
+
+        assertTrue(sessions.move(id, Direction.LEFT));
+        assertEquals(PackedBoard.MAX_EXPONENT, PackedBoard.getExponent(sessions.getBoard(id), 0, 0));
+        assertTrue(sessions.isAtTileLimit(id));
+        assertTrue(sessions.isGameOver(id));
+        long board = sessions.getBoard(id);
+        for (Direction direction : Direction.values()) {
+            assertFalse(sessions.move(id, direction));
+            assertEquals(board, sessions.getBoard(id));
+        }
+
+        // Undo leaves the limit again
+        assertTrue(sessions.undo(id));
+        assertFalse(sessions.isAtTileLimit(id));
+    }
+
+    @Test
+    public void movesAtTheTileLimitAnswerTileLimit() {
+        SessionTable sessions = new SessionTable(1);
+        int id = sessions.create(SEED);
+        // Two 32768s, which a Board would merge into a 65536 that no packed board holds
+        sessions.setBoard(id, board(15, 15, 1));
+
+        ByteBuffer in = ByteBuffer.allocate(GameProtocol.requestSize(GameProtocol.MOVE));
+        in.put(GameProtocol.MOVE).putInt(id).put((byte) Direction.LEFT.ordinal()).flip();
+        ByteBuffer out = ByteBuffer.allocate(GameProtocol.RESPONSE_SIZE);
+        assertTrue(GameProtocol.serve(sessions, in, out));
+        out.flip();
+        assertEquals(GameProtocol.TILE_LIMIT, out.get());
+        assertEquals(id, out.getInt());
+        assertEquals(board(15, 15, 1), out.getLong());
+        out.getInt();
+        out.getInt();
+        assertEquals(GameProtocol.FLAG_GAME_OVER, out.get());
+    }
+
+    /**
+     * Serves a single request and returns its response, ready to read
+     */
+    private static ByteBuffer serve(SessionTable sessions, ByteBuffer request) {
+        request.flip();
+        ByteBuffer out = ByteBuffer.allocate(GameProtocol.RESPONSE_SIZE);
+        assertTrue(GameProtocol.serve(sessions, request, out));
+        assertFalse(request.hasRemaining());
+        out.flip();
+        return out;
+    }
+
+    private static ByteBuffer request(byte opcode, int id) {
+        return ByteBuffer.allocate(GameProtocol.requestSize(opcode)).put(opcode).putInt(id);
+    }
+
+    @Test
+    public void closedIdsDoNotReachTheNextGameInTheirSlot() {
+        SessionTable sessions = new SessionTable(1);
+        Set<Integer> closed = new HashSet<>();
+        int id = sessions.create(SEED);
+        // Every generation up to the one that wraps around
+        for (int game = 1; game < 1 << 31 - SessionTable.SLOT_BITS; game++) {
+            assertTrue(sessions.close(id));
+            closed.add(id);
+            int next = sessions.create(SEED + game);
+            assertEquals("Same slot", id & SessionTable.MAX_CAPACITY - 1, next & SessionTable.MAX_CAPACITY - 1);
+            assertFalse("Game " + game + " reused id " + next, closed.contains(next));
+            assertFalse(sessions.isOpen(id));
+            assertFalse(sessions.close(id));
+            id = next;
+        }
+
+        int old = closed.iterator().next();
+        try {
+            sessions.move(old, Direction.LEFT);
+            fail("Moved game " + old + " through a closed id");
+        } catch (IllegalArgumentException expected) {
+            // The slot's open game has another id
+        }
+        ByteBuffer response = serve(sessions, request(GameProtocol.STATE, old));
+        assertEquals(GameProtocol.UNKNOWN_GAME, response.get());
+        assertEquals(0, response.getInt());
+        assertTrue(sessions.isOpen(id));
+        assertEquals(GameProtocol.OK, serve(sessions, request(GameProtocol.STATE, id)).get());
+    }
+
+    @Test
+    public void protocolGamesPlayLikeABoard() {
+        SessionTable sessions = new SessionTable(4);
+        Random random = new Random(SEED);
+        for (int game = 0; game < GAMES; game++) {
+            ByteBuffer response = serve(sessions, ByteBuffer.allocate(GameProtocol.requestSize(GameProtocol.NEW))
+                .put(GameProtocol.NEW).putLong(game));
+            assertEquals(GameProtocol.OK, response.get());
+            int id = response.getInt();
+
+            Board board = new Board(4, game);
+            board.addInitialTiles();
+            for (int request = 0; !board.isGameOver(); request++) {
+                byte expectedStatus;
+                ByteBuffer in;
+                if (random.nextInt(8) == 0) {
+                    in = request(GameProtocol.UNDO, id);
+                    expectedStatus = board.undo() ? GameProtocol.OK : GameProtocol.NOTHING_TO_UNDO;
+                } else {
+                    Direction direction = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+                    in = request(GameProtocol.MOVE, id).put((byte) direction.ordinal());
+                    expectedStatus = board.play(direction) ? GameProtocol.OK : GameProtocol.NOT_MOVED;
+                }
+                response = serve(sessions, in);
+                String message = "Game " + game + " request " + request;
+                assertEquals(message, expectedStatus, response.get());
+                assertEquals(message, id, response.getInt());
+                assertEquals(message, PackedBoard.pack(board), response.getLong());
+                assertEquals(message, board.getScore(), response.getInt());
+                assertEquals(message, board.getMoveCount(), response.getInt());
+                assertEquals(message, board.isGameOver() ? GameProtocol.FLAG_GAME_OVER : 0, response.get());
+            }
+
+            response = serve(sessions, request(GameProtocol.CLOSE, id));
+            assertEquals(GameProtocol.OK, response.get());
+            assertEquals(id, response.getInt());
+            assertEquals(PackedBoard.pack(board), response.getLong());
+            assertEquals(GameProtocol.UNKNOWN_GAME, serve(sessions, request(GameProtocol.STATE, id)).get());
+            assertEquals(0, sessions.size());
+        }
+    }
+
+    @Test
+    public void undoGoesBackAsFarAsABoard() {
+        SessionTable sessions = new SessionTable(1);
+        int id = sessions.create(SEED);
+        Board board = new Board(4, SEED);
+        board.addInitialTiles();
+        for (int request = 0; board.getMoveCount() < 2 * Board.UNDO_DEPTH; request++) {
+            Direction direction = DIRECTIONS[request % DIRECTIONS.length];
+            assertEquals(board.play(direction), sessions.move(id, direction));
+        }
+        int undone = 0;
+        while (board.undo()) {
+            assertTrue(sessions.undo(id));
+            assertEquals(PackedBoard.pack(board), sessions.getBoard(id));
+            assertEquals(board.getMoveCount(), sessions.getMoveCount(id));
+            undone++;
+        }
+        assertEquals(Board.UNDO_DEPTH, undone);
+        assertFalse(sessions.undo(id));
+        assertEquals(Board.UNDO_DEPTH, sessions.getMoveCount(id));
+    }
+}
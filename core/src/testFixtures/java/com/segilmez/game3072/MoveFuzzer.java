@@ -0,0 +1,459 @@
+package com.segilmez.game3072;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Differential fuzzing of every move implementation against {@link ReferenceMoves}, on all cores.
+ * <p>
+ * Each case is a board, rules and direction derived from the run seed and the case number alone, so any case
+ * can be replayed. Boards mix random fill with adversarial shapes: runs of equal tiles, few distinct tiles,
+ * full boards, the largest tile codes and, under Threes rules, the 1-2 pairs. Every {@link Engine} that can
+ * play the case is checked against the reference, and a case that fails is shrunk, by making the board smaller,
+ * emptying cells and lowering tiles while it still fails, down to a minimal board.
+ */
+public final class MoveFuzzer {
+    public enum Engine {
+        /** {@link Board#move(Direction)}, on every size and ruleset */
+        BOARD,
+        /** {@link MoveTables}, on 4x4 boards */
+        MOVE_TABLES,
+        /** The wall-aware tables of {@link Tablebase}s, on doubling boards up to 4x4 */
+        WALLED_TABLES,
+        /** {@link MoveTables#moveAll}, on 4x4 boards in a batch */
+        BATCH_TABLES,
+        /** The vector kernel from {@link MoveTables#batchMoves()}, on 4x4 boards in a batch, when it is loaded */
+        BATCH_VECTOR
+    }
+
+    public static final int MIN_SIZE = 2;
+    public static final int MAX_SIZE = 8;
+
+    private static final Rules[] RULES = {Rules.STANDARD, Rules.THREES};
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Engine[] ENGINES = Engine.values();
+    private static final int CANNOT_CHECK = 0;
+    // Odd, so that the case lands in full vectors and in the boards left over after them
+    private static final int BATCH = 19;
+
+    private final long seed;
+    private final int threads;
+    private final TablebaseLayout[] walledLayouts = new TablebaseLayout[PackedBoard.SIZE + 1];
+    private final long[] checked = new long[ENGINES.length];
+
+    /**
+     * A case an engine got wrong, shrunk as far as it still fails
+     */
+    public static final class Failure {
+        public final Engine engine;
+        public final Rules rules;
+        public final Direction direction;
+        public final long caseNumber;
+        public final int size;
+        /** Tile codes of the shrunk board, row by row */
+        public final int[] codes;
+        public final String expected;
+        public final String actual;
+
+        Failure(Engine engine, Rules rules, Direction direction, long caseNumber, int size, int[] codes,
+                String expected, String actual) {
+            this.engine = engine;
+            this.rules = rules;
+            this.direction = direction;
+            this.caseNumber = caseNumber;
+            this.size = size;
+            this.codes = codes;
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        @Override
+        public String toString() {
+            return engine + " differs on case " + caseNumber + " (" + rules.getMergeRule().name().toLowerCase()
+                + " rules, " + direction + "), shrunk to\n" + describe(rules, size, codes)
+                + "expected\n" + expected + "actual\n" + actual;
+        }
+    }
+
+    public MoveFuzzer(long seed, int threads) {
+        this.seed = seed;
+        this.threads = threads;
+        for (int size = MIN_SIZE; size <= PackedBoard.SIZE; size++) {
+            walledLayouts[size] = new TablebaseLayout(outsideWalls(size), PackedBoard.MAX_EXPONENT);
+        }
+    }
+
+    /**
+     * Walls on every cell of a 4x4 board outside the top left {@code size x size} cells
+     */
+    private static int outsideWalls(int size) {
+        int walls = 0;
+        for (int row = 0; row < PackedBoard.SIZE; row++) {
+            for (int col = 0; col < PackedBoard.SIZE; col++) {
+                if (row >= size || col >= size) {
+                    walls |= 1 << row * PackedBoard.SIZE + col;
+                }
+            }
+        }
+        return walls;
+    }
+
+    /**
+     * Checks cases {@code 0} to {@code cases - 1}; stops early once {@code maxFailures} cases have failed
+     */
+    public List<Failure> run(final long cases, final int maxFailures) throws InterruptedException,
+        ExecutionException {
+        final List<Failure> failures = Collections.synchronizedList(new ArrayList<Failure>());
+        final AtomicInteger failureCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> workers = new ArrayList<>();
+            for (int worker = 0; worker < threads; worker++) {
+                final int first = worker;
+                workers.add(executor.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() {
+                        Worker state = new Worker();
+                        for (long number = first; number < cases; number += threads) {
+                            if (failureCount.get() >= maxFailures) break;
+                            Failure failure = state.run(number);
+                            if (failure != null && failureCount.incrementAndGet() <= maxFailures) {
+                                failures.add(failure);
+                            }
+                        }
+                        return state.checked;
+                    }
+                }));
+            }
+            for (Future<long[]> worker : workers) {
+                long[] counts = worker.get();
+                for (int i = 0; i < checked.length; i++) {
+                    checked[i] += counts[i];
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return failures;
+    }
+
+    /**
+     * Number of cases an engine was checked on in the last run
+     */
+    public long getChecked(Engine engine) {
+        return checked[engine.ordinal()];
+    }
+
+    /**
+     * Per-thread boards and scratch space
+     */
+    private final class Worker {
+        final long[] checked = new long[ENGINES.length];
+        final Board[][] boards = new Board[RULES.length][MAX_SIZE + 1];
+        final int[] codes = new int[MAX_SIZE * MAX_SIZE];
+        final long[] batch = new long[BATCH];
+        final long[] batchMoved = new long[BATCH];
+        final int[] batchScores = new int[BATCH];
+
+        Failure run(long number) {
+            SplittableRandom random = new SplittableRandom(seed ^ number * 0x9E3779B97F4A7C15L);
+            Rules rules = RULES[random.nextInt(RULES.length)];
+            int size = random.nextInt(3) == 0 ? PackedBoard.SIZE : MIN_SIZE + random.nextInt(MAX_SIZE - MIN_SIZE + 1);
+            Direction direction = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+            generate(random, rules, size, codes);
+
+            for (Engine engine : ENGINES) {
+                int verdict = compare(engine, rules, size, codes, direction, null);
+                if (verdict == CANNOT_CHECK) continue;
+                checked[engine.ordinal()]++;
+                if (verdict < 0) {
+                    return shrink(engine, rules, size, codes.clone(), direction, number);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns 1 if the engine agrees with the reference, -1 if it does not and {@link #CANNOT_CHECK} if the
+         * engine cannot play the case; on a disagreement, fills {@code report} with both results
+         */
+        int compare(Engine engine, Rules rules, int size, int[] codes, Direction direction, String[] report) {
+            if (!canPlay(engine, rules, size)) {
+                return CANNOT_CHECK;
+            }
+            int[][] expected = new int[size][size];
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    expected[row][col] = rules.value(codes[row * size + col]);
+                }
+            }
+            int expectedScore = ReferenceMoves.move(rules, expected, direction);
+
+            int[][] actual = new int[size][size];
+            int actualScore;
+            switch (engine) {
+                case BOARD:
+                    actualScore = moveBoard(rules, size, codes, direction, actual);
+                    break;
+                case MOVE_TABLES:
+                case WALLED_TABLES:
+                case BATCH_TABLES:
+                case BATCH_VECTOR:
+                    // The tables keep 4-bit codes and do not make tiles beyond them
+                    if (!fitsCodes(rules, expected)) {
+                        return CANNOT_CHECK;
+                    }
+                    actualScore = moveTables(engine, rules, size, codes, direction, actual);
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.valueOf(engine));
+            }
+            if (engine == Engine.WALLED_TABLES && expectedScore > 0) {
+                // These tables keep no score, only whether anything moved
+                expectedScore = 0;
+            }
+
+            boolean agrees = actualScore == expectedScore;
+            for (int row = 0; row < size && agrees; row++) {
+                for (int col = 0; col < size && agrees; col++) {
+                    agrees = actual[row][col] == expected[row][col];
+                }
+            }
+            if (!agrees && report != null) {
+                report[0] = describe(expected, expectedScore);
+                report[1] = describe(actual, actualScore);
+            }
+            return agrees ? 1 : -1;
+        }
+
+        private int moveBoard(Rules rules, int size, int[] codes, Direction direction, int[][] actual) {
+            int index = rules == Rules.STANDARD ? 0 : 1;
+            if (boards[index][size] == null) {
+                boards[index][size] = new Board(rules.withSize(size), 0);
+            }
+            Board board = boards[index][size];
+            int[] values = new int[size * size];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = rules.value(codes[i]);
+            }
+            board.restore(values, 0, 0, 1, 2);
+            boolean moved = board.move(direction);
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    actual[row][col] = board.getValue(row, col);
+                }
+            }
+            return moved ? board.getLastMoveScore() : -1;
+        }
+
+        private int moveTables(Engine engine, Rules rules, int size, int[] codes, Direction direction,
+                               int[][] actual) {
+            long packed = 0;
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    packed |= (long) codes[row * size + col] << 4 * (row * PackedBoard.SIZE + col);
+                }
+            }
+            long result;
+            int score;
+            if (engine == Engine.MOVE_TABLES) {
+                MoveTables tables = rules.getMoveTables();
+                result = tables.move(packed, direction);
+                score = tables.score(packed, direction);
+            } else if (engine == Engine.WALLED_TABLES) {
+                result = walledLayouts[size].move(packed, direction);
+                score = 0;
+            } else {
+                // The case goes among rotated copies of itself, at a place that depends on the board
+                int slot = (int) Long.remainderUnsigned(packed, BATCH);
+                for (int i = 0; i < BATCH; i++) {
+                    batch[i] = i == slot ? packed : Long.rotateLeft(packed, 4 * i);
+                }
+                MoveTables tables = rules.getMoveTables();
+                BatchMoves kernel = engine == Engine.BATCH_VECTOR ? tables.batchMoves() : tables;
+                kernel.moveAll(batch, BATCH, direction, batchMoved, batchScores);
+                result = batchMoved[slot];
+                score = batchScores[slot];
+            }
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    actual[row][col] = rules.value((int) (result >>> 4 * (row * PackedBoard.SIZE + col)) & 0xF);
+                }
+            }
+            return result != packed ? score : -1;
+        }
+
+        /**
+         * Greedily makes the board smaller, empties cells and lowers tiles for as long as the engine still
+         * disagrees with the reference
+         */
+        private Failure shrink(Engine engine, Rules rules, int size, int[] codes, Direction direction, long number) {
+            boolean progress = true;
+            while (progress) {
+                progress = false;
+
+                // Drop a row and a column
+                for (int dropped = 0; dropped < size * size && size > MIN_SIZE; dropped++) {
+                    int[] smaller = without(codes, size, dropped / size, dropped % size);
+                    if (compare(engine, rules, size - 1, smaller, direction, null) < 0) {
+                        size--;
+                        codes = smaller;
+                        progress = true;
+                        break;
+                    }
+                }
+
+                for (int i = 0; i < size * size; i++) {
+                    int code = codes[i];
+                    if (code == 0) continue;
+                    codes[i] = 0;
+                    if (compare(engine, rules, size, codes, direction, null) < 0) {
+                        progress = true;
+                        continue;
+                    }
+                    codes[i] = code;
+                    while (codes[i] > 1) {
+                        codes[i]--;
+                        if (compare(engine, rules, size, codes, direction, null) >= 0) {
+                            codes[i]++;
+                            break;
+                        }
+                        progress = true;
+                    }
+                }
+            }
+
+            String[] report = new String[2];
+            compare(engine, rules, size, codes, direction, report);
+            return new Failure(engine, rules, direction, number, size, codes, report[0], report[1]);
+        }
+    }
+
+    /**
+     * The board one smaller, without the given row and column
+     */
+    private static int[] without(int[] codes, int size, int droppedRow, int droppedCol) {
+        int[] smaller = new int[(size - 1) * (size - 1)];
+        int i = 0;
+        for (int row = 0; row < size; row++) {
+            if (row == droppedRow) continue;
+            for (int col = 0; col < size; col++) {
+                if (col == droppedCol) continue;
+                smaller[i++] = codes[row * size + col];
+            }
+        }
+        return smaller;
+    }
+
+    private static boolean canPlay(Engine engine, Rules rules, int size) {
+        switch (engine) {
+            case BOARD:
+                return true;
+            case MOVE_TABLES:
+                return size == PackedBoard.SIZE;
+            case WALLED_TABLES:
+                return size <= PackedBoard.SIZE && rules.getMergeRule() == Rules.MergeRule.DOUBLING;
+            case BATCH_TABLES:
+                return size == PackedBoard.SIZE;
+            case BATCH_VECTOR:
+                return size == PackedBoard.SIZE && rules.getMoveTables().batchMoves() != rules.getMoveTables();
+            default:
+                return false;
+        }
+    }
+
+    private static boolean fitsCodes(Rules rules, int[][] cells) {
+        for (int[] row : cells) {
+            for (int value : row) {
+                try {
+                    rules.code(value);
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fills a board with tile codes in one of a few shapes that are likely to find mistakes
+     */
+    static void generate(SplittableRandom random, Rules rules, int size, int[] codes) {
+        int cells = size * size;
+        int[] palette;
+        switch (random.nextInt(5)) {
+            case 0:
+                // Any tile at all
+                palette = range(1, Rules.MAX_CODE);
+                break;
+            case 1:
+                // Few distinct tiles, so runs of equal tiles are common
+                palette = new int[1 + random.nextInt(3)];
+                for (int i = 0; i < palette.length; i++) {
+                    palette[i] = 1 + random.nextInt(Rules.MAX_CODE);
+                }
+                break;
+            case 2:
+                // The largest codes, where merges run out of bits
+                palette = range(Rules.MAX_CODE - 2, Rules.MAX_CODE);
+                break;
+            case 3:
+                // The smallest tiles, and for Threes the 1 and 2 that only merge with each other
+                palette = range(1, rules.getMergeRule() == Rules.MergeRule.THREES ? 4 : 3);
+                break;
+            default:
+                // A run of equal tiles
+                palette = new int[]{1 + random.nextInt(Rules.MAX_CODE)};
+                break;
+        }
+        double fill = random.nextInt(4) == 0 ? 1 : random.nextDouble();
+        for (int i = 0; i < cells; i++) {
+            codes[i] = random.nextDouble() < fill ? palette[random.nextInt(palette.length)] : 0;
+        }
+    }
+
+    private static int[] range(int from, int to) {
+        int[] range = new int[to - from + 1];
+        for (int i = 0; i < range.length; i++) {
+            range[i] = from + i;
+        }
+        return range;
+    }
+
+    private static String describe(Rules rules, int size, int[] codes) {
+        int[][] cells = new int[size][size];
+        for (int i = 0; i < codes.length; i++) {
+            cells[i / size][i % size] = rules.value(codes[i]);
+        }
+        return describe(cells, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Rows from the highest down, as the board is drawn, then the score if there is one
+     */
+    private static String describe(int[][] cells, int score) {
+        StringBuilder builder = new StringBuilder();
+        for (int row = cells.length - 1; row >= 0; row--) {
+            for (int col = 0; col < cells.length; col++) {
+                String value = cells[row][col] == 0 ? "." : String.valueOf(cells[row][col]);
+                for (int pad = value.length(); pad < 7; pad++) {
+                    builder.append(' ');
+                }
+                builder.append(value);
+            }
+            builder.append('\n');
+        }
+        if (score != Integer.MIN_VALUE) {
+            builder.append(score < 0 ? "  (nothing moved)\n" : "  score " + score + "\n");
+        }
+        return builder.toString();
+    }
+}
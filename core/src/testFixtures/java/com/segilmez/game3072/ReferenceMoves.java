@@ -0,0 +1,140 @@
+package com.segilmez.game3072;
+
+/**
+ * The move rules written out plainly, one loop per direction as {@link Board} had them before it was
+ * generalized, to check faster move code against. Slow on purpose: nothing here is shared or cached.
+ * <p>
+ * Each tile, starting with those nearest to the edge the move goes towards, slides until it hits the edge or
+ * another tile, and merges into that tile if the rules allow and the tile has not taken a merge in this move.
+ */
+public final class ReferenceMoves {
+    private ReferenceMoves() {
+    }
+
+    /**
+     * Moves the tile values in {@code cells}, indexed {@code [row][col]}, in place; returns the points scored,
+     * or -1 if nothing moved
+     */
+    public static int move(Rules rules, int[][] cells, Direction direction) {
+        int size = cells.length;
+        boolean[][] merged = new boolean[size][size];
+        int score = 0;
+        boolean moved = false;
+
+        switch (direction) {
+            case UP:
+                for (int col = 0; col < size; col++) {
+                    for (int row = size - 2; row >= 0; row--) {
+                        if (cells[row][col] == 0) continue;
+                        int value = cells[row][col];
+                        int current = row;
+                        while (current < size - 1) {
+                            int other = cells[current + 1][col];
+                            int result = other == 0 || merged[current + 1][col] ? 0 : rules.merge(value, other);
+                            if (other == 0) {
+                                cells[current + 1][col] = value;
+                                cells[current][col] = 0;
+                                current++;
+                                moved = true;
+                            } else if (result != 0) {
+                                cells[current + 1][col] = result;
+                                cells[current][col] = 0;
+                                merged[current + 1][col] = true;
+                                score += result;
+                                moved = true;
+                                break;
+                            } else {
+                                break;
+                            }
+                        }
+                    }
+                }
+                break;
+            case DOWN:
+                for (int col = 0; col < size; col++) {
+                    for (int row = 1; row < size; row++) {
+                        if (cells[row][col] == 0) continue;
+                        int value = cells[row][col];
+                        int current = row;
+                        while (current > 0) {
+                            int other = cells[current - 1][col];
+                            int result = other == 0 || merged[current - 1][col] ? 0 : rules.merge(value, other);
+                            if (other == 0) {
+                                cells[current - 1][col] = value;
+                                cells[current][col] = 0;
+                                current--;
+                                moved = true;
+                            } else if (result != 0) {
+                                cells[current - 1][col] = result;
+                                cells[current][col] = 0;
+                                merged[current - 1][col] = true;
+                                score += result;
+                                moved = true;
+                                break;
+                            } else {
+                                break;
+                            }
+                        }
+                    }
+                }
+                break;
+            case LEFT:
+                for (int row = 0; row < size; row++) {
+                    for (int col = 1; col < size; col++) {
+                        if (cells[row][col] == 0) continue;
+                        int value = cells[row][col];
+                        int current = col;
+                        while (current > 0) {
+                            int other = cells[row][current - 1];
+                            int result = other == 0 || merged[row][current - 1] ? 0 : rules.merge(value, other);
+                            if (other == 0) {
+                                cells[row][current - 1] = value;
+                                cells[row][current] = 0;
+                                current--;
+                                moved = true;
+                            } else if (result != 0) {
+                                cells[row][current - 1] = result;
+                                cells[row][current] = 0;
+                                merged[row][current - 1] = true;
+                                score += result;
+                                moved = true;
+                                break;
+                            } else {
+                                break;
+                            }
+                        }
+                    }
+                }
+                break;
+            case RIGHT:
+                for (int row = 0; row < size; row++) {
+                    for (int col = size - 2; col >= 0; col--) {
+                        if (cells[row][col] == 0) continue;
+                        int value = cells[row][col];
+                        int current = col;
+                        while (current < size - 1) {
+                            int other = cells[row][current + 1];
+                            int result = other == 0 || merged[row][current + 1] ? 0 : rules.merge(value, other);
+                            if (other == 0) {
+                                cells[row][current + 1] = value;
+                                cells[row][current] = 0;
+                                current++;
+                                moved = true;
+                            } else if (result != 0) {
+                                cells[row][current + 1] = result;
+                                cells[row][current] = 0;
+                                merged[row][current + 1] = true;
+                                score += result;
+                                moved = true;
+                                break;
+                            } else {
+                                break;
+                            }
+                        }
+                    }
+                }
+                break;
+        }
+        return moved ? score : -1;
+    }
+}
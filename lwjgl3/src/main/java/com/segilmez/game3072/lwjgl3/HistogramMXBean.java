@@ -0,0 +1,17 @@
+package com.segilmez.game3072.lwjgl3;
+
+/** One timing histogram of the running game, as seen over JMX. Times are in milliseconds. */
+public interface HistogramMXBean {
+    long getCount();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    double getMeanMillis();
+
+    /** Clears every histogram of the game, not only this one, at the start of the next frame. */
+    void reset();
+}
@@ -2,17 +2,39 @@ package com.segilmez.game3072.lwjgl3;
 
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.segilmez.game3072.InputRecorder;
 import com.segilmez.game3072.Main;
+import com.segilmez.game3072.PerformanceStats;
 
-/** Launches the desktop (LWJGL3) application. */
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+
+/**
+ * Launches the desktop (LWJGL3) application. With {@code --record-input <file>}, a new game is started and its
+ * input is recorded for the input replay benchmark. With {@code --spectate [boards] [player]}, it opens on a wall
+ * of boards played by a built-in player, by default {@value #SPECTATOR_BOARDS} boards of
+ * {@value #SPECTATOR_PLAYER}.
+ */
 public class Lwjgl3Launcher {
-    public static void main(String[] args) {
+    private static final int SPECTATOR_BOARDS = 16;
+    private static final String SPECTATOR_PLAYER = "expectimax:2";
+
+    public static void main(String[] args) throws FileNotFoundException {
         if (StartupHelper.startNewJvmIfRequired()) return; // This handles macOS support and helps on Windows.
-        createApplication();
+        createApplication(args);
     }
 
-    private static Lwjgl3Application createApplication() {
-        return new Lwjgl3Application(new Main(), getDefaultConfiguration());
+    private static Lwjgl3Application createApplication(String[] args) throws FileNotFoundException {
+        PerformanceStats stats = new PerformanceStats();
+        PerformanceJmx.register(stats);
+        Main main = new Main(stats);
+        if (args.length == 2 && args[0].equals("--record-input")) {
+            main.setInputRecorder(new InputRecorder(new FileOutputStream(args[1]).getChannel(), System.nanoTime()));
+        } else if (args.length >= 1 && args.length <= 3 && args[0].equals("--spectate")) {
+            main.setSpectator(args.length > 1 ? Integer.parseInt(args[1]) : SPECTATOR_BOARDS,
+                args.length > 2 ? args[2] : SPECTATOR_PLAYER);
+        }
+        return new Lwjgl3Application(main, getDefaultConfiguration());
     }
 
     private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
@@ -0,0 +1,71 @@
+package com.segilmez.game3072.lwjgl3;
+
+import com.segilmez.game3072.LatencyHistogram;
+import com.segilmez.game3072.PerformanceStats;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exports the game's {@link PerformanceStats} over JMX, one MXBean per metric under
+ * {@code com.segilmez.game3072:type=Performance}, so long runs can be watched with JConsole or VisualVM.
+ * Readers see the histograms while the render thread writes them, which can be off by a few samples.
+ */
+public class PerformanceJmx {
+    private static final String DOMAIN = "com.segilmez.game3072";
+
+    /** Registers the metrics; logs and carries on if the platform MBean server refuses them. */
+    public static void register(PerformanceStats stats) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (PerformanceStats.Metric metric : PerformanceStats.Metric.values()) {
+            try {
+                ObjectName name = new ObjectName(DOMAIN + ":type=Performance,name=" + metric.getLabel());
+                server.registerMBean(new Histogram(stats, metric), name);
+            } catch (JMException e) {
+                System.err.println("Could not export " + metric.getLabel() + " timing over JMX: " + e);
+            }
+        }
+    }
+
+    private static class Histogram implements HistogramMXBean {
+        private final PerformanceStats stats;
+        private final LatencyHistogram histogram;
+
+        Histogram(PerformanceStats stats, PerformanceStats.Metric metric) {
+            this.stats = stats;
+            this.histogram = stats.get(metric);
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getP50Millis() {
+            return histogram.percentileNanos(0.5) / 1e6;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return histogram.percentileNanos(0.99) / 1e6;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return histogram.getMaxNanos() / 1e6;
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return histogram.getMeanNanos() / 1e6;
+        }
+
+        @Override
+        public void reset() {
+            stats.requestReset();
+        }
+    }
+}
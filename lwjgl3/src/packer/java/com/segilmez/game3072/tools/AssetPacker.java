@@ -0,0 +1,135 @@
+package com.segilmez.game3072.tools;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessFiles;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.BitmapFontData;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.Glyph;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeBitmapFontData;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+import com.badlogic.gdx.tools.bmfont.BitmapFontWriter;
+import com.badlogic.gdx.tools.texturepacker.TexturePacker;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.segilmez.game3072.GameAssets;
+import com.segilmez.game3072.GameFont;
+
+import java.io.File;
+
+/**
+ * Build-time packer behind the {@code packAssets} Gradle task.
+ * <p>
+ * For every density bucket in {@link GameAssets#DENSITIES} it rasterizes each {@link GameFont} into a
+ * cropped glyph page plus a .fnt file, then packs the glyph pages and the UI images into a single
+ * texture atlas. Usage: {@code AssetPacker <assetsDir> <outputDir> <stagingDir>}.
+ */
+public class AssetPacker {
+    private static final int FONT_PAGE_SIZE = 1024;
+
+    private final File assetsDir;
+    private final File outputDir;
+    private final File stagingDir;
+
+    public AssetPacker(File assetsDir, File outputDir, File stagingDir) {
+        this.assetsDir = assetsDir;
+        this.outputDir = outputDir;
+        this.stagingDir = stagingDir;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Usage: AssetPacker <assetsDir> <outputDir> <stagingDir>");
+        }
+        GdxNativesLoader.load();
+        Gdx.files = new HeadlessFiles();
+
+        new AssetPacker(new File(args[0]), new File(args[1]), new File(args[2])).pack();
+    }
+
+    public void pack() {
+        FreeTypeFontGenerator generator = new FreeTypeFontGenerator(
+            new FileHandle(new File(assetsDir, GameAssets.FONT_FILE)));
+        try {
+            for (int i = 0; i < GameAssets.DENSITIES.length; i++) {
+                packBucket(generator, GameAssets.DENSITIES[i], GameAssets.DENSITY_NAMES[i]);
+            }
+        } finally {
+            generator.dispose();
+        }
+    }
+
+    private void packBucket(FreeTypeFontGenerator generator, float density, String bucketName) {
+        FileHandle staging = new FileHandle(new File(stagingDir, bucketName));
+        FileHandle output = new FileHandle(new File(outputDir, bucketName));
+        staging.deleteDirectory();
+        output.deleteDirectory();
+        staging.mkdirs();
+        output.mkdirs();
+
+        for (GameFont font : GameFont.values()) {
+            writeFont(generator, font, density, staging, output);
+        }
+        for (String image : GameAssets.IMAGES) {
+            new FileHandle(new File(assetsDir, image)).copyTo(staging.child(image));
+        }
+
+        TexturePacker.Settings settings = new TexturePacker.Settings();
+        settings.maxWidth = 2048;
+        settings.maxHeight = 2048;
+        settings.paddingX = 2;
+        settings.paddingY = 2;
+        settings.duplicatePadding = true;
+        settings.filterMin = TextureFilter.Linear;
+        settings.filterMag = TextureFilter.Linear;
+        settings.useIndexes = false;
+        settings.silent = true;
+
+        String packName = GameAssets.ATLAS_FILE.substring(0, GameAssets.ATLAS_FILE.lastIndexOf('.'));
+        TexturePacker.process(settings, staging.path(), output.path(), packName);
+    }
+
+    /**
+     * Rasterizes one font into {@code staging/<name>.png} (cropped to the glyphs actually used, so it packs
+     * tightly) and writes {@code output/<name>.fnt}, whose page refers to the atlas region of the same name.
+     */
+    private void writeFont(FreeTypeFontGenerator generator, GameFont font, float density,
+                           FileHandle staging, FileHandle output) {
+        PixmapPacker packer = new PixmapPacker(FONT_PAGE_SIZE, FONT_PAGE_SIZE, Pixmap.Format.RGBA8888, 2, false);
+        FreeTypeFontParameter parameter = font.createParameters(density);
+        parameter.packer = packer;
+        FreeTypeBitmapFontData data = generator.generateData(parameter);
+
+        if (packer.getPages().size != 1) {
+            throw new GdxRuntimeException(font + " does not fit on a single " + FONT_PAGE_SIZE + "px page");
+        }
+
+        int width = 1;
+        int height = 1;
+        // FreeTypeBitmapFontData hides the glyph pages behind a package-private field of the same name
+        for (Glyph[] page : ((BitmapFontData) data).glyphs) {
+            if (page == null) continue;
+            for (Glyph glyph : page) {
+                if (glyph == null) continue;
+                width = Math.max(width, glyph.srcX + glyph.width);
+                height = Math.max(height, glyph.srcY + glyph.height);
+            }
+        }
+
+        Pixmap cropped = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        cropped.setBlending(Pixmap.Blending.None);
+        cropped.drawPixmap(packer.getPages().first().getPixmap(), 0, 0, 0, 0, width, height);
+
+        String name = font.getFileName();
+        PixmapIO.writePNG(staging.child(name + ".png"), cropped);
+        BitmapFontWriter.writeFont(data, new String[]{name + ".png"}, output.child(name + ".fnt"),
+            new BitmapFontWriter.FontInfo(name, parameter.size), width, height);
+
+        cropped.dispose();
+        packer.dispose();
+    }
+}
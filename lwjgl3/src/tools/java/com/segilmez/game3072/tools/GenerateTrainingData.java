@@ -0,0 +1,71 @@
+package com.segilmez.game3072.tools;
+
+import com.segilmez.game3072.Direction;
+import com.segilmez.game3072.SelfPlayGenerator;
+import com.segilmez.game3072.TrainingDataReader;
+import com.segilmez.game3072.TrainingDataWriter;
+
+import java.io.File;
+
+/**
+ * Runner behind the {@code generateTrainingData} Gradle task: plays self-play games on all cores into a training
+ * data file, then reads every sample back through {@link TrainingDataReader} as a check.
+ * <p>
+ * Usage: {@code GenerateTrainingData <output> <games> [depth] [seed] [deflate]}.
+ */
+public class GenerateTrainingData {
+    // One ply shallower than the game's hints: twice the samples per second, and the values are still searched
+    private static final int DEFAULT_DEPTH = 2;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 5) {
+            throw new IllegalArgumentException(
+                "Usage: GenerateTrainingData <output> <games> [depth] [seed] [deflate]");
+        }
+        File output = new File(args[0]);
+        long games = Long.parseLong(args[1]);
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 3072;
+        boolean deflate = args.length > 4 && args[4].equals("deflate");
+        int threads = Runtime.getRuntime().availableProcessors();
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IllegalStateException("Could not create " + parent);
+        }
+
+        System.out.println("Playing " + games + " games at depth " + depth + " on " + threads + " threads into "
+            + output + (deflate ? ", deflated" : ""));
+        long start = System.nanoTime();
+        long rows;
+        long bytes;
+        try (TrainingDataWriter writer = new TrainingDataWriter(output, deflate)) {
+            new SelfPlayGenerator(writer, depth, seed, threads, SelfPlayGenerator.DEFAULT_CHUNK_ROWS).run(games);
+            rows = writer.getRows();
+            bytes = writer.getBytes();
+            System.out.println("Wrote " + rows + " samples in " + writer.getChunks() + " chunks, " + bytes
+                + " bytes (" + (rows == 0 ? 0 : bytes * 100 / rows / 100.0) + " per sample)");
+        }
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        System.out.println(String.format("Took %.1f s, %.0f samples/s", seconds, rows / seconds));
+
+        long scanStart = System.nanoTime();
+        long missing = 0;
+        long totalScore = 0;
+        try (TrainingDataReader reader = new TrainingDataReader(output)) {
+            if (reader.size() != rows) {
+                throw new IllegalStateException("Read " + reader.size() + " samples back, not " + rows);
+            }
+            for (long row = 0; row < reader.size(); row++) {
+                Direction move = reader.getMove(row);
+                if (Float.isNaN(reader.getValue(row, move))) missing++;
+                totalScore += reader.getFinalScore(row);
+                reader.getBoard(row);
+            }
+        }
+        if (missing > 0) {
+            throw new IllegalStateException(missing + " samples have no value for the move they chose");
+        }
+        System.out.println(String.format("Read back in %.1f s, mean final score %.0f",
+            (System.nanoTime() - scanStart) / 1e9, rows == 0 ? 0.0 : (double) totalScore / rows));
+    }
+}
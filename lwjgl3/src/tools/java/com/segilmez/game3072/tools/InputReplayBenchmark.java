@@ -0,0 +1,314 @@
+package com.segilmez.game3072.tools;
+
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.segilmez.game3072.InputPlayback;
+import com.segilmez.game3072.InputRecorder;
+import com.segilmez.game3072.Main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Regression suite behind the {@code benchmarkInputReplay} Gradle task: plays a recorded session through
+ * {@link Main} in a hidden window and compares the CPU time and memory allocated per frame against a stored
+ * baseline, exiting with status 1 if either got worse by more than its tolerance.
+ * <p>
+ * Usage: {@code InputReplayBenchmark <recording | synthetic:<frames>:<seed>> <baseline.properties> [update]}.
+ * A recording is made with the desktop launcher's {@code --record-input} flag; a synthetic session is a
+ * generated one of arrow keys, swipes, undos and hints. With {@code update} the results are written as the new
+ * baseline; without it a missing baseline fails the run, so a lost file cannot pass unnoticed. The session is played {@value #WARMUP_RUNS} times to warm up the JIT before
+ * the measured run, and only frames that played a recorded frame are measured, not those still loading.
+ * <p>
+ * Both figures are for the render thread, from the JVM's thread CPU clock and allocation counter, so they hold
+ * up on a loaded CI machine better than wall time does. A machine without a display runs the suite under
+ * {@code xvfb-run} with Mesa's software renderer, which keeps the GL driver's share of the CPU time the same on
+ * every machine. Baselines are still per machine: keep one for each CI runner.
+ */
+public class InputReplayBenchmark implements ApplicationListener {
+    private static final int WARMUP_RUNS = 2;
+    private static final double DEFAULT_CPU_TOLERANCE = 0.25;
+    private static final long DEFAULT_ALLOCATION_TOLERANCE = 256;
+
+    private static final int SYNTHETIC_WIDTH = 640;
+    private static final int SYNTHETIC_HEIGHT = 480;
+
+    private final InputPlayback playback;
+    private final File baselineFile;
+    private final boolean update;
+    private final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final long threadId = Thread.currentThread().getId();
+    private final long[] cpuNanos;
+    private final long[] allocatedBytes;
+
+    private Main main;
+    private int run = 0;
+    private long allocationOverhead;
+    private boolean finished = false;
+    private boolean failed = false;
+
+    public InputReplayBenchmark(InputPlayback playback, File baselineFile, boolean update) {
+        this.playback = playback;
+        this.baselineFile = baselineFile;
+        this.update = update;
+        cpuNanos = new long[(int) playback.getFrameCount()];
+        allocatedBytes = new long[(int) playback.getFrameCount()];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: InputReplayBenchmark <recording | synthetic:<frames>:<seed>> "
+                + "<baseline.properties> [update]");
+            System.exit(2);
+        }
+        InputPlayback playback = new InputPlayback(load(args[0]));
+        if (playback.getFrameCount() == 0) {
+            throw new IllegalArgumentException("The recording has no frames");
+        }
+        InputReplayBenchmark benchmark = new InputReplayBenchmark(playback, new File(args[1]),
+            args.length > 2 && args[2].equals("update"));
+
+        Lwjgl3ApplicationConfiguration configuration = new Lwjgl3ApplicationConfiguration();
+        configuration.setTitle("Input replay benchmark");
+        configuration.setWindowedMode(playback.getWidth(), playback.getHeight());
+        configuration.setInitialVisible(false);
+        configuration.disableAudio(true);
+        // Frames go as fast as they can; the recorded delta times keep the game itself unchanged
+        configuration.useVsync(false);
+        configuration.setForegroundFPS(0);
+        new Lwjgl3Application(benchmark, configuration);
+        System.exit(benchmark.failed ? 1 : 0);
+    }
+
+    private static ByteBuffer load(String source) throws IOException {
+        if (source.startsWith("synthetic:")) {
+            String[] parts = source.split(":");
+            return ByteBuffer.wrap(synthetic(Integer.parseInt(parts[1]), Long.parseLong(parts[2])));
+        }
+        try (FileChannel channel = new FileInputStream(source).getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) throw new IOException("Could not read all of " + source);
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * A session at 60 frames per second that keeps playing: a move every few frames, by arrow key or by swipe,
+     * now and then an undo or a hint, and the restart button tapped from time to time so a lost game starts over
+     */
+    private static byte[] synthetic(int frames, long seed) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(Channels.newChannel(bytes), seed);
+        Random random = new Random(seed);
+        int[] arrows = {Input.Keys.UP, Input.Keys.DOWN, Input.Keys.LEFT, Input.Keys.RIGHT};
+        // Same layout as Main: the grid is 80% of the shorter side and the restart button a fifth of that,
+        // with its bottom edge at 35% of the height
+        float buttonSize = Math.min(SYNTHETIC_WIDTH, SYNTHETIC_HEIGHT) * 0.8f * 0.2f;
+        int buttonX = SYNTHETIC_WIDTH / 2;
+        int buttonY = (int) (SYNTHETIC_HEIGHT - SYNTHETIC_HEIGHT * 0.35f - buttonSize / 2);
+        int centerX = SYNTHETIC_WIDTH / 2;
+        int centerY = SYNTHETIC_HEIGHT / 2;
+
+        recorder.start(SYNTHETIC_WIDTH, SYNTHETIC_HEIGHT);
+        int nextEvent = 30;
+        for (int frame = 0; frame < frames; frame++) {
+            if (frame == nextEvent) {
+                int kind = random.nextInt(40);
+                if (kind < 28) {
+                    int key = arrows[random.nextInt(arrows.length)];
+                    recorder.keyDown(key);
+                    recorder.keyUp(key);
+                } else if (kind < 34) {
+                    int dx = 0;
+                    int dy = 0;
+                    switch (random.nextInt(4)) {
+                        case 0: dx = 120; break;
+                        case 1: dx = -120; break;
+                        case 2: dy = 120; break;
+                        default: dy = -120; break;
+                    }
+                    recorder.touchDown(centerX, centerY, 0, Input.Buttons.LEFT);
+                    recorder.touchDragged(centerX + dx / 2, centerY + dy / 2, 0);
+                    recorder.touchUp(centerX + dx, centerY + dy, 0, Input.Buttons.LEFT);
+                } else if (kind < 37) {
+                    recorder.keyDown(Input.Keys.Z);
+                    recorder.keyUp(Input.Keys.Z);
+                } else if (kind < 38) {
+                    recorder.keyDown(Input.Keys.H);
+                    recorder.keyUp(Input.Keys.H);
+                } else {
+                    recorder.touchDown(buttonX, buttonY, 0, Input.Buttons.LEFT);
+                    recorder.touchUp(buttonX, buttonY, 0, Input.Buttons.LEFT);
+                }
+                nextEvent = frame + 6 + random.nextInt(15);
+            }
+            recorder.frame(1 / 60f);
+        }
+        recorder.close();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void create() {
+        // Reading the allocation counter allocates itself on some JVMs, so that much is taken off every frame
+        long first = threads.getThreadAllocatedBytes(threadId);
+        long second = threads.getThreadAllocatedBytes(threadId);
+        allocationOverhead = second - first;
+        startRun();
+    }
+
+    private void startRun() {
+        playback.rewind();
+        main = new Main();
+        main.setInputPlayback(playback);
+        main.create();
+        main.resize(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        main.resize(width, height);
+    }
+
+    @Override
+    public void render() {
+        if (finished) return;
+        long frame = playback.getFramesPlayed();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long cpuBefore = threads.getCurrentThreadCpuTime();
+        main.render();
+        long cpu = threads.getCurrentThreadCpuTime() - cpuBefore;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore - allocationOverhead;
+        if (playback.getFramesPlayed() == frame) return;
+
+        cpuNanos[(int) frame] = cpu;
+        allocatedBytes[(int) frame] = Math.max(0, allocated);
+        if (!playback.isFinished()) return;
+
+        main.pause();
+        main.dispose();
+        if (++run <= WARMUP_RUNS) {
+            System.out.println("Warm-up run " + run + " of " + WARMUP_RUNS + " done");
+            startRun();
+            return;
+        }
+        finished = true;
+        try {
+            report();
+        } catch (IOException e) {
+            System.err.println("Could not read or write the baseline: " + e);
+            failed = true;
+        }
+        Gdx.app.exit();
+    }
+
+    private void report() throws IOException {
+        long[] cpu = cpuNanos.clone();
+        long[] allocated = allocatedBytes.clone();
+        Arrays.sort(cpu);
+        Arrays.sort(allocated);
+        long totalAllocated = 0;
+        for (long bytes : allocated) {
+            totalAllocated += bytes;
+        }
+
+        Properties result = new Properties();
+        result.setProperty("frames", Integer.toString(cpu.length));
+        result.setProperty("cpu.p50.us", Long.toString(percentile(cpu, 0.50) / 1000));
+        result.setProperty("cpu.p99.us", Long.toString(percentile(cpu, 0.99) / 1000));
+        result.setProperty("cpu.max.us", Long.toString(cpu[cpu.length - 1] / 1000));
+        result.setProperty("alloc.mean.bytes", Long.toString(totalAllocated / allocated.length));
+        result.setProperty("alloc.p99.bytes", Long.toString(percentile(allocated, 0.99)));
+        result.setProperty("alloc.max.bytes", Long.toString(allocated[allocated.length - 1]));
+        System.out.println("Per frame over " + cpu.length + " frames: cpu p50 " + result.getProperty("cpu.p50.us")
+            + " us, p99 " + result.getProperty("cpu.p99.us") + " us, max " + result.getProperty("cpu.max.us")
+            + " us; allocated mean " + result.getProperty("alloc.mean.bytes") + " B, p99 "
+            + result.getProperty("alloc.p99.bytes") + " B, max " + result.getProperty("alloc.max.bytes") + " B");
+
+        if (update) {
+            writeBaseline(result);
+            return;
+        }
+        if (!baselineFile.exists()) {
+            System.err.println("There is no baseline at " + baselineFile + "; run with update to record one");
+            failed = true;
+            return;
+        }
+        Properties baseline = new Properties();
+        try (InputStream in = new FileInputStream(baselineFile)) {
+            baseline.load(in);
+        }
+        if (!baseline.getProperty("frames", "").equals(result.getProperty("frames"))) {
+            System.err.println("The baseline is for a recording of " + baseline.getProperty("frames")
+                + " frames, not " + cpu.length + "; run with update to replace it");
+            failed = true;
+            return;
+        }
+        double cpuTolerance = Double.parseDouble(
+            baseline.getProperty("tolerance.cpu", Double.toString(DEFAULT_CPU_TOLERANCE)));
+        long allocationTolerance = Long.parseLong(
+            baseline.getProperty("tolerance.alloc.bytes", Long.toString(DEFAULT_ALLOCATION_TOLERANCE)));
+        compare(baseline, result, "cpu.p50.us", 1 + cpuTolerance, 0);
+        compare(baseline, result, "cpu.p99.us", 1 + cpuTolerance, 0);
+        compare(baseline, result, "alloc.mean.bytes", 1, allocationTolerance);
+        compare(baseline, result, "alloc.p99.bytes", 1, allocationTolerance);
+    }
+
+    private void compare(Properties baseline, Properties result, String key, double factor, long slack) {
+        long expected = Long.parseLong(baseline.getProperty(key));
+        long measured = Long.parseLong(result.getProperty(key));
+        long limit = (long) (expected * factor) + slack;
+        if (measured > limit) {
+            System.err.println(key + " " + measured + " is over the baseline " + expected + " (limit " + limit + ")");
+            failed = true;
+        }
+    }
+
+    private void writeBaseline(Properties result) throws IOException {
+        result.setProperty("tolerance.cpu", Double.toString(DEFAULT_CPU_TOLERANCE));
+        result.setProperty("tolerance.alloc.bytes", Long.toString(DEFAULT_ALLOCATION_TOLERANCE));
+        File parent = baselineFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        try (OutputStream out = new FileOutputStream(baselineFile)) {
+            result.store(out, "Input replay benchmark, per frame on the render thread");
+        }
+        System.out.println("Wrote the baseline to " + baselineFile);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+
+    @Override
+    public void pause() {
+    }
+
+    @Override
+    public void resume() {
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
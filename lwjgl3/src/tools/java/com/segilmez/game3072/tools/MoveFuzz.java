@@ -0,0 +1,43 @@
+package com.segilmez.game3072.tools;
+
+import com.segilmez.game3072.MoveFuzzer;
+
+import java.util.List;
+
+/**
+ * Runner behind the {@code fuzzMoves} Gradle task: checks every move implementation against the reference on
+ * random and adversarial boards, on all cores, and exits with status 1 after printing the shrunk failures.
+ * <p>
+ * Usage: {@code MoveFuzz [cases] [seed]}. Cases are numbered from 0, so a failure is replayed by running the
+ * same seed again.
+ */
+public class MoveFuzz {
+    private static final int MAX_FAILURES = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 2) {
+            throw new IllegalArgumentException("Usage: MoveFuzz [cases] [seed]");
+        }
+        long cases = args.length > 0 ? Long.parseLong(args[0]) : 100000000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        System.out.println("Fuzzing " + cases + " cases with seed " + seed + " on " + threads + " threads");
+        MoveFuzzer fuzzer = new MoveFuzzer(seed, threads);
+        long start = System.nanoTime();
+        List<MoveFuzzer.Failure> failures = fuzzer.run(cases, MAX_FAILURES);
+        long seconds = Math.max(1, (System.nanoTime() - start) / 1000000000);
+        for (MoveFuzzer.Engine engine : MoveFuzzer.Engine.values()) {
+            System.out.println(engine + ": " + fuzzer.getChecked(engine) + " cases checked");
+        }
+        System.out.println("Took " + seconds + " s");
+
+        for (MoveFuzzer.Failure failure : failures) {
+            System.err.println(failure);
+        }
+        if (!failures.isEmpty()) {
+            System.err.println(failures.size() + " failing cases with seed " + seed);
+            System.exit(1);
+        }
+    }
+}
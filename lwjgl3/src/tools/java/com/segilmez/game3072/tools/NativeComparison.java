@@ -0,0 +1,99 @@
+package com.segilmez.game3072.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runner behind the {@code compareNativeImage} Gradle task: runs {@link Simulate} and {@link SolvePositions}
+ * on the JVM and as native images and prints their startup time, throughput and peak memory side by side.
+ * <p>
+ * Startup is the wall time of a whole process that does no work, {@code Simulate 0} and a single solved
+ * position, as the median of several runs. Throughput is the moves per second of one {@code Simulate} run on
+ * one thread, which on the JVM includes its JIT warm-up just as a short batch job would.
+ * <p>
+ * Usage: {@code NativeComparison <java> <classpath> <native simulate> <native solve> [runs] [games]}.
+ */
+public class NativeComparison {
+    private static final String OPENING = "0000000000000011";
+    private static final int DEPTH = 3;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4 || args.length > 6) {
+            throw new IllegalArgumentException(
+                "Usage: NativeComparison <java> <classpath> <native simulate> <native solve> [runs] [games]");
+        }
+        List<String> jvmSimulate = Arrays.asList(args[0], "-cp", args[1], Simulate.class.getName());
+        List<String> jvmSolve = Arrays.asList(args[0], "-cp", args[1], SolvePositions.class.getName());
+        List<String> nativeSimulate = Arrays.asList(args[2]);
+        List<String> nativeSolve = Arrays.asList(args[3]);
+        int runs = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        int games = args.length > 5 ? Integer.parseInt(args[5]) : 20;
+
+        System.out.println(String.format("%-32s %12s %12s", "", "JVM", "native"));
+        row("Simulate startup, median ms",
+            startup(jvmSimulate, runs, "0"), startup(nativeSimulate, runs, "0"));
+        row("SolvePositions startup, median ms",
+            startup(jvmSolve, runs, Integer.toString(DEPTH), OPENING),
+            startup(nativeSolve, runs, Integer.toString(DEPTH), OPENING));
+
+        String[] simulation = {Integer.toString(games), Integer.toString(DEPTH), "3072", "1"};
+        String jvm = run(jvmSimulate, simulation);
+        String nativeImage = run(nativeSimulate, simulation);
+        row("Simulate " + games + " games, moves/s",
+            value(jvm, "movesPerSecond"), value(nativeImage, "movesPerSecond"));
+        row("Simulate " + games + " games, ms", value(jvm, "runMs"), value(nativeImage, "runMs"));
+        row("Simulate peak RSS, kB", value(jvm, "peakRssKb"), value(nativeImage, "peakRssKb"));
+    }
+
+    private static void row(String label, long jvm, long nativeImage) {
+        System.out.println(String.format("%-32s %12d %12d", label, jvm, nativeImage));
+    }
+
+    private static long startup(List<String> command, int runs, String... args) throws Exception {
+        long[] millis = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            run(command, args);
+            millis[i] = (System.nanoTime() - start) / 1000000;
+        }
+        Arrays.sort(millis);
+        return millis[runs / 2];
+    }
+
+    /**
+     * Runs a command to its end and returns the last line it printed
+     */
+    private static String run(List<String> command, String... args) throws IOException, InterruptedException {
+        List<String> full = new ArrayList<>(command);
+        full.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(full).redirectErrorStream(true).start();
+        String last = "";
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                last = line;
+            }
+        }
+        int status = process.waitFor();
+        if (status != 0) {
+            throw new IllegalStateException(full + " exited with status " + status + ": " + last);
+        }
+        return last;
+    }
+
+    /**
+     * A value from a summary line of {@code key=value} pairs, or -1 if it has none
+     */
+    private static long value(String summary, String key) {
+        for (String pair : summary.split(" ")) {
+            if (pair.startsWith(key + "=")) {
+                return Long.parseLong(pair.substring(key.length() + 1));
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,194 @@
+package com.segilmez.game3072.tools;
+
+import com.segilmez.game3072.BoardSymmetry;
+import com.segilmez.game3072.Direction;
+import com.segilmez.game3072.MoveTables;
+import com.segilmez.game3072.OpeningBook;
+import com.segilmez.game3072.PackedBoard;
+import com.segilmez.game3072.Solver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Offline builder behind the {@code buildOpeningBook} Gradle task.
+ * <p>
+ * Solves early positions with a deep {@link Solver} search, most likely first. Starting from every opening
+ * position, it plays the move it just solved and queues every spawn that can follow, weighted by the chance
+ * of reaching it; a position reached in several ways adds up the chances. Positions are solved in batches
+ * on all cores. Usage: {@code OpeningBookBuilder <output> [depth] [positions]}.
+ */
+public class OpeningBookBuilder {
+    public static final int DEFAULT_DEPTH = 5;
+    public static final int DEFAULT_POSITIONS = 20000;
+
+    private static final int BATCH = 256;
+    private static final int CACHE_BITS = 20;
+
+    private final int depth;
+    private final int positions;
+    private final MoveTables tables = MoveTables.standard();
+
+    // Chance of reaching each queued position; the queue may hold stale entries with a lower chance
+    private final Map<Long, Double> chances = new HashMap<>();
+    private final PriorityQueue<Position> queue = new PriorityQueue<>();
+    private final Map<Long, Direction> solved = new HashMap<>();
+
+    private final ThreadLocal<Solver> solvers = new ThreadLocal<Solver>() {
+        @Override
+        protected Solver initialValue() {
+            return new Solver(depth, CACHE_BITS);
+        }
+    };
+
+    private static class Position implements Comparable<Position> {
+        final long board;
+        final double chance;
+
+        Position(long board, double chance) {
+            this.board = board;
+            this.chance = chance;
+        }
+
+        @Override
+        public int compareTo(Position other) {
+            return Double.compare(other.chance, chance);
+        }
+    }
+
+    public OpeningBookBuilder(int depth, int positions) {
+        this.depth = depth;
+        this.positions = positions;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 3) {
+            throw new IllegalArgumentException("Usage: OpeningBookBuilder <output> [depth] [positions]");
+        }
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+        int positions = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_POSITIONS;
+        new OpeningBookBuilder(depth, positions).build(new File(args[0]));
+    }
+
+    public void build(File output) throws IOException, InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        queueOpenings();
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            while (solved.size() < positions && !queue.isEmpty()) {
+                solveBatch(executor, nextBatch(Math.min(BATCH, positions - solved.size())));
+                System.out.println("Solved " + solved.size() + " positions, " + queue.size() + " queued");
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long[] keys = new long[solved.size()];
+        int count = 0;
+        for (long key : solved.keySet()) {
+            keys[count++] = key;
+        }
+        Arrays.sort(keys);
+        Direction[] moves = new Direction[count];
+        for (int i = 0; i < count; i++) {
+            moves[i] = solved.get(keys[i]);
+        }
+
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        try (FileOutputStream stream = new FileOutputStream(output)) {
+            OpeningBook.write(stream.getChannel(), keys, moves, count, depth);
+        }
+        System.out.println("Wrote " + count + " positions at depth " + depth + " to " + output + " in "
+            + (System.nanoTime() - start) / 1000000000 + " s");
+    }
+
+    /**
+     * Every position with the two starting tiles
+     */
+    private void queueOpenings() {
+        for (int first = 0; first < PackedBoard.CELLS; first++) {
+            for (int second = 0; second < PackedBoard.CELLS; second++) {
+                if (second == first) continue;
+                for (int firstExponent = 1; firstExponent <= 2; firstExponent++) {
+                    for (int secondExponent = 1; secondExponent <= 2; secondExponent++) {
+                        long board = (long) firstExponent << 4 * first | (long) secondExponent << 4 * second;
+                        double chance = spawnChance(firstExponent) / PackedBoard.CELLS
+                            * spawnChance(secondExponent) / (PackedBoard.CELLS - 1);
+                        queue(board, chance);
+                    }
+                }
+            }
+        }
+    }
+
+    private static double spawnChance(int exponent) {
+        return exponent == 1 ? 0.9 : 0.1;
+    }
+
+    private void queue(long board, double chance) {
+        long key = BoardSymmetry.canonical(board);
+        if (solved.containsKey(key)) return;
+        Double previous = chances.get(key);
+        double total = previous == null ? chance : previous + chance;
+        chances.put(key, total);
+        queue.add(new Position(key, total));
+    }
+
+    private List<Position> nextBatch(int size) {
+        List<Position> batch = new ArrayList<>(size);
+        while (batch.size() < size && !queue.isEmpty()) {
+            Position position = queue.poll();
+            Double chance = chances.get(position.board);
+            // Skip entries that were solved already or superseded by a higher chance
+            if (chance == null || chance != position.chance) continue;
+            chances.remove(position.board);
+            batch.add(position);
+        }
+        return batch;
+    }
+
+    private void solveBatch(ExecutorService executor, List<Position> batch)
+        throws InterruptedException, ExecutionException {
+        List<Future<Direction>> results = new ArrayList<>(batch.size());
+        for (final Position position : batch) {
+            results.add(executor.submit(new Callable<Direction>() {
+                @Override
+                public Direction call() {
+                    return solvers.get().bestMove(position.board);
+                }
+            }));
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            Position position = batch.get(i);
+            Direction move = results.get(i).get();
+            if (move == null) continue; // Game over
+
+            solved.put(position.board, move);
+            long next = tables.move(position.board, move);
+            int empty = PackedBoard.countEmpty(next);
+            for (int cell = 0; cell < PackedBoard.CELLS; cell++) {
+                if ((next >>> 4 * cell & 0xF) != 0) continue;
+                queue(next | 1L << 4 * cell, position.chance * spawnChance(1) / empty);
+                queue(next | 2L << 4 * cell, position.chance * spawnChance(2) / empty);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.segilmez.game3072.tools;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.segilmez.game3072.Board;
+import com.segilmez.game3072.Direction;
+import com.segilmez.game3072.Grid;
+import com.segilmez.game3072.Players;
+import com.segilmez.game3072.RenderStats;
+import com.segilmez.game3072.Rules;
+import com.segilmez.game3072.SpectatorGames;
+import com.segilmez.game3072.SpectatorView;
+import com.segilmez.game3072.TileAtlas;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Offscreen check behind the {@code checkRenderBudget} Gradle task: draws standard boards into a frame buffer
+ * of a hidden window, counts their GL work with {@link RenderStats} and exits with status 1 if any board goes
+ * over its per-frame budget. It needs an OpenGL context, so a CI machine without a display runs it under a
+ * virtual one such as {@code xvfb-run}.
+ * <p>
+ * Usage: {@code RenderBudgetCheck [limit=value ...]}, where a limit is {@code drawCalls}, {@code textureBindings},
+ * {@code shaderSwitches} or {@code vertices}, either for every board or prefixed by one, e.g.
+ * {@code full8x8.drawCalls=150}. The default budgets are what the current drawing code needs, with some
+ * headroom: every tile is a shape flush and a batch flush of its own. The spectator wall of
+ * {@value #SPECTATOR_BOARDS} boards has none: it must stay a single draw call from one texture.
+ */
+public class RenderBudgetCheck extends ApplicationAdapter {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 800;
+    private static final int WARMUP_FRAMES = 2;
+    private static final int MEASURED_FRAMES = 10;
+    private static final long SEED = 3072;
+    private static final String SPECTATOR = "spectator64";
+    private static final int SPECTATOR_BOARDS = 64;
+
+    private static final String[] LIMITS = {"drawCalls", "textureBindings", "shaderSwitches", "vertices"};
+
+    private final Map<String, int[]> budgets = new LinkedHashMap<>();
+    private boolean failed = false;
+
+    public RenderBudgetCheck(String[] args) {
+        budgets.put("empty4x4", new int[]{4, 2, 4, 6000});
+        budgets.put("full4x4", new int[]{40, 20, 40, 12000});
+        budgets.put("full8x8", new int[]{150, 70, 150, 42000});
+        budgets.put("sliding4x4", new int[]{40, 20, 40, 12000});
+        // The profiler counts indices for indexed draws, six per sprite
+        budgets.put(SPECTATOR, new int[]{1, 1, 1, SpectatorView.spritesNeeded(SPECTATOR_BOARDS) * 6});
+        for (String arg : args) {
+            setLimit(arg);
+        }
+    }
+
+    private void setLimit(String arg) {
+        int equals = arg.indexOf('=');
+        if (equals < 0) {
+            throw new IllegalArgumentException("Expected limit=value, not " + arg);
+        }
+        String key = arg.substring(0, equals);
+        int value = Integer.parseInt(arg.substring(equals + 1));
+        int dot = key.indexOf('.');
+        String fixture = dot < 0 ? null : key.substring(0, dot);
+        int limit = indexOf(key.substring(dot + 1));
+        if (fixture != null && !budgets.containsKey(fixture)) {
+            throw new IllegalArgumentException("Unknown board " + fixture + ", expected one of " + budgets.keySet());
+        }
+        for (Map.Entry<String, int[]> budget : budgets.entrySet()) {
+            if (fixture == null || fixture.equals(budget.getKey())) {
+                budget.getValue()[limit] = value;
+            }
+        }
+    }
+
+    private static int indexOf(String limit) {
+        for (int i = 0; i < LIMITS.length; i++) {
+            if (LIMITS[i].equals(limit)) return i;
+        }
+        throw new IllegalArgumentException("Unknown limit " + limit);
+    }
+
+    public static void main(String[] args) {
+        RenderBudgetCheck check = new RenderBudgetCheck(args);
+        Lwjgl3ApplicationConfiguration configuration = new Lwjgl3ApplicationConfiguration();
+        configuration.setTitle("Render budget check");
+        configuration.setWindowedMode(WIDTH, HEIGHT);
+        configuration.setInitialVisible(false);
+        configuration.disableAudio(true);
+        new Lwjgl3Application(check, configuration);
+        System.exit(check.failed ? 1 : 0);
+    }
+
+    @Override
+    public void create() {
+        SpriteBatch batch = new SpriteBatch();
+        ShapeRenderer shapeRenderer = new ShapeRenderer();
+        BitmapFont font = new BitmapFont();
+        FrameBuffer frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, WIDTH, HEIGHT, false);
+        RenderStats stats = new RenderStats(Gdx.graphics);
+        batch.getProjectionMatrix().setToOrtho2D(0, 0, WIDTH, HEIGHT);
+        shapeRenderer.setProjectionMatrix(batch.getProjectionMatrix());
+        // The games are not started: a wall of empty boards draws as many sprites as a full one
+        TileAtlas atlas = new TileAtlas(font);
+        SpriteBatch spectatorBatch = new SpriteBatch(SpectatorView.spritesNeeded(SPECTATOR_BOARDS));
+        spectatorBatch.setProjectionMatrix(batch.getProjectionMatrix());
+        SpectatorView spectator = new SpectatorView(new SpectatorGames(SPECTATOR_BOARDS, Players.parse("greedy"),
+            SEED, 1, 0), atlas, 0.1f);
+        spectator.layout(0, 0, WIDTH, HEIGHT);
+        stats.setEnabled(true);
+
+        try {
+            for (Map.Entry<String, int[]> budget : budgets.entrySet()) {
+                Grid grid = budget.getKey().equals(SPECTATOR) ? null : fixture(budget.getKey());
+                int[] worst = new int[LIMITS.length];
+                frameBuffer.begin();
+                for (int frame = 0; frame < WARMUP_FRAMES + MEASURED_FRAMES; frame++) {
+                    Gdx.gl.glClearColor(0.98f, 0.97f, 0.94f, 1);
+                    Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+                    stats.beginFrame();
+                    if (grid != null) {
+                        grid.render(shapeRenderer, batch, font);
+                    } else {
+                        spectator.render(spectatorBatch);
+                    }
+                    stats.endFrame();
+                    if (frame >= WARMUP_FRAMES) {
+                        worst[0] = Math.max(worst[0], stats.getDrawCalls());
+                        worst[1] = Math.max(worst[1], stats.getTextureBindings());
+                        worst[2] = Math.max(worst[2], stats.getShaderSwitches());
+                        worst[3] = Math.max(worst[3], stats.getVertices());
+                    }
+                }
+                frameBuffer.end();
+                report(budget.getKey(), worst, budget.getValue());
+            }
+        } finally {
+            stats.setEnabled(false);
+            spectatorBatch.dispose();
+            atlas.dispose();
+            frameBuffer.dispose();
+            font.dispose();
+            shapeRenderer.dispose();
+            batch.dispose();
+        }
+        Gdx.app.exit();
+    }
+
+    private void report(String fixture, int[] measured, int[] budget) {
+        StringBuilder line = new StringBuilder(fixture);
+        boolean over = false;
+        for (int i = 0; i < LIMITS.length; i++) {
+            line.append(i == 0 ? ": " : ", ").append(LIMITS[i]).append(' ').append(measured[i])
+                .append('/').append(budget[i]);
+            over |= measured[i] > budget[i];
+        }
+        if (over) {
+            failed = true;
+            System.err.println(line.append(" OVER BUDGET"));
+        } else {
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * One of the standard boards, laid out to fill most of the frame buffer
+     */
+    private static Grid fixture(String name) {
+        float size = WIDTH * 0.8f;
+        float x = (WIDTH - size) / 2;
+        float y = (HEIGHT - size) / 2;
+        switch (name) {
+            case "empty4x4":
+                return new Grid(new Board(Rules.STANDARD, SEED), size, x, y);
+            case "full4x4":
+                return new Grid(fill(4), size, x, y);
+            case "full8x8":
+                return new Grid(fill(8), size, x, y);
+            case "sliding4x4":
+                // Half way through a slide, so resting, sliding and merging tiles are all drawn
+                Board board = new Board(Rules.STANDARD, SEED);
+                board.addInitialTiles();
+                Random random = new Random(SEED);
+                Direction[] directions = Direction.values();
+                for (int i = 0; i < 40; i++) {
+                    board.play(directions[random.nextInt(directions.length)]);
+                }
+                Grid grid = new Grid(board, size, x, y);
+                for (Direction direction : directions) {
+                    if (grid.move(direction)) break;
+                }
+                grid.update(0.1f);
+                return grid;
+            default:
+                throw new IllegalArgumentException("Unknown board " + name);
+        }
+    }
+
+    /**
+     * A board with a tile in every cell, reached by always making the move that merges the least
+     */
+    private static Board fill(int size) {
+        Board board = new Board(Rules.STANDARD.withSize(size), SEED);
+        board.addInitialTiles();
+        while (board.countEmptyCells() > 0) {
+            Direction best = null;
+            int fewestEmpty = Integer.MAX_VALUE;
+            for (Direction direction : Direction.values()) {
+                if (!board.move(direction)) continue;
+                int empty = board.countEmptyCells();
+                board.undo();
+                if (empty < fewestEmpty) {
+                    fewestEmpty = empty;
+                    best = direction;
+                }
+            }
+            if (best == null) break;
+            board.play(best);
+        }
+        return board;
+    }
+}
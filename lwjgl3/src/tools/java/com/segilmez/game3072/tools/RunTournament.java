@@ -0,0 +1,43 @@
+package com.segilmez.game3072.tools;
+
+import com.segilmez.game3072.Player;
+import com.segilmez.game3072.Players;
+import com.segilmez.game3072.Tournament;
+
+import java.util.List;
+
+/**
+ * Runner behind the {@code runTournament} Gradle task: plays the named players on the same seeded games on all
+ * cores and prints their statistics, compared with the first player.
+ * <p>
+ * Usage: {@code RunTournament <games> <move budget ms> <seed> <player> [player ...]}, with players named as
+ * {@link Players#parse(String)} takes them, e.g. {@code greedy expectimax:2 montecarlo:50}. A budget of 0
+ * means no limit.
+ */
+public class RunTournament {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            throw new IllegalArgumentException(
+                "Usage: RunTournament <games> <move budget ms> <seed> <player> [player ...]");
+        }
+        int games = Integer.parseInt(args[0]);
+        double budgetMillis = Double.parseDouble(args[1]);
+        long seed = Long.parseLong(args[2]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        String[] names = new String[args.length - 3];
+        Player.Factory[] factories = new Player.Factory[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = args[i + 3];
+            factories[i] = Players.parse(names[i]);
+        }
+
+        System.out.println("Playing " + games + " games each with seeds from " + seed + " on " + threads
+            + " threads, " + (budgetMillis > 0 ? budgetMillis + " ms per move" : "no move budget"));
+        Tournament tournament = new Tournament(names, factories, games, seed, (long) (budgetMillis * 1e6),
+            threads);
+        long start = System.nanoTime();
+        List<Tournament.Result> results = tournament.run();
+        System.out.print(Tournament.report(results));
+        System.out.println("Took " + Math.max(1, (System.nanoTime() - start) / 1000000000) + " s");
+    }
+}
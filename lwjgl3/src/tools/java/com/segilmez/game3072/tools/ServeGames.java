@@ -0,0 +1,31 @@
+package com.segilmez.game3072.tools;
+
+import com.segilmez.game3072.GameServer;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Runner behind the {@code serveGames} Gradle task: hosts games for bots over {@link GameServer}'s binary protocol
+ * on a loopback port until the process is stopped.
+ * <p>
+ * Usage: {@code ServeGames [port] [capacity]}. Port 0 picks a free one, which is printed.
+ */
+public class ServeGames {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 2) {
+            throw new IllegalArgumentException("Usage: ServeGames [port] [capacity]");
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 3072;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_CAPACITY;
+
+        final GameServer server = new GameServer(new InetSocketAddress("127.0.0.1", port), capacity);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.close();
+            }
+        }));
+        System.out.println("Serving up to " + capacity + " games on 127.0.0.1:" + server.getPort());
+        server.run();
+    }
+}
@@ -0,0 +1,178 @@
+package com.segilmez.game3072.tools;
+
+import com.segilmez.game3072.Board;
+import com.segilmez.game3072.Direction;
+import com.segilmez.game3072.GameClient;
+import com.segilmez.game3072.GameProtocol;
+import com.segilmez.game3072.GameServer;
+import com.segilmez.game3072.PackedBoard;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runner behind the {@code benchmarkServer} Gradle task: starts a {@link GameServer} on a loopback port, checks a
+ * game played over it move by move against a {@link Board} with the same seed, undo and close included, then
+ * loads it from several connections that each keep a number of games moving with every move request pipelined,
+ * and prints the moves served per second. Any unexpected response fails the run.
+ * <p>
+ * Usage: {@code ServerBenchmark [connections] [seconds] [games per connection]}.
+ */
+public class ServerBenchmark {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 3) {
+            throw new IllegalArgumentException("Usage: ServerBenchmark [connections] [seconds] [games per connection]");
+        }
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 10;
+        final int games = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+        GameServer server = new GameServer(new InetSocketAddress("127.0.0.1", 0), connections * games + 1);
+        Thread serverThread = new Thread(server, "game-server");
+        serverThread.start();
+        final InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+        try {
+            checkAgainstBoard(address, 3072);
+            System.out.println("Game over the server matches the same game on a Board");
+
+            System.out.println("Loading 127.0.0.1:" + server.getPort() + " from " + connections + " connections with "
+                + games + " games each for " + seconds + " s");
+            final long end = System.nanoTime() + (long) (seconds * 1e9);
+            ExecutorService executor = Executors.newFixedThreadPool(connections);
+            List<Future<long[]>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                final long seed = i * (long) games;
+                results.add(executor.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() throws Exception {
+                        return load(address, games, seed, end);
+                    }
+                }));
+            }
+            long moves = 0;
+            long moved = 0;
+            long finished = 0;
+            for (Future<long[]> result : results) {
+                long[] counts = result.get();
+                moves += counts[0];
+                moved += counts[1];
+                finished += counts[2];
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            executor.shutdown();
+
+            System.out.printf("%d moves in %.1f s: %.0f moves/s, %d of them changed the board, %d games finished%n",
+                moves, elapsed, moves / elapsed, moved, finished);
+        } finally {
+            server.close();
+            serverThread.join();
+        }
+    }
+
+    /**
+     * Plays a game on the server and on a local board side by side, undoing every few moves
+     *
+     * @throws IllegalStateException at the first difference
+     */
+    private static void checkAgainstBoard(InetSocketAddress address, long seed) throws Exception {
+        try (GameClient client = new GameClient(address)) {
+            Board board = new Board(PackedBoard.SIZE, seed);
+            board.addInitialTiles();
+            expect(client.newGame(seed), GameProtocol.OK, client, board);
+            int game = client.getGame();
+            for (int step = 0; !client.isGameOver(); step++) {
+                if (step % 7 == 6) {
+                    byte status = board.undo() ? GameProtocol.OK : GameProtocol.NOTHING_TO_UNDO;
+                    expect(client.undo(game), status, client, board);
+                }
+                Direction direction = DIRECTIONS[step * 5 / 3 & 3];
+                byte status = board.play(direction) ? GameProtocol.OK : GameProtocol.NOT_MOVED;
+                expect(client.move(game, direction), status, client, board);
+                if (PackedBoard.maxExponent(client.getBoard()) == PackedBoard.MAX_EXPONENT) break;
+            }
+            expect(client.closeGame(game), GameProtocol.OK, client, board);
+            if (client.state(game) != GameProtocol.UNKNOWN_GAME) {
+                throw new IllegalStateException("Closed game " + game + " still answers");
+            }
+        }
+    }
+
+    private static void expect(byte status, byte expected, GameClient client, Board board) {
+        if (status != expected || client.getBoard() != PackedBoard.pack(board)
+            || client.getScore() != board.getScore() || client.getMoveCount() != board.getMoveCount()) {
+            throw new IllegalStateException("Server answered " + status + " with board "
+                + Long.toHexString(client.getBoard()) + ", score " + client.getScore() + ", " + client.getMoveCount()
+                + " moves; the Board has " + Long.toHexString(PackedBoard.pack(board)) + ", " + board.getScore()
+                + ", " + board.getMoveCount());
+        }
+    }
+
+    /**
+     * Sends a move for each of a connection's games, then reads the answers, until {@code end}; a finished game
+     * is closed and replaced
+     *
+     * @return moves served, moves that changed the board and games finished
+     */
+    private static long[] load(InetSocketAddress address, int games, long seed, long end) throws Exception {
+        int[] ids = new int[games];
+        long[] counts = new long[3];
+        try (GameClient client = new GameClient(address)) {
+            for (int i = 0; i < games; i++) {
+                client.sendNewGame(seed + i);
+            }
+            client.flush();
+            for (int i = 0; i < games; i++) {
+                check(client.receive() == GameProtocol.OK, client);
+                ids[i] = client.getGame();
+            }
+
+            long nextSeed = seed + games;
+            for (int round = 0; System.nanoTime() < end; round++) {
+                for (int i = 0; i < games; i++) {
+                    client.sendMove(ids[i], DIRECTIONS[(round + i) & 3]);
+                }
+                client.flush();
+                int over = 0;
+                for (int i = 0; i < games; i++) {
+                    byte status = client.receive();
+                    check((status == GameProtocol.OK || status == GameProtocol.NOT_MOVED)
+                        && client.getGame() == ids[i], client);
+                    counts[0]++;
+                    if (status == GameProtocol.OK) counts[1]++;
+                    if (client.isGameOver()) {
+                        client.sendCloseGame(ids[i]);
+                        client.sendNewGame(nextSeed++);
+                        // Marked until its replacement is known
+                        ids[i] = ~i;
+                        over++;
+                    }
+                }
+                if (over == 0) continue;
+                client.flush();
+                counts[2] += over;
+                for (int i = 0; i < games; i++) {
+                    if (ids[i] >= 0) continue;
+                    check(client.receive() == GameProtocol.OK, client);
+                    check(client.receive() == GameProtocol.OK, client);
+                    ids[i] = client.getGame();
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static void check(boolean condition, GameClient client) {
+        if (!condition) {
+            throw new IllegalStateException("Unexpected response " + client.getStatus() + " for game "
+                + client.getGame());
+        }
+    }
+}
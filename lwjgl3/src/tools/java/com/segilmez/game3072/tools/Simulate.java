@@ -0,0 +1,167 @@
+package com.segilmez.game3072.tools;
+
+import com.segilmez.game3072.Board;
+import com.segilmez.game3072.Direction;
+import com.segilmez.game3072.MoveAdvisor;
+import com.segilmez.game3072.MoveTables;
+import com.segilmez.game3072.Rules;
+import com.segilmez.game3072.Solver;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless batch simulation: plays whole games of the standard rules with a {@link Solver} on all cores and
+ * prints how they went. It uses nothing of libGDX beyond its math classes, so it is also built as a native
+ * image (see {@code nativeimage.gradle}) for short jobs started by the thousand.
+ * <p>
+ * Usage: {@code Simulate <games> [depth] [seed] [threads]}. Game {@code i} is seeded with {@code seed + i}, so
+ * any one of them can be played again on its own. The last line is a summary of {@code key=value} pairs for
+ * scripts, including moves per second and, on Linux, the peak resident memory.
+ */
+public class Simulate {
+    private static final int CACHE_BITS = 16;
+
+    static {
+        // The move tables and the solver's row heuristic are shared and built on first use; a native image
+        // initializes this class while it is built, so it starts with both already in its heap
+        MoveTables.standard();
+        new Solver(1, 0);
+    }
+
+    private final int depth;
+    private final long seed;
+    private final int[] scores;
+    private final int[] maxTiles;
+    private final int[] moves;
+    private final AtomicInteger nextGame = new AtomicInteger();
+
+    public Simulate(int games, int depth, long seed) {
+        this.depth = depth;
+        this.seed = seed;
+        scores = new int[games];
+        maxTiles = new int[games];
+        moves = new int[games];
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 4) {
+            throw new IllegalArgumentException("Usage: Simulate <games> [depth] [seed] [threads]");
+        }
+        int games = Integer.parseInt(args[0]);
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : Solver.DEFAULT_DEPTH;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 3072;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        Simulate simulate = new Simulate(games, depth, seed);
+        long start = System.nanoTime();
+        simulate.run(threads);
+        simulate.report(System.nanoTime() - start);
+    }
+
+    /**
+     * Plays every game, each thread taking the next one not yet played
+     */
+    public void run(int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] workers = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = executor.submit(() -> {
+                    MoveAdvisor advisor = new MoveAdvisor(null, new Solver(depth, CACHE_BITS));
+                    for (int game = nextGame.getAndIncrement(); game < scores.length;
+                         game = nextGame.getAndIncrement()) {
+                        play(game, advisor);
+                    }
+                });
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void play(int game, MoveAdvisor advisor) {
+        Board board = new Board(Rules.STANDARD, seed + game);
+        board.addInitialTiles();
+        Direction move;
+        while ((move = advisor.suggest(board)) != null) {
+            board.play(move);
+        }
+        int maxTile = 0;
+        for (int row = 0; row < board.getSize(); row++) {
+            for (int col = 0; col < board.getSize(); col++) {
+                maxTile = Math.max(maxTile, board.getValue(row, col));
+            }
+        }
+        scores[game] = board.getScore();
+        maxTiles[game] = maxTile;
+        moves[game] = board.getMoveCount();
+    }
+
+    private void report(long runNanos) {
+        int games = scores.length;
+        long totalMoves = 0;
+        long totalScore = 0;
+        int won = 0;
+        for (int game = 0; game < games; game++) {
+            totalMoves += moves[game];
+            totalScore += scores[game];
+            if (maxTiles[game] >= Rules.STANDARD.getTargetTile()) won++;
+        }
+        int[] sortedScores = scores.clone();
+        int[] sortedTiles = maxTiles.clone();
+        Arrays.sort(sortedScores);
+        Arrays.sort(sortedTiles);
+
+        StringBuilder tiles = new StringBuilder();
+        for (int i = 0; i < games; ) {
+            int tile = sortedTiles[i];
+            int count = 0;
+            while (i < games && sortedTiles[i] == tile) {
+                count++;
+                i++;
+            }
+            tiles.append(tiles.length() == 0 ? "" : ", ").append(tile).append(": ").append(count);
+        }
+        if (games > 0) {
+            System.out.println("Largest tiles: " + tiles);
+        }
+
+        long peak = peakResidentKilobytes();
+        System.out.println("games=" + games
+            + " depth=" + depth
+            + " moves=" + totalMoves
+            + " meanScore=" + (games == 0 ? 0 : totalScore / games)
+            + " medianScore=" + (games == 0 ? 0 : sortedScores[games / 2])
+            + " won=" + won
+            + " runMs=" + runNanos / 1000000
+            + " movesPerSecond=" + (runNanos == 0 ? 0 : totalMoves * 1000000000L / runNanos)
+            + (peak < 0 ? "" : " peakRssKb=" + peak));
+    }
+
+    /**
+     * The most memory this process has had resident, from {@code /proc}; -1 where that is not available
+     */
+    static long peakResidentKilobytes() {
+        try (BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not Linux
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,61 @@
+package com.segilmez.game3072.tools;
+
+import com.segilmez.game3072.Direction;
+import com.segilmez.game3072.MoveTables;
+import com.segilmez.game3072.Solver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Headless solver: prints the best move of each {@link com.segilmez.game3072.PackedBoard packed board} it is
+ * given. Built as a native image next to {@link Simulate}, for jobs that solve a handful of positions each.
+ * <p>
+ * Usage: {@code SolvePositions <depth> [board ...]}, with boards as 16 hexadecimal digits; without boards it
+ * reads one per line from standard input. Each answer is a line of the board and {@code UP}, {@code DOWN},
+ * {@code LEFT}, {@code RIGHT} or {@code NONE} when no move is possible.
+ */
+public class SolvePositions {
+    private static final int CACHE_BITS = 18;
+
+    static {
+        // Built into the heap of a native image, as in Simulate
+        MoveTables.standard();
+        new Solver(1, 0);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: SolvePositions <depth> [board ...]");
+        }
+        Solver solver = new Solver(Integer.parseInt(args[0]), CACHE_BITS);
+        StringBuilder out = new StringBuilder();
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                solve(solver, args[i], out);
+            }
+        } else {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                solve(solver, line.trim(), out);
+                if (out.length() > 8192) {
+                    System.out.print(out);
+                    out.setLength(0);
+                }
+            }
+        }
+        System.out.print(out);
+        System.out.flush();
+    }
+
+    private static void solve(Solver solver, String board, StringBuilder out) {
+        if (board.length() != 16) {
+            throw new IllegalArgumentException("A board is 16 hexadecimal digits, not " + board);
+        }
+        Direction move = solver.bestMove(Long.parseUnsignedLong(board, 16));
+        out.append(board).append(' ').append(move == null ? "NONE" : move.name()).append('\n');
+    }
+}
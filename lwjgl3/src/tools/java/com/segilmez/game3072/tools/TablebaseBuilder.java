@@ -0,0 +1,47 @@
+package com.segilmez.game3072.tools;
+
+import com.segilmez.game3072.PackedBoard;
+import com.segilmez.game3072.Tablebase;
+import com.segilmez.game3072.TablebaseSolver;
+
+import java.io.File;
+
+/**
+ * Offline builder behind the {@code buildTablebase} Gradle task.
+ * <p>
+ * Usage: {@code TablebaseBuilder <output> <target tile> [walls] [value bits]}. Walls are {@code 3x3} (the
+ * default), {@code 4x4} for no walls at all, or a hexadecimal mask of walled cells with bit
+ * {@code row * 4 + col} per cell, e.g. {@code ff} to wall off rows 0 and 1.
+ */
+public class TablebaseBuilder {
+    public static final int DEFAULT_VALUE_BITS = 12;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 4) {
+            throw new IllegalArgumentException(
+                "Usage: TablebaseBuilder <output> <target tile> [3x3|4x4|<hex walls>] [value bits]");
+        }
+        File output = new File(args[0]);
+        int target = PackedBoard.exponent(Integer.parseInt(args[1]));
+        int walls = args.length > 2 ? parseWalls(args[2]) : Tablebase.WALLS_3X3;
+        int bits = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_VALUE_BITS;
+
+        TablebaseSolver solver = new TablebaseSolver(walls, target, bits, Runtime.getRuntime().availableProcessors());
+        System.out.println("Solving " + solver.size() + " positions for " + args[1] + " with walls "
+            + Integer.toHexString(walls));
+        long start = System.nanoTime();
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IllegalStateException("Could not create " + parent);
+        }
+        double opening = solver.solve(output);
+        System.out.println("Wrote " + output + " in " + (System.nanoTime() - start) / 1000000000 + " s; "
+            + "a new game reaches " + args[1] + " with probability " + opening);
+    }
+
+    private static int parseWalls(String walls) {
+        if (walls.equals("3x3")) return Tablebase.WALLS_3X3;
+        if (walls.equals("4x4")) return 0;
+        return Integer.parseInt(walls, 16);
+    }
+}
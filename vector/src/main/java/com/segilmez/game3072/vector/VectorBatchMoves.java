@@ -0,0 +1,102 @@
+package com.segilmez.game3072.vector;
+
+import com.segilmez.game3072.BatchMoves;
+import com.segilmez.game3072.Direction;
+import com.segilmez.game3072.MoveTables;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link BatchMoves} with the JDK Vector API: one packed board per lane of the widest long vector of the CPU, so
+ * four boards per step with AVX2 and eight with AVX-512. Columns are transposed with lanewise shifts and masks,
+ * and each row is a gather from a table that holds the moved row and its score together, so a move is four
+ * gathers for all lanes. Boards left over after the last full vector are moved by the {@link MoveTables}.
+ * <p>
+ * Needs {@code --add-modules jdk.incubator.vector}; {@link MoveTables#batchMoves()} loads it when it can. Not
+ * thread-safe, as the gather indices are kept between calls; use one instance per thread, as
+ * {@link MoveTables#batchMoves()} does.
+ */
+public final class VectorBatchMoves implements BatchMoves {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    // Ints with as many lanes as LONGS, for the gather indices
+    private static final VectorSpecies<Integer> INTS =
+        VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+    private static final int ROWS = 1 << 16;
+    private static final int SCORE_SHIFT = 16;
+
+    private final MoveTables tables;
+    // Moved row in the low 16 bits, score above
+    private final long[] left = new long[ROWS];
+    private final long[] right = new long[ROWS];
+    private final int[] indices = new int[LONGS.length()];
+
+    /**
+     * @throws UnsupportedOperationException if the CPU's vectors hold fewer than two longs
+     */
+    public VectorBatchMoves(MoveTables tables) {
+        if (LONGS.length() < 2) {
+            throw new UnsupportedOperationException("Long vectors of " + LONGS.length() + " lane");
+        }
+        this.tables = tables;
+        for (int row = 0; row < ROWS; row++) {
+            // A board with only row 0 moves and scores like that row
+            left[row] = tables.move(row, Direction.LEFT) | (long) tables.score(row, Direction.LEFT) << SCORE_SHIFT;
+            right[row] = tables.move(row, Direction.RIGHT)
+                | (long) tables.score(row, Direction.RIGHT) << SCORE_SHIFT;
+        }
+    }
+
+    @Override
+    public void moveAll(long[] boards, int count, Direction direction, long[] moved, int[] scores) {
+        boolean columns = direction == Direction.UP || direction == Direction.DOWN;
+        long[] table = direction == Direction.LEFT || direction == Direction.DOWN ? left : right;
+        int end = LONGS.loopBound(count);
+        for (int i = 0; i < end; i += LONGS.length()) {
+            LongVector board = LongVector.fromArray(LONGS, boards, i);
+            if (columns) {
+                board = transpose(board);
+            }
+            LongVector result = LongVector.zero(LONGS);
+            LongVector score = LongVector.zero(LONGS);
+            for (int shift = 0; shift < 64; shift += 16) {
+                board.lanewise(VectorOperators.LSHR, shift).and(0xFFFF)
+                    .convertShape(VectorOperators.L2I, INTS, 0).reinterpretAsInts().intoArray(indices, 0);
+                LongVector entry = LongVector.fromArray(LONGS, table, 0, indices, 0);
+                result = result.or(entry.and(0xFFFF).lanewise(VectorOperators.LSHL, shift));
+                score = score.add(entry.lanewise(VectorOperators.LSHR, SCORE_SHIFT));
+            }
+            if (columns) {
+                result = transpose(result);
+            }
+            result.intoArray(moved, i);
+            ((IntVector) score.convertShape(VectorOperators.L2I, INTS, 0)).intoArray(scores, i);
+        }
+        if (end < count) {
+            moveRest(boards, end, count, direction, moved, scores);
+        }
+    }
+
+    private void moveRest(long[] boards, int from, int to, Direction direction, long[] moved, int[] scores) {
+        for (int i = from; i < to; i++) {
+            long board = boards[i];
+            scores[i] = tables.score(board, direction);
+            moved[i] = tables.move(board, direction);
+        }
+    }
+
+    /**
+     * {@link com.segilmez.game3072.PackedBoard#transpose(long)} in every lane
+     */
+    private static LongVector transpose(LongVector packed) {
+        LongVector a = packed.and(0xF0F00F0FF0F00F0FL)
+            .or(packed.and(0x0000F0F00000F0F0L).lanewise(VectorOperators.LSHL, 12))
+            .or(packed.and(0x0F0F00000F0F0000L).lanewise(VectorOperators.LSHR, 12));
+        return a.and(0xFF00FF0000FF00FFL)
+            .or(a.and(0x00FF00FF00000000L).lanewise(VectorOperators.LSHR, 24))
+            .or(a.and(0x00000000FF00FF00L).lanewise(VectorOperators.LSHL, 24));
+    }
+}